@@ -0,0 +1,98 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.dto.AddressValidationResponse.AddressSuggestion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing della risposta Geoapify in {@link AddressValidationService} (5 risultati, senza rete).
+ *
+ * I log di debug del service vengono scritti su uno stream nullo: la costruzione dei messaggi
+ * resta nel tempo misurato, la scrittura su console no.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddressValidationBenchmark {
+
+    private static final String[][] RISULTATI = {
+        {"Via Roma", "Turin", "10121", "10", "45.0677", "7.6824"},
+        {"Via Roma", "Turin", "10123", null, "45.0659", "7.6829"},
+        {"Via Romagnano", "Turin", "10145", "3", "45.0791", "7.6450"},
+        {"Via Roma", "Moncalieri", "10024", "22", "44.9998", "7.6837"},
+        {"Via Romolo Gessi", "Turin", "10134", null, "45.0425", "7.6480"},
+    };
+
+    private AddressValidationService addressValidationService;
+    private String risposta;
+    private PrintStream outOriginale;
+
+    @Setup
+    public void setup() {
+        addressValidationService = new AddressValidationService();
+        ReflectionTestUtils.setField(addressValidationService, "geoapifyApiKey", "chiave-benchmark");
+        // URL delle mappe firmati come in esecuzione, senza la cache su disco
+        MappaStaticaService mappaStaticaService = new MappaStaticaService();
+        ReflectionTestUtils.setField(mappaStaticaService, "firma", new SecretKeySpec(new byte[32], "HmacSHA256"));
+        ReflectionTestUtils.setField(addressValidationService, "mappaStaticaService", mappaStaticaService);
+        risposta = rispostaGeoapify();
+
+        outOriginale = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(outOriginale);
+    }
+
+    @Benchmark
+    public List<AddressSuggestion> parseResponse() throws Exception {
+        return addressValidationService.parseResponse(risposta, "10");
+    }
+
+    /**
+     * FeatureCollection con la stessa struttura delle risposte /v1/geocode/search
+     */
+    private static String rispostaGeoapify() {
+        StringBuilder json = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i < RISULTATI.length; i++) {
+            String[] r = RISULTATI[i];
+            if (i > 0) json.append(',');
+            json.append("{\"type\":\"Feature\",\"properties\":{")
+                .append("\"datasource\":{\"sourcename\":\"openstreetmap\",\"attribution\":\"© OpenStreetMap contributors\",\"license\":\"ODbL 1.0\"},")
+                .append("\"country\":\"Italy\",\"country_code\":\"it\",\"state\":\"Piedmont\",\"county\":\"Torino\",")
+                .append("\"city\":\"").append(r[1]).append("\",")
+                .append("\"postcode\":\"").append(r[2]).append("\",")
+                .append("\"street\":\"").append(r[0]).append("\",");
+            if (r[3] != null) {
+                json.append("\"housenumber\":\"").append(r[3]).append("\",");
+            }
+            json.append("\"lon\":").append(r[5]).append(",\"lat\":").append(r[4]).append(',')
+                .append("\"formatted\":\"").append(r[0]).append(", ").append(r[2]).append(' ').append(r[1]).append(", Italy\",")
+                .append("\"result_type\":\"street\",\"rank\":{\"importance\":0.5,\"confidence\":0.9,\"match_type\":\"full_match\"}},")
+                .append("\"geometry\":{\"type\":\"Point\",\"coordinates\":[").append(r[5]).append(',').append(r[4]).append("]},")
+                .append("\"bbox\":[7.68,45.06,7.69,45.07]}");
+        }
+        return json.append("],\"query\":{\"text\":\"Via Roma 10, Torino, Italy\"}}").toString();
+    }
+}
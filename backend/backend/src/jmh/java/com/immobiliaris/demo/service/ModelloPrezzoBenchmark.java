@@ -0,0 +1,81 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo per chiamata del calcolo prezzo AI: modello a tabelle contro formula originale.
+ * Con {@code -prof gc} la colonna gc.alloc.rate.norm riporta i byte allocati per chiamata
+ * (atteso 0 per il modello).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelloPrezzoBenchmark {
+
+    private static final String[] TIPOLOGIE = {"Appartamento", "appartamento", "Villa", "Attico", "Loft", null};
+    private static final String[] CONDIZIONI = {"Nuovo", "ottimo", "Buono", "Da ristrutturare", null};
+    private static final String[] RISCALDAMENTI = {"Teleriscaldamento", "autonomo", "Centralizzato (Obsoleto)", null};
+
+    /** Potenza di 2: l'indice ruota con una maschera */
+    private static final int CAMPIONI = 1024;
+
+    private ModelloPrezzo modello;
+    private Immobile[] immobili;
+    private double[] quotazioni;
+    private int indice;
+
+    @Setup
+    public void setup() {
+        modello = ModelloPrezzo.da(ModelloPrezzoService.leggiCoefficienti(null));
+
+        Random random = new Random(42);
+        immobili = new Immobile[CAMPIONI];
+        quotazioni = new double[CAMPIONI];
+        for (int i = 0; i < CAMPIONI; i++) {
+            Immobile immobile = new Immobile();
+            immobile.setMetratura(30 + random.nextInt(250));
+            immobile.setStanze(1 + random.nextInt(8));
+            immobile.setBagni(1 + random.nextInt(3));
+            immobile.setPiano(random.nextInt(10));
+            immobile.setTipologia(TIPOLOGIE[random.nextInt(TIPOLOGIE.length)]);
+            immobile.setCondizioni(CONDIZIONI[random.nextInt(CONDIZIONI.length)]);
+            immobile.setRiscaldamento(RISCALDAMENTI[random.nextInt(RISCALDAMENTI.length)]);
+            immobile.setAscensore(random.nextBoolean());
+            immobile.setBalcone(random.nextBoolean());
+            immobile.setTerrazzo(random.nextBoolean());
+            immobile.setGiardino(random.nextBoolean());
+            immobile.setCantina(random.nextBoolean());
+            immobile.setGarage(random.nextBoolean());
+            immobili[i] = immobile;
+            quotazioni[i] = 1800 + random.nextInt(3500);
+        }
+    }
+
+    @Benchmark
+    public int modello() {
+        int i = indice++ & (CAMPIONI - 1);
+        return modello.calcola(immobili[i], quotazioni[i]);
+    }
+
+    @Benchmark
+    public int formulaOriginale() {
+        int i = indice++ & (CAMPIONI - 1);
+        return PrezzoAIRiferimento.calcola(immobili[i], quotazioni[i]);
+    }
+}
@@ -0,0 +1,132 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generazione del PDF di un contratto di mandato ({@link PdfContrattoService#generaContrattoPdf}),
+ * in memoria e in streaming.
+ *
+ * Throughput su un solo thread: documenti al secondo per core.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PdfContrattoBenchmark {
+
+    private PdfContrattoService pdfContrattoService;
+    private Contratto contratto;
+
+    @Setup
+    public void setup() {
+        pdfContrattoService = new PdfContrattoService();
+        contratto = contratto();
+    }
+
+    @Benchmark
+    public byte[] generaContrattoPdf() throws Exception {
+        return pdfContrattoService.generaContrattoPdf(contratto);
+    }
+
+    /**
+     * Stessa generazione scritta su uno stream (come l'anteprima in streaming):
+     * la differenza di B/op con {@link #generaContrattoPdf()} è il documento tenuto in memoria.
+     */
+    @Benchmark
+    public void generaContrattoPdfInStreaming(Blackhole blackhole) throws Exception {
+        pdfContrattoService.generaContrattoPdf(contratto, new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(len);
+            }
+        });
+    }
+
+    /**
+     * Contratto completo: tutte le sezioni del PDF hanno dati da stampare.
+     */
+    static Contratto contratto() {
+        User proprietario = new User();
+        proprietario.setIdUtente(1L);
+        proprietario.setNome("Mario");
+        proprietario.setCognome("Rossi");
+        proprietario.setEmail("mario.rossi@email.com");
+        proprietario.setTelefono("3201234567");
+        proprietario.setVia("Via Roma 10");
+        proprietario.setCitta("Torino");
+        proprietario.setCap("10121");
+
+        User agente = new User();
+        agente.setIdUtente(2L);
+        agente.setNome("Laura");
+        agente.setCognome("Bianchi");
+        agente.setEmail("laura.bianchi@immobiliaris.it");
+        agente.setTelefono("3337654321");
+
+        Immobile immobile = new Immobile();
+        immobile.setId(1);
+        immobile.setVia("Corso Francia 120");
+        immobile.setCitta("Torino");
+        immobile.setCap("10143");
+        immobile.setProvincia("TO");
+        immobile.setTipologia("Appartamento");
+        immobile.setMetratura(95);
+        immobile.setStanze(4);
+        immobile.setBagni(2);
+        immobile.setPiano(3);
+        immobile.setCondizioni("Ottimo");
+        immobile.setRiscaldamento("Autonomo");
+        immobile.setAscensore(true);
+        immobile.setBalcone(true);
+        immobile.setTerrazzo(false);
+        immobile.setGiardino(false);
+        immobile.setCantina(true);
+        immobile.setGarage(true);
+        immobile.setProprietario(proprietario);
+
+        Valutazione valutazione = new Valutazione();
+        valutazione.setId(1);
+        valutazione.setImmobile(immobile);
+        valutazione.setAgente(agente);
+        valutazione.setPrezzoAI(312_000);
+        valutazione.setPrezzoUmano(305_000);
+
+        LocalDateTime inizio = LocalDateTime.of(2025, 12, 1, 10, 0);
+        Contratto contratto = new Contratto();
+        contratto.setId(1L);
+        contratto.setNumeroContratto("CTR-2025-0001");
+        contratto.setUtente(proprietario);
+        contratto.setAgente(agente);
+        contratto.setImmobile(immobile);
+        contratto.setValutazione(valutazione);
+        contratto.setDataInizio(inizio);
+        contratto.setDataFine(inizio.plusMonths(6));
+        contratto.setPercentualeCommissione(3.0);
+        return contratto;
+    }
+}
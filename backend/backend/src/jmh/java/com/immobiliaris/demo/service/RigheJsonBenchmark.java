@@ -0,0 +1,180 @@
+package com.immobiliaris.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.immobiliaris.demo.dto.ImmobileDettaglioRiga;
+import com.immobiliaris.demo.dto.ValutazioneInVerificaRiga;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoImmobile;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costruzione e serializzazione JSON di una pagina delle liste admin: una LinkedHashMap per riga
+ * riempita dalle entità (come prima) contro record DTO con serializzatore precalcolato.
+ *
+ * Entrambe le varianti partono dagli stessi valori e producono lo stesso JSON (ListeAdminJsonTest);
+ * il record è costruito con gli stessi argomenti che gli passa Hibernate dalla SELECT.
+ * Con {@code -prof gc} la colonna gc.alloc.rate.norm riporta i byte allocati per pagina.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RigheJsonBenchmark {
+
+    /** Pagina normale e pagina massima (MAX_RIGHE_PAGINA) */
+    @Param({"12", "100"})
+    private int righe;
+
+    /** Configurato come l'ObjectMapper di Spring Boot (date ISO, moduli java.time) */
+    private ObjectMapper objectMapper;
+
+    private List<Valutazione> valutazioni;
+    private List<Immobile> immobili;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        StatoValutazione inVerifica = new StatoValutazione();
+        inVerifica.setNome("in_verifica");
+        StatoImmobile attivo = new StatoImmobile();
+        attivo.setNome("attivo");
+
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2025, 6, 1, 10, 30);
+        valutazioni = new ArrayList<>(righe);
+        immobili = new ArrayList<>(righe);
+        for (int i = 0; i < righe; i++) {
+            User proprietario = utente("Proprietario" + i, "proprietario" + i + "@immobiliaris.it", "011 55" + i);
+            User agente = utente("Agente" + i % 10, "agente" + i % 10 + "@immobiliaris.it", null);
+
+            Immobile immobile = new Immobile();
+            immobile.setId(i + 1);
+            immobile.setTipologia(i % 3 == 0 ? "Villa" : "Appartamento");
+            immobile.setVia("Via Sintetica " + i);
+            immobile.setCitta("Torino");
+            immobile.setCap(String.format("%05d", 10100 + random.nextInt(60)));
+            immobile.setProvincia("TO");
+            immobile.setMetratura(40 + random.nextInt(200));
+            immobile.setCondizioni("Buono");
+            immobile.setStanze(1 + random.nextInt(6));
+            immobile.setBagni(1 + random.nextInt(3));
+            immobile.setPiano(random.nextInt(10));
+            immobile.setAscensore(random.nextBoolean());
+            immobile.setGarage(random.nextBoolean());
+            immobile.setGiardino(random.nextBoolean());
+            immobile.setBalcone(random.nextBoolean());
+            immobile.setTerrazzo(random.nextBoolean());
+            immobile.setCantina(random.nextBoolean());
+            immobile.setRiscaldamento("Autonomo");
+            immobile.setPrezzo(80_000 + random.nextInt(900_000));
+            immobile.setDescrizione("Immobile luminoso, " + i + " minuti dal centro");
+            // Impostata da Hibernate alla creazione, senza setter
+            ReflectionTestUtils.setField(immobile, "dataRegistrazione", base.minusMinutes(random.nextInt(100_000)));
+            immobile.setStatoImmobile(attivo);
+            immobile.setProprietario(proprietario);
+            immobili.add(immobile);
+
+            Valutazione valutazione = new Valutazione();
+            valutazione.setId(i + 1);
+            valutazione.setImmobile(immobile);
+            valutazione.setAgente(agente);
+            valutazione.setStatoValutazione(inVerifica);
+            valutazione.setPrezzoAI(immobile.getPrezzo());
+            valutazione.setPrezzoUmano(immobile.getPrezzo() - 5_000);
+            valutazione.setDataValutazione(immobile.getDataRegistrazione().plusHours(1 + random.nextInt(72)));
+            valutazione.setDescrizione("Sopralluogo eseguito");
+            valutazioni.add(valutazione);
+        }
+    }
+
+    /** Valutazioni in verifica: mappe dalle entità */
+    @Benchmark
+    public byte[] valutazioniMappe() throws Exception {
+        List<Object> pagina = new ArrayList<>(righe);
+        for (Valutazione v : valutazioni) {
+            pagina.add(RigheMappaRiferimento.valutazioneInVerifica(v));
+        }
+        return objectMapper.writeValueAsBytes(pagina);
+    }
+
+    /** Valutazioni in verifica: record e serializzatore precalcolato */
+    @Benchmark
+    public byte[] valutazioniRecord() throws Exception {
+        List<Object> pagina = new ArrayList<>(righe);
+        for (Valutazione v : valutazioni) {
+            Immobile i = v.getImmobile();
+            User p = i.getProprietario();
+            User a = v.getAgente();
+            pagina.add(new ValutazioneInVerificaRiga(v.getId(), v.getPrezzoAI(), v.getPrezzoUmano(),
+                v.getDataValutazione(), v.getStatoValutazione().getNome(), a.getNome() + " " + a.getCognome(), a.getEmail(),
+                i.getTipologia(), i.getVia(), i.getCitta(), i.getCap(), i.getProvincia(), i.getMetratura(),
+                i.getCondizioni(), i.getStanze(), i.getBagni(), i.getPiano(), i.getAscensore(), i.getGarage(),
+                i.getGiardino(), i.getBalcone(), i.getTerrazzo(), i.getCantina(), i.getRiscaldamento(),
+                p.getNome() + " " + p.getCognome(), p.getEmail(), p.getTelefono(), i.getDescrizione()));
+        }
+        return objectMapper.writeValueAsBytes(pagina);
+    }
+
+    /** Immobili con valutazione più recente: mappe dalle entità */
+    @Benchmark
+    public byte[] immobiliMappe() throws Exception {
+        List<Object> pagina = new ArrayList<>(righe);
+        for (int k = 0; k < righe; k++) {
+            pagina.add(RigheMappaRiferimento.immobileDettaglio(immobili.get(k), valutazioni.get(k)));
+        }
+        return objectMapper.writeValueAsBytes(pagina);
+    }
+
+    /** Immobili con valutazione più recente: record e serializzatore precalcolato */
+    @Benchmark
+    public byte[] immobiliRecord() throws Exception {
+        List<Object> pagina = new ArrayList<>(righe);
+        for (int k = 0; k < righe; k++) {
+            Immobile i = immobili.get(k);
+            Valutazione v = valutazioni.get(k);
+            User p = i.getProprietario();
+            User a = v.getAgente();
+            pagina.add(new ImmobileDettaglioRiga(i.getId(), i.getVia(), i.getCitta(), i.getCap(), i.getProvincia(),
+                i.getTipologia(), i.getMetratura(), i.getCondizioni(), i.getStanze(), i.getBagni(), i.getRiscaldamento(),
+                i.getPiano(), i.getAscensore(), i.getGarage(), i.getGiardino(), i.getBalcone(), i.getTerrazzo(),
+                i.getCantina(), i.getPrezzo(), i.getDescrizione(), i.getDataRegistrazione(), i.getStatoImmobile().getNome(),
+                p.getNome() + " " + p.getCognome(), p.getEmail(), p.getTelefono(), v.getPrezzoAI(), v.getPrezzoUmano(),
+                v.getDataValutazione(), v.getDescrizione(), v.getStatoValutazione().getNome(),
+                a.getNome() + " " + a.getCognome()));
+        }
+        return objectMapper.writeValueAsBytes(pagina);
+    }
+
+    private static User utente(String nome, String email, String telefono) {
+        User user = new User();
+        user.setNome(nome);
+        user.setCognome("Rossi");
+        user.setEmail(email);
+        user.setTelefono(telefono);
+        return user;
+    }
+}
@@ -0,0 +1,254 @@
+package com.immobiliaris.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.immobiliaris.demo.DemoApplication;
+import com.immobiliaris.demo.dto.CursorePagina;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregazioni di {@link StatisticsService} su dataset sintetici di 10k / 100k / 1M immobili (H2 in memoria).
+ *
+ * Lo schema è quello delle migrazioni Flyway (stessi indici della produzione). Per ogni immobile
+ * c'è una valutazione (40% solo_AI, 40% in_verifica, 20% approvata) e ogni valutazione approvata
+ * ha un contratto. I dati sono generati con seed fisso, quindi identici tra un commit e l'altro.
+ *
+ * Solo il dataset più piccolo: -Djmh.args="StatisticsService -p righe=10000"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+@State(Scope.Benchmark)
+public class StatisticsServiceBenchmark {
+
+    private static final int AGENTI = 50;
+    private static final int IMMOBILI_PER_PROPRIETARIO = 10;
+    private static final int LOTTO = 5_000;
+    private static final String[] TIPOLOGIE = {"Appartamento", "Villa", "Attico", "Loft"};
+
+    @Param({"10000", "100000", "1000000"})
+    private int righe;
+
+    private ConfigurableApplicationContext context;
+    private StatisticsService statisticsService;
+    private DashboardAggregateStore dashboardAggregateStore;
+    private ObjectMapper objectMapper;
+
+    /** Cursore a metà della lista solo_AI */
+    private String cursoreMeta;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Argomenti da riga di comando: hanno precedenza su src/test/resources/application.properties
+        // (nel classpath del benchmark), che altrimenti imporrebbe lo schema di Hibernate senza Flyway
+        context = new SpringApplicationBuilder(DemoApplication.class).run(
+            // Contesto web completo (SecurityConfig lo richiede), su una porta libera
+            "--server.port=0",
+            "--spring.datasource.url=jdbc:h2:mem:benchmark" + righe + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.flyway.enabled=true",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--spring.mail.host=localhost",
+            "--email.outbox.attivo=false",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN");
+
+        // Senza le migrazioni mancherebbero gli indici V2/V3/V6: i numeri non sarebbero confrontabili
+        MigrationInfo versione = context.getBean(Flyway.class).info().current();
+        if (versione == null) {
+            throw new IllegalStateException("Schema del benchmark non creato da Flyway");
+        }
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        popola(jdbc, righe);
+        Integer soloAI = idStato(jdbc, "Stati_valutazione", "Id_stato_valutazione", "solo_AI");
+        cursoreMeta = jdbc.queryForObject(
+            "SELECT Data_valutazione, Id_valutazione FROM Valutazioni WHERE Id_stato_valutazione = ? "
+                + "ORDER BY Data_valutazione DESC, Id_valutazione DESC LIMIT 1 OFFSET ?",
+            (rs, n) -> new CursorePagina(rs.getTimestamp(1).toLocalDateTime(), rs.getLong(2)).codifica(),
+            soloAI, righe / 5);
+
+        statisticsService = context.getBean(StatisticsService.class);
+        dashboardAggregateStore = context.getBean(DashboardAggregateStore.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        // I dati sono inseriti via JDBC: gli aggregati in memoria vanno ricaricati
+        dashboardAggregateStore.ricostruisci();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /** Dashboard amministratore completa (GET /api/admin/dashboard) */
+    @Benchmark
+    public Map<String, Object> dashboardAdmin() {
+        return statisticsService.getAdminDashboardData();
+    }
+
+    /** Prima pagina della lista immobili */
+    @Benchmark
+    public Map<String, Object> immobiliPrimaPagina() {
+        return statisticsService.getImmobiliLoadMore(0, 12);
+    }
+
+    /** Ultima pagina della lista immobili (costo dell'offset) */
+    @Benchmark
+    public Map<String, Object> immobiliUltimaPagina() {
+        return statisticsService.getImmobiliLoadMore(righe - 12, 12);
+    }
+
+    /** Prima pagina delle valutazioni solo_AI */
+    @Benchmark
+    public Map<String, Object> valutazioniSoloAIPrimaPagina() {
+        return statisticsService.getValutazioniSoloAILoadMore(null, 10);
+    }
+
+    /** Pagina a metà delle valutazioni solo_AI (keyset: stesso costo della prima) */
+    @Benchmark
+    public Map<String, Object> valutazioniSoloAIPaginaProfonda() {
+        return statisticsService.getValutazioniSoloAILoadMore(cursoreMeta, 10);
+    }
+
+    /** Pagina massima (100 righe) delle valutazioni in verifica, serializzata come nella risposta HTTP */
+    @Benchmark
+    public byte[] valutazioniInVerificaPaginaMassimaJson() throws Exception {
+        return objectMapper.writeValueAsBytes(statisticsService.getValutazioniInVerficaLoadMore(null, 100));
+    }
+
+    /** Pagina massima (100 righe) degli immobili con ultima valutazione, serializzata come nella risposta HTTP */
+    @Benchmark
+    public byte[] immobiliDettaglioPaginaMassimaJson() throws Exception {
+        return objectMapper.writeValueAsBytes(statisticsService.getTuttiImmobiliConDettagli(null, 100));
+    }
+
+    /** Ricarica completa degli aggregati dashboard dal database (avvio applicazione) */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void ricostruzioneAggregati() {
+        dashboardAggregateStore.ricostruisci();
+    }
+
+    /**
+     * Inserisce il dataset sintetico: tipi utente, agenti, proprietari, immobili,
+     * valutazioni e contratti. Gli stati sono quelli inseriti dalla migrazione V7.
+     */
+    static void popola(JdbcTemplate jdbc, int immobili) {
+        jdbc.update("INSERT INTO Tipi_utente (Id_tipo, Nome) VALUES (1, 'Cliente'), (2, 'Agente'), (3, 'Amministratore')");
+        int immobileAttivo = idStato(jdbc, "Stati_immobile", "Id_stato_immobile", "attivo");
+        int[] statiValutazione = {
+            idStato(jdbc, "Stati_valutazione", "Id_stato_valutazione", "solo_AI"),
+            idStato(jdbc, "Stati_valutazione", "Id_stato_valutazione", "in_verifica"),
+            idStato(jdbc, "Stati_valutazione", "Id_stato_valutazione", "approvata")
+        };
+        int contrattoAttivo = idStato(jdbc, "Stati_contratto", "Id_stato_contratto", "attivo");
+        int contrattoChiuso = idStato(jdbc, "Stati_contratto", "Id_stato_contratto", "chiuso");
+
+        Random random = new Random(20251201L);
+        LocalDateTime adesso = LocalDateTime.now().withNano(0);
+        int proprietari = Math.max(1, immobili / IMMOBILI_PER_PROPRIETARIO);
+
+        List<Object[]> utenti = new ArrayList<>();
+        for (int id = 1; id <= AGENTI + proprietari; id++) {
+            boolean agente = id <= AGENTI;
+            utenti.add(new Object[] {id, "Nome" + id, "Cognome" + id, "utente" + id + "@immobiliaris.it", "x",
+                agente ? 2 : 1, agente && id % 5 == 0 ? "stage" : null});
+            utenti = inserisciSePieno(jdbc, utenti,
+                "INSERT INTO Utenti (Id_utente, Nome, Cognome, Email, Password, Id_tipo, Contratto) VALUES (?, ?, ?, ?, ?, ?, ?)");
+        }
+        inserisci(jdbc, utenti,
+            "INSERT INTO Utenti (Id_utente, Nome, Cognome, Email, Password, Id_tipo, Contratto) VALUES (?, ?, ?, ?, ?, ?, ?)");
+
+        String sqlImmobile = "INSERT INTO Immobili (Id_immobile, Via, Citta, CAP, Provincia, Tipologia, Metratura, Prezzo, "
+            + "Id_stato_immobile, Data_registrazione, Id_utente) VALUES (?, ?, 'Torino', ?, 'TO', ?, ?, ?, ?, ?, ?)";
+        String sqlValutazione = "INSERT INTO Valutazioni (Id_valutazione, Id_immobile, Id_stato_valutazione, Id_agente, "
+            + "Prezzo_AI, Prezzo_Umano, Data_valutazione) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String sqlContratto = "INSERT INTO Contratti (Id_contratto, Id_valutazione, Id_immobile, Id_agente, Id_utente, "
+            + "Id_stato_contratto, Numero_contratto, Percentuale_commissione, Data_inizio, Data_fine) VALUES (?, ?, ?, ?, ?, ?, ?, 3.00, ?, ?)";
+
+        List<Object[]> righeImmobili = new ArrayList<>();
+        List<Object[]> righeValutazioni = new ArrayList<>();
+        List<Object[]> righeContratti = new ArrayList<>();
+        int contratti = 0;
+        for (int id = 1; id <= immobili; id++) {
+            LocalDateTime registrazione = adesso.minusMinutes(random.nextInt(365 * 24 * 60));
+            int prezzo = 80_000 + random.nextInt(900_000);
+            int proprietario = AGENTI + 1 + (id - 1) % proprietari;
+            righeImmobili.add(new Object[] {id, "Via Sintetica " + id, String.format("%05d", 10100 + random.nextInt(60)),
+                TIPOLOGIE[random.nextInt(TIPOLOGIE.length)], 40 + random.nextInt(200), prezzo, immobileAttivo,
+                Timestamp.valueOf(registrazione), proprietario});
+
+            // 0 = solo_AI, 1 = in_verifica, 2 = approvata
+            int stato = id % 5 < 2 ? 0 : id % 5 < 4 ? 1 : 2;
+            Integer agente = stato == 0 ? null : 1 + id % AGENTI;
+            LocalDateTime dataValutazione = registrazione.plusHours(1 + random.nextInt(72));
+            righeValutazioni.add(new Object[] {id, id, statiValutazione[stato], agente, prezzo,
+                stato == 0 ? null : prezzo - 5_000, Timestamp.valueOf(dataValutazione)});
+
+            if (stato == 2) {
+                contratti++;
+                LocalDateTime inizio = dataValutazione.plusDays(1 + random.nextInt(10));
+                righeContratti.add(new Object[] {contratti, id, id, agente, proprietario,
+                    contratti % 2 == 0 ? contrattoChiuso : contrattoAttivo,
+                    "CTR-" + contratti, Timestamp.valueOf(inizio), Timestamp.valueOf(inizio.plusDays(1 + random.nextInt(90)))});
+            }
+
+            righeImmobili = inserisciSePieno(jdbc, righeImmobili, sqlImmobile);
+            if (righeImmobili.isEmpty()) {
+                // Valutazioni e contratti dopo gli immobili a cui fanno riferimento
+                inserisci(jdbc, righeValutazioni, sqlValutazione);
+                righeValutazioni = new ArrayList<>();
+                inserisci(jdbc, righeContratti, sqlContratto);
+                righeContratti = new ArrayList<>();
+            }
+        }
+        inserisci(jdbc, righeImmobili, sqlImmobile);
+        inserisci(jdbc, righeValutazioni, sqlValutazione);
+        inserisci(jdbc, righeContratti, sqlContratto);
+    }
+
+    private static int idStato(JdbcTemplate jdbc, String tabella, String colonnaId, String nome) {
+        return jdbc.queryForObject("SELECT " + colonnaId + " FROM " + tabella + " WHERE Nome = ?", Integer.class, nome);
+    }
+
+    private static List<Object[]> inserisciSePieno(JdbcTemplate jdbc, List<Object[]> righe, String sql) {
+        if (righe.size() < LOTTO) return righe;
+        inserisci(jdbc, righe, sql);
+        return new ArrayList<>();
+    }
+
+    private static void inserisci(JdbcTemplate jdbc, List<Object[]> righe, String sql) {
+        if (!righe.isEmpty()) {
+            jdbc.batchUpdate(sql, righe);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.dto.AddressValidationResponse.AddressSuggestion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Autocompletamento dallo stradario predefinito ({@link Stradario}), senza rete.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StradarioBenchmark {
+
+    @Param({"Via Ro", "corso", "Corso Francia 300"})
+    public String testo;
+
+    private Stradario stradario;
+
+    @Setup
+    public void setup() {
+        stradario = new Stradario();
+        stradario.inizializza();
+    }
+
+    @Benchmark
+    public List<AddressSuggestion> suggerisciTorino() {
+        return stradario.suggerisci(testo, "Torino", 8);
+    }
+
+    @Benchmark
+    public List<AddressSuggestion> suggerisciTutteLeCitta() {
+        return stradario.suggerisci(testo, null, 8);
+    }
+}
@@ -0,0 +1,108 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.Zona;
+import com.immobiliaris.demo.repository.ZonaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ValutazioneService#calcolaPrezzoAI} completo: ricerca del CAP nell'indice zone + modello prezzo.
+ * Le zone sono le stesse per ogni esecuzione (seed fisso), senza database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValutazioneServiceBenchmark {
+
+    private static final String[] TIPOLOGIE = {"Appartamento", "Villa", "Attico", "Loft"};
+    private static final String[] CONDIZIONI = {"Nuovo", "Ottimo", "Buono", "Da ristrutturare"};
+    private static final String[] RISCALDAMENTI = {"Teleriscaldamento", "Autonomo", "Centralizzato (Obsoleto)"};
+
+    /** Numero di zone dell'indice (ordine di grandezza della tabella zone reale) */
+    private static final int ZONE = 300;
+
+    /** Potenza di 2: l'indice ruota con una maschera */
+    private static final int CAMPIONI = 1024;
+
+    private ValutazioneService valutazioneService;
+    private Immobile[] immobili;
+    private int indice;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<Zona> zone = new ArrayList<>();
+        for (int i = 0; i < ZONE; i++) {
+            zone.add(new Zona("Zona " + i, String.format("%05d", 10000 + i * 7), 1500 + random.nextInt(3500)));
+        }
+
+        ZonaPriceIndex zonaPriceIndex = new ZonaPriceIndex();
+        ReflectionTestUtils.setField(zonaPriceIndex, "zonaRepository", zonaRepository(zone));
+        zonaPriceIndex.ricarica();
+
+        ModelloPrezzoService modelloPrezzoService = new ModelloPrezzoService();
+        modelloPrezzoService.init();
+
+        valutazioneService = new ValutazioneService();
+        ReflectionTestUtils.setField(valutazioneService, "zonaPriceIndex", zonaPriceIndex);
+        ReflectionTestUtils.setField(valutazioneService, "modelloPrezzoService", modelloPrezzoService);
+
+        immobili = new Immobile[CAMPIONI];
+        for (int i = 0; i < CAMPIONI; i++) {
+            Immobile immobile = new Immobile();
+            // Un CAP su dieci non è mappato (prezzo 0)
+            immobile.setCap(i % 10 == 0 ? "99999" : zone.get(random.nextInt(ZONE)).getCap());
+            immobile.setMetratura(30 + random.nextInt(250));
+            immobile.setStanze(1 + random.nextInt(8));
+            immobile.setBagni(1 + random.nextInt(3));
+            immobile.setPiano(random.nextInt(10));
+            immobile.setTipologia(TIPOLOGIE[random.nextInt(TIPOLOGIE.length)]);
+            immobile.setCondizioni(CONDIZIONI[random.nextInt(CONDIZIONI.length)]);
+            immobile.setRiscaldamento(RISCALDAMENTI[random.nextInt(RISCALDAMENTI.length)]);
+            immobile.setAscensore(random.nextBoolean());
+            immobile.setBalcone(random.nextBoolean());
+            immobile.setTerrazzo(random.nextBoolean());
+            immobile.setGiardino(random.nextBoolean());
+            immobile.setCantina(random.nextBoolean());
+            immobile.setGarage(random.nextBoolean());
+            immobili[i] = immobile;
+        }
+    }
+
+    @Benchmark
+    public int calcolaPrezzoAI() {
+        return valutazioneService.calcolaPrezzoAI(immobili[indice++ & (CAMPIONI - 1)]);
+    }
+
+    /**
+     * Repository zone in memoria: serve solo findAll() per caricare l'indice.
+     */
+    private static ZonaRepository zonaRepository(List<Zona> zone) {
+        return (ZonaRepository) Proxy.newProxyInstance(ZonaRepository.class.getClassLoader(),
+            new Class<?>[] {ZonaRepository.class}, (proxy, metodo, argomenti) -> {
+                if (metodo.getName().equals("findAll") && metodo.getParameterCount() == 0) {
+                    return zone;
+                }
+                throw new UnsupportedOperationException(metodo.getName());
+            });
+    }
+}
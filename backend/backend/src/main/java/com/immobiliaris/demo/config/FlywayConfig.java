@@ -0,0 +1,23 @@
+package com.immobiliaris.demo.config;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configurazione delle migrazioni Flyway (src/main/resources/db/migration).
+ *
+ * I database creati a mano con scriptDB.sql hanno già lo schema della V1 ma non la
+ * tabella di storico di Flyway: vengono marcati alla versione 1 (baseline) e ricevono
+ * solo le migrazioni successive. Un database vuoto parte invece dalla V1.
+ */
+@Configuration
+public class FlywayConfig {
+
+    @Bean
+    public FlywayConfigurationCustomizer flywayBaselineCustomizer() {
+        return configuration -> configuration
+            .baselineOnMigrate(true)
+            .baselineVersion("1");
+    }
+}
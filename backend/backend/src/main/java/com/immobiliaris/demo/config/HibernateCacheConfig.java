@@ -0,0 +1,55 @@
+package com.immobiliaris.demo.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache di secondo livello Hibernate (JCache, implementazione Caffeine in memoria).
+ *
+ * Sono in cache solo le tabelle di lookup, piccole e quasi statiche (stati di valutazione,
+ * contratto e immobile, tipi utente, zone), annotate con {@code @Cache} sull'entity; le
+ * ricerche per nome dei repository usano anche la cache delle query.
+ * Le statistiche Hibernate sono attive per esporre hit e miss (GET /api/admin/cache).
+ *
+ * Ogni SessionFactory riceve un proprio CacheManager, chiuso da Hibernate alla sua chiusura:
+ * contesti diversi (es. nei test, un database H2 ciascuno) non condividono le regioni.
+ * Le regioni mancanti sono create con la configurazione predefinita di Caffeine.
+ *
+ * Ogni impostazione può essere sovrascritta con spring.jpa.properties.hibernate.*
+ * (es. hibernate.generate_statistics=false).
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    private static final AtomicInteger progressivo = new AtomicInteger();
+
+    @Bean
+    public HibernatePropertiesCustomizer cacheSecondoLivelloCustomizer() {
+        return proprieta -> {
+            proprieta.putIfAbsent(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            proprieta.putIfAbsent(AvailableSettings.USE_QUERY_CACHE, true);
+            proprieta.putIfAbsent(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+            proprieta.putIfAbsent(ConfigSettings.MISSING_CACHE_STRATEGY, MissingCacheStrategy.CREATE.getExternalRepresentation());
+            proprieta.putIfAbsent(AvailableSettings.GENERATE_STATISTICS, true);
+            if (!proprieta.containsKey(ConfigSettings.CACHE_MANAGER)) {
+                proprieta.put(ConfigSettings.CACHE_MANAGER, nuovoCacheManager());
+            }
+        };
+    }
+
+    private static CacheManager nuovoCacheManager() {
+        URI uri = URI.create("immobiliaris-lookup-" + progressivo.incrementAndGet());
+        return Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+            .getCacheManager(uri, HibernateCacheConfig.class.getClassLoader());
+    }
+}
@@ -30,7 +30,7 @@ public class ImmobileController {
     private com.immobiliaris.demo.service.ValutazioneService valutazioneService;
 
     @Autowired
-    private com.immobiliaris.demo.service.EmailService emailService;
+    private com.immobiliaris.demo.service.EmailOutboxService emailOutboxService;
 
     @PostMapping("/save")
     public ResponseEntity<?> saveImmobile(@RequestBody ImmobileRequest immobileRequest) {
@@ -80,10 +80,7 @@ public class ImmobileController {
                     String passwordHash = encoder.encode(email);
                     nuovoUtente.setPassword(passwordHash);
                     
-                    TipoUtente tipoCliente = tipoUtenteRepository.findAll().stream()
-                            .filter(t -> t.getNome().equalsIgnoreCase("cliente"))
-                            .findFirst()
-                            .orElse(null);
+                    TipoUtente tipoCliente = tipoUtenteRepository.findByNomeIgnoreCase("cliente").orElse(null);
                     
                     if (tipoCliente != null) {
                         nuovoUtente.setTipoUtente(tipoCliente);
@@ -99,16 +96,15 @@ public class ImmobileController {
 
             com.immobiliaris.demo.entity.Valutazione valutazione = valutazioneService.valutaImmobile(saved);
 
-            emailService.sendValutazioneRecap(valutazione.getId());
+            // L'invio SMTP avviene in background: la risposta non attende il server di posta
+            emailOutboxService.accodaValutazioneRecap(valutazione.getId());
 
             Map<String, Object> response = new HashMap<>();
             response.put("idImmobile", saved.getId());
             response.put("email", emailProprietario);
             response.put("prezzoAI", valutazione.getPrezzoAI());
-            response.put("mailInviata", true);
+            response.put("mailAccodata", true);
             return ResponseEntity.ok(response);
-        } catch (jakarta.mail.MessagingException e) {
-            return ResponseEntity.status(500).body("Errore nell'invio email: " + e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.status(500).body("Errore: " + e.getMessage());
         }
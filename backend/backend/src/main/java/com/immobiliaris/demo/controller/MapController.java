@@ -1,21 +1,35 @@
 package com.immobiliaris.demo.controller;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.immobiliaris.demo.service.GeoapifyClient;
+import com.immobiliaris.demo.service.MappaStaticaService;
+import com.immobiliaris.demo.service.MappaStaticaService.Immagine;
+import com.immobiliaris.demo.service.MappaStaticaService.Mappa;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/map")
 @CrossOrigin
 public class MapController {
+    private static final Logger logger = LoggerFactory.getLogger(MapController.class);
 
-    @Value("${geoapify.api.key:your_api_key_here}")
-    private String geoapifyApiKey;
+    @Autowired
+    private MappaStaticaService mappaStaticaService;
 
     /**
-     * Genera un URL di mappa statica Geoapify
+     * Genera l'URL di una mappa statica (servita da GET /api/map/static)
      * 
      * POST /api/map/generate
      * 
@@ -35,23 +49,19 @@ public class MapController {
             int height = body.containsKey("height") ? ((Number) body.get("height")).intValue() : 400;
             String style = body.containsKey("style") ? (String) body.get("style") : "osm-carto";
 
-            // Costruisci URL mappa statica Geoapify
-            String mapUrl = String.format(java.util.Locale.US,
-                "https://maps.geoapify.com/v1/staticmap?style=%s&center=lonlat:%.6f,%.6f&zoom=%d&width=%d&height=%d&apiKey=%s",
-                style, lon, lat, zoom, width, height, geoapifyApiKey
-            );
-
-            System.out.println("[DEBUG] Generated map URL: " + mapUrl);
+            // URL del proxy: la chiave Geoapify non arriva al browser
+            String mapUrl = mappaStaticaService.url(new Mappa(lat, lon, zoom, width, height, style, false, null));
+            logger.debug("URL mappa generato: {}", mapUrl);
 
             return ResponseEntity.ok(Map.of("mapUrl", mapUrl));
         } catch (Exception e) {
-            System.err.println("[ERROR] Map generation error: " + e.getMessage());
+            logger.warn("Generazione mappa non riuscita", e);
             return ResponseEntity.badRequest().body(Map.of("error", "Map generation failed"));
         }
     }
 
     /**
-     * Genera un URL di mappa con marker per un indirizzo
+     * Genera l'URL di una mappa con marker per un indirizzo (servita da GET /api/map/static)
      * 
      * POST /api/map/address-marker
      * 
@@ -72,22 +82,73 @@ public class MapController {
             String style = body.containsKey("style") ? (String) body.get("style") : "osm-carto";
             String address = body.containsKey("address") ? (String) body.get("address") : "";
 
-            // Costruisci marker
-            String marker = String.format(java.util.Locale.US, "lonlat:%.6f,%.6f;color:red;size:medium;text:%s", 
-                lon, lat, address.isEmpty() ? "📍" : address.substring(0, Math.min(1, address.length())));
-
-            // Costruisci URL mappa statica con marker
-            String mapUrl = String.format(java.util.Locale.US,
-                "https://maps.geoapify.com/v1/staticmap?style=%s&center=lonlat:%.6f,%.6f&zoom=%d&width=%d&height=%d&marker=%s&apiKey=%s",
-                style, lon, lat, zoom, width, height, marker, geoapifyApiKey
-            );
+            // Testo del marker: iniziale dell'indirizzo, se è una lettera o una cifra
+            String iniziale = address.strip();
+            String testo = !iniziale.isEmpty() && Character.isLetterOrDigit(iniziale.codePointAt(0))
+                ? iniziale.substring(0, iniziale.offsetByCodePoints(0, 1))
+                : "📍";
 
-            System.out.println("[DEBUG] Generated map with marker URL: " + mapUrl);
+            String mapUrl = mappaStaticaService.url(new Mappa(lat, lon, zoom, width, height, style, true, testo));
+            logger.debug("URL mappa con marker generato: {}", mapUrl);
 
             return ResponseEntity.ok(Map.of("mapUrl", mapUrl));
         } catch (Exception e) {
-            System.err.println("[ERROR] Map with marker generation error: " + e.getMessage());
+            logger.warn("Generazione mappa con marker non riuscita", e);
             return ResponseEntity.badRequest().body(Map.of("error", "Map generation failed"));
         }
     }
+
+    /**
+     * Immagine PNG della mappa statica, scaricata da Geoapify una sola volta per
+     * combinazione di parametri e poi servita dalla cache su disco
+     * 
+     * GET /api/map/static?lat=45.07&lon=7.68&zoom=15&width=600&height=400&style=osm-carto&marker=true&text=V&sig=...
+     * 
+     * Solo URL generati dal backend (firma sig valida): gli altri ricevono 403 senza
+     * chiamare Geoapify. L'immagine di una combinazione di parametri non cambia: cache del browser di 30 giorni
+     * e ETag (If-None-Match → 304 senza leggere il disco).
+     */
+    @GetMapping("/static")
+    public ResponseEntity<?> staticMap(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "15") int zoom,
+            @RequestParam(defaultValue = "600") int width,
+            @RequestParam(defaultValue = "400") int height,
+            @RequestParam(defaultValue = "osm-carto") String style,
+            @RequestParam(defaultValue = "false") boolean marker,
+            @RequestParam(required = false) String text,
+            @RequestParam(required = false) String sig,
+            HttpServletRequest request) {
+
+        Mappa mappa;
+        try {
+            mappa = new Mappa(lat, lon, zoom, width, height, style, marker, text);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        if (!mappaStaticaService.firmaValida(mappa, sig)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Firma della mappa non valida"));
+        }
+
+        String etag = "\"" + mappaStaticaService.chiave(mappa) + "\"";
+        CacheControl cache = CacheControl.maxAge(30, TimeUnit.DAYS).cachePublic().immutable();
+        if (new ServletWebRequest(request).checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cache).build();
+        }
+
+        try {
+            Immagine immagine = mappaStaticaService.ottieni(mappa);
+            return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .eTag(etag)
+                .cacheControl(cache)
+                .body(immagine.dati());
+        } catch (GeoapifyClient.NonDisponibile e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", "Mappa non disponibile"));
+        } catch (IOException e) {
+            logger.error("Errore nella lettura della mappa statica {}", mappaStaticaService.chiave(mappa), e);
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of("error", "Mappa non disponibile"));
+        }
+    }
 }
@@ -1,20 +1,35 @@
 package com.immobiliaris.demo.controller.api;
 
 import com.immobiliaris.demo.service.AddressValidationService;
+import com.immobiliaris.demo.service.Stradario;
 import com.immobiliaris.demo.dto.AddressValidationRequest;
 import com.immobiliaris.demo.dto.AddressValidationResponse;
+import com.immobiliaris.demo.dto.AddressValidationResponse.AddressSuggestion;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/address")
 @CrossOrigin(origins = "*")
 public class AddressApiController {
 
+    /** Limite massimo di suggerimenti per l'autocompletamento */
+    private static final int MAX_SUGGERIMENTI = 20;
+
+    /** Lunghezza minima del testo per chiedere a Geoapify le vie non presenti nello stradario */
+    private static final int MIN_CARATTERI_GEOAPIFY = 4;
+
     @Autowired
     private AddressValidationService addressValidationService;
 
+    @Autowired
+    private Stradario stradario;
+
     /**
      * Valida un indirizzo usando Geoapify API
      * 
@@ -31,6 +46,44 @@ public class AddressApiController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Autocompletamento della via mentre l'utente scrive
+     *
+     * GET /api/address/autocomplete?q=Via Ro&citta=Torino&limit=8
+     *
+     * Risponde dallo stradario in memoria; Geoapify viene chiamato (tramite la cache
+     * della validazione) solo se nessuna via dello stradario corrisponde.
+     *
+     * @param q Testo digitato, con civico facoltativo
+     * @param citta Città (facoltativa)
+     * @param limit Numero massimo di suggerimenti (1-20, default 8)
+     * @return fonte ("stradario" o "geoapify") e suggerimenti
+     */
+    @GetMapping("/autocomplete")
+    public ResponseEntity<Map<String, Object>> autocomplete(
+            @RequestParam String q,
+            @RequestParam(required = false) String citta,
+            @RequestParam(defaultValue = "8") int limit) {
+
+        int limite = Math.max(1, Math.min(limit, MAX_SUGGERIMENTI));
+        String fonte = "stradario";
+        List<AddressSuggestion> suggerimenti = stradario.suggerisci(q, citta, limite);
+
+        if (suggerimenti.isEmpty() && q.trim().length() >= MIN_CARATTERI_GEOAPIFY) {
+            fonte = "geoapify";
+            suggerimenti = addressValidationService.validateAddress(new AddressValidationRequest(q, citta, null, null))
+                .getSuggestions();
+            if (suggerimenti.size() > limite) {
+                suggerimenti = suggerimenti.subList(0, limite);
+            }
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("fonte", fonte);
+        response.put("suggestions", suggerimenti);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Endpoint di test per verificare che l'API sia raggiungibile
      * 
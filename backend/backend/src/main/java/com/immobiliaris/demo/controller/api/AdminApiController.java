@@ -1,15 +1,37 @@
 package com.immobiliaris.demo.controller.api;
 
+import com.immobiliaris.demo.service.CacheStatisticheService;
+import com.immobiliaris.demo.service.DashboardEventiService;
+import com.immobiliaris.demo.service.EmailOutboxService;
+import com.immobiliaris.demo.service.EsportazioneDatiService;
+import com.immobiliaris.demo.service.EsportazioneContrattiService;
+import com.immobiliaris.demo.service.ModelloPrezzoService;
 import com.immobiliaris.demo.service.StatisticsService;
+import com.immobiliaris.demo.service.ValutazioneBulkService;
+import com.immobiliaris.demo.service.VersioneDatiService;
+import com.immobiliaris.demo.service.VersioneDatiService.Aggregato;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -20,10 +42,45 @@ public class AdminApiController {
     @Autowired
     private StatisticsService statisticsService;
 
+    @Autowired
+    private ValutazioneBulkService valutazioneBulkService;
+
+    @Autowired
+    private ModelloPrezzoService modelloPrezzoService;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private EsportazioneContrattiService esportazioneContrattiService;
+
+    @Autowired
+    private EsportazioneDatiService esportazioneDatiService;
+
+    @Autowired
+    private VersioneDatiService versioneDatiService;
+
+    @Autowired
+    private DashboardEventiService dashboardEventiService;
+
+    @Autowired
+    private CacheStatisticheService cacheStatisticheService;
+
+    /**
+     * Dashboard amministratore.
+     * Con If-None-Match uguale all'ETag (versioni dei dati e finestra temporale invariate)
+     * risponde 304 senza corpo, senza leggere il database né serializzare il JSON.
+     */
     @GetMapping("/dashboard")
-    public ResponseEntity<Map<String, Object>> getDashboard(Authentication authentication) {
+    public ResponseEntity<Map<String, Object>> getDashboard(Authentication authentication, WebRequest request) {
         Map<String, Object> response = new LinkedHashMap<>();
 
+        // Versioni lette prima dei dati: una modifica concorrente cambia l'ETag del poll successivo
+        String etag = versioneDatiService.etag(statisticsService.getAdminDashboardChiave(), VersioneDatiService.TUTTI);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         try {
             // Ottieni statistiche complete dal Service
             Map<String, Object> dashboardData = statisticsService.getAdminDashboardData();
@@ -40,48 +97,76 @@ public class AdminApiController {
             response.put("immobiliPerTipo", dashboardData.get("immobiliPerTipo"));
 
         } catch (Exception e) {
-            // Se c'è errore, ritorna almeno le info base
+            // Se c'è errore, ritorna almeno le info base (senza ETag, da non riusare)
             System.err.println("Errore caricamento dashboard: " + e.getMessage());
             logger.error("Errore caricamento dashboard: {}", e.getMessage(), e);
             response.put("error", e.getMessage());
+            return ResponseEntity.ok(response);
         }
 
-        return ResponseEntity.ok(response);
+        return conEtag(etag, response);
     }
 
     /**
-     * API per ottenere immobili con tutti i dettagli inclusi prezzoAI e prezzoUmano
-     * GET /api/admin/immobili?offset=0&limit=12
-     * @param offset Offset per la paginazione
-     * @param limit Numero elementi da restituire (default 12)
+     * Eventi delta della dashboard amministratore (Server-Sent Events).
+     * GET /api/admin/dashboard/eventi con EventSource: immobile-registrato, valutazione-assegnata,
+     * contratto-chiuso, ciascuno con i soli contatori cambiati. 503 se ci sono troppe dashboard collegate.
      */
-    @GetMapping("/immobili")
-    public ResponseEntity<Map<String, Object>> getImmobiliCompleti(
-            @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "12") int limit) {
-        
-        Map<String, Object> result = statisticsService.getTuttiImmobiliConDettagli(offset, limit);
-        return ResponseEntity.ok(result);
+    @GetMapping(path = "/dashboard/eventi", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> getDashboardEventi() {
+        try {
+            return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                // Proxy nginx: nessun buffering, gli eventi arrivano subito
+                .header("X-Accel-Buffering", "no")
+                .body(dashboardEventiService.iscriviAdmin());
+        } catch (IllegalStateException e) {
+            logger.warn("Iscrizione eventi dashboard rifiutata: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
     }
 
     /**
-     * Endpoint per il pulsante "Carica altri" nel frontend.
-     * Usa offset (numero di elementi già caricati) e limit (quantità da caricare)
-     * Esempio: GET /api/admin/immobili/load?offset=0&limit=10
+     * API per ottenere immobili con tutti i dettagli inclusi prezzoAI e prezzoUmano
+     * GET /api/admin/immobili?limit=12, poi GET /api/admin/immobili?cursor={nextCursor}&limit=12
+     * @param cursor Cursore nextCursor della pagina precedente (assente per la prima pagina)
+     * @param limit Numero elementi da restituire (default 12)
      */
-    
+    @GetMapping("/immobili")
+    public ResponseEntity<Object> getImmobiliCompleti(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "12") int limit,
+            WebRequest request) {
+        // L'ETag vale per l'URL richiesto (cursore e limit compresi)
+        String etag = versioneDatiService.etag("immobili", Aggregato.IMMOBILI, Aggregato.VALUTAZIONI, Aggregato.UTENTI);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        try {
+            return conEtag(etag, statisticsService.getTuttiImmobiliConDettagli(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 
     /**
      * Restituisce contratti chiusi con i dettagli degli immobili associati
-     * Usa offset/limit per load-more progressivo (come dashboard)
-     * Esempio: GET /api/admin/contratti/chiusi?offset=0&limit=10
+     * Load-more progressivo con cursore (come dashboard), dal più recente per data fine
+     * Esempio: GET /api/admin/contratti/chiusi?limit=10, poi ?cursor={nextCursor}&limit=10
      */
     @GetMapping("/contratti/chiusi")
     public ResponseEntity<Object> getContrattiChiusi(
-            @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int limit,
+            WebRequest request) {
+        String etag = versioneDatiService.etag("contratti-chiusi", Aggregato.CONTRATTI, Aggregato.IMMOBILI, Aggregato.VALUTAZIONI, Aggregato.UTENTI);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         try {
-            return ResponseEntity.ok(statisticsService.getContrattiChiusiLoadMore(offset, limit));
+            return conEtag(etag, statisticsService.getContrattiChiusiLoadMore(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Errore recupero contratti: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Errore recupero contratti");
@@ -90,15 +175,22 @@ public class AdminApiController {
 
     /**
      * Restituisce valutazioni generate solo da AI con i dettagli degli immobili
-     * Usa offset/limit per load-more progressivo
-     * Esempio: GET /api/admin/valutazioni/solo-ai?offset=0&limit=10
+     * Load-more progressivo con cursore, dalla più recente
+     * Esempio: GET /api/admin/valutazioni/solo-ai?limit=10, poi ?cursor={nextCursor}&limit=10
      */
     @GetMapping("/valutazioni/solo-ai")
     public ResponseEntity<Object> getValutazioniSoloAI(
-            @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int limit,
+            WebRequest request) {
+        String etag = versioneDatiService.etag("valutazioni-solo-ai", Aggregato.VALUTAZIONI, Aggregato.IMMOBILI, Aggregato.UTENTI);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         try {
-            return ResponseEntity.ok(statisticsService.getValutazioniSoloAILoadMore(offset, limit));
+            return conEtag(etag, statisticsService.getValutazioniSoloAILoadMore(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Errore recupero valutazioni: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Errore recupero valutazioni");
@@ -107,15 +199,22 @@ public class AdminApiController {
 
     /**
      * Restituisce valutazioni in verifica con TUTTI i campi della tabella valutazione
-     * Usa offset/limit per load-more progressivo
-     * Esempio: GET /api/admin/valutazioni/in-verifica?offset=0&limit=10
+     * Load-more progressivo con cursore, dalla più recente
+     * Esempio: GET /api/admin/valutazioni/in-verifica?limit=10, poi ?cursor={nextCursor}&limit=10
      */
     @GetMapping("/valutazioni/in-verifica")
     public ResponseEntity<Object> getValutazioniInVerifica(
-            @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int limit,
+            WebRequest request) {
+        String etag = versioneDatiService.etag("valutazioni-in-verifica", Aggregato.VALUTAZIONI, Aggregato.IMMOBILI, Aggregato.UTENTI);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         try {
-            return ResponseEntity.ok(statisticsService.getValutazioniInVerficaLoadMore(offset, limit));
+            return conEtag(etag, statisticsService.getValutazioniInVerficaLoadMore(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Errore recupero valutazioni in verifica: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Errore recupero valutazioni in verifica");
@@ -188,4 +287,179 @@ public class AdminApiController {
             return ResponseEntity.status(500).body(Map.of("success", false, "message", "Errore assegnazione agente: " + e.getMessage()));
         }
     }
+
+    /**
+     * Avvia la rivalutazione AI massiva di tutti gli immobili o di un solo CAP
+     * (es. dopo una modifica dei prezzi delle zone). Il lavoro prosegue in background.
+     * Esempio: POST /api/admin/valutazioni/ricalcola?cap=10121
+     * @param cap CAP da rivalutare (opzionale, default tutti)
+     * @return 202 con lo stato del job, 409 se una rivalutazione è già in corso
+     */
+    @PostMapping("/valutazioni/ricalcola")
+    public ResponseEntity<Object> avviaRicalcoloValutazioni(@RequestParam(required = false) String cap) {
+        try {
+            ValutazioneBulkService.Job job = valutazioneBulkService.avvia(cap);
+            return ResponseEntity.accepted().body(job.toMap());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Errore avvio rivalutazione: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).body(Map.of("success", false, "message", "Errore avvio rivalutazione: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Avanzamento di una rivalutazione massiva (elaborati, inseriti, percentuale, immobili al secondo)
+     * Esempio: GET /api/admin/valutazioni/ricalcola/1
+     */
+    @GetMapping("/valutazioni/ricalcola/{id}")
+    public ResponseEntity<Object> getRicalcoloValutazioni(@PathVariable long id) {
+        ValutazioneBulkService.Job job = valutazioneBulkService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "message", "Rivalutazione non trovata"));
+        }
+        return ResponseEntity.ok(job.toMap());
+    }
+
+    /**
+     * Coefficienti correnti della valutazione AI
+     * Esempio: GET /api/admin/valutazioni/modello
+     */
+    @GetMapping("/valutazioni/modello")
+    public ResponseEntity<Object> getModelloValutazione() {
+        return ResponseEntity.ok(modelloPrezzoService.getModello().toMap());
+    }
+
+    /**
+     * Ricarica i coefficienti della valutazione AI dal file di configurazione, senza riavvio.
+     * Le nuove valutazioni usano subito i nuovi coefficienti; quelle salvate non cambiano
+     * (per aggiornarle: POST /api/admin/valutazioni/ricalcola).
+     * Esempio: POST /api/admin/valutazioni/modello/ricarica
+     * @return 200 con i coefficienti caricati, 400 se il file non è valido (resta il modello precedente)
+     */
+    @PostMapping("/valutazioni/modello/ricarica")
+    public ResponseEntity<Object> ricaricaModelloValutazione() {
+        try {
+            return ResponseEntity.ok(modelloPrezzoService.ricarica().toMap());
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            logger.warn("Coefficienti valutazione non validi: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Stato della coda email: conteggi per stato e ultimi messaggi falliti (dead letter)
+     * Esempio: GET /api/admin/email/outbox
+     */
+    @GetMapping("/email/outbox")
+    public ResponseEntity<Object> getEmailOutbox() {
+        return ResponseEntity.ok(emailOutboxService.getRiepilogo());
+    }
+
+    /**
+     * Rimette in coda un'email fallita, con i tentativi azzerati
+     * Esempio: POST /api/admin/email/outbox/15/riprova
+     * @return 202 se rimessa in coda, 404 se non esiste o non è in stato "fallita"
+     */
+    @PostMapping("/email/outbox/{id}/riprova")
+    public ResponseEntity<Object> riprovaEmail(@PathVariable Long id) {
+        if (!emailOutboxService.riaccoda(id)) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "message", "Email fallita non trovata: " + id));
+        }
+        return ResponseEntity.accepted().body(Map.of("success", true, "message", "Email rimessa in coda"));
+    }
+
+    /**
+     * Statistiche della cache di secondo livello (tabelle di lookup e cache delle query):
+     * hit, miss e inserimenti per regione
+     * Esempio: GET /api/admin/cache
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Object> getCache() {
+        return ResponseEntity.ok(cacheStatisticheService.getRiepilogo());
+    }
+
+    /**
+     * Svuota la cache di secondo livello, da usare dopo una modifica manuale delle tabelle di lookup
+     * Esempio: POST /api/admin/cache/svuota
+     */
+    @PostMapping("/cache/svuota")
+    public ResponseEntity<Object> svuotaCache() {
+        cacheStatisticheService.svuota();
+        return ResponseEntity.ok(Map.of("success", true, "message", "Cache svuotata"));
+    }
+
+    /**
+     * Esporta in uno ZIP i PDF dei contratti filtrati (audit). I PDF sono generati in parallelo
+     * e scritti nella risposta man mano che sono pronti; non viene inviata nessuna email.
+     * La risposta è scritta direttamente sul thread della richiesta: un'esportazione lunga
+     * non è soggetta al timeout delle richieste asincrone.
+     * Esempio: GET /api/admin/contratti/export?stato=chiuso&da=2025-01-01&a=2026-01-01
+     * @param stato Stati del contratto (ripetibile o separati da virgola, default attivo e chiuso)
+     * @param da Data inizio minima, inclusa (opzionale, yyyy-MM-dd)
+     * @param a Data inizio massima, esclusa (opzionale, yyyy-MM-dd)
+     */
+    @GetMapping("/contratti/export")
+    public void esportaContrattiPdf(
+            @RequestParam(required = false) List<String> stato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate da,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate a,
+            HttpServletResponse response) throws IOException {
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename("contratti_" + LocalDate.now() + ".zip").build().toString());
+
+        EsportazioneContrattiService.Riepilogo riepilogo = esportazioneContrattiService.esporta(stato,
+            da != null ? da.atStartOfDay() : null, a != null ? a.atStartOfDay() : null, response.getOutputStream());
+        if (riepilogo.errori() > 0) {
+            logger.warn("Esportazione contratti: {} contratti non generati (vedi errori.txt nello ZIP)", riepilogo.errori());
+        }
+    }
+
+    /**
+     * Esporta immobili, valutazioni o contratti in CSV o NDJSON. Le righe sono lette dal database
+     * a blocchi e scritte nella risposta man mano, quindi la memoria non dipende dal numero di righe.
+     * Esempio: GET /api/admin/export/immobili?formato=ndjson
+     * @param dati "immobili", "valutazioni" o "contratti"
+     * @param formato "csv" (default, separatore ";") o "ndjson"
+     */
+    @GetMapping("/export/{dati}")
+    public void esportaDati(
+            @PathVariable String dati,
+            @RequestParam(defaultValue = "csv") String formato,
+            HttpServletResponse response) throws IOException {
+        EsportazioneDatiService.Formato f;
+        try {
+            f = EsportazioneDatiService.Formato.da(formato);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (!List.of("immobili", "valutazioni", "contratti").contains(dati)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Dati esportabili: immobili, valutazioni, contratti");
+            return;
+        }
+
+        response.setContentType(f.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename(dati + "_" + LocalDate.now() + "." + f.getEstensione()).build().toString());
+
+        long righe = switch (dati) {
+            case "immobili" -> esportazioneDatiService.esportaImmobili(f, response.getOutputStream());
+            case "valutazioni" -> esportazioneDatiService.esportaValutazioni(f, response.getOutputStream());
+            default -> esportazioneDatiService.esportaContratti(f, response.getOutputStream());
+        };
+        logger.info("Esportazione {} in {}: {} righe", dati, f.getEstensione(), righe);
+    }
+
+    /**
+     * Risposta 200 con ETag forte. Dati riservati: solo cache del browser,
+     * sempre rivalidata con If-None-Match.
+     */
+    private static <T> ResponseEntity<T> conEtag(String etag, T body) {
+        return ResponseEntity.ok()
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(body);
+    }
 }
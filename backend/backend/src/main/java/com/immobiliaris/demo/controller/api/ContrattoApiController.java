@@ -4,13 +4,26 @@ import com.immobiliaris.demo.entity.Contratto;
 import com.immobiliaris.demo.entity.Valutazione;
 import com.immobiliaris.demo.repository.ContrattoJpaRepository;
 import com.immobiliaris.demo.repository.ValutazioneJpaRepository;
-import com.immobiliaris.demo.service.PdfContrattoService;
-import com.immobiliaris.demo.service.EmailService;
+import com.immobiliaris.demo.service.ArchivioPdfContrattiService;
+import com.immobiliaris.demo.service.ArchivioPdfContrattiService.PdfArchiviato;
+import com.immobiliaris.demo.service.EmailOutboxService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,10 +41,19 @@ public class ContrattoApiController {
     private ValutazioneJpaRepository valutazioneRepository;
 
     @Autowired
-    private PdfContrattoService pdfContrattoService;
+    private ArchivioPdfContrattiService archivioPdfContratti;
     
     @Autowired
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Attributi di richiesta di Tomcat per l'invio di file con sendfile (vedi DefaultServlet) */
+    private static final String SENDFILE_SUPPORTATO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INIZIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FINE = "org.apache.tomcat.sendfile.end";
 
     /**
      * GET /api/contratti/test
@@ -47,7 +69,7 @@ public class ContrattoApiController {
 
     /**
      * GET /api/contratti/valutazione/{idValutazione}/pdf
-     * Crea il contratto dalla valutazione, genera il PDF e lo invia via email
+     * Crea il contratto dalla valutazione, genera il PDF e lo accoda per l'invio via email
      */
     @GetMapping("/valutazione/{idValutazione}/pdf")
     public ResponseEntity<?> generaContrattoPdf(@PathVariable Integer idValutazione) {
@@ -93,17 +115,17 @@ public class ContrattoApiController {
                     return contrattoRepository.save(nuovoContratto);
                 });
             
-            // Genera il PDF
-            byte[] pdfBytes = pdfContrattoService.generaContrattoPdf(contratto);
+            // PDF dall'archivio (rigenerato solo se i dati del contratto sono cambiati)
+            byte[] pdfBytes = archivioPdfContratti.leggi(contratto);
             
-            // Invia email con PDF allegato a proprietario e agente
+            // Accoda email con PDF allegato a proprietario e agente (invio in background)
             try {
-                emailService.sendContrattoPdf(contratto, pdfBytes);
+                emailOutboxService.accodaContrattoPdf(contratto, pdfBytes);
                 
                 // Restituisce messaggio di successo
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
-                response.put("message", "Contratto generato e inviato via email con successo");
+                response.put("message", "Contratto generato e accodato per l'invio via email");
                 response.put("destinatari", Map.of(
                     "proprietario", contratto.getUtente().getEmail(),
                     "agente", contratto.getAgente().getEmail()
@@ -114,7 +136,7 @@ public class ContrattoApiController {
                 
             } catch (Exception emailEx) {
                 Map<String, String> error = new HashMap<>();
-                error.put("error", "Errore invio email: " + emailEx.getMessage());
+                error.put("error", "Errore accodamento email: " + emailEx.getMessage());
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
             }
                     
@@ -127,55 +149,98 @@ public class ContrattoApiController {
 
     /**
      * GET /api/contratti/valutazione/{idValutazione}/pdf/preview
-     * Genera il PDF basato sulla valutazione (stesso comportamento di /pdf)
+     * Restituisce il PDF del contratto da visualizzare nel browser, senza inviare email.
+     * Con If-None-Match uguale all'ETag risponde 304 senza corpo. Se il PDF non è ancora
+     * archiviato viene generato direttamente nella risposta (chunked), pagina per pagina,
+     * e archiviato al termine.
      */
     @GetMapping("/valutazione/{idValutazione}/pdf/preview")
-    public ResponseEntity<?> visualizzaContrattoPdf(@PathVariable Integer idValutazione) {
+    public ResponseEntity<StreamingResponseBody> visualizzaContrattoPdf(@PathVariable Integer idValutazione,
+                                                                        HttpServletRequest request) {
         try {
-            // Trova la valutazione
-            Optional<Valutazione> valutazioneOpt = valutazioneRepository.findById(idValutazione);
-            
-            if (valutazioneOpt.isEmpty()) {
-                Map<String, String> error = new HashMap<>();
-                error.put("error", "Valutazione non trovata con id: " + idValutazione);
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+            if (!valutazioneRepository.existsById(idValutazione)) {
+                return errore(HttpStatus.NOT_FOUND, "Valutazione non trovata con id: " + idValutazione);
             }
             
             // Cerca il contratto associato a questa valutazione
-            Contratto contratto = contrattoRepository.findByValutazioneId(idValutazione)
-                .orElseThrow(() -> new RuntimeException(
-                    "Nessun contratto trovato per la valutazione ID: " + idValutazione + 
-                    ". Creare prima un contratto associato a questa valutazione."
-                ));
-            
-            byte[] pdfBytes = pdfContrattoService.generaContrattoPdf(contratto);
+            Optional<Contratto> contrattoOpt = contrattoRepository.findByValutazioneId(idValutazione);
+            if (contrattoOpt.isEmpty()) {
+                return errore(HttpStatus.NOT_FOUND, "Nessun contratto trovato per la valutazione ID: " + idValutazione +
+                    ". Creare prima un contratto associato a questa valutazione.");
+            }
             
-            // Invia email con PDF allegato a proprietario e agente
-            try {
-                emailService.sendContrattoPdf(contratto, pdfBytes);
-                
-                // Restituisce messaggio di successo
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Contratto generato e inviato via email con successo");
-                response.put("destinatari", Map.of(
-                    "proprietario", contratto.getUtente().getEmail(),
-                    "agente", contratto.getAgente().getEmail()
-                ));
-                response.put("valutazioneId", idValutazione);
-                response.put("contrattoId", contratto.getId());
-                return ResponseEntity.ok(response);
-                
-            } catch (Exception emailEx) {
-                Map<String, String> error = new HashMap<>();
-                error.put("error", "Errore invio email: " + emailEx.getMessage());
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            Contratto contratto = contrattoOpt.get();
+            String impronta = archivioPdfContratti.impronta(contratto);
+            String etag = "\"" + impronta + "\"";
+            if (new ServletWebRequest(request).checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
             }
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDisposition(ContentDisposition.inline()
+                .filename("contratto_valutazione_" + idValutazione + ".pdf").build());
+            headers.setETag(etag);
+            // Dati personali: solo cache del browser, sempre rivalidata con l'ETag
+            headers.setCacheControl(CacheControl.noCache().cachePrivate());
+
+            PdfArchiviato pdf = archivioPdfContratti.cerca(contratto, impronta);
+            if (pdf != null) {
+                ResponseEntity<StreamingResponseBody> archiviato = inviaPdf(request, pdf, headers);
+                if (archiviato != null) {
+                    return archiviato;
+                }
+            }
+            // Non archiviato: il PDF va al browser mentre viene generato (chunked)
+            return ResponseEntity.ok().headers(headers)
+                .body(out -> archivioPdfContratti.generaInStreaming(contratto, impronta, out));
                     
         } catch (Exception e) {
-            Map<String, String> error = new HashMap<>();
-            error.put("error", "Errore nella generazione del PDF: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return errore(HttpStatus.INTERNAL_SERVER_ERROR, "Errore nella generazione del PDF: " + e.getMessage());
         }
     }
+
+    /**
+     * Risposta con il PDF archiviato. Se il connettore Tomcat supporta sendfile il file
+     * passa dal disco al socket senza copie in memoria (il corpo non viene scritto dal
+     * controller); altrimenti viene aperto subito e copiato dal file alla risposta.
+     *
+     * @return null se il file è stato cancellato dall'archivio dopo la ricerca (va rigenerato)
+     */
+    private ResponseEntity<StreamingResponseBody> inviaPdf(HttpServletRequest request, PdfArchiviato pdf,
+                                                           HttpHeaders headers) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTATO))) {
+            // File appena trovato: l'archivio non lo cancella finché può essere in invio
+            if (Files.notExists(pdf.file())) return null;
+            headers.setContentLength(pdf.dimensione());
+            request.setAttribute(SENDFILE_FILE, pdf.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INIZIO, 0L);
+            request.setAttribute(SENDFILE_FINE, pdf.dimensione());
+            return ResponseEntity.ok().headers(headers).build();
+        }
+        InputStream file;
+        try {
+            // Aperto prima di rispondere: una cancellazione successiva non interrompe la copia
+            file = Files.newInputStream(pdf.file());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        headers.setContentLength(pdf.dimensione());
+        return ResponseEntity.ok().headers(headers).body(out -> {
+            try (InputStream in = file) {
+                in.transferTo(out);
+            }
+        });
+    }
+
+    /**
+     * Errore JSON ({"error": ...}) per gli endpoint che rispondono in streaming.
+     */
+    private ResponseEntity<StreamingResponseBody> errore(HttpStatus status, String messaggio) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", messaggio);
+        return ResponseEntity.status(status)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(out -> objectMapper.writeValue(out, error));
+    }
 }
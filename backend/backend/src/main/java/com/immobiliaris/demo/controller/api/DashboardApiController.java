@@ -12,6 +12,11 @@
  * Autenticazione richiesta: SI (via Principal o path parameter)
  * Ruoli richiesti: AGENT, ADMIN
  * 
+ * Le risposte hanno un ETag forte ({@link VersioneDatiService}): un poll con If-None-Match
+ * uguale riceve 304 senza query al database né serializzazione del JSON.
+ * Gli aggiornamenti possono anche arrivare in push su /api/dashboard/agente/eventi
+ * ({@link DashboardEventiService}).
+ * 
  * @author Sistema IMMOBILIARIS
  * @version 1.0
  * @since 2025-12-01
@@ -19,12 +24,22 @@
 package com.immobiliaris.demo.controller.api;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import com.immobiliaris.demo.repository.*;
 import com.immobiliaris.demo.entity.*;
 import com.immobiliaris.demo.dto.DashboardDTO;
+import com.immobiliaris.demo.service.DashboardEventiService;
+import com.immobiliaris.demo.service.RegistroStati;
+import com.immobiliaris.demo.service.RegistroStati.CodiceContratto;
+import com.immobiliaris.demo.service.SerieMensile;
+import com.immobiliaris.demo.service.VersioneDatiService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -32,7 +47,6 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import java.security.Principal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.*;
 
@@ -58,11 +72,24 @@ public class DashboardApiController {
     @Autowired
     private UserRepository userRepository;
     
+    /** Versioni dei dati per l'ETag della dashboard */
+    @Autowired
+    private VersioneDatiService versioneDatiService;
+    
+    /** Canale SSE degli eventi delta */
+    @Autowired
+    private DashboardEventiService dashboardEventiService;
+    
+    /** Id degli stati, per filtrare i contratti senza join sulla tabella degli stati */
+    @Autowired
+    private RegistroStati registroStati;
+    
     /**
      * Endpoint legacy per dashboard con path parameter agenteId.
      * DEPRECATO: usare {@link #getDashboard(Principal)} senza parametri.
      * 
      * @param agenteId ID dell'agente (da URL)
+     * @param request Richiesta corrente, per If-None-Match
      * @return Dashboard con statistiche e performance agente
      * @throws RuntimeException se agente non trovato
      * 
@@ -70,13 +97,18 @@ public class DashboardApiController {
      */
     @GetMapping("/agente/{agenteId}")
     @Deprecated(since = "1.0", forRemoval = false)
-    public ResponseEntity<?> getDashboard(@PathVariable Long agenteId) {
+    public ResponseEntity<?> getDashboard(@PathVariable Long agenteId, WebRequest request) {
         try {
             if(agenteId == null || agenteId <= 0) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new Response("error", "ID agente non valido", null));
             }
             
+            String etag = etag("id:" + agenteId);
+            if (request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            
             // Verifica agente esiste
             var agenteOpt = userRepository.findById(agenteId);
             if(agenteOpt.isEmpty()) {
@@ -84,25 +116,9 @@ public class DashboardApiController {
                     .body(new Response("error", "Agente non trovato", null));
             }
             
-            DashboardDTO.DashboardResponse dashboard = new DashboardDTO.DashboardResponse();
-            
-            // 1. Statistiche
-            dashboard.valutazioniRichieste = getValutazioniRichieste(agenteId);
-            dashboard.immobiliAcquisiti = getImmobiliAcquisiti(agenteId);
-            dashboard.trattativeAttive = getTrattativeAttive(agenteId);
-            dashboard.venditeChiuse = getVenditeChiuse(agenteId);
-            
-            // 2. Performance ultimi 6 mesi
-            dashboard.performance = getPerformance(agenteId);
-            
-            // 3. Prossime attività (prima pagina)
-            dashboard.prossimiAttivita = getProssimiAttivita(agenteId, 0);
+            DashboardDTO.DashboardResponse dashboard = costruisciDashboard(agenteId);
             
-            // 4. Pipeline
-            dashboard.pipeline = getPipeline(agenteId);
-            dashboard.immobiliPerStato = getImmobiliPerStato(agenteId);
-            
-            return ResponseEntity.ok(new Response("success", "Dashboard caricata", dashboard));
+            return conEtag(etag, new Response("success", "Dashboard caricata", dashboard));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(new Response("error", "Errore recupero dashboard: " + e.getMessage(), null));
@@ -125,7 +141,9 @@ public class DashboardApiController {
      * 
      * @param principal {@link Principal} dell'utente autenticato (iniettato da Spring Security).
      *                 Contiene l'email dell'utente loggato.
+     * @param request Richiesta corrente, per If-None-Match
      * @return ResponseEntity con status 200 OK e Dashboard completa
+     * @return ResponseEntity con status 304 NOT_MODIFIED se l'ETag inviato è ancora valido
      * @return ResponseEntity con status 401 UNAUTHORIZED se non autenticato
      * @return ResponseEntity con status 404 NOT_FOUND se agente non trovato
      * @return ResponseEntity con status 500 INTERNAL_SERVER_ERROR se errore generico
@@ -141,19 +159,26 @@ public class DashboardApiController {
     @SecurityRequirement(name = "session")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Dashboard caricata correttamente"),
+        @ApiResponse(responseCode = "304", description = "Dashboard invariata rispetto all'ETag inviato in If-None-Match"),
         @ApiResponse(responseCode = "401", description = "Utente non autenticato"),
         @ApiResponse(responseCode = "404", description = "Agente non trovato nel sistema"),
         @ApiResponse(responseCode = "500", description = "Errore interno nel caricamento dashboard")
     })
-    public ResponseEntity<?> getDashboard(Principal principal) {
+    public ResponseEntity<?> getDashboard(Principal principal, WebRequest request) {
         try {
             if(principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(new Response("error", "Utente non autenticato", null));
             }
             
-            // Recupera l'utente autenticato dalla email
+            // ETag per utente, verificato prima di cercare l'agente nel database
             String email = principal.getName();
+            String etag = etag("email:" + email);
+            if (request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            
+            // Recupera l'utente autenticato dalla email
             var agenteOpt = userRepository.findByEmail(email);
             
             if(agenteOpt.isEmpty()) {
@@ -163,35 +188,111 @@ public class DashboardApiController {
             
             Long agenteId = agenteOpt.get().getIdUtente();
             
-            DashboardDTO.DashboardResponse dashboard = new DashboardDTO.DashboardResponse();
-            
-            // 1. Statistiche principali
-            dashboard.valutazioniRichieste = getValutazioniRichieste(agenteId);
-            dashboard.immobiliAcquisiti = getImmobiliAcquisiti(agenteId);
-            dashboard.trattativeAttive = getTrattativeAttive(agenteId);
-            dashboard.venditeChiuse = getVenditeChiuse(agenteId);
+            DashboardDTO.DashboardResponse dashboard = costruisciDashboard(agenteId);
             
-            // 2. Performance ultimi 6 mesi (per grafico)
-            dashboard.performance = getPerformance(agenteId);
-            
-            // 3. Prossime attività (prima pagina, 5 immobili)
-            dashboard.prossimiAttivita = getProssimiAttivita(agenteId, 0);
-            
-            // 4. Pipeline (richieste in attesa, trattative, vendite chiuse)
-            dashboard.pipeline = getPipeline(agenteId);
-            
-            // 5. Distribuzione immobili per stato
-            dashboard.immobiliPerStato = getImmobiliPerStato(agenteId);
-            
-            return ResponseEntity.ok(new Response("success", "Dashboard caricata", dashboard));
+            return conEtag(etag, new Response("success", "Dashboard caricata", dashboard));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(new Response("error", "Errore recupero dashboard: " + e.getMessage(), null));
         }
     }
     
+    /**
+     * Eventi delta della dashboard dell'agente autenticato (Server-Sent Events).
+     * 
+     * L'agente viene cercato una sola volta all'iscrizione; poi la connessione resta aperta
+     * senza query fino al prossimo evento che lo riguarda:
+     * - immobile-registrato: nuovo immobile (per tutti gli agenti)
+     * - valutazione-assegnata: valutazione assegnata a questo agente
+     * - contratto-chiuso: contratto di questo agente chiuso
+     * 
+     * @param principal {@link Principal} dell'utente autenticato
+     * @return Stream text/event-stream, 401/404 se l'agente non è identificabile,
+     *         503 se ci sono troppe dashboard collegate
+     */
+    @GetMapping(path = "/agente/eventi", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Eventi dashboard agente",
+        description = "Stream Server-Sent Events con gli aggiornamenti della dashboard dell'agente loggato"
+    )
+    @SecurityRequirement(name = "session")
+    public ResponseEntity<SseEmitter> getDashboardEventi(Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        var agenteOpt = userRepository.findByEmail(principal.getName());
+        if (agenteOpt.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        try {
+            return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header("X-Accel-Buffering", "no")
+                .body(dashboardEventiService.iscriviAgente(agenteOpt.get().getIdUtente()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+    
     // ========== METODI PRIVATI DI ELABORAZIONE DATI ==========
     
+    /**
+     * ETag della dashboard di un agente: versioni di immobili, valutazioni, contratti e utenti,
+     * l'agente e il mese corrente (statistiche del mese e performance degli ultimi 6 mesi).
+     * 
+     * @param agente Identificativo dell'agente (email o id, con prefisso)
+     * @return ETag forte tra virgolette
+     */
+    private String etag(String agente) {
+        return versioneDatiService.etag("dashboard-agente|" + agente + "|" + YearMonth.now(), VersioneDatiService.TUTTI);
+    }
+    
+    /**
+     * Risposta 200 con ETag: solo cache del browser, sempre rivalidata con If-None-Match.
+     */
+    private ResponseEntity<Response> conEtag(String etag, Response body) {
+        return ResponseEntity.ok()
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(body);
+    }
+    
+    /**
+     * Costruisce la dashboard completa di un agente.
+     * 
+     * I conteggi di contratti e immobili per stato vengono letti una sola volta
+     * con query aggregate (GROUP BY stato) e condivisi tra card, pipeline e distribuzione.
+     * 
+     * @param agenteId ID dell'agente
+     * @return {@link DashboardDTO.DashboardResponse} completa
+     */
+    private DashboardDTO.DashboardResponse costruisciDashboard(Long agenteId) {
+        List<ContrattoJpaRepository.ContrattiPerStato> contrattiPerStato = contrattoRepository.countPerStatoByAgente(agenteId);
+        List<ImmobileJpaRepository.ImmobiliPerStato> immobiliPerStato = immobileRepository.countPerStatoByProprietario(agenteId);
+        
+        DashboardDTO.DashboardResponse dashboard = new DashboardDTO.DashboardResponse();
+        
+        // 1. Statistiche principali
+        dashboard.valutazioniRichieste = getValutazioniRichieste(agenteId);
+        dashboard.immobiliAcquisiti = getImmobiliAcquisiti(immobiliPerStato);
+        dashboard.trattativeAttive = getTrattativeAttive(contrattiPerStato);
+        dashboard.venditeChiuse = getVenditeChiuse(contrattiPerStato);
+        
+        // 2. Performance ultimi 6 mesi (per grafico)
+        dashboard.performance = getPerformance(agenteId);
+        
+        // 3. Prossime attività (prima pagina, 5 immobili)
+        dashboard.prossimiAttivita = getProssimiAttivita(agenteId, 0);
+        
+        // 4. Pipeline (richieste in attesa, trattative, vendite chiuse)
+        dashboard.pipeline = getPipeline(contrattiPerStato);
+        
+        // 5. Distribuzione immobili per stato
+        dashboard.immobiliPerStato = getImmobiliPerStato(immobiliPerStato, contrattiPerStato);
+        
+        return dashboard;
+    }
+    
     /**
      * Calcola statistiche valutazioni richieste all'agente.
      * 
@@ -206,17 +307,11 @@ public class DashboardApiController {
         LocalDate oggi = LocalDate.now();
         LocalDate inizioMese = oggi.withDayOfMonth(1);
         
-        // Valutazioni create da agente questo mese
-        long valutazioni = valutazioneRepository.findAll().stream()
-            .filter(v -> v.getAgente() != null && v.getAgente().getIdUtente() != null && 
-                    v.getAgente().getIdUtente().equals(agenteId) &&
-                    v.getDataValutazione() != null && !v.getDataValutazione().toLocalDate().isBefore(inizioMese))
-            .count();
-        
-        // Total valutazioni
-        long totalValutazioni = valutazioneRepository.findAll().stream()
-            .filter(v -> v.getAgente() != null && v.getAgente().getIdUtente() != null && v.getAgente().getIdUtente().equals(agenteId))
-            .count();
+        // Totale valutazioni dell'agente e quelle di questo mese (una sola query)
+        ValutazioneJpaRepository.ConteggioValutazioniAgente conteggio =
+            valutazioneRepository.countRiepilogoByAgente(agenteId, inizioMese.atStartOfDay());
+        long valutazioni = conteggio.getRecenti();
+        long totalValutazioni = conteggio.getTotale();
         
         return new DashboardDTO.StatisticheCard(
             (int)totalValutazioni,
@@ -232,23 +327,18 @@ public class DashboardApiController {
      * - Numero totale immobili associati all'agente
      * - Numero immobili in stato "attivo" (esclusiva)
      * 
-     * @param agenteId ID dell'agente
+     * @param immobiliPerStato Immobili dell'agente (tramite proprietario) raggruppati per stato
      * @return {@link DashboardDTO.StatisticheCard} con totale e immobili in esclusiva
      */
-    private DashboardDTO.StatisticheCard getImmobiliAcquisiti(Long agenteId) {
+    private DashboardDTO.StatisticheCard getImmobiliAcquisiti(List<ImmobileJpaRepository.ImmobiliPerStato> immobiliPerStato) {
         // Immobili assegnati all'agente (tramite proprietario)
-        List<Immobile> immobili = immobileRepository.findAll().stream()
-            .filter(i -> i.getProprietario() != null && i.getProprietario().getIdUtente() != null && 
-                    i.getProprietario().getIdUtente().equals(agenteId))
-            .toList();
+        long totale = sommaImmobili(immobiliPerStato);
         
         // In esclusiva (stato "attivo")
-        long esclusiva = immobili.stream()
-            .filter(i -> i.getStatoImmobile() != null && "attivo".equalsIgnoreCase(i.getStatoImmobile().getNome()))
-            .count();
+        long esclusiva = sommaImmobili(immobiliPerStato, "attivo");
         
         return new DashboardDTO.StatisticheCard(
-            immobili.size(),
+            (int)totale,
             "+ " + esclusiva + " in esclusiva",
             "Immobili acquisiti"
         );
@@ -261,23 +351,17 @@ public class DashboardApiController {
      * - Numero totale contratti associati all'agente
      * - Numero contratti in stato "attivo" o "bozza" (fase finale)
      * 
-     * @param agenteId ID dell'agente
+     * @param contrattiPerStato Contratti dell'agente raggruppati per stato
      * @return {@link DashboardDTO.StatisticheCard} con totale e in fase finale
      */
-    private DashboardDTO.StatisticheCard getTrattativeAttive(Long agenteId) {
+    private DashboardDTO.StatisticheCard getTrattativeAttive(List<ContrattoJpaRepository.ContrattiPerStato> contrattiPerStato) {
         // Contratti in corso o fase finale
-        List<Contratto> contratti = contrattoRepository.findAll().stream()
-            .filter(c -> c.getAgente() != null && c.getAgente().getIdUtente().equals(agenteId))
-            .toList();
+        long totale = sommaContratti(contrattiPerStato, ContrattoJpaRepository.ContrattiPerStato::getNumero);
         
-        long attivi = contratti.stream()
-            .filter(c -> c.getStatoContratto() != null && 
-                    ("attivo".equalsIgnoreCase(c.getStatoContratto().getNome()) ||
-                     "bozza".equalsIgnoreCase(c.getStatoContratto().getNome())))
-            .count();
+        long attivi = sommaContratti(contrattiPerStato, ContrattoJpaRepository.ContrattiPerStato::getNumero, "attivo", "bozza");
         
         return new DashboardDTO.StatisticheCard(
-            contratti.size(),
+            (int)totale,
             "+ " + attivi + " fase finale",
             "Trattative attive"
         );
@@ -291,26 +375,20 @@ public class DashboardApiController {
      * - Valore totale dei contratti chiusi (somma prezzi immobili)
      * - Formatta valore in milioni di euro (€ X.XM)
      * 
-     * @param agenteId ID dell'agente
+     * @param contrattiPerStato Contratti dell'agente raggruppati per stato
      * @return {@link DashboardDTO.StatisticheCard} con numero vendite e valore totale
      */
-    private DashboardDTO.StatisticheCard getVenditeChiuse(Long agenteId) {
+    private DashboardDTO.StatisticheCard getVenditeChiuse(List<ContrattoJpaRepository.ContrattiPerStato> contrattiPerStato) {
         // Contratti chiusi
-        List<Contratto> contratti = contrattoRepository.findAll().stream()
-            .filter(c -> c.getAgente() != null && c.getAgente().getIdUtente().equals(agenteId) &&
-                    c.getStatoContratto() != null && "chiuso".equalsIgnoreCase(c.getStatoContratto().getNome()))
-            .toList();
+        long chiusi = sommaContratti(contrattiPerStato, ContrattoJpaRepository.ContrattiPerStato::getNumero, "chiuso");
         
         // Calcola valore totale
-        long valoreTotal = contratti.stream()
-            .mapToLong(c -> c.getImmobile() != null && c.getImmobile().getPrezzo() != null ? 
-                    c.getImmobile().getPrezzo() : 0)
-            .sum();
+        long valoreTotal = sommaContratti(contrattiPerStato, ContrattoJpaRepository.ContrattiPerStato::getValoreImmobili, "chiuso");
         
         String valoreTotalStr = valoreTotal > 0 ? String.format("€ %.1fM", valoreTotal / 1_000_000.0) : "€ 0";
         
         return new DashboardDTO.StatisticheCard(
-            contratti.size(),
+            (int)chiusi,
             valoreTotalStr + " valore totale",
             "Vendite chiuse"
         );
@@ -323,6 +401,8 @@ public class DashboardApiController {
      * - Conta acquisizioni (immobili registrati nel mese)
      * - Conta vendite (contratti chiusi nel mese)
      * 
+     * Una query raggruppata per mese per ciascuna entità (vedi {@link SerieMensile}).
+     * 
      * @param agenteId ID dell'agente
      * @return List di {@link DashboardDTO.PerformanceData} ordinati cronologicamente (mese più vecchio prima)
      */
@@ -330,34 +410,20 @@ public class DashboardApiController {
         List<DashboardDTO.PerformanceData> performance = new ArrayList<>();
         
         // Ultimi 6 mesi completi
-        for (int i = 6; i >= 1; i--) {
-            YearMonth ym = YearMonth.now().minusMonths(i);
+        SerieMensile acquisizioni = SerieMensile.ultimiMesi(YearMonth.now().minusMonths(1), 6);
+        SerieMensile vendite = SerieMensile.ultimiMesi(YearMonth.now().minusMonths(1), 6);
+        
+        // Acquisizioni (immobili creati nel mese)
+        acquisizioni.aggiungi(immobileRepository.countPerMeseRegistrazione(
+            acquisizioni.getInizio(), acquisizioni.getFine()));
+        
+        // Vendite (contratti chiusi nel mese)
+        vendite.aggiungi(contrattoRepository.countPerMeseFineByAgenteAndStato(
+            agenteId, registroStati.id(CodiceContratto.CHIUSO), vendite.getInizio(), vendite.getFine()));
+        
+        for (YearMonth ym : acquisizioni.getMesi()) {
             String mese = ym.getMonth().toString().substring(0, 3);
-            
-            LocalDate inizio = ym.atDay(1);
-            LocalDate fine = ym.atEndOfMonth();
-            
-            // Acquisizioni (immobili creati nel mese)
-            long acquisizioni = immobileRepository.findAll().stream()
-                .filter(im -> {
-                    if (im.getDataRegistrazione() != null) {
-                        LocalDate data = im.getDataRegistrazione().toLocalDate();
-                        return !data.isBefore(inizio) && !data.isAfter(fine);
-                    }
-                    return false;
-                })
-                .count();
-            
-            // Vendite (contratti chiusi nel mese)
-            long vendite = contrattoRepository.findAll().stream()
-                .filter(c -> c.getAgente() != null && c.getAgente().getIdUtente().equals(agenteId) &&
-                        c.getDataFine() != null && 
-                        !c.getDataFine().toLocalDate().isBefore(inizio) && 
-                        !c.getDataFine().toLocalDate().isAfter(fine) &&
-                        c.getStatoContratto() != null && "chiuso".equalsIgnoreCase(c.getStatoContratto().getNome()))
-                .count();
-            
-            performance.add(new DashboardDTO.PerformanceData(mese, (int)acquisizioni, (int)vendite));
+            performance.add(new DashboardDTO.PerformanceData(mese, (int)acquisizioni.getNumero(ym), (int)vendite.getNumero(ym)));
         }
         
         return performance;
@@ -366,7 +432,8 @@ public class DashboardApiController {
     /**
      * Recupera prossime attività (immobili) da gestire.
      * 
-     * Implementa paginazione con page size di 5 immobili per pagina.
+     * Implementa paginazione con page size di 5 immobili per pagina: il database legge
+     * solo la pagina richiesta, con proprietario e stato nella stessa query.
      * Ordina immobili per data_registrazione decrescente (più recenti prima).
      * 
      * @param agenteId ID dell'agente (non utilizzato nel filtro - recupera tutti)
@@ -379,11 +446,8 @@ public class DashboardApiController {
         
         List<DashboardDTO.ImmobileItem> items = new ArrayList<>();
         
-        List<Immobile> immobiliOrdinati = immobileRepository.findAll().stream()
-            .sorted(Comparator.comparing((Immobile i) -> i.getDataRegistrazione() != null ? i.getDataRegistrazione() : LocalDateTime.now()).reversed())
-            .skip((long) page * pageSize)
-            .limit(pageSize)
-            .toList();
+        List<Immobile> immobiliOrdinati = immobileRepository.findByOrderByDataRegistrazioneDescIdDesc(
+            PageRequest.of(page, pageSize));
         
         for (Immobile immobile : immobiliOrdinati) {
             String proprietario = immobile.getProprietario() != null ? 
@@ -415,26 +479,18 @@ public class DashboardApiController {
      * - Trattative in corso: contratti in stato "attivo"
      * - Vendite chiuse: contratti in stato "chiuso"
      * 
-     * @param agenteId ID dell'agente
+     * @param contrattiPerStato Contratti dell'agente raggruppati per stato
      * @return {@link DashboardDTO.PipelineData} con conteggi per fase
      */
-    private DashboardDTO.PipelineData getPipeline(Long agenteId) {
+    private DashboardDTO.PipelineData getPipeline(List<ContrattoJpaRepository.ContrattiPerStato> contrattiPerStato) {
         // Valutazioni in richiesta (non assegnate a questo agente)
-        long richieste = valutazioneRepository.findAll().stream()
-            .filter(v -> v.getAgente() == null)
-            .count();
+        long richieste = valutazioneRepository.countByAgenteIsNull();
         
         // Trattative (contratti in corso)
-        long trattative = contrattoRepository.findAll().stream()
-            .filter(c -> c.getAgente() != null && c.getAgente().getIdUtente().equals(agenteId) &&
-                    c.getStatoContratto() != null && "attivo".equalsIgnoreCase(c.getStatoContratto().getNome()))
-            .count();
+        long trattative = sommaContratti(contrattiPerStato, ContrattoJpaRepository.ContrattiPerStato::getNumero, "attivo");
         
         // Vendite chiuse
-        long vendite = contrattoRepository.findAll().stream()
-            .filter(c -> c.getAgente() != null && c.getAgente().getIdUtente().equals(agenteId) &&
-                    c.getStatoContratto() != null && "chiuso".equalsIgnoreCase(c.getStatoContratto().getNome()))
-            .count();
+        long vendite = sommaContratti(contrattiPerStato, ContrattoJpaRepository.ContrattiPerStato::getNumero, "chiuso");
         
         return new DashboardDTO.PipelineData((int)richieste, (int)trattative, (int)vendite);
     }
@@ -448,37 +504,75 @@ public class DashboardApiController {
      * - In trattativa: immobili con contratti "attivo"
      * - Venduti: stato "venduto"
      * 
-     * @param agenteId ID dell'agente
+     * @param immobiliPerStato Immobili dell'agente (tramite proprietario) raggruppati per stato
+     * @param contrattiPerStato Contratti dell'agente raggruppati per stato
      * @return {@link DashboardDTO.ImmobiliPerStato} con conteggio per stato
      */
-    private DashboardDTO.ImmobiliPerStato getImmobiliPerStato(Long agenteId) {
-        List<Immobile> immobili = immobileRepository.findAll().stream()
-            .filter(i -> i.getProprietario() != null && i.getProprietario().getIdUtente() != null &&
-                    i.getProprietario().getIdUtente().equals(agenteId))
-            .toList();
-        
-        long inVendita = immobili.stream()
-            .filter(i -> i.getStatoImmobile() != null && "attivo".equalsIgnoreCase(i.getStatoImmobile().getNome()))
-            .count();
-        
-        long inValutazione = immobili.stream()
-            .filter(i -> i.getStatoImmobile() != null && "in valutazione".equalsIgnoreCase(i.getStatoImmobile().getNome()))
-            .count();
-        
-        long inTrattativa = contrattoRepository.findAll().stream()
-            .filter(c -> c.getAgente() != null && c.getAgente().getIdUtente().equals(agenteId) &&
-                    c.getStatoContratto() != null && "attivo".equalsIgnoreCase(c.getStatoContratto().getNome()))
-            .map(c -> c.getImmobile().getId())
-            .distinct()
-            .count();
-        
-        long venduti = immobili.stream()
-            .filter(i -> i.getStatoImmobile() != null && "venduto".equalsIgnoreCase(i.getStatoImmobile().getNome()))
-            .count();
+    private DashboardDTO.ImmobiliPerStato getImmobiliPerStato(List<ImmobileJpaRepository.ImmobiliPerStato> immobiliPerStato,
+                                                             List<ContrattoJpaRepository.ContrattiPerStato> contrattiPerStato) {
+        long inVendita = sommaImmobili(immobiliPerStato, "attivo");
+        
+        long inValutazione = sommaImmobili(immobiliPerStato, "in valutazione");
+        
+        // Immobili distinti con contratto "attivo"
+        long inTrattativa = sommaContratti(contrattiPerStato, ContrattoJpaRepository.ContrattiPerStato::getImmobili, "attivo");
+        
+        long venduti = sommaImmobili(immobiliPerStato, "venduto");
         
         return new DashboardDTO.ImmobiliPerStato((int)inVendita, (int)inValutazione, (int)inTrattativa, (int)venduti);
     }
     
+    /**
+     * Somma un valore delle righe contratti-per-stato.
+     * Senza stati indicati somma tutte le righe, altrimenti solo quelle con stato
+     * corrispondente (confronto case-insensitive, come nei filtri precedenti).
+     * 
+     * @param righe Contratti raggruppati per stato
+     * @param valore Valore da sommare (numero, immobili, valore immobili)
+     * @param stati Stati da includere (vuoto = tutti)
+     * @return Somma dei valori
+     */
+    private long sommaContratti(List<ContrattoJpaRepository.ContrattiPerStato> righe,
+                                java.util.function.Function<ContrattoJpaRepository.ContrattiPerStato, Long> valore,
+                                String... stati) {
+        long somma = 0;
+        for (ContrattoJpaRepository.ContrattiPerStato riga : righe) {
+            if (statoIncluso(riga.getStato(), stati) && valore.apply(riga) != null) {
+                somma += valore.apply(riga);
+            }
+        }
+        return somma;
+    }
+    
+    /**
+     * Somma il numero di immobili delle righe immobili-per-stato.
+     * Senza stati indicati somma tutte le righe.
+     * 
+     * @param righe Immobili raggruppati per stato
+     * @param stati Stati da includere (vuoto = tutti)
+     * @return Numero di immobili
+     */
+    private long sommaImmobili(List<ImmobileJpaRepository.ImmobiliPerStato> righe, String... stati) {
+        long somma = 0;
+        for (ImmobileJpaRepository.ImmobiliPerStato riga : righe) {
+            if (statoIncluso(riga.getStato(), stati) && riga.getNumero() != null) {
+                somma += riga.getNumero();
+            }
+        }
+        return somma;
+    }
+    
+    /**
+     * Verifica se uno stato rientra tra quelli richiesti (tutti se l'elenco è vuoto).
+     */
+    private boolean statoIncluso(String stato, String... stati) {
+        if (stati.length == 0) return true;
+        for (String s : stati) {
+            if (s.equalsIgnoreCase(stato)) return true;
+        }
+        return false;
+    }
+    
     /**
      * DTO interno per risposta standardizzata.
      * Utilizzato per tutte le risposte JSON del controller.
@@ -6,8 +6,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.immobiliaris.demo.repository.ValutazioneJpaRepository;
 import com.immobiliaris.demo.entity.Valutazione;
-import com.immobiliaris.demo.entity.StatoValutazione;
-import com.immobiliaris.demo.repository.StatoValutazioneRepository;
+import com.immobiliaris.demo.service.RegistroStati;
+import com.immobiliaris.demo.service.RegistroStati.CodiceValutazione;
 import com.immobiliaris.demo.entity.Immobile;
 import com.immobiliaris.demo.repository.ImmobileJpaRepository;
 import java.util.HashMap;
@@ -22,7 +22,7 @@ public class ValutazioneApiController {
     @Autowired
     private ValutazioneJpaRepository repository;
     @Autowired
-    private StatoValutazioneRepository statoRepository;
+    private RegistroStati registroStati;
     
    
 
@@ -30,7 +30,7 @@ public class ValutazioneApiController {
     private ImmobileJpaRepository immobileRepository;
 
     @Autowired
-    private com.immobiliaris.demo.repository.ZonaRepository zonaRepository;
+    private com.immobiliaris.demo.service.ZonaPriceIndex zonaPriceIndex;
 
     @GetMapping("/all")
     public ResponseEntity<?> getAll() {
@@ -145,12 +145,12 @@ public class ValutazioneApiController {
             }
 
             String cap = immobile.getCap();
-            var zonaOpt = zonaRepository.findByCap(cap);
-            if(zonaOpt.isEmpty()) {
+            int prezzoMedioMq = zonaPriceIndex.getPrezzoMedioMq(cap);
+            if(prezzoMedioMq <= 0) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new Response("error", "Zona non trovata per il CAP: " + cap, null));
             }
-            Double quotazioneBase = zonaOpt.get().getPrezzoMedioMq().doubleValue();
+            Double quotazioneBase = (double) prezzoMedioMq;
 
             // ===== FASE 0: ANALISI DI EFFICIENZA FUNZIONALE =====
             // Calcolo Coefficiente di Penalità Funzionale (C_Funzionale) basato su Metratura, Stanze, Bagni
@@ -227,15 +227,8 @@ public class ValutazioneApiController {
             // Non impostare dataValutazione qui - verrà impostata quando l'agente prende in carico
             valutazione.setImmobile(immobile);
 
-            StatoValutazione stato = statoRepository.findByNome("solo_AI")
-                .orElse(null);
-            if(stato == null) {
-                stato = new StatoValutazione();
-                stato.setNome("solo_AI");
-                stato.setDescrizione("Valutazione generata dall'AI");
-                stato = statoRepository.save(stato);
-            }
-            valutazione.setStatoValutazione(stato);
+            // Stato dal registro in memoria: gli stati sono creati dalla migrazione V7, non a runtime
+            valutazione.setStatoValutazione(registroStati.get(CodiceValutazione.SOLO_AI));
             valutazione.setDescrizione(request.descrizione != null ? 
                 request.descrizione : 
                 "Valutazione automatica - CAP: " + cap);
@@ -245,7 +238,7 @@ public class ValutazioneApiController {
             Map<String, Object> result = new HashMap<>();
             result.put("prezzo", prezzoFinale);
             result.put("valutazioneId", saved.getId());
-            result.put("stato", "solo_AI");
+            result.put("stato", CodiceValutazione.SOLO_AI.getNome());
             result.put("cap", cap);
             result.put("quotazioneBase", quotazioneBase);
             result.put("coefficienteFunzionale", coefficienteFunzionale);
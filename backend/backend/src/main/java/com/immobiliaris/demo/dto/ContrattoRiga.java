@@ -0,0 +1,54 @@
+package com.immobiliaris.demo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Riga della lista admin dei contratti chiusi, letta con un'unica query
+ * (costruttore nella SELECT di ContrattoJpaRepository).
+ *
+ * L'id serve solo per il cursore della pagina successiva e non compare nel JSON.
+ *
+ * @param id Id del contratto
+ * @param numeroContratto Numero del contratto
+ * @param dataInvio Data di invio al cliente
+ * @param dataRicezione Data di ricezione firmato
+ * @param dataInizio Data di inizio
+ * @param dataFine Data di fine (ordinamento della lista)
+ * @param valutazioneUmana Prezzo umano della valutazione collegata
+ * @param tipo Tipologia dell'immobile
+ * @param nomeProprietario Nome e cognome del proprietario
+ * @param agenteAssegnato Nome e cognome dell'agente del contratto
+ */
+@JsonSerialize(using = ContrattoRiga.Json.class)
+public record ContrattoRiga(
+    Long id,
+    String numeroContratto,
+    LocalDateTime dataInvio,
+    LocalDateTime dataRicezione,
+    LocalDateTime dataInizio,
+    LocalDateTime dataFine,
+    Integer valutazioneUmana,
+    String tipo,
+    String nomeProprietario,
+    String agenteAssegnato
+) {
+
+    /** Campi JSON di GET /api/admin/contratti/chiusi */
+    public static class Json extends SerializzatoreRiga<ContrattoRiga> {
+        public Json() {
+            super(ContrattoRiga.class, List.of(
+                campo("numeroContratto", ContrattoRiga::numeroContratto),
+                campo("dataInvio", ContrattoRiga::dataInvio),
+                campo("dataRicezione", ContrattoRiga::dataRicezione),
+                campo("dataInizio", ContrattoRiga::dataInizio),
+                campo("dataFine", ContrattoRiga::dataFine),
+                campo("valutazioneUmana", ContrattoRiga::valutazioneUmana),
+                campo("tipo", ContrattoRiga::tipo),
+                campo("nomeProprietario", ContrattoRiga::nomeProprietario),
+                campo("agenteAssegnato", ContrattoRiga::agenteAssegnato)));
+        }
+    }
+}
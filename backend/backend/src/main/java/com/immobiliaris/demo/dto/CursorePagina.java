@@ -0,0 +1,68 @@
+package com.immobiliaris.demo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posizione nelle liste "carica altri" ordinate per (data DESC, id DESC).
+ *
+ * La pagina successiva parte dalla riga subito dopo (data, id): la query legge solo
+ * le righe della pagina, qualunque sia la profondità. Le righe senza data stanno in
+ * coda ordinate per id; il loro cursore ha data null.
+ *
+ * Il client riceve il cursore come stringa opaca ({@link #codifica()}) e lo rimanda
+ * così com'è nel parametro "cursor".
+ *
+ * @param data Data dell'ultima riga restituita (null se senza data)
+ * @param id Id dell'ultima riga restituita
+ */
+public record CursorePagina(LocalDateTime data, long id) {
+
+    private static final char SEPARATORE = '|';
+
+    /**
+     * @return Cursore in Base64 URL-safe, da restituire al client
+     */
+    public String codifica() {
+        String testo = (data != null ? data.toString() : "") + SEPARATORE + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(testo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursore Stringa ricevuta dal client (null o vuota per la prima pagina)
+     * @return Posizione, oppure null per la prima pagina
+     * @throws IllegalArgumentException se il cursore non è valido
+     */
+    public static CursorePagina decodifica(String cursore) {
+        return decodifica(cursore, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param cursore Stringa ricevuta dal client (null o vuota per la prima pagina)
+     * @param idMassimo Id massimo ammesso (es. Integer.MAX_VALUE per le tabelle con id INT)
+     * @return Posizione, oppure null per la prima pagina
+     * @throws IllegalArgumentException se il cursore non è valido o l'id è fuori dall'intervallo 0..idMassimo
+     */
+    public static CursorePagina decodifica(String cursore, long idMassimo) {
+        if (cursore == null || cursore.isBlank()) {
+            return null;
+        }
+        try {
+            String testo = new String(Base64.getUrlDecoder().decode(cursore.trim()), StandardCharsets.UTF_8);
+            int separatore = testo.lastIndexOf(SEPARATORE);
+            if (separatore < 0) {
+                throw new IllegalArgumentException("Cursore non valido");
+            }
+            String data = testo.substring(0, separatore);
+            long id = Long.parseLong(testo.substring(separatore + 1));
+            if (id < 0 || id > idMassimo) {
+                throw new IllegalArgumentException("Cursore non valido");
+            }
+            return new CursorePagina(data.isEmpty() ? null : LocalDateTime.parse(data), id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursore non valido", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.immobiliaris.demo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Riga della lista admin degli immobili, con proprietario e valutazione più recente,
+ * letta con un'unica query (costruttore nella SELECT di ImmobileJpaRepository).
+ * I campi della valutazione sono null se l'immobile non ne ha.
+ *
+ * @param id Id dell'immobile
+ * @param dataRegistrazione Data di registrazione (ordinamento della lista)
+ * @param statoImmobile Nome dello stato dell'immobile
+ * @param nomeProprietario Nome e cognome del proprietario
+ * @param prezzoAI Prezzo AI della valutazione più recente
+ * @param prezzoUmano Prezzo umano della valutazione più recente
+ * @param dataValutazione Data della valutazione più recente
+ * @param descrizioneValutazione Descrizione della valutazione più recente
+ * @param statoValutazione Stato della valutazione più recente
+ * @param agenteAssegnato Nome e cognome dell'agente della valutazione più recente
+ */
+@JsonSerialize(using = ImmobileDettaglioRiga.Json.class)
+public record ImmobileDettaglioRiga(
+    Integer id,
+    String via,
+    String citta,
+    String cap,
+    String provincia,
+    String tipologia,
+    Integer metratura,
+    String condizioni,
+    Integer stanze,
+    Integer bagni,
+    String riscaldamento,
+    Integer piano,
+    Boolean ascensore,
+    Boolean garage,
+    Boolean giardino,
+    Boolean balcone,
+    Boolean terrazzo,
+    Boolean cantina,
+    Integer prezzo,
+    String descrizione,
+    LocalDateTime dataRegistrazione,
+    String statoImmobile,
+    String nomeProprietario,
+    String emailProprietario,
+    String telefonoProprietario,
+    Integer prezzoAI,
+    Integer prezzoUmano,
+    LocalDateTime dataValutazione,
+    String descrizioneValutazione,
+    String statoValutazione,
+    String agenteAssegnato
+) {
+
+    /** Campi JSON di GET /api/admin/immobili */
+    public static class Json extends SerializzatoreRiga<ImmobileDettaglioRiga> {
+        public Json() {
+            super(ImmobileDettaglioRiga.class, List.of(
+                campo("id", ImmobileDettaglioRiga::id),
+                campo("via", ImmobileDettaglioRiga::via),
+                campo("citta", ImmobileDettaglioRiga::citta),
+                campo("cap", ImmobileDettaglioRiga::cap),
+                campo("provincia", ImmobileDettaglioRiga::provincia),
+                campo("tipologia", ImmobileDettaglioRiga::tipologia),
+                campo("metratura", ImmobileDettaglioRiga::metratura),
+                campo("condizioni", ImmobileDettaglioRiga::condizioni),
+                campo("stanze", ImmobileDettaglioRiga::stanze),
+                campo("bagni", ImmobileDettaglioRiga::bagni),
+                campo("riscaldamento", ImmobileDettaglioRiga::riscaldamento),
+                campo("piano", ImmobileDettaglioRiga::piano),
+                campo("ascensore", ImmobileDettaglioRiga::ascensore),
+                campo("garage", ImmobileDettaglioRiga::garage),
+                campo("giardino", ImmobileDettaglioRiga::giardino),
+                campo("balcone", ImmobileDettaglioRiga::balcone),
+                campo("terrazzo", ImmobileDettaglioRiga::terrazzo),
+                campo("cantina", ImmobileDettaglioRiga::cantina),
+                campo("prezzo", ImmobileDettaglioRiga::prezzo),
+                campo("descrizione", ImmobileDettaglioRiga::descrizione),
+                campo("dataRegistrazione", ImmobileDettaglioRiga::dataRegistrazione),
+                campo("statoImmobile", ImmobileDettaglioRiga::statoImmobile),
+                campo("nomeProprietario", ImmobileDettaglioRiga::nomeProprietario),
+                campo("emailProprietario", ImmobileDettaglioRiga::emailProprietario),
+                campo("telefonoProprietario", ImmobileDettaglioRiga::telefonoProprietario),
+                campo("prezzoAI", ImmobileDettaglioRiga::prezzoAI),
+                campo("prezzoUmano", ImmobileDettaglioRiga::prezzoUmano),
+                campo("dataValutazione", ImmobileDettaglioRiga::dataValutazione),
+                campo("descrizioneValutazione", ImmobileDettaglioRiga::descrizioneValutazione),
+                campo("statoValutazione", ImmobileDettaglioRiga::statoValutazione),
+                campo("agenteAssegnato", ImmobileDettaglioRiga::agenteAssegnato)));
+        }
+    }
+}
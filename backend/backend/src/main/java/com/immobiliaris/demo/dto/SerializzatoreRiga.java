@@ -0,0 +1,72 @@
+package com.immobiliaris.demo.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Serializzatore JSON delle righe delle liste admin, con i campi fissati alla costruzione.
+ *
+ * I nomi dei campi sono codificati una volta sola e i valori letti con gli accessor del record:
+ * nessuna mappa per riga e nessuna introspezione da parte di Jackson. Stringhe, numeri e booleani
+ * sono scritti direttamente; le date passano dai serializzatori configurati in Jackson, quindi
+ * hanno lo stesso formato del resto dell'API.
+ *
+ * Jackson crea un'istanza per ObjectMapper (sottoclasse con costruttore senza argomenti,
+ * indicata in {@code @JsonSerialize(using = ...)} sul record).
+ *
+ * @param <T> Tipo della riga
+ */
+public abstract class SerializzatoreRiga<T> extends StdSerializer<T> {
+
+    /**
+     * Campo JSON di una riga
+     * @param nome Nome del campo, già codificato
+     * @param valore Lettura del valore dalla riga
+     */
+    public record Campo<T>(SerializedString nome, Function<T, ?> valore) {}
+
+    private final Campo<T>[] campi;
+
+    @SuppressWarnings("unchecked")
+    protected SerializzatoreRiga(Class<T> tipo, List<Campo<T>> campi) {
+        super(tipo);
+        this.campi = campi.toArray(new Campo[0]);
+    }
+
+    /**
+     * @param nome Nome del campo nel JSON
+     * @param valore Lettura del valore dalla riga
+     */
+    protected static <T> Campo<T> campo(String nome, Function<T, ?> valore) {
+        return new Campo<>(new SerializedString(nome), valore);
+    }
+
+    @Override
+    public void serialize(T riga, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(riga);
+        for (Campo<T> campo : campi) {
+            gen.writeFieldName(campo.nome());
+            Object valore = campo.valore().apply(riga);
+            if (valore == null) {
+                gen.writeNull();
+            } else if (valore instanceof String testo) {
+                gen.writeString(testo);
+            } else if (valore instanceof Integer numero) {
+                gen.writeNumber(numero.intValue());
+            } else if (valore instanceof Long numero) {
+                gen.writeNumber(numero.longValue());
+            } else if (valore instanceof Boolean flag) {
+                gen.writeBoolean(flag);
+            } else {
+                provider.defaultSerializeValue(valore, gen);
+            }
+        }
+        gen.writeEndObject();
+    }
+}
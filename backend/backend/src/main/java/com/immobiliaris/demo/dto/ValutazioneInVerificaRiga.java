@@ -0,0 +1,87 @@
+package com.immobiliaris.demo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Riga della lista admin delle valutazioni in verifica, con agente, immobile e proprietario,
+ * letta con un'unica query (costruttore nella SELECT di ValutazioneJpaRepository).
+ *
+ * descrizione è quella dell'immobile.
+ *
+ * @param id Id della valutazione
+ * @param dataValutazione Data della valutazione (ordinamento della lista)
+ * @param statoValutazione Nome dello stato
+ * @param nomeAgente Nome e cognome dell'agente
+ * @param descrizione Descrizione dell'immobile
+ * @param nomeProprietario Nome e cognome del proprietario
+ */
+@JsonSerialize(using = ValutazioneInVerificaRiga.Json.class)
+public record ValutazioneInVerificaRiga(
+    Integer id,
+    Integer prezzoAI,
+    Integer prezzoUmano,
+    LocalDateTime dataValutazione,
+    String statoValutazione,
+    String nomeAgente,
+    String emailAgente,
+    String tipo,
+    String via,
+    String citta,
+    String cap,
+    String provincia,
+    Integer metratura,
+    String condizioni,
+    Integer stanze,
+    Integer bagni,
+    Integer piano,
+    Boolean ascensore,
+    Boolean garage,
+    Boolean giardino,
+    Boolean balcone,
+    Boolean terrazzo,
+    Boolean cantina,
+    String riscaldamento,
+    String nomeProprietario,
+    String emailProprietario,
+    String telefonoProprietario,
+    String descrizione
+) {
+
+    /** Campi JSON di GET /api/admin/valutazioni/in-verifica */
+    public static class Json extends SerializzatoreRiga<ValutazioneInVerificaRiga> {
+        public Json() {
+            super(ValutazioneInVerificaRiga.class, List.of(
+                campo("id", ValutazioneInVerificaRiga::id),
+                campo("prezzoAI", ValutazioneInVerificaRiga::prezzoAI),
+                campo("prezzoUmano", ValutazioneInVerificaRiga::prezzoUmano),
+                campo("dataValutazione", ValutazioneInVerificaRiga::dataValutazione),
+                campo("statoValutazione", ValutazioneInVerificaRiga::statoValutazione),
+                campo("descrizione", ValutazioneInVerificaRiga::descrizione),
+                campo("nomeAgente", ValutazioneInVerificaRiga::nomeAgente),
+                campo("emailAgente", ValutazioneInVerificaRiga::emailAgente),
+                campo("tipo", ValutazioneInVerificaRiga::tipo),
+                campo("via", ValutazioneInVerificaRiga::via),
+                campo("citta", ValutazioneInVerificaRiga::citta),
+                campo("cap", ValutazioneInVerificaRiga::cap),
+                campo("provincia", ValutazioneInVerificaRiga::provincia),
+                campo("metratura", ValutazioneInVerificaRiga::metratura),
+                campo("condizioni", ValutazioneInVerificaRiga::condizioni),
+                campo("stanze", ValutazioneInVerificaRiga::stanze),
+                campo("bagni", ValutazioneInVerificaRiga::bagni),
+                campo("piano", ValutazioneInVerificaRiga::piano),
+                campo("ascensore", ValutazioneInVerificaRiga::ascensore),
+                campo("garage", ValutazioneInVerificaRiga::garage),
+                campo("giardino", ValutazioneInVerificaRiga::giardino),
+                campo("balcone", ValutazioneInVerificaRiga::balcone),
+                campo("terrazzo", ValutazioneInVerificaRiga::terrazzo),
+                campo("cantina", ValutazioneInVerificaRiga::cantina),
+                campo("riscaldamento", ValutazioneInVerificaRiga::riscaldamento),
+                campo("nomeProprietario", ValutazioneInVerificaRiga::nomeProprietario),
+                campo("emailProprietario", ValutazioneInVerificaRiga::emailProprietario),
+                campo("telefonoProprietario", ValutazioneInVerificaRiga::telefonoProprietario)));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.immobiliaris.demo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Riga della lista admin delle valutazioni solo_AI, con i dati dell'immobile e del proprietario,
+ * letta con un'unica query (costruttore nella SELECT di ValutazioneJpaRepository).
+ *
+ * Nel JSON dataValutazione è già formattata ("dd/MM/yyyy HH:mm"): se la valutazione non ha data
+ * si mostra quella di registrazione dell'immobile. descrizione è quella dell'immobile.
+ *
+ * @param id Id della valutazione
+ * @param prezzoAI Prezzo stimato dall'AI
+ * @param dataValutazione Data della valutazione (ordinamento della lista)
+ * @param dataRegistrazioneImmobile Data di registrazione dell'immobile
+ * @param descrizione Descrizione dell'immobile
+ * @param nomeProprietario Nome e cognome del proprietario
+ */
+@JsonSerialize(using = ValutazioneSoloAIRiga.Json.class)
+public record ValutazioneSoloAIRiga(
+    Integer id,
+    Integer prezzoAI,
+    LocalDateTime dataValutazione,
+    LocalDateTime dataRegistrazioneImmobile,
+    String tipo,
+    String via,
+    String citta,
+    String cap,
+    String provincia,
+    Integer metratura,
+    String condizioni,
+    Integer stanze,
+    Integer bagni,
+    Integer piano,
+    Boolean ascensore,
+    Boolean garage,
+    Boolean giardino,
+    Boolean balcone,
+    Boolean terrazzo,
+    Boolean cantina,
+    String riscaldamento,
+    String nomeProprietario,
+    String emailProprietario,
+    String telefonoProprietario,
+    String descrizione
+) {
+
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    /**
+     * @return Data da mostrare, formattata (null se mancano entrambe le date)
+     */
+    public String dataMostrata() {
+        LocalDateTime data = dataValutazione != null ? dataValutazione : dataRegistrazioneImmobile;
+        return data != null ? data.format(FORMATO_DATA) : null;
+    }
+
+    /** Campi JSON di GET /api/admin/valutazioni/solo-ai */
+    public static class Json extends SerializzatoreRiga<ValutazioneSoloAIRiga> {
+        public Json() {
+            super(ValutazioneSoloAIRiga.class, List.of(
+                campo("id", ValutazioneSoloAIRiga::id),
+                campo("prezzoAI", ValutazioneSoloAIRiga::prezzoAI),
+                campo("dataValutazione", ValutazioneSoloAIRiga::dataMostrata),
+                campo("descrizione", ValutazioneSoloAIRiga::descrizione),
+                campo("tipo", ValutazioneSoloAIRiga::tipo),
+                campo("via", ValutazioneSoloAIRiga::via),
+                campo("citta", ValutazioneSoloAIRiga::citta),
+                campo("cap", ValutazioneSoloAIRiga::cap),
+                campo("provincia", ValutazioneSoloAIRiga::provincia),
+                campo("metratura", ValutazioneSoloAIRiga::metratura),
+                campo("condizioni", ValutazioneSoloAIRiga::condizioni),
+                campo("stanze", ValutazioneSoloAIRiga::stanze),
+                campo("bagni", ValutazioneSoloAIRiga::bagni),
+                campo("piano", ValutazioneSoloAIRiga::piano),
+                campo("ascensore", ValutazioneSoloAIRiga::ascensore),
+                campo("garage", ValutazioneSoloAIRiga::garage),
+                campo("giardino", ValutazioneSoloAIRiga::giardino),
+                campo("balcone", ValutazioneSoloAIRiga::balcone),
+                campo("terrazzo", ValutazioneSoloAIRiga::terrazzo),
+                campo("cantina", ValutazioneSoloAIRiga::cantina),
+                campo("riscaldamento", ValutazioneSoloAIRiga::riscaldamento),
+                campo("nomeProprietario", ValutazioneSoloAIRiga::nomeProprietario),
+                campo("emailProprietario", ValutazioneSoloAIRiga::emailProprietario),
+                campo("telefonoProprietario", ValutazioneSoloAIRiga::telefonoProprietario)));
+        }
+    }
+}
@@ -19,10 +19,14 @@
 package com.immobiliaris.demo.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import com.immobiliaris.demo.service.DashboardEntityListener;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "Contratti")
+@EntityListeners(DashboardEntityListener.class)
 public class Contratto {
     
     /**
@@ -99,6 +103,7 @@ public class Contratto {
      * @see StatoContratto
      */
     @ManyToOne
+    @Fetch(FetchMode.SELECT) // dalla cache di secondo livello, senza join
     @JoinColumn(name = "Id_stato_contratto")
     private StatoContratto statoContratto;
 
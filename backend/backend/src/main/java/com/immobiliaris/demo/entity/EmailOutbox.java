@@ -0,0 +1,200 @@
+/**
+ * Entity EmailOutbox - Email in uscita accodata per l'invio asincrono.
+ *
+ * Il messaggio viene salvato già composto (oggetto, HTML ed eventuale allegato
+ * PDF) nella stessa richiesta che lo genera; l'invio SMTP avviene dopo, in
+ * background, tramite EmailOutboxService.
+ *
+ * Ciclo di vita dello stato:
+ * 1. in_coda: in attesa di invio (o di un nuovo tentativo dopo un errore)
+ * 2. in_invio: preso in carico da un worker, fino alla scadenza in prossimoTentativo
+ * 3. inviata: consegnata al server SMTP
+ * 4. fallita: tentativi esauriti (dead letter), rimessa in coda solo manualmente
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "Email_outbox")
+public class EmailOutbox {
+
+    public static final String IN_CODA = "in_coda";
+    public static final String IN_INVIO = "in_invio";
+    public static final String INVIATA = "inviata";
+    public static final String FALLITA = "fallita";
+
+    /**
+     * Identificativo univoco del messaggio (Primary Key).
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "Id_email")
+    private Long id;
+
+    /**
+     * Indirizzo email del destinatario.
+     */
+    @Column(name = "Destinatario", nullable = false, length = 100)
+    private String destinatario;
+
+    @Column(name = "Oggetto", nullable = false)
+    private String oggetto;
+
+    /**
+     * Corpo HTML; il logo è referenziato come cid:logoImage e allegato inline all'invio.
+     */
+    @Lob
+    @Column(name = "Corpo_html", nullable = false)
+    private String corpoHtml;
+
+    /**
+     * Nome file dell'allegato PDF, null se il messaggio non ha allegati.
+     */
+    @Column(name = "Nome_allegato")
+    private String nomeAllegato;
+
+    @Lob
+    @Column(name = "Allegato")
+    private byte[] allegato;
+
+    /**
+     * Stato corrente: in_coda, in_invio, inviata, fallita.
+     */
+    @Column(name = "Stato", nullable = false, length = 20)
+    private String stato;
+
+    /**
+     * Numero di tentativi di invio già effettuati.
+     */
+    @Column(name = "Tentativi", nullable = false)
+    private int tentativi;
+
+    /**
+     * Istante dal quale il messaggio può essere (ri)inviato; per i messaggi in_invio,
+     * scadenza della presa in carico.
+     */
+    @Column(name = "Prossimo_tentativo", nullable = false)
+    private LocalDateTime prossimoTentativo;
+
+    /**
+     * Messaggio dell'ultimo errore SMTP, null se non ci sono stati errori.
+     */
+    @Column(name = "Ultimo_errore", length = 1000)
+    private String ultimoErrore;
+
+    @Column(name = "Data_creazione", nullable = false)
+    private LocalDateTime dataCreazione;
+
+    @Column(name = "Data_invio")
+    private LocalDateTime dataInvio;
+
+    public EmailOutbox() {}
+
+    public EmailOutbox(String destinatario, String oggetto, String corpoHtml) {
+        this.destinatario = destinatario;
+        this.oggetto = oggetto;
+        this.corpoHtml = corpoHtml;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDestinatario() {
+        return destinatario;
+    }
+
+    public void setDestinatario(String destinatario) {
+        this.destinatario = destinatario;
+    }
+
+    public String getOggetto() {
+        return oggetto;
+    }
+
+    public void setOggetto(String oggetto) {
+        this.oggetto = oggetto;
+    }
+
+    public String getCorpoHtml() {
+        return corpoHtml;
+    }
+
+    public void setCorpoHtml(String corpoHtml) {
+        this.corpoHtml = corpoHtml;
+    }
+
+    public String getNomeAllegato() {
+        return nomeAllegato;
+    }
+
+    public void setNomeAllegato(String nomeAllegato) {
+        this.nomeAllegato = nomeAllegato;
+    }
+
+    public byte[] getAllegato() {
+        return allegato;
+    }
+
+    public void setAllegato(byte[] allegato) {
+        this.allegato = allegato;
+    }
+
+    public String getStato() {
+        return stato;
+    }
+
+    public void setStato(String stato) {
+        this.stato = stato;
+    }
+
+    public int getTentativi() {
+        return tentativi;
+    }
+
+    public void setTentativi(int tentativi) {
+        this.tentativi = tentativi;
+    }
+
+    public LocalDateTime getProssimoTentativo() {
+        return prossimoTentativo;
+    }
+
+    public void setProssimoTentativo(LocalDateTime prossimoTentativo) {
+        this.prossimoTentativo = prossimoTentativo;
+    }
+
+    public String getUltimoErrore() {
+        return ultimoErrore;
+    }
+
+    public void setUltimoErrore(String ultimoErrore) {
+        this.ultimoErrore = ultimoErrore;
+    }
+
+    public LocalDateTime getDataCreazione() {
+        return dataCreazione;
+    }
+
+    public void setDataCreazione(LocalDateTime dataCreazione) {
+        this.dataCreazione = dataCreazione;
+    }
+
+    public LocalDateTime getDataInvio() {
+        return dataInvio;
+    }
+
+    public void setDataInvio(LocalDateTime dataInvio) {
+        this.dataInvio = dataInvio;
+    }
+}
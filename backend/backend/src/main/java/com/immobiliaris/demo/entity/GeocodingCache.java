@@ -0,0 +1,112 @@
+/**
+ * Entity GeocodingCache - Risposta Geoapify salvata per indirizzo.
+ *
+ * La chiave è lo SHA-256 del testo dell'indirizzo normalizzato (minuscolo, spazi
+ * compattati); la risposta è il JSON restituito da Geoapify, riletto a ogni uso.
+ * Le risposte senza risultati (negative) scadono prima di quelle con risultati.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "Geocoding_cache")
+public class GeocodingCache {
+
+    /**
+     * SHA-256 esadecimale dell'indirizzo normalizzato (Primary Key).
+     */
+    @Id
+    @Column(name = "Chiave", length = 64)
+    private String chiave;
+
+    /**
+     * Indirizzo normalizzato, per consultazione.
+     */
+    @Column(name = "Indirizzo", nullable = false, length = 500)
+    private String indirizzo;
+
+    /**
+     * Corpo JSON della risposta Geoapify.
+     */
+    @Lob
+    @Column(name = "Risposta", nullable = false)
+    private String risposta;
+
+    /**
+     * true se la risposta contiene almeno un risultato.
+     */
+    @Column(name = "Positiva", nullable = false)
+    private boolean positiva;
+
+    @Column(name = "Scadenza", nullable = false)
+    private LocalDateTime scadenza;
+
+    @Column(name = "Data_creazione", nullable = false)
+    private LocalDateTime dataCreazione;
+
+    public GeocodingCache() {}
+
+    public GeocodingCache(String chiave, String indirizzo, String risposta, boolean positiva,
+                          LocalDateTime scadenza, LocalDateTime dataCreazione) {
+        this.chiave = chiave;
+        this.indirizzo = indirizzo;
+        this.risposta = risposta;
+        this.positiva = positiva;
+        this.scadenza = scadenza;
+        this.dataCreazione = dataCreazione;
+    }
+
+    public String getChiave() {
+        return chiave;
+    }
+
+    public void setChiave(String chiave) {
+        this.chiave = chiave;
+    }
+
+    public String getIndirizzo() {
+        return indirizzo;
+    }
+
+    public void setIndirizzo(String indirizzo) {
+        this.indirizzo = indirizzo;
+    }
+
+    public String getRisposta() {
+        return risposta;
+    }
+
+    public void setRisposta(String risposta) {
+        this.risposta = risposta;
+    }
+
+    public boolean isPositiva() {
+        return positiva;
+    }
+
+    public void setPositiva(boolean positiva) {
+        this.positiva = positiva;
+    }
+
+    public LocalDateTime getScadenza() {
+        return scadenza;
+    }
+
+    public void setScadenza(LocalDateTime scadenza) {
+        this.scadenza = scadenza;
+    }
+
+    public LocalDateTime getDataCreazione() {
+        return dataCreazione;
+    }
+
+    public void setDataCreazione(LocalDateTime dataCreazione) {
+        this.dataCreazione = dataCreazione;
+    }
+}
@@ -15,12 +15,16 @@
 package com.immobiliaris.demo.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import com.immobiliaris.demo.service.DashboardEntityListener;
 import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 @Entity
 @Table(name = "Immobili")
+@EntityListeners(DashboardEntityListener.class)
 public class Immobile {
     
     /**
@@ -115,6 +119,7 @@ public class Immobile {
      * @see StatoImmobile
      */
     @ManyToOne
+    @Fetch(FetchMode.SELECT) // dalla cache di secondo livello, senza join
     @JoinColumn(name = "Id_stato_immobile")
     private StatoImmobile statoImmobile;
     
@@ -1,9 +1,17 @@
 package com.immobiliaris.demo.entity;
 
 import jakarta.persistence.*;
+import com.immobiliaris.demo.service.StatoEntityListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 
 @Entity
+@Cacheable
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 @Table(name = "Stati_contratto")
+@EntityListeners(StatoEntityListener.class)
 public class StatoContratto {
     
     @Id
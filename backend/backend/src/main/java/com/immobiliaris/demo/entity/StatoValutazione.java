@@ -10,6 +10,8 @@
  * - Ogni Valutazione ha un riferimento a StatoValutazione tramite @ManyToOne
  * - Determina il flusso di lavoro della valutazione
  * - Non può essere modificato direttamente dall'utente (solo da logica di business)
+ * - In cache di secondo livello in sola lettura (vedi HibernateCacheConfig)
+ * - Il codice lo risolve per codice da RegistroStati, senza query
  * 
  * @author Sistema IMMOBILIARIS
  * @version 1.0
@@ -20,9 +22,17 @@
 package com.immobiliaris.demo.entity;
 
 import jakarta.persistence.*;
+import com.immobiliaris.demo.service.StatoEntityListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 
 @Entity
+@Cacheable
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 @Table(name = "Stati_valutazione")
+@EntityListeners(StatoEntityListener.class)
 public class StatoValutazione {
     
     /**
@@ -13,6 +13,9 @@
 package com.immobiliaris.demo.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import com.immobiliaris.demo.service.DashboardEntityListener;
 import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
 import lombok.AllArgsConstructor;
@@ -22,6 +25,7 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 
 @Entity
 @Table(name = "Utenti")
+@EntityListeners(DashboardEntityListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -126,6 +130,7 @@ public class User {
      * @see TipoUtente
      */
     @ManyToOne(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SELECT) // dalla cache di secondo livello, senza join
     @JoinColumn(name = "Id_tipo", referencedColumnName = "Id_tipo")
     private TipoUtente tipoUtente;
 }
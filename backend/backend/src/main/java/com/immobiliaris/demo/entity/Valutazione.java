@@ -20,11 +20,15 @@
 package com.immobiliaris.demo.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import com.immobiliaris.demo.service.DashboardEntityListener;
 import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 @Entity
 @Table(name = "Valutazioni")
+@EntityListeners(DashboardEntityListener.class)
 public class Valutazione {
     
     /**
@@ -76,6 +80,7 @@ public class Valutazione {
      * @see StatoValutazione
      */
     @ManyToOne
+    @Fetch(FetchMode.SELECT) // dalla cache di secondo livello, senza join
     @JoinColumn(name = "Id_stato_valutazione")
     private StatoValutazione statoValutazione;
     
@@ -1,9 +1,16 @@
 package com.immobiliaris.demo.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import com.immobiliaris.demo.service.ZonaEntityListener;
 
 @Entity
+@Cacheable
+// Tabella quasi statica ma modificabile (ZonaEntityListener): le modifiche invalidano la voce in cache
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Table(name = "zone")
+@EntityListeners(ZonaEntityListener.class)
 public class Zona {
     
     @Id
@@ -0,0 +1,22 @@
+package com.immobiliaris.demo.repository;
+
+/**
+ * Proiezione per conteggi raggruppati per mese (GROUP BY anno, mese).
+ * Usata dalle query che alimentano le serie mensili della dashboard.
+ *
+ * @see com.immobiliaris.demo.service.SerieMensile
+ */
+public interface ConteggioMensile {
+
+    /** Anno del gruppo */
+    Integer getAnno();
+
+    /** Mese del gruppo (1-12) */
+    Integer getMese();
+
+    /** Numero di righe nel mese */
+    Long getNumero();
+
+    /** Somma di un importo nel mese (0 se la query non lo calcola) */
+    Long getTotale();
+}
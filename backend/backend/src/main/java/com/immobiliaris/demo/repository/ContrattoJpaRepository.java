@@ -1,43 +1,176 @@
 package com.immobiliaris.demo.repository;
 
+import com.immobiliaris.demo.dto.ContrattoRiga;
 import com.immobiliaris.demo.entity.Contratto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ContrattoJpaRepository extends JpaRepository<Contratto, Integer> {
     
     /**
-     * Conta i contratti con uno specifico stato
-     * Spring genera automaticamente: SELECT COUNT(*) WHERE statoContratto.nome = ?
+     * Conta i contratti con uno specifico stato (id da {@link com.immobiliaris.demo.service.RegistroStati})
+     * Spring genera automaticamente: SELECT COUNT(*) WHERE Id_stato_contratto = ?
      */
-    Long countByStatoContrattoNome(String nome);
+    Long countByStatoContrattoId(Integer idStato);
     
     /**
      * Conta i contratti di un agente specifico con uno specifico stato
-     * Spring genera automaticamente la query con AND
+     * WHERE Id_stato_contratto = ? AND Id_agente = ? (idx_contratti_stato_agente); con id stato null conta 0
      */
-    Long countByStatoContrattoNomeAndAgenteIdUtente(String nome, Integer agenteIdUtente);
+    @Query("SELECT COUNT(c) FROM Contratto c WHERE c.statoContratto.id = :idStato AND c.agente.idUtente = :agenteId")
+    Long countByStatoContrattoIdAndAgenteIdUtente(@Param("idStato") Integer idStato, @Param("agenteId") Long agenteIdUtente);
     
     /**
      * Conta i contratti conclusi nell'ultimo mese usando Data_inizio
-     * Spring genera automaticamente: WHERE nome = ? AND dataInizio >= ?
+     * Spring genera automaticamente: WHERE Id_stato_contratto = ? AND dataInizio >= ?
      */
-    Long countByStatoContrattoNomeAndDataInizioAfter(String nome, LocalDateTime data);
+    Long countByStatoContrattoIdAndDataInizioAfter(Integer idStato, LocalDateTime data);
     
     /**
      * Trova tutti i contratti con uno specifico stato
      */
-    List<Contratto> findByStatoContrattoNome(String nome);
+    List<Contratto> findByStatoContrattoId(Integer idStato);
+
+    /**
+     * SELECT delle righe della lista admin dei contratti ({@link ContrattoRiga}):
+     * immobile, proprietario, agente e valutazione in join, solo le colonne mostrate
+     */
+    String RIGA_CONTRATTO = "SELECT new com.immobiliaris.demo.dto.ContrattoRiga(c.id, c.numeroContratto, " +
+           "c.dataInvio, c.dataRicezione, c.dataInizio, c.dataFine, v.prezzoUmano, i.tipologia, " +
+           "CASE WHEN p.idUtente IS NULL THEN NULL ELSE CONCAT(p.nome, ' ', p.cognome) END, " +
+           "CASE WHEN a.idUtente IS NULL THEN NULL ELSE CONCAT(a.nome, ' ', a.cognome) END) " +
+           "FROM Contratto c LEFT JOIN c.valutazione v " +
+           "LEFT JOIN c.immobile i LEFT JOIN i.proprietario p LEFT JOIN c.agente a ";
+
+    /**
+     * Pagina di contratti in uno stato, dal più recente per Data_fine, subito dopo la posizione (data, id).
+     * Keyset su idx_contratti_stato_fine: legge solo le righe della pagina, a ogni profondità.
+     * Il limite ridondante "data <= :data" è il range sull'indice (l'OR da solo non lo delimita).
+     * Solo contratti con Data_fine: quelli senza seguono con {@link #findPaginaByStatoSenzaDataFine}.
+     * Le righe sono costruite direttamente dalla query, senza caricare le entità
+     *
+     * @param idStato Id dello stato (es. chiuso, dal registro degli stati)
+     * @param data Data_fine dell'ultimo contratto già mostrato
+     * @param dopoId Id dell'ultimo contratto già mostrato (a parità di data)
+     * @param pageable Solo la dimensione della pagina (sempre pagina 0)
+     */
+    @Query(RIGA_CONTRATTO +
+           "WHERE c.statoContratto.id = :idStato AND c.dataFine IS NOT NULL " +
+           "AND c.dataFine <= :data AND (c.dataFine < :data OR (c.dataFine = :data AND c.id < :dopoId)) " +
+           "ORDER BY c.dataFine DESC, c.id DESC")
+    List<ContrattoRiga> findPaginaByStatoConDataFine(@Param("idStato") Integer idStato,
+                                                     @Param("data") LocalDateTime data,
+                                                     @Param("dopoId") Long dopoId,
+                                                     Pageable pageable);
+
+    /**
+     * Pagina di contratti senza Data_fine in uno stato, per id decrescente, con id minore di dopoId
+     */
+    @Query(RIGA_CONTRATTO +
+           "WHERE c.statoContratto.id = :idStato AND c.dataFine IS NULL AND c.id < :dopoId " +
+           "ORDER BY c.id DESC")
+    List<ContrattoRiga> findPaginaByStatoSenzaDataFine(@Param("idStato") Integer idStato,
+                                                       @Param("dopoId") Long dopoId,
+                                                       Pageable pageable);
     
+    /**
+     * Tutti i contratti in ordine di id, letti dal database a blocchi di 500 righe mentre si scorre lo stream
+     * (esportazione CSV/NDJSON). Entità in sola lettura, con stato, parti, immobile e valutazione
+     * nella stessa query. Va consumato dentro una transazione e chiuso (try-with-resources)
+     */
+    @EntityGraph(attributePaths = {"statoContratto", "agente", "agente.tipoUtente", "utente", "utente.tipoUtente",
+        "immobile", "immobile.statoImmobile", "immobile.proprietario", "immobile.proprietario.tipoUtente",
+        "valutazione", "valutazione.statoValutazione", "valutazione.agente", "valutazione.agente.tipoUtente"})
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT c FROM Contratto c ORDER BY c.id")
+    Stream<Contratto> streamPerEsportazione();
+
     /**
      * Trova il contratto associato a una specifica valutazione
      * Spring genera automaticamente: WHERE id_valutazione = ?
      */
     java.util.Optional<Contratto> findByValutazioneId(Integer valutazioneId);
 
+    /**
+     * Proiezione dei contratti di un agente raggruppati per stato
+     */
+    interface ContrattiPerStato {
+        /** Nome dello stato contratto (null se il contratto non ha stato) */
+        String getStato();
+        /** Numero di contratti nello stato */
+        Long getNumero();
+        /** Numero di immobili distinti coinvolti */
+        Long getImmobili();
+        /** Somma dei prezzi degli immobili */
+        Long getValoreImmobili();
+    }
+
+    /**
+     * Conta i contratti di un agente per stato, con immobili distinti e valore totale
+     * Una sola query aggregata: GROUP BY stato contratto
+     */
+    @Query("SELECT s.nome AS stato, COUNT(c) AS numero, COUNT(DISTINCT i.id) AS immobili, " +
+           "COALESCE(SUM(i.prezzo), 0) AS valoreImmobili " +
+           "FROM Contratto c LEFT JOIN c.statoContratto s LEFT JOIN c.immobile i " +
+           "WHERE c.agente.idUtente = :agenteId " +
+           "GROUP BY s.nome")
+    List<ContrattiPerStato> countPerStatoByAgente(@Param("agenteId") Long agenteId);
+
+    /**
+     * Conta i contratti di un agente in uno stato, raggruppati per mese di Data_fine
+     * Una sola query per tutta la serie: GROUP BY anno, mese (idx_contratti_agente_stato_fine)
+     *
+     * @param agenteId ID dell'agente
+     * @param idStato Id dello stato (es. chiuso, dal registro degli stati)
+     * @param da Inizio intervallo (incluso)
+     * @param a Fine intervallo (escluso)
+     */
+    @Query("SELECT YEAR(c.dataFine) AS anno, MONTH(c.dataFine) AS mese, " +
+           "COUNT(c) AS numero, COALESCE(SUM(i.prezzo), 0) AS totale " +
+           "FROM Contratto c LEFT JOIN c.immobile i " +
+           "WHERE c.agente.idUtente = :agenteId AND c.statoContratto.id = :idStato " +
+           "AND c.dataFine >= :da AND c.dataFine < :a " +
+           "GROUP BY YEAR(c.dataFine), MONTH(c.dataFine)")
+    List<ConteggioMensile> countPerMeseFineByAgenteAndStato(@Param("agenteId") Long agenteId,
+                                                            @Param("idStato") Integer idStato,
+                                                            @Param("da") LocalDateTime da,
+                                                            @Param("a") LocalDateTime a);
+
+    /**
+     * Id dei contratti da esportare, a blocchi in ordine di id (keyset: id > dopoId)
+     *
+     * @param idStati Id degli stati (es. attivo e chiuso, dal registro degli stati), non vuoto
+     * @param da Data inizio minima (inclusa)
+     * @param a Data inizio massima (esclusa)
+     */
+    @Query("SELECT c.id FROM Contratto c " +
+           "WHERE c.statoContratto.id IN :idStati AND c.dataInizio >= :da AND c.dataInizio < :a AND c.id > :dopoId " +
+           "ORDER BY c.id")
+    List<Long> findIdPerEsportazione(@Param("idStati") List<Integer> idStati,
+                                     @Param("da") LocalDateTime da,
+                                     @Param("a") LocalDateTime a,
+                                     @Param("dopoId") Long dopoId,
+                                     Pageable pageable);
 
+    /**
+     * Contratti con tutti i dati stampati nel PDF (parti, immobile, valutazione) in una sola query
+     */
+    @Query("SELECT c FROM Contratto c LEFT JOIN FETCH c.utente LEFT JOIN FETCH c.agente " +
+           "LEFT JOIN FETCH c.immobile LEFT JOIN FETCH c.valutazione WHERE c.id IN :ids ORDER BY c.id")
+    List<Contratto> findConDatiPdf(@Param("ids") List<Long> ids);
 }
@@ -0,0 +1,105 @@
+package com.immobiliaris.demo.repository;
+
+import com.immobiliaris.demo.entity.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Coda delle email in uscita.
+ *
+ * I cambi di stato sono UPDATE mirati: non riscrivono corpo e allegato
+ * e la presa in carico (in_coda -> in_invio) è atomica anche con più istanze.
+ */
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /** Proiezione per i conteggi per stato */
+    interface ConteggioStato {
+        String getStato();
+        Long getNumero();
+    }
+
+    /** Proiezione senza corpo né allegato, per le liste amministrative */
+    interface Sintesi {
+        Long getId();
+        String getDestinatario();
+        String getOggetto();
+        String getStato();
+        Integer getTentativi();
+        String getUltimoErrore();
+        LocalDateTime getDataCreazione();
+        LocalDateTime getProssimoTentativo();
+    }
+
+    /**
+     * Id dei messaggi pronti per l'invio, i più vecchi prima
+     * (indice idx_email_outbox_stato_tentativo)
+     */
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.stato = 'in_coda' AND e.prossimoTentativo <= :adesso " +
+           "ORDER BY e.prossimoTentativo")
+    List<Long> findIdDaInviare(@Param("adesso") LocalDateTime adesso, Pageable pageable);
+
+    /**
+     * Prende in carico un messaggio fino a {@code scadenza}: 1 se riuscito, 0 se già preso da un altro worker
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.stato = 'in_invio', e.prossimoTentativo = :scadenza " +
+           "WHERE e.id = :id AND e.stato = 'in_coda'")
+    int prenota(@Param("id") Long id, @Param("scadenza") LocalDateTime scadenza);
+
+    /**
+     * Registra un invio riuscito: 0 se il messaggio non è più in_invio (presa in carico
+     * scaduta e ripresa da un altro worker)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.stato = 'inviata', e.tentativi = :tentativi, e.dataInvio = :dataInvio, " +
+           "e.ultimoErrore = NULL WHERE e.id = :id AND e.stato = 'in_invio'")
+    int segnaInviata(@Param("id") Long id, @Param("tentativi") int tentativi, @Param("dataInvio") LocalDateTime dataInvio);
+
+    /**
+     * Registra un invio fallito: nuovo tentativo (in_coda) o dead letter (fallita).
+     * 0 se il messaggio non è più in_invio, come {@link #segnaInviata}
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.stato = :stato, e.tentativi = :tentativi, e.prossimoTentativo = :prossimoTentativo, " +
+           "e.ultimoErrore = :errore WHERE e.id = :id AND e.stato = 'in_invio'")
+    int segnaErrore(@Param("id") Long id, @Param("stato") String stato, @Param("tentativi") int tentativi,
+                    @Param("prossimoTentativo") LocalDateTime prossimoTentativo, @Param("errore") String errore);
+
+    /**
+     * Rimette in coda i messaggi in_invio con la presa in carico scaduta (istanza fermata
+     * durante l'invio). Quelli ancora in carico a un'istanza attiva non vengono toccati.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.stato = 'in_coda' WHERE e.stato = 'in_invio' AND e.prossimoTentativo <= :adesso")
+    int ripristinaInInvio(@Param("adesso") LocalDateTime adesso);
+
+    /**
+     * Rimette in coda un messaggio fallito azzerando i tentativi
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.stato = 'in_coda', e.tentativi = 0, e.prossimoTentativo = :adesso " +
+           "WHERE e.id = :id AND e.stato = 'fallita'")
+    int riaccoda(@Param("id") Long id, @Param("adesso") LocalDateTime adesso);
+
+    @Query("SELECT e.stato AS stato, COUNT(e) AS numero FROM EmailOutbox e GROUP BY e.stato")
+    List<ConteggioStato> countPerStato();
+
+    @Query("SELECT e.id AS id, e.destinatario AS destinatario, e.oggetto AS oggetto, e.stato AS stato, " +
+           "e.tentativi AS tentativi, e.ultimoErrore AS ultimoErrore, e.dataCreazione AS dataCreazione, " +
+           "e.prossimoTentativo AS prossimoTentativo FROM EmailOutbox e WHERE e.stato = :stato ORDER BY e.id DESC")
+    List<Sintesi> findSintesiByStato(@Param("stato") String stato, Pageable pageable);
+}
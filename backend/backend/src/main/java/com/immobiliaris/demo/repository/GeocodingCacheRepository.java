@@ -0,0 +1,26 @@
+package com.immobiliaris.demo.repository;
+
+import com.immobiliaris.demo.entity.GeocodingCache;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cache persistente delle risposte Geoapify.
+ */
+@Repository
+public interface GeocodingCacheRepository extends JpaRepository<GeocodingCache, String> {
+
+    /**
+     * Cancella le risposte scadute (indice idx_geocoding_cache_scadenza)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM GeocodingCache g WHERE g.scadenza < :adesso")
+    int deleteScadute(@Param("adesso") LocalDateTime adesso);
+}
@@ -1,38 +1,148 @@
 package com.immobiliaris.demo.repository;
 
+import com.immobiliaris.demo.dto.ImmobileDettaglioRiga;
 import com.immobiliaris.demo.entity.Immobile;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ImmobileJpaRepository extends JpaRepository<Immobile, Integer> {
     
     /**
-     * Conta gli immobili con uno specifico stato
-     * Spring genera automaticamente: SELECT COUNT(*) WHERE statoImmobile.nome = ?
+     * Conta gli immobili con uno specifico stato (id da {@link com.immobiliaris.demo.service.RegistroStati})
+     * Spring genera automaticamente: SELECT COUNT(*) WHERE Id_stato_immobile = ?
      */
-    Long countByStatoImmobileNome(String nome);
+    Long countByStatoImmobileId(Integer idStato);
     
     /**
      * Ottiene gli ultimi 10 immobili ordinati per data inserimento
      * Spring capisce automaticamente "OrderBy" e "Desc"
+     * Proprietario e stato vengono caricati nella stessa query (niente select per riga)
      */
+    @EntityGraph(attributePaths = {"proprietario", "proprietario.tipoUtente", "statoImmobile"})
     List<Immobile> findTop10ByOrderByDataRegistrazioneDesc();
+
+    /**
+     * Pagina di immobili dal più recente (a parità di data, id decrescente), per le prossime
+     * attività della dashboard agente. Proprietario e stato nella stessa query.
+     * Gli immobili senza data (solo righe inserite fuori dall'applicazione) vengono per ultimi
+     */
+    @EntityGraph(attributePaths = {"proprietario", "proprietario.tipoUtente", "statoImmobile"})
+    List<Immobile> findByOrderByDataRegistrazioneDescIdDesc(Pageable pageable);
     
     /**
      * Ottiene immobili con paginazione ordinati per ID decrescente
      * Spring usa automaticamente il Pageable per paginazione e ordinamento
+     * Proprietario e stato vengono caricati nella stessa query (niente select per riga)
      */
+    @EntityGraph(attributePaths = {"proprietario", "proprietario.tipoUtente", "statoImmobile"})
     Page<Immobile> findAllByOrderByIdDesc(Pageable pageable);
+
+    /**
+     * SELECT delle righe della lista admin degli immobili ({@link ImmobileDettaglioRiga}):
+     * stato, proprietario e valutazione più recente (con stato e agente) in join, solo le colonne mostrate.
+     * La valutazione più recente è quella con data maggiore, a parità di data l'id più alto
+     * (idx_valutazioni_immobile_data)
+     */
+    String RIGA_IMMOBILE = "SELECT new com.immobiliaris.demo.dto.ImmobileDettaglioRiga(i.id, i.via, i.citta, i.cap, " +
+           "i.provincia, i.tipologia, i.metratura, i.condizioni, i.stanze, i.bagni, i.riscaldamento, i.piano, " +
+           "i.ascensore, i.garage, i.giardino, i.balcone, i.terrazzo, i.cantina, i.prezzo, i.descrizione, " +
+           "i.dataRegistrazione, si.nome, " +
+           "CASE WHEN p.idUtente IS NULL THEN NULL ELSE CONCAT(p.nome, ' ', p.cognome) END, p.email, p.telefono, " +
+           "v.prezzoAI, v.prezzoUmano, v.dataValutazione, v.descrizione, sv.nome, " +
+           "CASE WHEN a.idUtente IS NULL THEN NULL ELSE CONCAT(a.nome, ' ', a.cognome) END) " +
+           "FROM Immobile i LEFT JOIN i.statoImmobile si LEFT JOIN i.proprietario p " +
+           "LEFT JOIN Valutazione v ON v.id = (SELECT u.id FROM Valutazione u WHERE u.immobile = i " +
+           "ORDER BY u.dataValutazione DESC NULLS LAST, u.id DESC LIMIT 1) " +
+           "LEFT JOIN v.statoValutazione sv LEFT JOIN v.agente a ";
+
+    /**
+     * Pagina di immobili dal più recente, subito dopo la posizione (dataRegistrazione, id).
+     * Keyset su idx_immobili_data_registrazione: legge solo le righe della pagina, a ogni profondità.
+     * Il limite ridondante "data <= :data" è il range sull'indice (l'OR da solo non lo delimita).
+     * Solo immobili con data: quelli senza seguono con {@link #findPaginaSenzaData}.
+     * Le righe sono costruite direttamente dalla query, senza caricare le entità
+     *
+     * @param data Data di registrazione dell'ultimo immobile già mostrato
+     * @param dopoId Id dell'ultimo immobile già mostrato (a parità di data)
+     * @param pageable Solo la dimensione della pagina (sempre pagina 0)
+     */
+    @Query(RIGA_IMMOBILE +
+           "WHERE i.dataRegistrazione IS NOT NULL " +
+           "AND i.dataRegistrazione <= :data AND (i.dataRegistrazione < :data OR (i.dataRegistrazione = :data AND i.id < :dopoId)) " +
+           "ORDER BY i.dataRegistrazione DESC, i.id DESC")
+    List<ImmobileDettaglioRiga> findPaginaConData(@Param("data") LocalDateTime data,
+                                                  @Param("dopoId") Integer dopoId,
+                                                  Pageable pageable);
+
+    /**
+     * Pagina di immobili senza data di registrazione, per id decrescente, con id minore di dopoId
+     */
+    @Query(RIGA_IMMOBILE + "WHERE i.dataRegistrazione IS NULL AND i.id < :dopoId ORDER BY i.id DESC")
+    List<ImmobileDettaglioRiga> findPaginaSenzaData(@Param("dopoId") Integer dopoId, Pageable pageable);
     
+    /**
+     * Tutti gli immobili in ordine di id, letti dal database a blocchi di 500 righe mentre si scorre lo stream
+     * (esportazione CSV/NDJSON). Entità in sola lettura, con proprietario e stato nella stessa query.
+     * Va consumato dentro una transazione e chiuso (try-with-resources)
+     */
+    @EntityGraph(attributePaths = {"proprietario", "proprietario.tipoUtente", "statoImmobile"})
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT i FROM Immobile i ORDER BY i.id")
+    Stream<Immobile> streamPerEsportazione();
+
     /**
      * Conta gli immobili registrati dopo una certa data
      * Spring genera automaticamente: SELECT COUNT(*) WHERE dataRegistrazione > ?
      */
     Long countByDataRegistrazioneAfter(LocalDateTime dataLimite);
+
+    /**
+     * Proiezione degli immobili raggruppati per stato
+     */
+    interface ImmobiliPerStato {
+        /** Nome dello stato immobile (null se l'immobile non ha stato) */
+        String getStato();
+        /** Numero di immobili nello stato */
+        Long getNumero();
+    }
+
+    /**
+     * Conta gli immobili di un proprietario per stato
+     * Una sola query aggregata: GROUP BY stato immobile
+     */
+    @Query("SELECT s.nome AS stato, COUNT(i) AS numero " +
+           "FROM Immobile i LEFT JOIN i.statoImmobile s " +
+           "WHERE i.proprietario.idUtente = :proprietarioId " +
+           "GROUP BY s.nome")
+    List<ImmobiliPerStato> countPerStatoByProprietario(@Param("proprietarioId") Long proprietarioId);
+
+    /**
+     * Conta gli immobili registrati in un intervallo, raggruppati per mese di registrazione
+     * Una sola query per tutta la serie: GROUP BY anno, mese
+     *
+     * @param da Inizio intervallo (incluso)
+     * @param a Fine intervallo (escluso)
+     */
+    @Query("SELECT YEAR(i.dataRegistrazione) AS anno, MONTH(i.dataRegistrazione) AS mese, " +
+           "COUNT(i) AS numero, COALESCE(SUM(i.prezzo), 0) AS totale " +
+           "FROM Immobile i " +
+           "WHERE i.dataRegistrazione >= :da AND i.dataRegistrazione < :a " +
+           "GROUP BY YEAR(i.dataRegistrazione), MONTH(i.dataRegistrazione)")
+    List<ConteggioMensile> countPerMeseRegistrazione(@Param("da") LocalDateTime da, @Param("a") LocalDateTime a);
 }
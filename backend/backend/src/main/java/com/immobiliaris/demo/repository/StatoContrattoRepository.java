@@ -0,0 +1,9 @@
+package com.immobiliaris.demo.repository;
+
+import com.immobiliaris.demo.entity.StatoContratto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StatoContrattoRepository extends JpaRepository<StatoContratto, Integer> {
+}
@@ -1,12 +1,16 @@
 package com.immobiliaris.demo.repository;
 
 import com.immobiliaris.demo.entity.StatoValutazione;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
 public interface StatoValutazioneRepository extends JpaRepository<StatoValutazione, Integer> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<StatoValutazione> findByNome(String nome);
 }
@@ -1,10 +1,17 @@
 package com.immobiliaris.demo.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import com.immobiliaris.demo.entity.TipoUtente;
 
+import java.util.Optional;
+
 @Repository
 public interface TipoUtenteRepository extends JpaRepository<TipoUtente, Integer> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Optional<TipoUtente> findByNomeIgnoreCase(String nome);
 }
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Repository;
 
 import com.immobiliaris.demo.entity.User;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -22,4 +23,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
             .map(User::getIdUtente)
             .orElse(null);
     }
+
+    /**
+     * Trova gli utenti di un tipo (es. 2 = agenti)
+     * Spring genera automaticamente: WHERE tipoUtente.idTipo = ?
+     */
+    List<User> findByTipoUtenteIdTipo(Integer idTipo);
 }
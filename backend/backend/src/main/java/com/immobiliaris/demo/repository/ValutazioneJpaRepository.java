@@ -1,40 +1,156 @@
 package com.immobiliaris.demo.repository;
 
+import com.immobiliaris.demo.dto.ValutazioneInVerificaRiga;
+import com.immobiliaris.demo.dto.ValutazioneSoloAIRiga;
 import com.immobiliaris.demo.entity.Valutazione;
 import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 
+import java.util.Map;
+import java.util.stream.Stream;
+
 @Repository
 public interface ValutazioneJpaRepository extends JpaRepository<Valutazione, Integer> {
     List<Valutazione> findByImmobile(Immobile immobile);
     
     /**
-     * Conta le valutazioni con uno specifico stato
-     * Spring genera automaticamente la query
+     * Conta le valutazioni con uno specifico stato (id da {@link com.immobiliaris.demo.service.RegistroStati})
+     * Filtra sulla colonna Id_stato_valutazione, senza join sulla tabella degli stati; con id null conta 0
      */
-    Long countByStatoValutazioneNome(String nome);
+    @Query("SELECT COUNT(v) FROM Valutazione v WHERE v.statoValutazione.id = :idStato")
+    Long countByStatoValutazioneId(@Param("idStato") Integer idStato);
     
     /**
      * Conta le valutazioni di un agente specifico con uno specifico stato
-     * Spring genera automaticamente: WHERE statoValutazione.nome = ? AND agente.idUtente = ?
+     * WHERE Id_stato_valutazione = ? AND Id_agente = ? (idx_valutazioni_stato_agente); con id stato null conta 0
      */
-    Long countByStatoValutazioneNomeAndAgenteIdUtente(String nome, Integer agenteIdUtente);
+    @Query("SELECT COUNT(v) FROM Valutazione v WHERE v.statoValutazione.id = :idStato AND v.agente.idUtente = :agenteId")
+    Long countByStatoValutazioneIdAndAgenteIdUtente(@Param("idStato") Integer idStato, @Param("agenteId") Long agenteIdUtente);
     
     /**
      * Conta le valutazioni con uno specifico stato nell'ultimo mese
-     * Spring genera automaticamente: WHERE nome = ? AND dataValutazione >= ?
+     * Spring genera automaticamente: WHERE Id_stato_valutazione = ? AND dataValutazione >= ?
      */
-    Long countByStatoValutazioneNomeAndDataValutazioneAfter(String nome, LocalDateTime data);
+    Long countByStatoValutazioneIdAndDataValutazioneAfter(Integer idStato, LocalDateTime data);
     
     /**
      * Trova tutte le valutazioni con uno specifico stato
      */
-    List<Valutazione> findByStatoValutazioneNome(String nome);
+    List<Valutazione> findByStatoValutazioneId(Integer idStato);
+
+    /**
+     * SELECT delle righe della lista admin delle valutazioni solo_AI ({@link ValutazioneSoloAIRiga}):
+     * immobile e proprietario in join, solo le colonne mostrate.
+     * Lo stato si filtra per id (:idStato, dal registro degli stati)
+     */
+    String RIGA_SOLO_AI = "SELECT new com.immobiliaris.demo.dto.ValutazioneSoloAIRiga(v.id, v.prezzoAI, " +
+           "v.dataValutazione, i.dataRegistrazione, " +
+           "i.tipologia, i.via, i.citta, i.cap, i.provincia, i.metratura, i.condizioni, i.stanze, i.bagni, i.piano, " +
+           "i.ascensore, i.garage, i.giardino, i.balcone, i.terrazzo, i.cantina, i.riscaldamento, " +
+           "CASE WHEN p.idUtente IS NULL THEN NULL ELSE CONCAT(p.nome, ' ', p.cognome) END, p.email, p.telefono, " +
+           "i.descrizione) " +
+           "FROM Valutazione v LEFT JOIN v.immobile i LEFT JOIN i.proprietario p " +
+           "WHERE v.statoValutazione.id = :idStato ";
+
+    /**
+     * SELECT delle righe della lista admin delle valutazioni in verifica ({@link ValutazioneInVerificaRiga}):
+     * agente, immobile e proprietario in join, solo le colonne mostrate.
+     * Lo stato si filtra per id (:idStato); la join sugli stati serve solo a leggerne il nome
+     */
+    String RIGA_IN_VERIFICA = "SELECT new com.immobiliaris.demo.dto.ValutazioneInVerificaRiga(v.id, v.prezzoAI, " +
+           "v.prezzoUmano, v.dataValutazione, s.nome, " +
+           "CASE WHEN a.idUtente IS NULL THEN NULL ELSE CONCAT(a.nome, ' ', a.cognome) END, a.email, " +
+           "i.tipologia, i.via, i.citta, i.cap, i.provincia, i.metratura, i.condizioni, i.stanze, i.bagni, i.piano, " +
+           "i.ascensore, i.garage, i.giardino, i.balcone, i.terrazzo, i.cantina, i.riscaldamento, " +
+           "CASE WHEN p.idUtente IS NULL THEN NULL ELSE CONCAT(p.nome, ' ', p.cognome) END, p.email, p.telefono, " +
+           "i.descrizione) " +
+           "FROM Valutazione v JOIN v.statoValutazione s LEFT JOIN v.agente a " +
+           "LEFT JOIN v.immobile i LEFT JOIN i.proprietario p " +
+           "WHERE v.statoValutazione.id = :idStato ";
+
+    /**
+     * Pagina di valutazioni solo_AI, dalla più recente, subito dopo la posizione (data, id).
+     * Keyset su idx_valutazioni_stato_data: legge solo le righe della pagina, a ogni profondità.
+     * Il limite ridondante "data <= :data" è il range sull'indice (l'OR da solo non lo delimita).
+     * Solo valutazioni con data: quelle senza data seguono con {@link #findPaginaSoloAISenzaData}.
+     * Le righe sono costruite direttamente dalla query, senza caricare le entità
+     *
+     * @param idStato Id dello stato solo_AI
+     * @param data Data dell'ultima valutazione già mostrata
+     * @param dopoId Id dell'ultima valutazione già mostrata (a parità di data)
+     * @param pageable Solo la dimensione della pagina (sempre pagina 0)
+     */
+    @Query(RIGA_SOLO_AI +
+           "AND v.dataValutazione IS NOT NULL " +
+           "AND v.dataValutazione <= :data AND (v.dataValutazione < :data OR (v.dataValutazione = :data AND v.id < :dopoId)) " +
+           "ORDER BY v.dataValutazione DESC, v.id DESC")
+    List<ValutazioneSoloAIRiga> findPaginaSoloAIConData(@Param("idStato") Integer idStato,
+                                                        @Param("data") LocalDateTime data,
+                                                        @Param("dopoId") Integer dopoId,
+                                                        Pageable pageable);
+
+    /**
+     * Pagina di valutazioni solo_AI senza data, per id decrescente, con id minore di dopoId.
+     * In coda alle valutazioni con data (come ORDER BY Data_valutazione DESC di MySQL)
+     */
+    @Query(RIGA_SOLO_AI +
+           "AND v.dataValutazione IS NULL AND v.id < :dopoId " +
+           "ORDER BY v.id DESC")
+    List<ValutazioneSoloAIRiga> findPaginaSoloAISenzaData(@Param("idStato") Integer idStato,
+                                                          @Param("dopoId") Integer dopoId,
+                                                          Pageable pageable);
+
+    /**
+     * Pagina di valutazioni in_verifica, dalla più recente, subito dopo la posizione (data, id).
+     * Come {@link #findPaginaSoloAIConData}, con le colonne della lista in verifica
+     */
+    @Query(RIGA_IN_VERIFICA +
+           "AND v.dataValutazione IS NOT NULL " +
+           "AND v.dataValutazione <= :data AND (v.dataValutazione < :data OR (v.dataValutazione = :data AND v.id < :dopoId)) " +
+           "ORDER BY v.dataValutazione DESC, v.id DESC")
+    List<ValutazioneInVerificaRiga> findPaginaInVerificaConData(@Param("idStato") Integer idStato,
+                                                                @Param("data") LocalDateTime data,
+                                                                @Param("dopoId") Integer dopoId,
+                                                                Pageable pageable);
+
+    /**
+     * Pagina di valutazioni in_verifica senza data, per id decrescente, con id minore di dopoId
+     */
+    @Query(RIGA_IN_VERIFICA +
+           "AND v.dataValutazione IS NULL AND v.id < :dopoId " +
+           "ORDER BY v.id DESC")
+    List<ValutazioneInVerificaRiga> findPaginaInVerificaSenzaData(@Param("idStato") Integer idStato,
+                                                                  @Param("dopoId") Integer dopoId,
+                                                                  Pageable pageable);
     
+    /**
+     * Tutte le valutazioni in ordine di id, lette dal database a blocchi di 500 righe mentre si scorre lo stream
+     * (esportazione CSV/NDJSON). Entità in sola lettura, con stato, agente, immobile e proprietario
+     * nella stessa query. Va consumato dentro una transazione e chiuso (try-with-resources)
+     */
+    @EntityGraph(attributePaths = {"statoValutazione", "agente", "agente.tipoUtente", "immobile",
+        "immobile.statoImmobile", "immobile.proprietario", "immobile.proprietario.tipoUtente"})
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT v FROM Valutazione v ORDER BY v.id")
+    Stream<Valutazione> streamPerEsportazione();
+
     /**
      * Trova tutte le valutazioni per un immobile specifico, ordinate per data (dalla più recente)
      * Utilizzato per recuperare lo stato della valutazione e l'agente assegnato nella dashboard
@@ -59,4 +175,95 @@ public interface ValutazioneJpaRepository extends JpaRepository<Valutazione, Int
      * Spring genera automaticamente: WHERE agente.idUtente = ?
      */
     List<Valutazione> findByAgenteIdUtente(Long agenteIdUtente);
+
+    /**
+     * Proiezione del conteggio valutazioni di un agente
+     */
+    interface ConteggioValutazioniAgente {
+        /** Numero totale di valutazioni dell'agente */
+        Long getTotale();
+        /** Valutazioni con data uguale o successiva alla data indicata */
+        Long getRecenti();
+    }
+
+    /**
+     * Conta le valutazioni di un agente: totale e quelle a partire da una data
+     * Una sola query aggregata invece di due scansioni
+     */
+    @Query("SELECT COUNT(v) AS totale, " +
+           "COALESCE(SUM(CASE WHEN v.dataValutazione >= :dataDa THEN 1 ELSE 0 END), 0) AS recenti " +
+           "FROM Valutazione v WHERE v.agente.idUtente = :agenteId")
+    ConteggioValutazioniAgente countRiepilogoByAgente(@Param("agenteId") Long agenteId, @Param("dataDa") LocalDateTime dataDa);
+
+    /**
+     * Conta le valutazioni non ancora assegnate ad alcun agente
+     * Spring genera automaticamente: WHERE Id_agente IS NULL
+     */
+    Long countByAgenteIsNull();
+
+    /**
+     * Trova le valutazioni di un insieme di immobili in una sola query,
+     * con stato e agente già caricati (JOIN FETCH).
+     * Ordinate per immobile e dalla più recente (a parità di data, ID più alto)
+     *
+     * @param immobileIds ID degli immobili
+     * @return Lista di valutazioni, per ogni immobile la prima è la più recente
+     */
+    @Query("SELECT v FROM Valutazione v " +
+           "LEFT JOIN FETCH v.statoValutazione " +
+           "LEFT JOIN FETCH v.agente a " +
+           "LEFT JOIN FETCH a.tipoUtente " +
+           "WHERE v.immobile.id IN :immobileIds " +
+           "ORDER BY v.immobile.id, v.dataValutazione DESC NULLS LAST, v.id DESC")
+    List<Valutazione> findByImmobileIdInConDettagli(@Param("immobileIds") Collection<Integer> immobileIds);
+
+    /**
+     * Trova gli agenti assegnati alle valutazioni di un insieme di immobili in una sola query.
+     * Ogni riga è [idImmobile, agente], ordinate per immobile e dalla valutazione più recente
+     *
+     * @param immobileIds ID degli immobili
+     * @return Lista di coppie [Integer idImmobile, User agente]
+     */
+    @Query("SELECT v.immobile.id, a FROM Valutazione v " +
+           "JOIN v.agente a " +
+           "LEFT JOIN FETCH a.tipoUtente " +
+           "WHERE v.immobile.id IN :immobileIds " +
+           "ORDER BY v.immobile.id, v.dataValutazione DESC NULLS LAST, v.id DESC")
+    List<Object[]> findAgentiByImmobileIdIn(@Param("immobileIds") Collection<Integer> immobileIds);
+
+    /**
+     * Valutazione più recente per ogni immobile richiesto, con una sola query.
+     * Gli immobili senza valutazioni non compaiono nella mappa
+     *
+     * @param immobileIds ID degli immobili
+     * @return Mappa idImmobile -> valutazione più recente
+     */
+    default Map<Integer, Valutazione> findUltimaValutazionePerImmobile(Collection<Integer> immobileIds) {
+        Map<Integer, Valutazione> result = new HashMap<>();
+        if (immobileIds == null || immobileIds.isEmpty()) {
+            return result;
+        }
+        for (Valutazione v : findByImmobileIdInConDettagli(immobileIds)) {
+            result.putIfAbsent(v.getImmobile().getId(), v);
+        }
+        return result;
+    }
+
+    /**
+     * Ultimo agente assegnato (valutazione più recente con agente) per ogni immobile richiesto,
+     * con una sola query. Gli immobili senza agente non compaiono nella mappa
+     *
+     * @param immobileIds ID degli immobili
+     * @return Mappa idImmobile -> agente
+     */
+    default Map<Integer, User> findUltimoAgentePerImmobile(Collection<Integer> immobileIds) {
+        Map<Integer, User> result = new HashMap<>();
+        if (immobileIds == null || immobileIds.isEmpty()) {
+            return result;
+        }
+        for (Object[] riga : findAgentiByImmobileIdIn(immobileIds)) {
+            result.putIfAbsent((Integer) riga[0], (User) riga[1]);
+        }
+        return result;
+    }
 }
@@ -1,11 +1,15 @@
 package com.immobiliaris.demo.repository;
 
 import com.immobiliaris.demo.entity.Zona;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
 public interface ZonaRepository extends JpaRepository<Zona, Integer> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Zona> findByCap(String cap);
 }
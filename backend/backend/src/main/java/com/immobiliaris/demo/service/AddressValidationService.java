@@ -5,25 +5,43 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.immobiliaris.demo.dto.AddressValidationRequest;
 import com.immobiliaris.demo.dto.AddressValidationResponse;
 import com.immobiliaris.demo.dto.AddressValidationResponse.AddressSuggestion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 
 @Service
 public class AddressValidationService {
+    private static final Logger logger = LoggerFactory.getLogger(AddressValidationService.class);
 
-    private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
 
+    @Autowired
+    private GeocodingCacheService geocodingCacheService;
+
+    @Autowired
+    private GeoapifyClient geoapifyClient;
+
+    @Autowired
+    private Stradario stradario;
+
+    @Autowired
+    private MappaStaticaService mappaStaticaService;
+
     @Value("${geoapify.api.key:your_api_key_here}")
     private String geoapifyApiKey;
 
+    @Value("${geoapify.api.url:https://api.geoapify.com}")
+    private String geoapifyApiUrl;
+
     public AddressValidationService() {
-        this.restTemplate = new RestTemplate();
         this.objectMapper = new ObjectMapper();
     }
 
@@ -80,27 +98,30 @@ public class AddressValidationService {
             addressBuilder.append(", Italy");
 
             String address = addressBuilder.toString();
-            System.out.println("[DEBUG] Geoapify Query: " + address);
-            System.out.println("[DEBUG] Geoapify API Key: " + (geoapifyApiKey != null && !geoapifyApiKey.isEmpty() && !geoapifyApiKey.equals("your_api_key_here") ? "✓ Configurata" : "✗ Non configurata o di default"));
+            logger.debug("Geoapify query: {}", address);
 
             // Chiama Geoapify API
-            String url = UriComponentsBuilder.newInstance()
-                .scheme("https")
-                .host("api.geoapify.com")
+            URI url = UriComponentsBuilder.fromUriString(geoapifyApiUrl)
                 .path("/v1/geocode/search")
                 .queryParam("text", address)
                 .queryParam("apiKey", geoapifyApiKey)
                 .queryParam("limit", "5")
                 .build()
-                .toUriString();
+                .encode()
+                .toUri();
 
-            System.out.println("[DEBUG] Geoapify URL: " + url);
-
-            org.springframework.http.ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            System.out.println("[DEBUG] Geoapify Response: " + response.getBody());
-            JsonNode results = objectMapper.readTree(response.getBody());
-
-            List<AddressSuggestion> suggestions = parseSuggestions(results, civicoInserito);
+            // Geoapify solo se l'indirizzo non è in cache (GeocodingCacheService)
+            String body;
+            try {
+                // L'URL contiene la chiave Geoapify: non va mai scritto nei log
+                body = geocodingCacheService.cerca(address, () -> geoapifyClient.get(url));
+            } catch (GeoapifyClient.NonDisponibile | IOException e) {
+                // Geoapify lento, in errore o con circuito aperto: si valida sullo stradario locale
+                logger.warn("Geoapify non disponibile ({}), validazione locale", e.getMessage());
+                return validazioneLocale(request);
+            }
+            logger.debug("Geoapify risposta: {}", body);
+            List<AddressSuggestion> suggestions = parseResponse(body, civicoInserito);
 
             // Filtra per città se specificata
             // Normalizza i nomi delle città perché Geoapify restituisce "Turin" invece di "Torino"
@@ -141,11 +162,20 @@ public class AddressValidationService {
             return new AddressValidationResponse(!suggestions.isEmpty(), suggestions);
         } catch (Exception e) {
             // Cattura generica per API errors, network issues, JSON parsing
-            System.err.println("[ERROR] Geoapify validation error: " + e.getMessage());
+            logger.error("Errore nella validazione dell'indirizzo", e);
             return new AddressValidationResponse(false, new java.util.ArrayList<>());
         }
     }
 
+    /**
+     * Validazione sullo stradario in memoria quando Geoapify non risponde:
+     * suggerimenti senza coordinate, valida se la via è nello stradario.
+     */
+    private AddressValidationResponse validazioneLocale(AddressValidationRequest request) {
+        List<AddressSuggestion> suggestions = stradario.suggerisci(request.getVia(), request.getCitta(), 5);
+        return new AddressValidationResponse(!suggestions.isEmpty(), suggestions);
+    }
+
     /**
      * Costruisce la query di ricerca per Nominatim
      */
@@ -166,6 +196,14 @@ public class AddressValidationService {
         };
     }
 
+    /**
+     * Legge il corpo della risposta Geoapify e lo converte in suggerimenti
+     * Visibile nel package per misurarne il costo senza chiamare l'API (benchmark JMH)
+     */
+    List<AddressSuggestion> parseResponse(String body, String civicoInserito) throws java.io.IOException {
+        return parseSuggestions(objectMapper.readTree(body), civicoInserito);
+    }
+
     /**
      * Parse i risultati JSON di Geoapify in oggetti AddressSuggestion
      */
@@ -186,14 +224,11 @@ public class AddressValidationService {
                 JsonNode properties = feature.path("properties");
                 if (properties.isMissingNode()) continue;
 
-                System.out.println("[DEBUG] Parsing feature properties: " + properties.toString());
-
                 AddressSuggestion suggestion = new AddressSuggestion();
 
                 // Estrai coordinate - Geoapify ha lat/lon direttamente in properties
                 double lat = properties.path("lat").asDouble(0);
                 double lon = properties.path("lon").asDouble(0);
-                System.out.println("[DEBUG] Coordinates - lat: " + lat + ", lon: " + lon);
                 suggestion.setLat(lat);
                 suggestion.setLon(lon);
 
@@ -208,8 +243,6 @@ public class AddressValidationService {
                     housenumber = civicoInserito;
                 }
                 
-                System.out.println("[DEBUG] Address - street: " + street + ", city: " + city + ", postcode: " + postcode + ", housenumber: " + housenumber);
-
                 suggestion.setVia(street);
                 suggestion.setCitta(city);
                 suggestion.setCap(postcode);
@@ -223,17 +256,13 @@ public class AddressValidationService {
                 if (postcode != null) display.append(" ").append(postcode);
                 suggestion.setDisplayName(display.toString().trim());
 
-                // Genera URL mappa statica Geoapify
-                String mapUrl = String.format(java.util.Locale.US,
-                    "https://maps.geoapify.com/v1/staticmap?style=osm-carto&center=lonlat:%.6f,%.6f&zoom=15&width=600&height=400&marker=lonlat:%.6f,%.6f;color:red;size:medium&apiKey=%s",
-                    lon, lat, lon, lat, geoapifyApiKey
-                );
+                // URL della mappa statica servita dal backend (la chiave Geoapify resta sul server)
+                String mapUrl = mappaStaticaService.url(MappaStaticaService.Mappa.conMarker(lat, lon));
                 suggestion.setMapUrl(mapUrl);
-                System.out.println("[DEBUG] Generated map URL: " + mapUrl);
 
                 suggestions.add(suggestion);
             } catch (Exception e) {
-                System.err.println("[WARNING] Error parsing feature: " + e.getMessage());
+                logger.warn("Risultato Geoapify non valido, ignorato: {}", e.getMessage());
             }
         }
 
@@ -0,0 +1,323 @@
+/**
+ * Service per l'archivio su disco dei PDF dei contratti, indirizzato per contenuto.
+ *
+ * Ogni PDF è salvato come {impronta}.pdf, dove l'impronta è lo SHA-256 dei dati
+ * che finiscono nel documento (PdfContrattoService.impronta). Una nuova anteprima
+ * o un nuovo invio dello stesso contratto costano quindi un hash e la lettura del
+ * file; il PDF viene rigenerato solo quando cambia uno dei dati (contratto,
+ * valutazione, immobile, proprietario, agente) o la versione del layout.
+ *
+ * Invalidazione:
+ * - dati cambiati: cambia l'impronta, il nuovo PDF ha un altro nome e il file
+ *   precedente dello stesso contratto viene cancellato
+ * - spazio occupato oltre contratti.pdf.archivio.max-mb: si cancellano i file più
+ *   vecchi fino a scendere sotto l'80% del limite (anche quelli di avvii precedenti),
+ *   tranne quelli trovati o scritti nell'ultimo minuto, che possono essere in invio
+ *
+ * La scrittura passa da un file temporaneo collegato atomicamente al nome definitivo:
+ * chi legge vede sempre un PDF completo. Due richieste concorrenti per lo stesso
+ * contratto possono generare il PDF due volte, ma entra in archivio (e nel conteggio
+ * dello spazio) solo il primo; l'altro usa il file già presente.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Service
+public class ArchivioPdfContrattiService {
+    private static final Logger logger = LoggerFactory.getLogger(ArchivioPdfContrattiService.class);
+
+    private static final String ESTENSIONE = ".pdf";
+
+    /** File usati da meno di questo tempo esclusi dalla riduzione: possono essere in invio (sendfile) */
+    private static final long USO_RECENTE_MS = 60_000;
+
+    /**
+     * PDF archiviato: impronta (usata anche come ETag), percorso e dimensione in byte.
+     */
+    public record PdfArchiviato(String impronta, Path file, long dimensione) {}
+
+    @Autowired
+    private PdfContrattoService pdfContrattoService;
+
+    @Value("${contratti.pdf.archivio.directory:${java.io.tmpdir}/immobiliaris-contratti-pdf}")
+    private Path directory;
+
+    @Value("${contratti.pdf.archivio.max-mb:256}")
+    private long maxMb;
+
+    /** Ultima impronta archiviata per contratto, per cancellare il PDF superato */
+    private final Map<Long, String> improntePerContratto = new ConcurrentHashMap<>();
+
+    /** Ultimo uso (ricerca o scrittura) dei file dell'archivio, in millisecondi */
+    private final Map<Path, Long> ultimoUso = new ConcurrentHashMap<>();
+
+    private final AtomicLong occupazione = new AtomicLong();
+
+    @PostConstruct
+    void inizializza() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> file = Files.list(directory)) {
+            occupazione.set(file.filter(f -> f.toString().endsWith(ESTENSIONE)).mapToLong(this::dimensione).sum());
+        }
+        logger.info("Archivio PDF contratti in {} ({} KB)", directory, occupazione.get() / 1024);
+    }
+
+    /**
+     * Restituisce il PDF del contratto dall'archivio, generandolo solo se i dati sono cambiati.
+     *
+     * @param contratto Contratto con immobile, proprietario, agente e valutazione
+     * @return PDF archiviato
+     * @throws Exception se la generazione del PDF o la scrittura su disco falliscono
+     */
+    public PdfArchiviato ottieni(Contratto contratto) throws Exception {
+        String impronta = impronta(contratto);
+        PdfArchiviato pdf = cerca(contratto, impronta);
+        if (pdf == null) {
+            Path temporaneo = Files.createTempFile(directory, impronta, ".tmp");
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temporaneo))) {
+                pdfContrattoService.generaContrattoPdf(contratto, file);
+            } catch (Exception e) {
+                Files.deleteIfExists(temporaneo);
+                throw e;
+            }
+            pdf = archivia(contratto, impronta, temporaneo);
+        }
+        return pdf;
+    }
+
+    /**
+     * Contenuto del PDF del contratto, per gli allegati email. Se il file viene cancellato
+     * dall'archivio tra la ricerca e la lettura, il PDF viene rigenerato.
+     */
+    public byte[] leggi(Contratto contratto) throws Exception {
+        try {
+            return leggi(ottieni(contratto));
+        } catch (NoSuchFileException e) {
+            return leggi(ottieni(contratto));
+        }
+    }
+
+    /**
+     * Impronta dei dati del contratto: nome del file in archivio ed ETag.
+     */
+    public String impronta(Contratto contratto) {
+        return pdfContrattoService.impronta(contratto);
+    }
+
+    /**
+     * PDF già archiviato con questa impronta, senza generarlo.
+     *
+     * @return PDF archiviato, null se va generato
+     */
+    public PdfArchiviato cerca(Contratto contratto, String impronta) throws IOException {
+        Path file = directory.resolve(impronta + ESTENSIONE);
+        try {
+            PdfArchiviato pdf = new PdfArchiviato(impronta, file, Files.size(file));
+            ultimoUso.put(file, System.currentTimeMillis());
+            registra(contratto, impronta);
+            return pdf;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Genera il PDF scrivendolo su {@code out} mentre viene prodotto e, in parallelo,
+     * in un file temporaneo che a fine generazione entra nell'archivio.
+     * Se la scrittura su {@code out} fallisce (client disconnesso) il file viene scartato.
+     *
+     * @param out Stream di destinazione, non viene chiuso
+     */
+    public void generaInStreaming(Contratto contratto, String impronta, OutputStream out) throws IOException {
+        Path temporaneo = Files.createTempFile(directory, impronta, ".tmp");
+        try {
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temporaneo))) {
+                pdfContrattoService.generaContrattoPdf(contratto, new Sdoppiato(out, file));
+            }
+            archivia(contratto, impronta, temporaneo);
+        } catch (Exception e) {
+            Files.deleteIfExists(temporaneo);
+            throw e instanceof IOException io ? io : new IOException("Errore nella generazione del PDF", e);
+        }
+    }
+
+    /**
+     * Contenuto del PDF archiviato.
+     *
+     * @throws NoSuchFileException se il file è stato cancellato dall'archivio dopo la ricerca
+     */
+    public byte[] leggi(PdfArchiviato pdf) throws IOException {
+        return Files.readAllBytes(pdf.file());
+    }
+
+    /**
+     * Rende visibile nell'archivio un PDF completo scritto in un file temporaneo.
+     * Se lo stesso PDF è già stato archiviato da un'altra richiesta, il temporaneo viene
+     * scartato e lo spazio non viene contato due volte.
+     */
+    private PdfArchiviato archivia(Contratto contratto, String impronta, Path temporaneo) throws IOException {
+        Path file = directory.resolve(impronta + ESTENSIONE);
+        long dimensione = Files.size(temporaneo);
+        while (true) {
+            try {
+                // Un collegamento, a differenza di una rinomina, fallisce se il nome esiste già
+                Files.createLink(file, temporaneo);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                PdfArchiviato esistente = cerca(contratto, impronta);
+                if (esistente != null) {
+                    Files.delete(temporaneo);
+                    return esistente;
+                }
+                // Cancellato subito dopo dalla riduzione: si riprova
+            }
+        }
+        Files.delete(temporaneo);
+        ultimoUso.put(file, System.currentTimeMillis());
+        logger.debug("PDF contratto {} generato e archiviato ({} byte)", contratto.getId(), dimensione);
+
+        if (occupazione.addAndGet(dimensione) > maxMb * 1024 * 1024) {
+            riduci(file);
+        }
+        registra(contratto, impronta);
+        return new PdfArchiviato(impronta, file, dimensione);
+    }
+
+    /**
+     * Ricorda l'impronta corrente del contratto e cancella il PDF superato.
+     */
+    private void registra(Contratto contratto, String impronta) {
+        if (contratto.getId() == null) return;
+        String precedente = improntePerContratto.put(contratto.getId(), impronta);
+        if (precedente != null && !precedente.equals(impronta)) {
+            cancella(directory.resolve(precedente + ESTENSIONE));
+        }
+    }
+
+    /**
+     * Cancella i PDF più vecchi (escluso quello appena scritto e quelli usati di recente)
+     * fino all'80% del limite.
+     */
+    private synchronized void riduci(Path daTenere) throws IOException {
+        long obiettivo = maxMb * 1024 * 1024 * 8 / 10;
+        if (occupazione.get() <= obiettivo) return;
+
+        long recente = System.currentTimeMillis() - USO_RECENTE_MS;
+        List<Path> file;
+        try (Stream<Path> elenco = Files.list(directory)) {
+            file = elenco.filter(f -> f.toString().endsWith(ESTENSIONE) && !f.equals(daTenere)
+                    && ultimoUso.getOrDefault(f, 0L) < recente)
+                .sorted(Comparator.comparing(this::ultimaModifica))
+                .toList();
+        }
+        int cancellati = 0;
+        for (Path f : file) {
+            if (occupazione.get() <= obiettivo) break;
+            cancella(f);
+            cancellati++;
+        }
+        logger.info("Archivio PDF contratti oltre {} MB: cancellati {} file", maxMb, cancellati);
+    }
+
+    private void cancella(Path file) {
+        try {
+            long dimensione = Files.size(file);
+            if (Files.deleteIfExists(file)) {
+                occupazione.addAndGet(-dimensione);
+            }
+            ultimoUso.remove(file);
+        } catch (NoSuchFileException e) {
+            // Già cancellato da un'altra richiesta
+        } catch (IOException e) {
+            logger.warn("Impossibile cancellare {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Directory dell'archivio, per i test.
+     */
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Spazio occupato dai PDF archiviati secondo il conteggio interno, per i test.
+     */
+    long getOccupazione() {
+        return occupazione.get();
+    }
+
+    private long dimensione(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileTime ultimaModifica(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Stream che scrive su due destinazioni: risposta HTTP e file dell'archivio.
+     */
+    private static final class Sdoppiato extends OutputStream {
+        private final OutputStream primo;
+        private final OutputStream secondo;
+
+        Sdoppiato(OutputStream primo, OutputStream secondo) {
+            this.primo = primo;
+            this.secondo = secondo;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            primo.write(b);
+            secondo.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            primo.write(b, off, len);
+            secondo.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            primo.flush();
+            secondo.flush();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Statistiche e gestione della cache di secondo livello Hibernate.
+ *
+ * Le tabelle di lookup (stati, tipi utente, zone) sono in cache: dopo il primo accesso
+ * le associazioni @ManyToOne e le ricerche per nome non interrogano più il database.
+ * Questo servizio espone hit, miss e inserimenti per regione e per la cache delle query,
+ * per verificare che i percorsi più usati leggano davvero dalla cache.
+ *
+ * Le regioni in sola lettura non scadono: dopo una modifica fatta a mano sul database
+ * (fuori dall'applicazione) va chiamato {@link #svuota()}.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see com.immobiliaris.demo.config.HibernateCacheConfig
+ */
+package com.immobiliaris.demo.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+public class CacheStatisticheService {
+    private static final Logger logger = LoggerFactory.getLogger(CacheStatisticheService.class);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Riepilogo della cache dall'avvio (o dall'ultimo azzeramento delle statistiche).
+     * @return mappa con "statisticheAttive", "regioni" (per nome) e "query"
+     */
+    public Map<String, Object> getRiepilogo() {
+        Statistics statistiche = sessionFactory().getStatistics();
+
+        Map<String, Object> regioni = new LinkedHashMap<>();
+        String[] nomi = statistiche.getSecondLevelCacheRegionNames();
+        Arrays.sort(nomi);
+        for (String nome : nomi) {
+            CacheRegionStatistics regione = statistiche.getCacheRegionStatistics(nome);
+            if (regione == null) continue;
+            Map<String, Object> riga = conteggi(regione.getHitCount(), regione.getMissCount(), regione.getPutCount());
+            riga.put("elementiInMemoria", regione.getElementCountInMemory());
+            regioni.put(nome, riga);
+        }
+
+        Map<String, Object> riepilogo = new LinkedHashMap<>();
+        riepilogo.put("statisticheAttive", statistiche.isStatisticsEnabled());
+        riepilogo.put("dal", statistiche.getStart().toString());
+        riepilogo.put("regioni", regioni);
+        riepilogo.put("query", conteggi(statistiche.getQueryCacheHitCount(),
+            statistiche.getQueryCacheMissCount(), statistiche.getQueryCachePutCount()));
+        return riepilogo;
+    }
+
+    /**
+     * Svuota tutte le regioni (entity e query): le letture successive tornano al database.
+     */
+    public void svuota() {
+        sessionFactory().getCache().evictAllRegions();
+        logger.info("Cache di secondo livello svuotata");
+    }
+
+    private static Map<String, Object> conteggi(long hit, long miss, long put) {
+        Map<String, Object> conteggi = new LinkedHashMap<>();
+        conteggi.put("hit", hit);
+        conteggi.put("miss", miss);
+        conteggi.put("put", put);
+        // Quota delle letture servite dalla cache, null se la regione non è ancora stata letta
+        conteggi.put("rapportoHit", hit + miss > 0 ? Math.round(hit * 1000.0 / (hit + miss)) / 1000.0 : null);
+        return conteggi;
+    }
+
+    private SessionFactory sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+}
@@ -0,0 +1,745 @@
+/**
+ * Store in memoria degli aggregati della dashboard amministratore.
+ *
+ * Mantiene i contatori letti da {@link StatisticsService#getAdminDashboardData()}:
+ * - Totali (immobili, valutazioni in verifica, contratti conclusi, fatturato)
+ * - Immobili per tipologia e registrazioni recenti
+ * - Contratti conclusi per mese (numero e totale prezzo immobili)
+ * - Statistiche per agente (contratti, fatturato, immobili in gestione)
+ * - Somme per i tempi medi di processo
+ *
+ * Aggiornamento:
+ * - Caricamento completo dal database una sola volta all'avvio
+ * - Aggiornamento incrementale ad ogni insert/update/delete di Immobile, Valutazione,
+ *   Contratto e User tramite {@link DashboardEntityListener}
+ *
+ * Ogni riga è memorizzata come proiezione compatta insieme al contributo che ha dato
+ * ai contatori: ad ogni modifica il contributo precedente viene sottratto e quello nuovo
+ * aggiunto, quindi riapplicare lo stesso evento è idempotente.
+ * La lettura della dashboard non richiede più scansioni complete delle tabelle.
+ *
+ * Quando ci sono dashboard collegate via SSE, le transizioni rilevanti (nuovo immobile,
+ * valutazione assegnata a un agente, contratto chiuso) vengono pubblicate su
+ * {@link DashboardEventiService} con i soli contatori cambiati, letti sotto lo stesso lock.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see DashboardEntityListener
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.repository.ContrattoJpaRepository;
+import com.immobiliaris.demo.repository.ImmobileJpaRepository;
+import com.immobiliaris.demo.repository.UserRepository;
+import com.immobiliaris.demo.repository.ValutazioneJpaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@Component
+public class DashboardAggregateStore {
+    private static final Logger logger = LoggerFactory.getLogger(DashboardAggregateStore.class);
+
+    /** Tipologie conteggiate nella sezione "immobiliPerTipo" */
+    private static final Set<String> TIPI_DASHBOARD = Set.of("appartamento", "attico", "villa", "loft");
+
+    /** Id del tipo utente "Agente" */
+    private static final int ID_TIPO_AGENTE = 2;
+
+    @Autowired
+    private ImmobileJpaRepository immobileRepository;
+
+    @Autowired
+    private ValutazioneJpaRepository valutazioneRepository;
+
+    @Autowired
+    private ContrattoJpaRepository contrattoRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DashboardEventiService dashboardEventiService;
+
+    // ========== PROIEZIONI DELLE RIGHE ==========
+
+    /** Campi di Immobile che concorrono agli aggregati */
+    public record ImmobileRow(Integer id, String tipologia, Integer prezzo, LocalDateTime dataRegistrazione) {
+        public static ImmobileRow of(Immobile i) {
+            return new ImmobileRow(i.getId(), i.getTipologia(), i.getPrezzo(), i.getDataRegistrazione());
+        }
+    }
+
+    /** Campi di Valutazione che concorrono agli aggregati */
+    public record ValutazioneRow(Integer id, Integer immobileId, Long agenteId, String stato,
+                                 Integer prezzoUmano, LocalDateTime dataValutazione) {
+        public static ValutazioneRow of(Valutazione v) {
+            return new ValutazioneRow(
+                v.getId(),
+                v.getImmobile() != null ? v.getImmobile().getId() : null,
+                v.getAgente() != null ? v.getAgente().getIdUtente() : null,
+                v.getStatoValutazione() != null ? v.getStatoValutazione().getNome() : null,
+                v.getPrezzoUmano(),
+                v.getDataValutazione());
+        }
+    }
+
+    /** Campi di Contratto che concorrono agli aggregati */
+    public record ContrattoRow(Long id, Integer immobileId, Long agenteId, Integer valutazioneId,
+                               String stato, LocalDateTime dataInizio) {
+        public static ContrattoRow of(Contratto c) {
+            return new ContrattoRow(
+                c.getId(),
+                c.getImmobile() != null ? c.getImmobile().getId() : null,
+                c.getAgente() != null ? c.getAgente().getIdUtente() : null,
+                c.getValutazione() != null ? c.getValutazione().getId() : null,
+                c.getStatoContratto() != null ? c.getStatoContratto().getNome() : null,
+                c.getDataInizio());
+        }
+    }
+
+    /** Agente presente nell'anagrafica (idTipo = 2) */
+    public record AgenteRow(Long id, String nome, String cognome, boolean stage) {
+        public static AgenteRow of(User u) {
+            return new AgenteRow(u.getIdUtente(), u.getNome(), u.getCognome(),
+                u.getContratto() != null && u.getContratto().equalsIgnoreCase("stage"));
+        }
+
+        static boolean isAgente(User u) {
+            return u.getTipoUtente() != null && u.getTipoUtente().getIdTipo() != null
+                && u.getTipoUtente().getIdTipo() == ID_TIPO_AGENTE;
+        }
+    }
+
+    /** Contratti conclusi in un mese: numero e somma dei prezzi degli immobili */
+    public record ContrattiMese(long numeroContratti, long totalePrezzoImmobili) {}
+
+    /** Statistiche aggregate di un agente */
+    public record RiepilogoAgente(Long idAgente, String nome, String cognome,
+                                  long contrattiConclusi, long fatturato, long immobiliInGestione) {}
+
+    // ========== CONTRIBUTI APPLICATI AI CONTATORI ==========
+
+    private record ContributoImmobile(String tipo, LocalDateTime dataRegistrazione, Long tempoAI, Long tempoContratto) {}
+
+    private record ContributoValutazione(Long agenteId) {}
+
+    private record ContributoContratto(Long agenteId, long fatturato, YearMonth mese, long prezzoImmobile) {}
+
+    // ========== STATO ==========
+
+    private boolean inizializzato = false;
+
+    private final Map<Integer, ImmobileRow> immobili = new HashMap<>();
+    private final Map<Integer, ValutazioneRow> valutazioni = new HashMap<>();
+    private final Map<Long, ContrattoRow> contratti = new HashMap<>();
+    private final Map<Long, AgenteRow> agenti = new TreeMap<>();
+
+    private final Map<Integer, Set<Integer>> valutazioniPerImmobile = new HashMap<>();
+    private final Map<Integer, Set<Long>> contrattiPerValutazione = new HashMap<>();
+    private final Map<Integer, Set<Long>> contrattiPerImmobile = new HashMap<>();
+
+    private final Map<Integer, ContributoImmobile> contributiImmobili = new HashMap<>();
+    private final Map<Integer, ContributoValutazione> contributiValutazioni = new HashMap<>();
+    private final Map<Long, ContributoContratto> contributiContratti = new HashMap<>();
+
+    private long totaleImmobili;
+    private long immobiliInVerifica;
+    private long contrattiConclusi;
+    private long fatturatoTotale;
+    private final Map<String, Long> immobiliPerTipo = new HashMap<>();
+    private final TreeMap<LocalDateTime, Integer> registrazioni = new TreeMap<>();
+    private final Map<YearMonth, long[]> contrattiPerMese = new HashMap<>();
+    private final Map<Long, long[]> contrattiPerAgente = new HashMap<>();
+    private final Map<YearMonth, Map<Long, long[]>> contrattiPerAgenteMese = new HashMap<>();
+    private final Map<Long, Long> inVerificaPerAgente = new HashMap<>();
+    private long sommaTempoAI;
+    private long campioniTempoAI;
+    private long sommaTempoContratto;
+    private long campioniTempoContratto;
+
+    // ========== CARICAMENTO ==========
+
+    /**
+     * Carica lo store all'avvio dell'applicazione.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ricostruisci();
+    }
+
+    /**
+     * Ricarica tutti gli aggregati dal database (una lettura per tabella).
+     * Utilizzato all'avvio e in caso di modifiche fatte fuori da JPA.
+     */
+    public synchronized void ricostruisci() {
+        List<Immobile> tuttiImmobili = immobileRepository.findAll();
+        List<Valutazione> tutteValutazioni = valutazioneRepository.findAll();
+        List<Contratto> tuttiContratti = contrattoRepository.findAll();
+        List<User> tuttiUtenti = userRepository.findAll();
+
+        azzera();
+        tuttiImmobili.forEach(i -> immobili.put(i.getId(), ImmobileRow.of(i)));
+        tutteValutazioni.forEach(v -> indicizza(ValutazioneRow.of(v)));
+        tuttiContratti.forEach(c -> indicizza(ContrattoRow.of(c)));
+        tuttiUtenti.stream().filter(AgenteRow::isAgente).forEach(u -> agenti.put(u.getIdUtente(), AgenteRow.of(u)));
+
+        valutazioni.keySet().forEach(this::ricalcolaValutazione);
+        contratti.keySet().forEach(this::ricalcolaContratto);
+        immobili.keySet().forEach(this::ricalcolaImmobile);
+        inizializzato = true;
+
+        logger.info("Aggregati dashboard caricati: {} immobili, {} valutazioni, {} contratti, {} agenti",
+            immobili.size(), valutazioni.size(), contratti.size(), agenti.size());
+    }
+
+    private void azzera() {
+        immobili.clear();
+        valutazioni.clear();
+        contratti.clear();
+        agenti.clear();
+        valutazioniPerImmobile.clear();
+        contrattiPerValutazione.clear();
+        contrattiPerImmobile.clear();
+        contributiImmobili.clear();
+        contributiValutazioni.clear();
+        contributiContratti.clear();
+        totaleImmobili = 0;
+        immobiliInVerifica = 0;
+        contrattiConclusi = 0;
+        fatturatoTotale = 0;
+        immobiliPerTipo.clear();
+        registrazioni.clear();
+        contrattiPerMese.clear();
+        contrattiPerAgente.clear();
+        contrattiPerAgenteMese.clear();
+        inVerificaPerAgente.clear();
+        sommaTempoAI = 0;
+        campioniTempoAI = 0;
+        sommaTempoContratto = 0;
+        campioniTempoContratto = 0;
+    }
+
+    private void ensureInizializzato() {
+        if (!inizializzato) {
+            ricostruisci();
+        }
+    }
+
+    // ========== AGGIORNAMENTI INCREMENTALI ==========
+
+    public synchronized void aggiornaImmobile(ImmobileRow row) {
+        if (!inizializzato || row.id() == null) return;
+        ImmobileRow precedente = immobili.put(row.id(), row);
+        ricalcolaImmobile(row.id());
+        ricalcolaContratti(contrattiPerImmobile.get(row.id()));
+        if (precedente == null && dashboardEventiService.haIscritti()) {
+            dashboardEventiService.pubblica(eventoImmobileRegistrato(row));
+        }
+    }
+
+    public synchronized void rimuoviImmobile(Integer id) {
+        if (!inizializzato || id == null) return;
+        immobili.remove(id);
+        ricalcolaImmobile(id);
+        ricalcolaContratti(contrattiPerImmobile.get(id));
+    }
+
+    public synchronized void aggiornaValutazione(ValutazioneRow row) {
+        if (!inizializzato || row.id() == null) return;
+        ValutazioneRow vecchia = deindicizza(row.id());
+        indicizza(row);
+        ricalcolaValutazione(row.id());
+        if (vecchia != null && vecchia.immobileId() != null) ricalcolaImmobile(vecchia.immobileId());
+        if (row.immobileId() != null) ricalcolaImmobile(row.immobileId());
+        ricalcolaContratti(contrattiPerValutazione.get(row.id()));
+        // Presa in carico (solo_AI -> in_verifica con agente) o passaggio a un altro agente
+        boolean assegnata = row.agenteId() != null && (vecchia == null || !row.agenteId().equals(vecchia.agenteId()));
+        if (assegnata && dashboardEventiService.haIscritti()) {
+            dashboardEventiService.pubblica(eventoValutazioneAssegnata(row, vecchia != null ? vecchia.agenteId() : null));
+        }
+    }
+
+    public synchronized void rimuoviValutazione(Integer id) {
+        if (!inizializzato || id == null) return;
+        ValutazioneRow vecchia = deindicizza(id);
+        ricalcolaValutazione(id);
+        if (vecchia != null && vecchia.immobileId() != null) ricalcolaImmobile(vecchia.immobileId());
+        ricalcolaContratti(contrattiPerValutazione.get(id));
+    }
+
+    public synchronized void aggiornaContratto(ContrattoRow row) {
+        if (!inizializzato || row.id() == null) return;
+        ContrattoRow vecchio = deindicizza(row.id());
+        indicizza(row);
+        ricalcolaContratto(row.id());
+        ricalcolaImmobileDiValutazione(vecchio != null ? vecchio.valutazioneId() : null);
+        ricalcolaImmobileDiValutazione(row.valutazioneId());
+        if (isChiuso(row) && (vecchio == null || !isChiuso(vecchio)) && dashboardEventiService.haIscritti()) {
+            dashboardEventiService.pubblica(eventoContrattoChiuso(row));
+        }
+    }
+
+    public synchronized void rimuoviContratto(Long id) {
+        if (!inizializzato || id == null) return;
+        ContrattoRow vecchio = deindicizza(id);
+        ricalcolaContratto(id);
+        ricalcolaImmobileDiValutazione(vecchio != null ? vecchio.valutazioneId() : null);
+    }
+
+    /**
+     * @param id id dell'utente
+     * @param agente proiezione dell'agente, null se l'utente non è (più) un agente
+     */
+    public synchronized void aggiornaUtente(Long id, AgenteRow agente) {
+        if (!inizializzato || id == null) return;
+        if (agente != null) {
+            agenti.put(id, agente);
+        } else {
+            agenti.remove(id);
+        }
+    }
+
+    public synchronized void rimuoviUtente(Long id) {
+        if (!inizializzato || id == null) return;
+        agenti.remove(id);
+    }
+
+    // ========== EVENTI DELTA ==========
+
+    /**
+     * Nuovo immobile: contatori di immobili, registrazioni recenti e tipologia.
+     * Gli agenti ricevono solo la riga (prossime attività e acquisizioni).
+     */
+    private DashboardEventiService.Evento eventoImmobileRegistrato(ImmobileRow row) {
+        LocalDateTime adesso = LocalDateTime.now();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("totaleImmobili", totaleImmobili);
+        statistics.put("immobiliRegistratiMensili", countImmobiliRegistratiDopo(adesso.minusMonths(1)));
+        statistics.put("immobiliRegistratiSettimanali", countImmobiliRegistratiDopo(adesso.minusWeeks(1)));
+
+        Map<String, Object> immobile = new LinkedHashMap<>();
+        immobile.put("id", row.id());
+        immobile.put("tipologia", row.tipologia());
+        immobile.put("prezzo", row.prezzo());
+        immobile.put("dataRegistrazione", row.dataRegistrazione());
+
+        Map<String, Object> admin = new LinkedHashMap<>();
+        admin.put("immobile", immobile);
+        admin.put("statistics", statistics);
+        ContributoImmobile contributo = contributiImmobili.get(row.id());
+        if (contributo != null && contributo.tipo() != null) {
+            admin.put("immobiliPerTipo", Map.of(contributo.tipo(), immobiliPerTipo.getOrDefault(contributo.tipo(), 0L)));
+        }
+        return new DashboardEventiService.Evento(DashboardEventiService.IMMOBILE_REGISTRATO, null,
+            admin, Map.of("immobile", immobile));
+    }
+
+    /**
+     * Valutazione assegnata: immobili in verifica e immobili in gestione degli agenti coinvolti.
+     * L'agente assegnato riceve la riga della valutazione.
+     */
+    private DashboardEventiService.Evento eventoValutazioneAssegnata(ValutazioneRow row, Long agentePrecedente) {
+        Map<String, Object> valutazione = new LinkedHashMap<>();
+        valutazione.put("id", row.id());
+        valutazione.put("immobileId", row.immobileId());
+        valutazione.put("idAgente", row.agenteId());
+        valutazione.put("statoValutazione", row.stato());
+        valutazione.put("dataValutazione", row.dataValutazione());
+
+        List<Map<String, Object>> agentiCambiati = new ArrayList<>();
+        agentiCambiati.add(riepilogoAgente(row.agenteId()));
+        if (agentePrecedente != null) agentiCambiati.add(riepilogoAgente(agentePrecedente));
+
+        Map<String, Object> admin = new LinkedHashMap<>();
+        admin.put("valutazione", valutazione);
+        admin.put("statistics", Map.of("immobiliInVerifica", immobiliInVerifica));
+        admin.put("agenti", agentiCambiati);
+        return new DashboardEventiService.Evento(DashboardEventiService.VALUTAZIONE_ASSEGNATA, row.agenteId(),
+            admin, Map.of("valutazione", valutazione));
+    }
+
+    /**
+     * Contratto chiuso: totali, mese del contratto e statistiche dell'agente.
+     * L'agente del contratto riceve la riga del contratto.
+     */
+    private DashboardEventiService.Evento eventoContrattoChiuso(ContrattoRow row) {
+        Map<String, Object> contratto = new LinkedHashMap<>();
+        contratto.put("id", row.id());
+        contratto.put("immobileId", row.immobileId());
+        contratto.put("idAgente", row.agenteId());
+        contratto.put("valutazioneId", row.valutazioneId());
+        contratto.put("dataInizio", row.dataInizio());
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("contrattiConclusi", contrattiConclusi);
+        statistics.put("fatturatoTotale", fatturatoTotale);
+
+        Map<String, Object> admin = new LinkedHashMap<>();
+        admin.put("contratto", contratto);
+        admin.put("statistics", statistics);
+        if (row.dataInizio() != null) {
+            YearMonth mese = YearMonth.from(row.dataInizio());
+            long[] coppia = contrattiPerMese.getOrDefault(mese, new long[2]);
+            // Stessi campi di "contrattiPerMese" della dashboard
+            Map<String, Object> contrattiMese = new LinkedHashMap<>();
+            contrattiMese.put("mese", String.format("%02d/%d", mese.getMonthValue(), mese.getYear()));
+            contrattiMese.put("numeroContratti", coppia[0]);
+            contrattiMese.put("totalePrezzoImmobili", (int) coppia[1]);
+            admin.put("contrattiPerMese", List.of(contrattiMese));
+        }
+        if (row.agenteId() != null) {
+            admin.put("agenti", List.of(riepilogoAgente(row.agenteId())));
+        }
+        return new DashboardEventiService.Evento(DashboardEventiService.CONTRATTO_CHIUSO, row.agenteId(),
+            admin, row.agenteId() != null ? Map.of("contratto", contratto) : null);
+    }
+
+    /** Statistiche di un agente con gli stessi campi della lista "agenti" della dashboard, più l'id */
+    private Map<String, Object> riepilogoAgente(Long id) {
+        AgenteRow a = agenti.get(id);
+        long[] coppia = contrattiPerAgente.get(id);
+        Map<String, Object> agente = new LinkedHashMap<>();
+        agente.put("idAgente", id);
+        agente.put("nome", a != null ? a.nome() : null);
+        agente.put("cognome", a != null ? a.cognome() : null);
+        agente.put("contrattiConclusi", coppia != null ? coppia[0] : 0L);
+        agente.put("immobiliInGestione", inVerificaPerAgente.getOrDefault(id, 0L));
+        agente.put("fatturato", coppia != null ? coppia[1] : 0L);
+        return agente;
+    }
+
+    // ========== INDICI ==========
+
+    private void indicizza(ValutazioneRow row) {
+        valutazioni.put(row.id(), row);
+        if (row.immobileId() != null) {
+            valutazioniPerImmobile.computeIfAbsent(row.immobileId(), k -> new HashSet<>()).add(row.id());
+        }
+    }
+
+    private ValutazioneRow deindicizza(Integer idValutazione) {
+        ValutazioneRow vecchia = valutazioni.remove(idValutazione);
+        if (vecchia != null && vecchia.immobileId() != null) {
+            rimuoviDaIndice(valutazioniPerImmobile, vecchia.immobileId(), idValutazione);
+        }
+        return vecchia;
+    }
+
+    private void indicizza(ContrattoRow row) {
+        contratti.put(row.id(), row);
+        if (row.valutazioneId() != null) {
+            contrattiPerValutazione.computeIfAbsent(row.valutazioneId(), k -> new HashSet<>()).add(row.id());
+        }
+        if (row.immobileId() != null) {
+            contrattiPerImmobile.computeIfAbsent(row.immobileId(), k -> new HashSet<>()).add(row.id());
+        }
+    }
+
+    private ContrattoRow deindicizza(Long idContratto) {
+        ContrattoRow vecchio = contratti.remove(idContratto);
+        if (vecchio != null) {
+            if (vecchio.valutazioneId() != null) rimuoviDaIndice(contrattiPerValutazione, vecchio.valutazioneId(), idContratto);
+            if (vecchio.immobileId() != null) rimuoviDaIndice(contrattiPerImmobile, vecchio.immobileId(), idContratto);
+        }
+        return vecchio;
+    }
+
+    private static <K, V> void rimuoviDaIndice(Map<K, Set<V>> indice, K chiave, V valore) {
+        Set<V> insieme = indice.get(chiave);
+        if (insieme != null) {
+            insieme.remove(valore);
+            if (insieme.isEmpty()) indice.remove(chiave);
+        }
+    }
+
+    // ========== RICALCOLO DEI CONTRIBUTI ==========
+
+    private void ricalcolaContratti(Set<Long> ids) {
+        if (ids == null) return;
+        for (Long id : new ArrayList<>(ids)) {
+            ricalcolaContratto(id);
+        }
+    }
+
+    private void ricalcolaImmobileDiValutazione(Integer idValutazione) {
+        if (idValutazione == null) return;
+        ValutazioneRow v = valutazioni.get(idValutazione);
+        if (v != null && v.immobileId() != null) ricalcolaImmobile(v.immobileId());
+    }
+
+    /**
+     * Ricalcola il contributo di un immobile: totale, tipologia, data registrazione
+     * e tempi di processo (dalla valutazione più recente e dal suo primo contratto chiuso).
+     */
+    private void ricalcolaImmobile(Integer id) {
+        ContributoImmobile vecchio = contributiImmobili.remove(id);
+        if (vecchio != null) applica(vecchio, -1);
+
+        ImmobileRow immobile = immobili.get(id);
+        if (immobile == null) return;
+
+        // Valutazione più recente (stesso ordinamento di findByImmobileIdOrderByDataValutazioneDesc)
+        ValutazioneRow ultima = null;
+        for (Integer idV : valutazioniPerImmobile.getOrDefault(id, Set.of())) {
+            ValutazioneRow v = valutazioni.get(idV);
+            if (v == null || v.dataValutazione() == null) continue;
+            if (ultima == null || v.dataValutazione().isAfter(ultima.dataValutazione())
+                || (v.dataValutazione().isEqual(ultima.dataValutazione()) && v.id() > ultima.id())) {
+                ultima = v;
+            }
+        }
+
+        Long tempoAI = null;
+        Long tempoContratto = null;
+        if (ultima != null) {
+            if (immobile.dataRegistrazione() != null) {
+                tempoAI = Duration.between(immobile.dataRegistrazione(), ultima.dataValutazione()).getSeconds();
+            }
+            ContrattoRow primoChiuso = null;
+            for (Long idC : contrattiPerValutazione.getOrDefault(ultima.id(), Set.of())) {
+                ContrattoRow c = contratti.get(idC);
+                if (c == null || !isChiuso(c) || c.dataInizio() == null) continue;
+                if (primoChiuso == null || c.id() < primoChiuso.id()) primoChiuso = c;
+            }
+            if (primoChiuso != null) {
+                tempoContratto = Duration.between(ultima.dataValutazione(), primoChiuso.dataInizio()).getSeconds();
+            }
+        }
+
+        String tipo = immobile.tipologia() != null && TIPI_DASHBOARD.contains(immobile.tipologia().toLowerCase())
+            ? immobile.tipologia() : null;
+
+        ContributoImmobile nuovo = new ContributoImmobile(tipo, immobile.dataRegistrazione(), tempoAI, tempoContratto);
+        contributiImmobili.put(id, nuovo);
+        applica(nuovo, 1);
+    }
+
+    private void ricalcolaValutazione(Integer id) {
+        ContributoValutazione vecchio = contributiValutazioni.remove(id);
+        if (vecchio != null) applica(vecchio, -1);
+
+        ValutazioneRow v = valutazioni.get(id);
+        if (v == null || !"in_verifica".equalsIgnoreCase(v.stato())) return;
+
+        ContributoValutazione nuovo = new ContributoValutazione(v.agenteId());
+        contributiValutazioni.put(id, nuovo);
+        applica(nuovo, 1);
+    }
+
+    private void ricalcolaContratto(Long id) {
+        ContributoContratto vecchio = contributiContratti.remove(id);
+        if (vecchio != null) applica(vecchio, -1);
+
+        ContrattoRow c = contratti.get(id);
+        if (c == null || !isChiuso(c)) return;
+
+        ValutazioneRow v = c.valutazioneId() != null ? valutazioni.get(c.valutazioneId()) : null;
+        ImmobileRow i = c.immobileId() != null ? immobili.get(c.immobileId()) : null;
+        ContributoContratto nuovo = new ContributoContratto(
+            c.agenteId(),
+            v != null && v.prezzoUmano() != null ? v.prezzoUmano() : 0,
+            c.dataInizio() != null ? YearMonth.from(c.dataInizio()) : null,
+            i != null && i.prezzo() != null ? i.prezzo() : 0);
+        contributiContratti.put(id, nuovo);
+        applica(nuovo, 1);
+    }
+
+    private static boolean isChiuso(ContrattoRow c) {
+        return "chiuso".equalsIgnoreCase(c.stato());
+    }
+
+    private void applica(ContributoImmobile c, int segno) {
+        totaleImmobili += segno;
+        if (c.tipo() != null) {
+            immobiliPerTipo.merge(c.tipo(), (long) segno, Long::sum);
+            immobiliPerTipo.remove(c.tipo(), 0L);
+        }
+        if (c.dataRegistrazione() != null) {
+            registrazioni.merge(c.dataRegistrazione(), segno, Integer::sum);
+            registrazioni.remove(c.dataRegistrazione(), 0);
+        }
+        if (c.tempoAI() != null) {
+            sommaTempoAI += segno * c.tempoAI();
+            campioniTempoAI += segno;
+        }
+        if (c.tempoContratto() != null) {
+            sommaTempoContratto += segno * c.tempoContratto();
+            campioniTempoContratto += segno;
+        }
+    }
+
+    private void applica(ContributoValutazione c, int segno) {
+        immobiliInVerifica += segno;
+        if (c.agenteId() != null) {
+            inVerificaPerAgente.merge(c.agenteId(), (long) segno, Long::sum);
+            inVerificaPerAgente.remove(c.agenteId(), 0L);
+        }
+    }
+
+    private void applica(ContributoContratto c, int segno) {
+        contrattiConclusi += segno;
+        fatturatoTotale += segno * c.fatturato();
+        if (c.agenteId() != null) {
+            somma(contrattiPerAgente, c.agenteId(), segno, segno * c.fatturato());
+        }
+        if (c.mese() != null) {
+            somma(contrattiPerMese, c.mese(), segno, segno * c.prezzoImmobile());
+            if (c.agenteId() != null) {
+                Map<Long, long[]> perAgente = contrattiPerAgenteMese.computeIfAbsent(c.mese(), k -> new HashMap<>());
+                somma(perAgente, c.agenteId(), segno, segno * c.fatturato());
+                if (perAgente.isEmpty()) contrattiPerAgenteMese.remove(c.mese());
+            }
+        }
+    }
+
+    /** Aggiorna una coppia [numero, valore]; la chiave viene rimossa quando il numero torna a zero */
+    private static <K> void somma(Map<K, long[]> mappa, K chiave, long numero, long valore) {
+        long[] coppia = mappa.computeIfAbsent(chiave, k -> new long[2]);
+        coppia[0] += numero;
+        coppia[1] += valore;
+        if (coppia[0] == 0) mappa.remove(chiave);
+    }
+
+    // ========== LETTURE ==========
+
+    public synchronized long getTotaleImmobili() {
+        ensureInizializzato();
+        return totaleImmobili;
+    }
+
+    public synchronized long getImmobiliInVerifica() {
+        ensureInizializzato();
+        return immobiliInVerifica;
+    }
+
+    public synchronized long getContrattiConclusi() {
+        ensureInizializzato();
+        return contrattiConclusi;
+    }
+
+    public synchronized long getFatturatoTotale() {
+        ensureInizializzato();
+        return fatturatoTotale;
+    }
+
+    /**
+     * Data di registrazione più vecchia strettamente successiva alla data indicata (null se nessuna).
+     * A parità di dati determina {@link #countImmobiliRegistratiDopo(LocalDateTime)}: con lo
+     * scorrere del tempo il conteggio cambia solo quando cambia questa data.
+     * @param dataLimite data limite (esclusa)
+     */
+    public synchronized LocalDateTime getPrimaRegistrazioneDopo(LocalDateTime dataLimite) {
+        ensureInizializzato();
+        return registrazioni.higherKey(dataLimite);
+    }
+
+    /**
+     * Conta gli immobili registrati strettamente dopo la data indicata.
+     * @param dataLimite data limite (esclusa)
+     */
+    public synchronized long countImmobiliRegistratiDopo(LocalDateTime dataLimite) {
+        ensureInizializzato();
+        long totale = 0;
+        for (int n : registrazioni.tailMap(dataLimite, false).values()) {
+            totale += n;
+        }
+        return totale;
+    }
+
+    public synchronized long getTotaleAgenti() {
+        ensureInizializzato();
+        return agenti.values().stream().filter(a -> !a.stage()).count();
+    }
+
+    public synchronized long getAgentiStage() {
+        ensureInizializzato();
+        return agenti.values().stream().filter(AgenteRow::stage).count();
+    }
+
+    public synchronized Map<String, Long> getImmobiliPerTipo() {
+        ensureInizializzato();
+        return new LinkedHashMap<>(immobiliPerTipo);
+    }
+
+    public synchronized ContrattiMese getContrattiMese(YearMonth mese) {
+        ensureInizializzato();
+        long[] coppia = contrattiPerMese.get(mese);
+        return coppia != null ? new ContrattiMese(coppia[0], coppia[1]) : new ContrattiMese(0, 0);
+    }
+
+    /**
+     * Agenti con più contratti conclusi nel mese indicato.
+     * Nome e cognome sono null se l'utente non è nell'anagrafica agenti.
+     * @param mese mese di riferimento (data inizio contratto)
+     * @param limite numero massimo di agenti
+     */
+    public synchronized List<RiepilogoAgente> getTopAgentiMese(YearMonth mese, int limite) {
+        ensureInizializzato();
+        return contrattiPerAgenteMese.getOrDefault(mese, Map.of()).entrySet().stream()
+            .sorted(Comparator.<Map.Entry<Long, long[]>>comparingLong(e -> e.getValue()[0]).reversed()
+                .thenComparing(Map.Entry::getKey))
+            .limit(limite)
+            .map(e -> {
+                AgenteRow a = agenti.get(e.getKey());
+                return new RiepilogoAgente(e.getKey(), a != null ? a.nome() : null, a != null ? a.cognome() : null,
+                    e.getValue()[0], e.getValue()[1], inVerificaPerAgente.getOrDefault(e.getKey(), 0L));
+            })
+            .toList();
+    }
+
+    /**
+     * Tutti gli agenti con le statistiche, nell'ordine di id.
+     */
+    public synchronized List<RiepilogoAgente> getAgenti() {
+        ensureInizializzato();
+        List<RiepilogoAgente> risultato = new ArrayList<>(agenti.size());
+        for (AgenteRow a : agenti.values()) {
+            long[] coppia = contrattiPerAgente.get(a.id());
+            risultato.add(new RiepilogoAgente(a.id(), a.nome(), a.cognome(),
+                coppia != null ? coppia[0] : 0, coppia != null ? coppia[1] : 0,
+                inVerificaPerAgente.getOrDefault(a.id(), 0L)));
+        }
+        return risultato;
+    }
+
+    /**
+     * Tempo medio in secondi tra registrazione immobile e presa in carico.
+     * @return media in secondi, null se non ci sono campioni
+     */
+    public synchronized Long getMediaTempoAIaPresaInCarico() {
+        ensureInizializzato();
+        return campioniTempoAI > 0 ? (long) ((double) sommaTempoAI / campioniTempoAI) : null;
+    }
+
+    /**
+     * Tempo medio in secondi tra presa in carico e firma contratto.
+     * @return media in secondi, null se non ci sono campioni
+     */
+    public synchronized Long getMediaTempoPresaInCaricoaContratto() {
+        ensureInizializzato();
+        return campioniTempoContratto > 0 ? (long) ((double) sommaTempoContratto / campioniTempoContratto) : null;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Entity listener JPA che propaga le modifiche di Immobile, Valutazione, Contratto e User
+ * al {@link DashboardAggregateStore} e alle versioni di {@link VersioneDatiService}.
+ *
+ * La proiezione della riga viene catturata subito dopo l'operazione e applicata allo store
+ * solo dopo il commit della transazione (o immediatamente se non c'è una transazione attiva),
+ * così un rollback non altera gli aggregati. La versione dell'aggregato viene incrementata
+ * dopo l'aggiornamento dello store, quando i dati nuovi sono già leggibili.
+ *
+ * Istanziato da Hibernate tramite il bean container di Spring: store e versioni vengono
+ * risolti in modo lazy per evitare dipendenze circolari con l'EntityManagerFactory.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see DashboardAggregateStore
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.service.VersioneDatiService.Aggregato;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+public class DashboardEntityListener {
+
+    @Autowired
+    private ObjectProvider<DashboardAggregateStore> storeProvider;
+
+    @Autowired
+    private ObjectProvider<VersioneDatiService> versioniProvider;
+
+    @PostPersist
+    @PostUpdate
+    public void onSalvataggio(Object entity) {
+        if (entity instanceof Immobile i) {
+            DashboardAggregateStore.ImmobileRow row = DashboardAggregateStore.ImmobileRow.of(i);
+            dopoCommit(Aggregato.IMMOBILI, store -> store.aggiornaImmobile(row));
+        } else if (entity instanceof Valutazione v) {
+            DashboardAggregateStore.ValutazioneRow row = DashboardAggregateStore.ValutazioneRow.of(v);
+            dopoCommit(Aggregato.VALUTAZIONI, store -> store.aggiornaValutazione(row));
+        } else if (entity instanceof Contratto c) {
+            DashboardAggregateStore.ContrattoRow row = DashboardAggregateStore.ContrattoRow.of(c);
+            dopoCommit(Aggregato.CONTRATTI, store -> store.aggiornaContratto(row));
+        } else if (entity instanceof User u) {
+            Long id = u.getIdUtente();
+            DashboardAggregateStore.AgenteRow row = DashboardAggregateStore.AgenteRow.isAgente(u)
+                ? DashboardAggregateStore.AgenteRow.of(u) : null;
+            dopoCommit(Aggregato.UTENTI, store -> store.aggiornaUtente(id, row));
+        }
+    }
+
+    @PostRemove
+    public void onRimozione(Object entity) {
+        if (entity instanceof Immobile i) {
+            Integer id = i.getId();
+            dopoCommit(Aggregato.IMMOBILI, store -> store.rimuoviImmobile(id));
+        } else if (entity instanceof Valutazione v) {
+            Integer id = v.getId();
+            dopoCommit(Aggregato.VALUTAZIONI, store -> store.rimuoviValutazione(id));
+        } else if (entity instanceof Contratto c) {
+            Long id = c.getId();
+            dopoCommit(Aggregato.CONTRATTI, store -> store.rimuoviContratto(id));
+        } else if (entity instanceof User u) {
+            Long id = u.getIdUtente();
+            dopoCommit(Aggregato.UTENTI, store -> store.rimuoviUtente(id));
+        }
+    }
+
+    private void dopoCommit(Aggregato aggregato, Consumer<DashboardAggregateStore> azione) {
+        DashboardAggregateStore store = storeProvider != null ? storeProvider.getIfAvailable() : null;
+        VersioneDatiService versioni = versioniProvider != null ? versioniProvider.getIfAvailable() : null;
+        if (store == null && versioni == null) return;
+
+        Runnable applica = () -> {
+            if (store != null) azione.accept(store);
+            if (versioni != null) versioni.incrementa(aggregato);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applica.run();
+                }
+            });
+        } else {
+            applica.run();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * Canale Server-Sent Events per gli aggiornamenti in tempo reale delle dashboard.
+ *
+ * Le dashboard aperte si iscrivono una volta (GET .../eventi) e ricevono piccoli eventi
+ * delta invece di ricaricare periodicamente la dashboard completa:
+ * - "immobile-registrato": nuovo immobile
+ * - "valutazione-assegnata": valutazione presa in carico da un agente (es. assegnaAgenteValutazioneAI)
+ * - "contratto-chiuso": contratto passato allo stato "chiuso"
+ *
+ * Gli eventi sono generati da {@link DashboardAggregateStore} dopo il commit, con i soli
+ * contatori e righe cambiati letti dallo store: tra una modifica e l'altra le connessioni
+ * aperte non costano query al database.
+ *
+ * Destinatari:
+ * - Amministratori: tutti gli eventi, con i contatori della dashboard admin
+ * - Agenti: solo la riga modificata, per gli eventi che li riguardano
+ *   (nuovi immobili per tutti, valutazioni e contratti solo per l'agente assegnato)
+ *
+ * Connessioni:
+ * - {@link SseEmitter} su servlet asincrona: una connessione inattiva non occupa thread,
+ *   resta solo il socket gestito dal connettore NIO di Tomcat
+ * - Ogni evento è serializzato una sola volta da un unico thread dedicato, che lo accoda
+ *   alle dashboard interessate: la transazione che ha generato la modifica non aspetta
+ * - Ogni dashboard ha una coda limitata, svuotata da un pool di thread di invio condiviso
+ *   (una dashboard alla volta per thread, eventi nell'ordine dei commit): un client lento
+ *   rallenta solo se stesso
+ * - Un client che resta indietro (coda piena) o con un invio fermo da più di
+ *   dashboard.sse.timeout-invio-ms viene scollegato; l'EventSource si riconnette da solo
+ * - Un commento di heartbeat periodico tiene aperti i proxy e rimuove i client scollegati
+ * - Alla scadenza il client (EventSource) si riconnette da solo; dopo ogni connessione
+ *   conviene ricaricare la dashboard con If-None-Match (304 se nulla è cambiato)
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see DashboardAggregateStore
+ */
+package com.immobiliaris.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class DashboardEventiService {
+    private static final Logger logger = LoggerFactory.getLogger(DashboardEventiService.class);
+
+    public static final String IMMOBILE_REGISTRATO = "immobile-registrato";
+    public static final String VALUTAZIONE_ASSEGNATA = "valutazione-assegnata";
+    public static final String CONTRATTO_CHIUSO = "contratto-chiuso";
+
+    /**
+     * Evento delta della dashboard.
+     *
+     * @param tipo Nome dell'evento SSE
+     * @param agenteId Agente interessato; null = tutti gli agenti
+     * @param datiAdmin Contatori e righe per gli amministratori
+     * @param datiAgente Riga per gli agenti, null se l'evento non li riguarda
+     */
+    public record Evento(String tipo, Long agenteId, Map<String, Object> datiAdmin, Map<String, Object> datiAgente) {}
+
+    /** Dashboard aperta: agenteId null per gli amministratori */
+    private static final class Iscrizione {
+        private final SseEmitter emitter;
+        private final Long agenteId;
+        /** Eventi in attesa di invio a questa dashboard */
+        private final BlockingQueue<SseEmitter.SseEventBuilder> coda;
+        /** true mentre un thread di invio sta svuotando la coda (uno solo per volta) */
+        private final AtomicBoolean inInvio = new AtomicBoolean();
+        /** Inizio dell'invio in corso (System.nanoTime()), 0 se nessun invio è in corso */
+        private volatile long inizioInvio;
+        private volatile boolean scollegata;
+
+        Iscrizione(SseEmitter emitter, Long agenteId, int capacita) {
+            this.emitter = emitter;
+            this.agenteId = agenteId;
+            this.coda = new ArrayBlockingQueue<>(capacita);
+        }
+    }
+
+    /** Durata massima di una connessione, poi il client si riconnette */
+    @Value("${dashboard.sse.timeout-ms:1800000}")
+    private long timeout;
+
+    @Value("${dashboard.sse.heartbeat-ms:25000}")
+    private long heartbeat;
+
+    /** Oltre questo numero di dashboard aperte le nuove iscrizioni vengono rifiutate */
+    @Value("${dashboard.sse.max-connessioni:2000}")
+    private int maxConnessioni;
+
+    /** Eventi in attesa per dashboard: oltre, il client è troppo lento e viene scollegato */
+    @Value("${dashboard.sse.coda:100}")
+    private int capacitaCoda;
+
+    /** Durata massima di un singolo invio prima di scollegare il client */
+    @Value("${dashboard.sse.timeout-invio-ms:10000}")
+    private long timeoutInvio;
+
+    @Value("${dashboard.sse.thread-invio:4}")
+    private int threadInvio;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Set<Iscrizione> iscrizioni = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong ultimoId = new AtomicLong();
+
+    /** Thread unico di smistamento: gli eventi entrano nelle code nell'ordine dei commit */
+    private final ScheduledExecutorService invio = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dashboard-sse");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Thread che scrivono sui socket, condivisi da tutte le dashboard */
+    private ExecutorService scrittura;
+
+    @PostConstruct
+    public void avvia() {
+        AtomicInteger contatore = new AtomicInteger();
+        scrittura = Executors.newFixedThreadPool(threadInvio, r -> {
+            Thread t = new Thread(r, "dashboard-sse-invio-" + contatore.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        invio.scheduleWithFixedDelay(this::inviaHeartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void arresta() {
+        invio.shutdownNow();
+        scrittura.shutdownNow();
+        iscrizioni.forEach(i -> i.emitter.complete());
+        iscrizioni.clear();
+    }
+
+    /**
+     * Apre il canale di una dashboard amministratore.
+     * @return emitter da restituire dal controller
+     * @throws IllegalStateException se è raggiunto il numero massimo di connessioni
+     */
+    public SseEmitter iscriviAdmin() {
+        return iscrivi(null);
+    }
+
+    /**
+     * Apre il canale della dashboard di un agente.
+     * @param agenteId Id dell'agente autenticato
+     * @return emitter da restituire dal controller
+     * @throws IllegalStateException se è raggiunto il numero massimo di connessioni
+     */
+    public SseEmitter iscriviAgente(Long agenteId) {
+        return iscrivi(agenteId);
+    }
+
+    /**
+     * Indica se c'è almeno una dashboard aperta: senza iscritti lo store non costruisce gli eventi.
+     */
+    public boolean haIscritti() {
+        return !iscrizioni.isEmpty();
+    }
+
+    public int getNumeroIscritti() {
+        return iscrizioni.size();
+    }
+
+    /**
+     * Accoda l'invio dell'evento alle dashboard interessate (non blocca il chiamante).
+     */
+    public void pubblica(Evento evento) {
+        if (iscrizioni.isEmpty()) return;
+        try {
+            invio.execute(() -> invia(evento));
+        } catch (RejectedExecutionException e) {
+            // Applicazione in arresto
+            logger.debug("Evento {} scartato: invio arrestato", evento.tipo());
+        }
+    }
+
+    private SseEmitter iscrivi(Long agenteId) {
+        if (iscrizioni.size() >= maxConnessioni) {
+            throw new IllegalStateException("Troppe dashboard collegate, riprovare più tardi");
+        }
+        SseEmitter emitter = new SseEmitter(timeout);
+        Iscrizione iscrizione = new Iscrizione(emitter, agenteId, capacitaCoda);
+        emitter.onCompletion(() -> iscrizioni.remove(iscrizione));
+        emitter.onTimeout(() -> {
+            iscrizioni.remove(iscrizione);
+            emitter.complete();
+        });
+        emitter.onError(e -> iscrizioni.remove(iscrizione));
+
+        try {
+            // Primo evento: il client sa di essere collegato e può ricaricare la dashboard
+            emitter.send(SseEmitter.event().name("connesso").data("{}", MediaType.APPLICATION_JSON).reconnectTime(5000));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        iscrizioni.add(iscrizione);
+        return emitter;
+    }
+
+    private void invia(Evento evento) {
+        String id = Long.toString(ultimoId.incrementAndGet());
+        String jsonAdmin = json(evento.datiAdmin());
+        String jsonAgente = evento.datiAgente() != null ? json(evento.datiAgente()) : null;
+
+        int destinatari = 0;
+        for (Iscrizione i : iscrizioni) {
+            String dati;
+            if (i.agenteId == null) {
+                dati = jsonAdmin;
+            } else if (jsonAgente != null && (evento.agenteId() == null || evento.agenteId().equals(i.agenteId))) {
+                dati = jsonAgente;
+            } else {
+                continue;
+            }
+            if (accoda(i, SseEmitter.event().id(id).name(evento.tipo()).data(dati, MediaType.APPLICATION_JSON))) {
+                destinatari++;
+            }
+        }
+        logger.debug("Evento {} {} accodato per {} dashboard", id, evento.tipo(), destinatari);
+    }
+
+    private void inviaHeartbeat() {
+        long ora = System.nanoTime();
+        for (Iscrizione i : iscrizioni) {
+            long inizio = i.inizioInvio;
+            if (inizio != 0 && ora - inizio > TimeUnit.MILLISECONDS.toNanos(timeoutInvio)) {
+                scollega(i, "invio fermo da più di " + timeoutInvio + " ms");
+            } else {
+                accoda(i, SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    /**
+     * Accoda un evento per una dashboard e, se nessun thread la sta già servendo, ne avvia
+     * l'invio. Con la coda piena il client è troppo indietro e viene scollegato.
+     */
+    private boolean accoda(Iscrizione iscrizione, SseEmitter.SseEventBuilder evento) {
+        if (iscrizione.scollegata) return false;
+        if (!iscrizione.coda.offer(evento)) {
+            scollega(iscrizione, "coda piena (" + capacitaCoda + " eventi)");
+            return false;
+        }
+        avviaInvio(iscrizione);
+        return true;
+    }
+
+    private void avviaInvio(Iscrizione iscrizione) {
+        if (!iscrizione.inInvio.compareAndSet(false, true)) return;
+        try {
+            scrittura.execute(() -> svuota(iscrizione));
+        } catch (RejectedExecutionException e) {
+            // Applicazione in arresto
+            iscrizione.inInvio.set(false);
+        }
+    }
+
+    /**
+     * Invia gli eventi in coda di una dashboard, nell'ordine (su un thread di scrittura).
+     * Se il client si è scollegato l'iscrizione viene rimossa.
+     */
+    private void svuota(Iscrizione iscrizione) {
+        while (true) {
+            if (iscrizione.scollegata) {
+                // Scollegata per lentezza: si chiude la connessione, il client si riconnetterà
+                iscrizione.coda.clear();
+                iscrizione.emitter.complete();
+                return;
+            }
+            SseEmitter.SseEventBuilder evento = iscrizione.coda.poll();
+            if (evento == null) {
+                iscrizione.inInvio.set(false);
+                // Evento accodato dopo il poll, mentre inInvio era ancora true: lo serve questo thread
+                if (!iscrizione.coda.isEmpty() && iscrizione.inInvio.compareAndSet(false, true)) {
+                    continue;
+                }
+                return;
+            }
+            iscrizione.inizioInvio = System.nanoTime();
+            try {
+                iscrizione.emitter.send(evento);
+            } catch (IOException | IllegalStateException e) {
+                // Il contenitore segnala l'errore anche all'emitter (onError): qui basta smettere di inviare
+                iscrizioni.remove(iscrizione);
+                iscrizione.scollegata = true;
+                iscrizione.coda.clear();
+                logger.debug("Dashboard scollegata: {}", e.getMessage());
+                return;
+            } finally {
+                iscrizione.inizioInvio = 0;
+            }
+        }
+    }
+
+    /**
+     * Smette di inviare a una dashboard che non riesce a stare al passo. La connessione viene
+     * chiusa dal thread di scrittura; se questo è fermo su un invio, la chiude il contenitore
+     * allo scadere del timeout di scrittura del socket.
+     */
+    private void scollega(Iscrizione iscrizione, String motivo) {
+        if (!iscrizioni.remove(iscrizione)) return;
+        iscrizione.scollegata = true;
+        iscrizione.coda.clear();
+        logger.warn("Dashboard scollegata: {}", motivo);
+        avviaInvio(iscrizione);
+    }
+
+    private String json(Map<String, Object> dati) {
+        try {
+            return objectMapper.writeValueAsString(dati);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Evento dashboard non serializzabile", e);
+        }
+    }
+}
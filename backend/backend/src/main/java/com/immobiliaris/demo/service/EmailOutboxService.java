@@ -0,0 +1,326 @@
+/**
+ * Service per l'invio asincrono delle email tramite coda persistente (tabella Email_outbox).
+ *
+ * Le richieste HTTP accodano il messaggio già composto e rispondono subito:
+ * la latenza non dipende più dal server SMTP.
+ *
+ * Pipeline:
+ * 1. accoda*: compone il messaggio e lo salva "in_coda" nella transazione della richiesta
+ * 2. Un thread di polling (ogni email.outbox.intervallo-ms, e subito dopo il commit di un
+ *    nuovo messaggio) prende in carico i messaggi scaduti con un UPDATE condizionale,
+ *    per al massimo email.outbox.presa-in-carico-ms
+ * 3. Un pool limitato di worker (email.outbox.worker) esegue l'invio SMTP; la coda del pool
+ *    è limitata e il polling non preleva più messaggi dei posti liberi
+ * 4. In caso di errore il messaggio torna "in_coda" con backoff esponenziale
+ *    (email.outbox.backoff-iniziale-ms, raddoppiato a ogni tentativo fino a
+ *    email.outbox.backoff-massimo-ms); dopo email.outbox.max-tentativi diventa "fallita"
+ *    (dead letter) e resta consultabile da GET /api/admin/email/outbox
+ *
+ * I messaggi rimasti "in_invio" per un arresto dell'applicazione tornano in coda quando la
+ * presa in carico scade (controllo a ogni giro di polling, di qualunque istanza): i messaggi
+ * che un'altra istanza sta ancora inviando non vengono ripresi. La consegna è almeno una
+ * volta (at-least-once).
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.EmailOutbox;
+import com.immobiliaris.demo.repository.EmailOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class EmailOutboxService {
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    /** Posti nella coda in memoria del pool: oltre, i messaggi restano sul database */
+    static final int CAPACITA_CODA = 100;
+
+    /** Messaggi "fallita" restituiti dal riepilogo amministrativo */
+    private static final int MAX_FALLITE_RIEPILOGO = 50;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Value("${email.outbox.attivo:true}")
+    private boolean attivo;
+
+    @Value("${email.outbox.worker:2}")
+    private int numeroWorker;
+
+    @Value("${email.outbox.max-tentativi:5}")
+    private int maxTentativi;
+
+    @Value("${email.outbox.backoff-iniziale-ms:30000}")
+    private long backoffIniziale;
+
+    @Value("${email.outbox.backoff-massimo-ms:3600000}")
+    private long backoffMassimo;
+
+    @Value("${email.outbox.intervallo-ms:5000}")
+    private long intervallo;
+
+    /**
+     * Durata della presa in carico (attesa nella coda del pool più invio SMTP): scaduta,
+     * il messaggio torna in coda. Deve superare di molto il tempo di un invio.
+     */
+    @Value("${email.outbox.presa-in-carico-ms:900000}")
+    private long presaInCarico;
+
+    /** Thread unico di polling: la presa in carico non è mai concorrente nella stessa istanza */
+    private volatile ScheduledExecutorService polling;
+
+    private volatile ThreadPoolExecutor worker;
+
+    /**
+     * Avvia polling e worker ad applicazione pronta.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void avvia() {
+        if (!attivo) {
+            logger.info("Invio email dalla coda disattivato (email.outbox.attivo=false)");
+            return;
+        }
+        avviaWorker();
+    }
+
+    /**
+     * Avvia polling e worker anche con email.outbox.attivo=false (test di integrazione
+     * sul contesto condiviso); non fa nulla se sono già avviati.
+     */
+    synchronized void avviaWorker() {
+        if (polling != null) return;
+
+        AtomicInteger contatore = new AtomicInteger();
+        worker = new ThreadPoolExecutor(numeroWorker, numeroWorker, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(CAPACITA_CODA), r -> {
+                Thread t = new Thread(r, "email-outbox-worker-" + contatore.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        polling = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "email-outbox");
+            t.setDaemon(true);
+            return t;
+        });
+        polling.scheduleWithFixedDelay(this::elabora, 0, intervallo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ferma polling e worker; possono essere riavviati con {@link #avviaWorker()}.
+     */
+    @PreDestroy
+    public synchronized void arresta() {
+        if (polling == null) return;
+
+        polling.shutdownNow();
+        ThreadPoolExecutor pool = worker;
+        pool.shutdown();
+        try {
+            // Gli invii in corso terminano; quelli non iniziati restano in_invio e ripartono alla scadenza
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        polling = null;
+        worker = null;
+    }
+
+    /**
+     * Accoda l'email riepilogativa della valutazione per il proprietario.
+     *
+     * @param idValutazione ID della valutazione da recapitare
+     * @return messaggio accodato
+     * @throws RuntimeException se valutazione o immobile non trovati
+     */
+    @Transactional
+    public EmailOutbox accodaValutazioneRecap(Integer idValutazione) {
+        return accoda(emailService.componiValutazioneRecap(idValutazione));
+    }
+
+    /**
+     * Accoda le email del contratto PDF per proprietario e agente.
+     *
+     * @param contratto Contratto da inviare
+     * @param pdfBytes Contenuto PDF in byte array
+     * @return messaggi accodati
+     */
+    @Transactional
+    public List<EmailOutbox> accodaContrattoPdf(Contratto contratto, byte[] pdfBytes) {
+        List<EmailOutbox> accodate = new ArrayList<>();
+        for (EmailOutbox email : emailService.componiContrattoPdf(contratto, pdfBytes)) {
+            accodate.add(accoda(email));
+        }
+        return accodate;
+    }
+
+    /**
+     * Salva un messaggio in coda e sveglia il polling dopo il commit
+     * (subito se non c'è una transazione attiva).
+     *
+     * @param email Messaggio composto, non ancora salvato
+     * @return messaggio salvato
+     */
+    @Transactional
+    public EmailOutbox accoda(EmailOutbox email) {
+        LocalDateTime adesso = LocalDateTime.now();
+        email.setStato(EmailOutbox.IN_CODA);
+        email.setTentativi(0);
+        email.setProssimoTentativo(adesso);
+        email.setDataCreazione(adesso);
+        EmailOutbox salvata = emailOutboxRepository.save(email);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sveglia();
+                }
+            });
+        } else {
+            sveglia();
+        }
+        return salvata;
+    }
+
+    /**
+     * Rimette in coda un messaggio fallito (dead letter), azzerando i tentativi.
+     *
+     * @param id ID del messaggio
+     * @return true se il messaggio era "fallita" ed è stato rimesso in coda
+     */
+    public boolean riaccoda(Long id) {
+        boolean riaccodata = emailOutboxRepository.riaccoda(id, LocalDateTime.now()) > 0;
+        if (riaccodata) {
+            sveglia();
+        }
+        return riaccodata;
+    }
+
+    /**
+     * @return conteggi per stato e ultimi messaggi falliti (senza corpo né allegato)
+     */
+    public Map<String, Object> getRiepilogo() {
+        Map<String, Object> conteggi = new LinkedHashMap<>();
+        for (String stato : List.of(EmailOutbox.IN_CODA, EmailOutbox.IN_INVIO, EmailOutbox.INVIATA, EmailOutbox.FALLITA)) {
+            conteggi.put(stato, 0L);
+        }
+        for (EmailOutboxRepository.ConteggioStato c : emailOutboxRepository.countPerStato()) {
+            conteggi.put(c.getStato(), c.getNumero());
+        }
+
+        Map<String, Object> riepilogo = new LinkedHashMap<>();
+        riepilogo.put("conteggi", conteggi);
+        riepilogo.put("fallite", emailOutboxRepository.findSintesiByStato(EmailOutbox.FALLITA,
+            PageRequest.of(0, MAX_FALLITE_RIEPILOGO)));
+        return riepilogo;
+    }
+
+    /**
+     * Ritardo prima del tentativo successivo: backoff esponenziale limitato.
+     *
+     * @param tentativi Tentativi già falliti (almeno 1)
+     * @return millisecondi di attesa: iniziale, 2×iniziale, 4×iniziale, ... fino al massimo
+     */
+    static long ritardo(int tentativi, long iniziale, long massimo) {
+        int esponente = Math.min(tentativi - 1, 30);
+        return Math.min(massimo, iniziale << esponente);
+    }
+
+    private void sveglia() {
+        ScheduledExecutorService attuale = polling;
+        if (attuale != null && !attuale.isShutdown()) {
+            attuale.execute(this::elabora);
+        }
+    }
+
+    /**
+     * Rimette in coda le prese in carico scadute, poi preleva i messaggi scaduti, nei limiti
+     * dei posti liberi del pool, e li passa ai worker.
+     */
+    private void elabora() {
+        ThreadPoolExecutor pool = worker;
+        if (pool == null) return;
+        try {
+            LocalDateTime adesso = LocalDateTime.now();
+            int ripristinati = emailOutboxRepository.ripristinaInInvio(adesso);
+            if (ripristinati > 0) {
+                logger.info("Rimessi in coda {} messaggi interrotti durante l'invio", ripristinati);
+            }
+
+            int posti = pool.getQueue().remainingCapacity();
+            if (posti == 0) return;
+
+            LocalDateTime scadenza = adesso.plusNanos(TimeUnit.MILLISECONDS.toNanos(presaInCarico));
+            for (Long id : emailOutboxRepository.findIdDaInviare(adesso, PageRequest.of(0, posti))) {
+                if (emailOutboxRepository.prenota(id, scadenza) == 1) {
+                    pool.execute(() -> invia(id));
+                }
+            }
+        } catch (Exception e) {
+            // Il polling non deve fermarsi: riprova al giro successivo
+            logger.warn("Errore lettura coda email: {}", e.getMessage());
+        }
+    }
+
+    private void invia(Long id) {
+        EmailOutbox email = emailOutboxRepository.findById(id).orElse(null);
+        if (email == null) return;
+
+        int tentativi = email.getTentativi() + 1;
+        int aggiornate;
+        try {
+            emailService.invia(email);
+            aggiornate = emailOutboxRepository.segnaInviata(id, tentativi, LocalDateTime.now());
+        } catch (Exception e) {
+            String errore = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            if (errore.length() > 1000) {
+                errore = errore.substring(0, 1000);
+            }
+
+            if (tentativi >= maxTentativi) {
+                logger.error("Email {} a {} non inviata dopo {} tentativi: {}", id, email.getDestinatario(), tentativi, errore);
+                aggiornate = emailOutboxRepository.segnaErrore(id, EmailOutbox.FALLITA, tentativi, LocalDateTime.now(), errore);
+            } else {
+                long attesa = ritardo(tentativi, backoffIniziale, backoffMassimo);
+                logger.warn("Invio email {} a {} fallito (tentativo {}/{}), nuovo tentativo tra {} ms: {}",
+                    id, email.getDestinatario(), tentativi, maxTentativi, attesa, errore);
+                aggiornate = emailOutboxRepository.segnaErrore(id, EmailOutbox.IN_CODA, tentativi,
+                    LocalDateTime.now().plusNanos(attesa * 1_000_000), errore);
+            }
+        }
+        if (aggiornate == 0) {
+            // Invio più lungo della presa in carico: il messaggio è già passato a un altro worker
+            logger.warn("Email {}: presa in carico scaduta durante l'invio, esito non registrato", id);
+        }
+    }
+}
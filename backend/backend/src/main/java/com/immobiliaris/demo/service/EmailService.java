@@ -7,6 +7,10 @@
  * - Email riepilogativa valutazione immobile
  * - Email contratto PDF allegato
  * 
+ * Le email verso i clienti passano dalla coda persistente (EmailOutboxService):
+ * qui vengono composte ({@code componi*}) e inviate ({@link #invia(EmailOutbox)}),
+ * mentre la coda decide quando e quante volte tentare l'invio.
+ * 
  * Configurazione SMTP:
  * - Host: smtp.gmail.com (o configurato in application.properties)
  * - Port: 587
@@ -29,10 +33,12 @@ import org.springframework.core.io.ByteArrayResource;
 import com.immobiliaris.demo.entity.Valutazione;
 import com.immobiliaris.demo.entity.Immobile;
 import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.EmailOutbox;
 import com.immobiliaris.demo.repository.ValutazioneJpaRepository;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 @Service
 public class EmailService {
@@ -66,7 +72,20 @@ public class EmailService {
     }
 
     /**
-     * Invia email HTML riepilogativa della valutazione immobile al proprietario.
+     * Invia subito (senza coda) l'email HTML riepilogativa della valutazione al proprietario.
+     * 
+     * @param idValutazione ID della valutazione da recapitare
+     * @throws MessagingException se errore SMTP o immagine non trovata
+     * @throws RuntimeException se valutazione o immobile non trovati
+     * 
+     * @see #componiValutazioneRecap(Integer)
+     */
+    public void sendValutazioneRecap(Integer idValutazione) throws MessagingException {
+        invia(componiValutazioneRecap(idValutazione));
+    }
+
+    /**
+     * Compone l'email HTML riepilogativa della valutazione immobile per il proprietario.
      * 
      * Email contiene:
      * - Logo IMMOBILIARIS inline (immagine PNG)
@@ -80,17 +99,15 @@ public class EmailService {
      * Procedura:
      * 1. Recupera valutazione per ID
      * 2. Estrae dati immobile e proprietario
-     * 3. Genera HTML formattato
-     * 4. Carica logo da resources/static/logo.png
-     * 5. Invia via SMTP con immagine inline (content-id: logoImage)
+     * 3. Genera HTML formattato (logo referenziato come cid:logoImage)
      * 
      * @param idValutazione ID della valutazione da recapitare
-     * @throws MessagingException se errore SMTP o immagine non trovata
+     * @return messaggio pronto per l'invio o per la coda (non salvato)
      * @throws RuntimeException se valutazione o immobile non trovati
      * 
      * @see #generaHtmlRecap(String, String, Immobile, Valutazione)
      */
-    public void sendValutazioneRecap(Integer idValutazione) throws MessagingException {
+    public EmailOutbox componiValutazioneRecap(Integer idValutazione) {
         // Recupera la valutazione e l'immobile collegato
         Valutazione valutazione = valutazioneJpaRepository.findById(idValutazione)
                 .orElseThrow(() -> new RuntimeException("Valutazione non trovata: " + idValutazione));
@@ -108,18 +125,34 @@ public class EmailService {
         // Genera HTML della mail (con <img src='cid:logoImage'/>)
         String htmlContent = generaHtmlRecap(nomeProprietario, cognomeProprietario, immobile, valutazione);
 
-        // Invia mail HTML con immagine inline
+        return new EmailOutbox(emailProprietario, "📋 Riepilogo Valutazione Immobile - " + immobile.getVia(), htmlContent);
+    }
+
+    /**
+     * Invia via SMTP un messaggio composto: HTML con logo inline (content-id: logoImage)
+     * ed eventuale allegato PDF.
+     * 
+     * @param email Messaggio da inviare
+     * @throws MessagingException se errore SMTP o immagine non trovata
+     */
+    public void invia(EmailOutbox email) throws MessagingException {
         MimeMessage mimeMessage = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
 
         helper.setFrom("xiao.chen@edu-its.it");
-        helper.setTo(emailProprietario);
-        helper.setSubject("📋 Riepilogo Valutazione Immobile - " + immobile.getVia());
-        helper.setText(htmlContent, true);
+        helper.setTo(email.getDestinatario());
+        helper.setSubject(email.getOggetto());
+        helper.setText(email.getCorpoHtml(), true);
 
+        // Aggiungi logo inline
         ClassPathResource image = new ClassPathResource("static/logo.png");
         helper.addInline("logoImage", image);
 
+        // Aggiungi PDF come allegato
+        if (email.getAllegato() != null) {
+            helper.addAttachment(email.getNomeAllegato(), new ByteArrayResource(email.getAllegato()));
+        }
+
         mailSender.send(mimeMessage);
     }
 
@@ -223,13 +256,26 @@ public class EmailService {
     }
 
     /**
-     * Invia contratto PDF via email al proprietario e all'agente
+     * Invia subito (senza coda) il contratto PDF via email al proprietario e all'agente
      *
      * @param contratto Contratto da inviare
      * @param pdfBytes Contenuto PDF in byte array
      * @throws MessagingException se errore invio mail
      */
     public void sendContrattoPdf(Contratto contratto, byte[] pdfBytes) throws MessagingException {
+        for (EmailOutbox email : componiContrattoPdf(contratto, pdfBytes)) {
+            invia(email);
+        }
+    }
+
+    /**
+     * Compone le email del contratto PDF: una per il proprietario e una copia per l'agente
+     *
+     * @param contratto Contratto da inviare
+     * @param pdfBytes Contenuto PDF in byte array
+     * @return messaggi pronti per l'invio o per la coda (non salvati)
+     */
+    public List<EmailOutbox> componiContrattoPdf(Contratto contratto, byte[] pdfBytes) {
         Immobile immobile = contratto.getImmobile();
         String emailProprietario = contratto.getUtente().getEmail();
         String nomeProprietario = contratto.getUtente().getNome() + " " + contratto.getUtente().getCognome();
@@ -265,46 +311,18 @@ public class EmailService {
             "Potrà procedere con le attività di promozione e vendita dell'immobile."
         );
         
-        // Invia al proprietario
-        inviaEmailConAllegato(
-            emailProprietario,
-            "📄 Contratto di Mediazione Immobiliare - " + immobile.getVia(),
-            htmlProprietario,
-            nomeFile,
-            pdfBytes
-        );
-        
-        // Invia all'agente
-        inviaEmailConAllegato(
-            emailAgente,
-            "📄 [COPIA] Contratto di Mediazione - " + immobile.getVia(),
-            htmlAgente,
-            nomeFile,
-            pdfBytes
+        return List.of(
+            conAllegato(new EmailOutbox(emailProprietario,
+                "📄 Contratto di Mediazione Immobiliare - " + immobile.getVia(), htmlProprietario), nomeFile, pdfBytes),
+            conAllegato(new EmailOutbox(emailAgente,
+                "📄 [COPIA] Contratto di Mediazione - " + immobile.getVia(), htmlAgente), nomeFile, pdfBytes)
         );
     }
     
-    /**
-     * Metodo helper per inviare email con allegato PDF
-     */
-    private void inviaEmailConAllegato(String destinatario, String oggetto, String htmlContent, 
-                                       String nomeFile, byte[] pdfBytes) throws MessagingException {
-        MimeMessage mimeMessage = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-        
-        helper.setFrom("xiao.chen@edu-its.it");
-        helper.setTo(destinatario);
-        helper.setSubject(oggetto);
-        helper.setText(htmlContent, true);
-        
-        // Aggiungi logo inline
-        ClassPathResource image = new ClassPathResource("static/logo.png");
-        helper.addInline("logoImage", image);
-        
-        // Aggiungi PDF come allegato
-        helper.addAttachment(nomeFile, new ByteArrayResource(pdfBytes));
-        
-        mailSender.send(mimeMessage);
+    private static EmailOutbox conAllegato(EmailOutbox email, String nomeFile, byte[] contenuto) {
+        email.setNomeAllegato(nomeFile);
+        email.setAllegato(contenuto);
+        return email;
     }
     
     /**
@@ -0,0 +1,245 @@
+/**
+ * Service per l'esportazione massiva dei PDF dei contratti in un archivio ZIP (audit).
+ *
+ * Pipeline:
+ * 1. Lettura degli id dei contratti filtrati a blocchi (keyset su Id_contratto) e dei
+ *    contratti del blocco con parti, immobile e valutazione in una sola query
+ * 2. Generazione dei PDF su un pool di worker condiviso da tutte le esportazioni
+ *    (contratti.export.worker, default un worker per core)
+ * 3. Scrittura di ogni PDF nello ZIP appena pronto, nell'ordine di completamento
+ *
+ * La memoria resta limitata qualunque sia il numero di contratti: al massimo un blocco
+ * di contratti letti e {@link #finestra} PDF in attesa di essere scritti. Ogni blocco
+ * viene staccato dal contesto di persistenza appena letto (con open-in-view il contesto
+ * dura quanto la richiesta): i worker leggono solo entità staccate, già caricate per intero.
+ * I PDF già presenti nell'archivio ({@link ArchivioPdfContrattiService}) vengono letti
+ * da disco; gli altri sono generati in memoria senza finire nell'archivio, per non
+ * espellere i PDF delle anteprime. Nessuna email viene inviata.
+ *
+ * I contratti che non si possono generare (dati mancanti) non interrompono
+ * l'esportazione: sono elencati nel file errori.txt in fondo allo ZIP.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.repository.ContrattoJpaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Service
+public class EsportazioneContrattiService {
+    private static final Logger logger = LoggerFactory.getLogger(EsportazioneContrattiService.class);
+
+    /** Contratti letti dal database per blocco */
+    static final int DIMENSIONE_BLOCCO = 100;
+
+    /** Stati esportati se la richiesta non ne indica */
+    public static final List<String> STATI_PREDEFINITI = List.of("attivo", "chiuso");
+
+    /** Estremi usati quando il filtro sulla data di inizio non è indicato */
+    private static final LocalDateTime DATA_MINIMA = LocalDateTime.of(1000, 1, 1, 0, 0);
+    private static final LocalDateTime DATA_MASSIMA = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Autowired
+    private ContrattoJpaRepository contrattoRepository;
+
+    @Autowired
+    private RegistroStati registroStati;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PdfContrattoService pdfContrattoService;
+
+    @Autowired
+    private ArchivioPdfContrattiService archivioPdfContratti;
+
+    @Value("${contratti.export.worker:0}")
+    private int numeroWorker;
+
+    private ExecutorService worker;
+
+    /** PDF generati e non ancora scritti, per esportazione */
+    private int finestra;
+
+    /**
+     * Esito di un'esportazione.
+     */
+    public record Riepilogo(int esportati, int errori) {}
+
+    /** PDF di un contratto pronto per lo ZIP, o l'errore che ne ha impedito la generazione */
+    private record Documento(Long id, byte[] pdf, String errore) {}
+
+    @PostConstruct
+    void avvia() {
+        int n = numeroWorker > 0 ? numeroWorker : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contatore = new AtomicInteger();
+        worker = Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "export-contratti-" + contatore.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        finestra = 2 * n;
+    }
+
+    @PreDestroy
+    public void arresta() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Scrive su {@code out} uno ZIP con il PDF di ogni contratto che rispetta il filtro.
+     * Lo stream non viene chiuso. Il contesto di persistenza del chiamante viene svuotato
+     * dopo ogni blocco letto.
+     *
+     * @param stati Stati del contratto (case-insensitive); null o vuoto: attivo e chiuso
+     * @param da Data inizio minima, inclusa (null: nessun limite)
+     * @param a Data inizio massima, esclusa (null: nessun limite)
+     * @param out Destinazione dello ZIP (tipicamente la risposta HTTP)
+     * @return contratti esportati e contratti in errore
+     * @throws IOException se la scrittura fallisce (es. client disconnesso): i PDF in corso vengono annullati
+     */
+    public Riepilogo esporta(List<String> stati, LocalDateTime da, LocalDateTime a, OutputStream out) throws IOException {
+        // Stati per id (colonna indicizzata); i nomi sconosciuti non corrispondono a nessun contratto
+        List<Integer> filtroStati = registroStati.idContratti(stati == null || stati.isEmpty() ? STATI_PREDEFINITI : stati);
+        LocalDateTime filtroDa = da != null ? da : DATA_MINIMA;
+        LocalDateTime filtroA = a != null ? a : DATA_MASSIMA;
+
+        long avvio = System.currentTimeMillis();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        CompletionService<Documento> completati = new ExecutorCompletionService<>(worker);
+        Set<Future<Documento>> inCorso = new HashSet<>();
+        List<String> errori = new ArrayList<>();
+        int esportati = 0;
+
+        try {
+            Long dopoId = 0L;
+            while (!filtroStati.isEmpty()) {
+                List<Long> ids = contrattoRepository.findIdPerEsportazione(filtroStati, filtroDa, filtroA, dopoId,
+                    PageRequest.of(0, DIMENSIONE_BLOCCO));
+                if (ids.isEmpty()) break;
+                dopoId = ids.get(ids.size() - 1);
+
+                List<Contratto> blocco = contrattoRepository.findConDatiPdf(ids);
+                // Relazioni tutte caricate dalla query: il blocco si stacca prima di passarlo ai worker
+                entityManager.clear();
+                for (Contratto contratto : blocco) {
+                    // Finestra piena: si scrive un PDF prima di chiederne un altro
+                    while (inCorso.size() >= finestra) {
+                        esportati += scrivi(zip, prossimo(completati, inCorso), errori);
+                    }
+                    inCorso.add(completati.submit(() -> genera(contratto)));
+                }
+            }
+            while (!inCorso.isEmpty()) {
+                esportati += scrivi(zip, prossimo(completati, inCorso), errori);
+            }
+
+            if (!errori.isEmpty()) {
+                zip.putNextEntry(new ZipEntry("errori.txt"));
+                zip.write(String.join("\n", errori).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            for (Future<Documento> f : inCorso) {
+                f.cancel(true);
+            }
+        }
+
+        logger.info("Esportazione contratti {}: {} PDF, {} errori in {} ms",
+            filtroStati, esportati, errori.size(), System.currentTimeMillis() - avvio);
+        return new Riepilogo(esportati, errori.size());
+    }
+
+    private Documento genera(Contratto contratto) {
+        try {
+            String impronta = archivioPdfContratti.impronta(contratto);
+            ArchivioPdfContrattiService.PdfArchiviato archiviato = archivioPdfContratti.cerca(contratto, impronta);
+            if (archiviato != null) {
+                try {
+                    return new Documento(contratto.getId(), archivioPdfContratti.leggi(archiviato), null);
+                } catch (IOException e) {
+                    // Cancellato nel frattempo dall'archivio: si rigenera
+                }
+            }
+            return new Documento(contratto.getId(), pdfContrattoService.generaContrattoPdf(contratto), null);
+        } catch (Exception e) {
+            String messaggio = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new Documento(contratto.getId(), null, messaggio);
+        }
+    }
+
+    private static Documento prossimo(CompletionService<Documento> completati, Set<Future<Documento>> inCorso)
+            throws IOException {
+        try {
+            Future<Documento> pronto = completati.take();
+            inCorso.remove(pronto);
+            return pronto.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Esportazione interrotta");
+        } catch (ExecutionException e) {
+            // genera() non lancia eccezioni: qui solo errori imprevisti del worker
+            throw new IOException("Errore nella generazione di un PDF", e.getCause());
+        }
+    }
+
+    /**
+     * Scrive il PDF come voce non compressa (STORED): il PDF è già compresso.
+     *
+     * @return 1 se il PDF è stato scritto, 0 se il contratto è in errore
+     */
+    private static int scrivi(ZipOutputStream zip, Documento documento, List<String> errori) throws IOException {
+        if (documento.errore() != null) {
+            errori.add("contratto " + documento.id() + ": " + documento.errore());
+            return 0;
+        }
+        byte[] pdf = documento.pdf();
+        CRC32 crc = new CRC32();
+        crc.update(pdf);
+
+        ZipEntry voce = new ZipEntry("contratto_" + documento.id() + ".pdf");
+        voce.setMethod(ZipEntry.STORED);
+        voce.setSize(pdf.length);
+        voce.setCompressedSize(pdf.length);
+        voce.setCrc(crc.getValue());
+        zip.putNextEntry(voce);
+        zip.write(pdf);
+        zip.closeEntry();
+        return 1;
+    }
+}
@@ -0,0 +1,401 @@
+/**
+ * Service per l'esportazione in CSV o NDJSON di immobili, valutazioni e contratti (area admin).
+ *
+ * Le righe non vengono mai raccolte in liste: ogni tabella è letta con uno {@code Stream}
+ * del repository (fetch size 500, entità in sola lettura) e ogni riga è scritta subito
+ * sull'output. Ogni {@link #BLOCCO} righe le entità lette vengono staccate dal contesto
+ * di persistenza, quindi la memoria usata non dipende dal numero di righe esportate.
+ *
+ * Le colonne sono quelle mostrate dalle liste admin, con le stesse join:
+ * - immobili: proprietario, stato e valutazione più recente (prezzo AI/umano, agente)
+ * - valutazioni: stato, agente, immobile e proprietario
+ * - contratti: stato, parti, immobile e valutazione umana
+ *
+ * Con MySQL la fetch size viene rispettata solo con useCursorFetch=true nell'URL JDBC;
+ * senza, il driver legge tutto il risultato in memoria prima della prima riga.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.repository.ContrattoJpaRepository;
+import com.immobiliaris.demo.repository.ImmobileJpaRepository;
+import com.immobiliaris.demo.repository.ValutazioneJpaRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@Service
+public class EsportazioneDatiService {
+    private static final Logger logger = LoggerFactory.getLogger(EsportazioneDatiService.class);
+
+    /** Righe scritte tra un distacco delle entità e il successivo (una query di valutazioni per gli immobili) */
+    static final int BLOCCO = 500;
+
+    /**
+     * Formato del file esportato.
+     */
+    public enum Formato {
+        CSV("text/csv;charset=UTF-8", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String estensione;
+
+        Formato(String contentType, String estensione) {
+            this.contentType = contentType;
+            this.estensione = estensione;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEstensione() {
+            return estensione;
+        }
+
+        /**
+         * @param nome "csv" o "ndjson" (case-insensitive)
+         * @throws IllegalArgumentException se il formato non è supportato
+         */
+        public static Formato da(String nome) {
+            for (Formato formato : values()) {
+                if (formato.estensione.equalsIgnoreCase(nome)) {
+                    return formato;
+                }
+            }
+            throw new IllegalArgumentException("Formato non supportato: " + nome + " (csv o ndjson)");
+        }
+    }
+
+    /** Colonna esportata: nome (intestazione CSV / chiave JSON) e valore letto dalla riga */
+    private record Colonna<T>(String nome, Function<T, Object> valore) {}
+
+    /** Immobile con la sua valutazione più recente (null se non valutato) */
+    private record RigaImmobile(Immobile immobile, Valutazione valutazione) {}
+
+    private static final List<Colonna<RigaImmobile>> COLONNE_IMMOBILI = List.of(
+        new Colonna<>("id", r -> r.immobile().getId()),
+        new Colonna<>("via", r -> r.immobile().getVia()),
+        new Colonna<>("citta", r -> r.immobile().getCitta()),
+        new Colonna<>("cap", r -> r.immobile().getCap()),
+        new Colonna<>("provincia", r -> r.immobile().getProvincia()),
+        new Colonna<>("tipologia", r -> r.immobile().getTipologia()),
+        new Colonna<>("metratura", r -> r.immobile().getMetratura()),
+        new Colonna<>("condizioni", r -> r.immobile().getCondizioni()),
+        new Colonna<>("stanze", r -> r.immobile().getStanze()),
+        new Colonna<>("bagni", r -> r.immobile().getBagni()),
+        new Colonna<>("riscaldamento", r -> r.immobile().getRiscaldamento()),
+        new Colonna<>("piano", r -> r.immobile().getPiano()),
+        new Colonna<>("ascensore", r -> r.immobile().getAscensore()),
+        new Colonna<>("garage", r -> r.immobile().getGarage()),
+        new Colonna<>("giardino", r -> r.immobile().getGiardino()),
+        new Colonna<>("balcone", r -> r.immobile().getBalcone()),
+        new Colonna<>("terrazzo", r -> r.immobile().getTerrazzo()),
+        new Colonna<>("cantina", r -> r.immobile().getCantina()),
+        new Colonna<>("prezzo", r -> r.immobile().getPrezzo()),
+        new Colonna<>("descrizione", r -> r.immobile().getDescrizione()),
+        new Colonna<>("dataRegistrazione", r -> r.immobile().getDataRegistrazione()),
+        new Colonna<>("statoImmobile", r -> r.immobile().getStatoImmobile() != null ? r.immobile().getStatoImmobile().getNome() : null),
+        new Colonna<>("nomeProprietario", r -> nomeCompleto(r.immobile().getProprietario())),
+        new Colonna<>("emailProprietario", r -> r.immobile().getProprietario() != null ? r.immobile().getProprietario().getEmail() : null),
+        new Colonna<>("telefonoProprietario", r -> r.immobile().getProprietario() != null ? r.immobile().getProprietario().getTelefono() : null),
+        new Colonna<>("prezzoAI", r -> r.valutazione() != null ? r.valutazione().getPrezzoAI() : null),
+        new Colonna<>("prezzoUmano", r -> r.valutazione() != null ? r.valutazione().getPrezzoUmano() : null),
+        new Colonna<>("dataValutazione", r -> r.valutazione() != null ? r.valutazione().getDataValutazione() : null),
+        new Colonna<>("statoValutazione", r -> r.valutazione() != null && r.valutazione().getStatoValutazione() != null
+            ? r.valutazione().getStatoValutazione().getNome() : null),
+        new Colonna<>("agenteAssegnato", r -> r.valutazione() != null ? nomeCompleto(r.valutazione().getAgente()) : null)
+    );
+
+    private static final List<Colonna<Valutazione>> COLONNE_VALUTAZIONI = List.of(
+        new Colonna<>("id", Valutazione::getId),
+        new Colonna<>("statoValutazione", v -> v.getStatoValutazione() != null ? v.getStatoValutazione().getNome() : null),
+        new Colonna<>("prezzoAI", Valutazione::getPrezzoAI),
+        new Colonna<>("prezzoUmano", Valutazione::getPrezzoUmano),
+        new Colonna<>("dataValutazione", Valutazione::getDataValutazione),
+        new Colonna<>("descrizione", Valutazione::getDescrizione),
+        new Colonna<>("nomeAgente", v -> nomeCompleto(v.getAgente())),
+        new Colonna<>("emailAgente", v -> v.getAgente() != null ? v.getAgente().getEmail() : null),
+        new Colonna<>("idImmobile", v -> v.getImmobile() != null ? v.getImmobile().getId() : null),
+        new Colonna<>("tipo", v -> v.getImmobile() != null ? v.getImmobile().getTipologia() : null),
+        new Colonna<>("via", v -> v.getImmobile() != null ? v.getImmobile().getVia() : null),
+        new Colonna<>("citta", v -> v.getImmobile() != null ? v.getImmobile().getCitta() : null),
+        new Colonna<>("cap", v -> v.getImmobile() != null ? v.getImmobile().getCap() : null),
+        new Colonna<>("provincia", v -> v.getImmobile() != null ? v.getImmobile().getProvincia() : null),
+        new Colonna<>("metratura", v -> v.getImmobile() != null ? v.getImmobile().getMetratura() : null),
+        new Colonna<>("nomeProprietario", v -> v.getImmobile() != null ? nomeCompleto(v.getImmobile().getProprietario()) : null),
+        new Colonna<>("emailProprietario", v -> v.getImmobile() != null && v.getImmobile().getProprietario() != null
+            ? v.getImmobile().getProprietario().getEmail() : null),
+        new Colonna<>("telefonoProprietario", v -> v.getImmobile() != null && v.getImmobile().getProprietario() != null
+            ? v.getImmobile().getProprietario().getTelefono() : null)
+    );
+
+    private static final List<Colonna<Contratto>> COLONNE_CONTRATTI = List.of(
+        new Colonna<>("id", Contratto::getId),
+        new Colonna<>("numeroContratto", Contratto::getNumeroContratto),
+        new Colonna<>("statoContratto", c -> c.getStatoContratto() != null ? c.getStatoContratto().getNome() : null),
+        new Colonna<>("dataInvio", Contratto::getDataInvio),
+        new Colonna<>("dataRicezione", Contratto::getDataRicezione),
+        new Colonna<>("dataInizio", Contratto::getDataInizio),
+        new Colonna<>("dataFine", Contratto::getDataFine),
+        new Colonna<>("percentualeCommissione", Contratto::getPercentualeCommissione),
+        new Colonna<>("valutazioneUmana", c -> c.getValutazione() != null ? c.getValutazione().getPrezzoUmano() : null),
+        new Colonna<>("idImmobile", c -> c.getImmobile() != null ? c.getImmobile().getId() : null),
+        new Colonna<>("tipo", c -> c.getImmobile() != null ? c.getImmobile().getTipologia() : null),
+        new Colonna<>("via", c -> c.getImmobile() != null ? c.getImmobile().getVia() : null),
+        new Colonna<>("citta", c -> c.getImmobile() != null ? c.getImmobile().getCitta() : null),
+        new Colonna<>("nomeProprietario", c -> c.getImmobile() != null ? nomeCompleto(c.getImmobile().getProprietario()) : null),
+        new Colonna<>("agenteAssegnato", c -> nomeCompleto(c.getAgente()))
+    );
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Autowired
+    private ImmobileJpaRepository immobileRepository;
+
+    @Autowired
+    private ValutazioneJpaRepository valutazioneRepository;
+
+    @Autowired
+    private ContrattoJpaRepository contrattoRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * Esporta tutti gli immobili, in ordine di id, con la valutazione più recente di ciascuno.
+     * Le valutazioni sono lette con una query per blocco di {@link #BLOCCO} immobili.
+     * Lo stream di output non viene chiuso.
+     *
+     * @return Numero di righe esportate
+     */
+    @Transactional(readOnly = true)
+    public long esportaImmobili(Formato formato, OutputStream out) throws IOException {
+        Scrittore<RigaImmobile> scrittore = scrittore(formato, out, COLONNE_IMMOBILI);
+        List<Immobile> blocco = new ArrayList<>(BLOCCO);
+        try (Stream<Immobile> immobili = immobileRepository.streamPerEsportazione()) {
+            Iterator<Immobile> it = immobili.iterator();
+            while (it.hasNext()) {
+                blocco.add(it.next());
+                if (blocco.size() == BLOCCO) {
+                    scriviImmobili(blocco, scrittore);
+                }
+            }
+            scriviImmobili(blocco, scrittore);
+        }
+        return scrittore.chiudi();
+    }
+
+    /**
+     * Esporta tutte le valutazioni, in ordine di id. Lo stream di output non viene chiuso.
+     *
+     * @return Numero di righe esportate
+     */
+    @Transactional(readOnly = true)
+    public long esportaValutazioni(Formato formato, OutputStream out) throws IOException {
+        try (Stream<Valutazione> valutazioni = valutazioneRepository.streamPerEsportazione()) {
+            return esporta(valutazioni, scrittore(formato, out, COLONNE_VALUTAZIONI));
+        }
+    }
+
+    /**
+     * Esporta tutti i contratti, in ordine di id. Lo stream di output non viene chiuso.
+     *
+     * @return Numero di righe esportate
+     */
+    @Transactional(readOnly = true)
+    public long esportaContratti(Formato formato, OutputStream out) throws IOException {
+        try (Stream<Contratto> contratti = contrattoRepository.streamPerEsportazione()) {
+            return esporta(contratti, scrittore(formato, out, COLONNE_CONTRATTI));
+        }
+    }
+
+    private <T> long esporta(Stream<T> righe, Scrittore<T> scrittore) throws IOException {
+        Iterator<T> it = righe.iterator();
+        while (it.hasNext()) {
+            scrittore.scrivi(it.next());
+            if (scrittore.righe % BLOCCO == 0) {
+                // Le entità già scritte non servono più: il contesto di persistenza resta piccolo
+                entityManager.clear();
+            }
+        }
+        return scrittore.chiudi();
+    }
+
+    /**
+     * Scrive un blocco di immobili con la loro valutazione più recente e svuota il blocco.
+     */
+    private void scriviImmobili(List<Immobile> blocco, Scrittore<RigaImmobile> scrittore) throws IOException {
+        if (blocco.isEmpty()) {
+            return;
+        }
+        Map<Integer, Valutazione> valutazioni = valutazioneRepository.findUltimaValutazionePerImmobile(
+            blocco.stream().map(Immobile::getId).toList());
+        for (Immobile immobile : blocco) {
+            scrittore.scrivi(new RigaImmobile(immobile, valutazioni.get(immobile.getId())));
+        }
+        blocco.clear();
+        entityManager.clear();
+    }
+
+    private <T> Scrittore<T> scrittore(Formato formato, OutputStream out, List<Colonna<T>> colonne) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        return formato == Formato.CSV ? new ScrittoreCsv<>(writer, colonne) : new ScrittoreNdjson<>(writer, colonne, jsonFactory);
+    }
+
+    private static String nomeCompleto(User user) {
+        return user != null ? user.getNome() + " " + user.getCognome() : null;
+    }
+
+    /**
+     * Scrive le righe nel formato richiesto man mano che arrivano.
+     */
+    private abstract static class Scrittore<T> {
+        protected final List<Colonna<T>> colonne;
+        protected long righe;
+
+        Scrittore(List<Colonna<T>> colonne) {
+            this.colonne = colonne;
+        }
+
+        void scrivi(T riga) throws IOException {
+            scriviRiga(riga);
+            righe++;
+        }
+
+        abstract void scriviRiga(T riga) throws IOException;
+
+        /** Svuota il buffer senza chiudere lo stream sottostante */
+        abstract void svuota() throws IOException;
+
+        long chiudi() throws IOException {
+            svuota();
+            logger.debug("Esportate {} righe", righe);
+            return righe;
+        }
+    }
+
+    /**
+     * CSV con separatore ";" (Excel in italiano) e intestazione. I testi con separatore,
+     * virgolette o a capo sono tra virgolette; quelli che iniziano con = + - @ sono preceduti
+     * da un apostrofo perché il foglio di calcolo non li interpreti come formule.
+     */
+    private static final class ScrittoreCsv<T> extends Scrittore<T> {
+        private static final char SEPARATORE = ';';
+        private final Writer writer;
+
+        ScrittoreCsv(Writer writer, List<Colonna<T>> colonne) throws IOException {
+            super(colonne);
+            this.writer = writer;
+            for (int i = 0; i < colonne.size(); i++) {
+                if (i > 0) writer.write(SEPARATORE);
+                writer.write(colonne.get(i).nome());
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        void scriviRiga(T riga) throws IOException {
+            for (int i = 0; i < colonne.size(); i++) {
+                if (i > 0) writer.write(SEPARATORE);
+                Object valore = colonne.get(i).valore().apply(riga);
+                if (valore instanceof String testo) {
+                    scriviTesto(testo);
+                } else if (valore != null) {
+                    writer.write(valore.toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private void scriviTesto(String testo) throws IOException {
+            if (!testo.isEmpty() && "=+-@".indexOf(testo.charAt(0)) >= 0) {
+                testo = "'" + testo;
+            }
+            boolean virgolette = testo.indexOf(SEPARATORE) >= 0 || testo.indexOf('"') >= 0
+                || testo.indexOf('\n') >= 0 || testo.indexOf('\r') >= 0;
+            if (!virgolette) {
+                writer.write(testo);
+                return;
+            }
+            writer.write('"');
+            writer.write(testo.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        void svuota() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Un oggetto JSON per riga; date in formato ISO-8601.
+     */
+    private static final class ScrittoreNdjson<T> extends Scrittore<T> {
+        private final JsonGenerator json;
+
+        ScrittoreNdjson(Writer writer, List<Colonna<T>> colonne, JsonFactory jsonFactory) throws IOException {
+            super(colonne);
+            this.json = jsonFactory.createGenerator(writer);
+            // Il generatore non deve chiudere la risposta HTTP; le righe sono separate solo da "\n"
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+        }
+
+        @Override
+        void scriviRiga(T riga) throws IOException {
+            json.writeStartObject();
+            for (Colonna<T> colonna : colonne) {
+                json.writeFieldName(colonna.nome());
+                Object valore = colonna.valore().apply(riga);
+                if (valore == null) {
+                    json.writeNull();
+                } else if (valore instanceof Integer n) {
+                    json.writeNumber(n);
+                } else if (valore instanceof Long n) {
+                    json.writeNumber(n);
+                } else if (valore instanceof Double n) {
+                    json.writeNumber(n);
+                } else if (valore instanceof Boolean b) {
+                    json.writeBoolean(b);
+                } else {
+                    json.writeString(valore.toString());
+                }
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        void svuota() throws IOException {
+            json.flush();
+        }
+    }
+}
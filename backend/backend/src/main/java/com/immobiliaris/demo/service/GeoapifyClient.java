@@ -0,0 +1,228 @@
+/**
+ * Client HTTP verso Geoapify con tempi massimi, limite di concorrenza e circuit breaker.
+ *
+ * Un Geoapify lento non deve tenere occupati i thread di Tomcat:
+ * - connessioni keep-alive riusate dal pool del client JDK (HTTP/1.1)
+ * - timeout di connessione (geoapify.http.connect-timeout, default 2s) e di risposta
+ *   (geoapify.http.read-timeout, default 3s)
+ * - al più geoapify.http.max-concorrenti chiamate contemporanee (default 8): le richieste
+ *   oltre il limite non attendono e ricevono subito {@link NonDisponibile}
+ * - circuit breaker: dopo geoapify.circuito.soglia-errori errori consecutivi (timeout,
+ *   errori di rete, 5xx, 429) il circuito si apre e per geoapify.circuito.apertura
+ *   (default 30s) nessuna chiamata parte; poi una sola richiesta di prova decide se
+ *   richiuderlo o riaprirlo
+ *
+ * Gli errori 4xx diversi da 429 (es. chiave API non valida) non aprono il circuito:
+ * non dipendono dal carico di Geoapify.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+
+@Component
+public class GeoapifyClient {
+    private static final Logger logger = LoggerFactory.getLogger(GeoapifyClient.class);
+
+    /**
+     * Stato del circuit breaker.
+     */
+    public enum Stato { CHIUSO, APERTO, SEMI_APERTO }
+
+    /**
+     * Chiamata non eseguita: circuito aperto o troppe chiamate in corso.
+     * Chi la riceve deve usare una validazione locale.
+     */
+    public static class NonDisponibile extends RuntimeException {
+        public NonDisponibile(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Risposta di Geoapify con stato HTTP di errore.
+     */
+    public static class ErroreHttp extends IOException {
+        private final int status;
+
+        public ErroreHttp(int status) {
+            super("Geoapify ha risposto HTTP " + status);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    @Value("${geoapify.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${geoapify.http.read-timeout:3s}")
+    private Duration readTimeout;
+
+    @Value("${geoapify.http.max-concorrenti:8}")
+    private int maxConcorrenti;
+
+    @Value("${geoapify.circuito.soglia-errori:5}")
+    private int sogliaErrori;
+
+    @Value("${geoapify.circuito.apertura:30s}")
+    private Duration apertura;
+
+    private HttpClient httpClient;
+    private Semaphore permessi;
+
+    /** Stato del circuito: letto e modificato solo in blocchi synchronized */
+    private Stato stato = Stato.CHIUSO;
+    private int erroriConsecutivi;
+    private long apertoFinoA;
+
+    @PostConstruct
+    void inizializza() {
+        httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        permessi = new Semaphore(maxConcorrenti);
+    }
+
+    /**
+     * GET con tutte le protezioni.
+     *
+     * @param uri Indirizzo completo (con apiKey)
+     * @return Corpo della risposta 2xx
+     * @throws NonDisponibile se il circuito è aperto o il limite di concorrenza è raggiunto
+     * @throws ErroreHttp se Geoapify risponde con uno stato di errore
+     * @throws IOException per timeout ed errori di rete
+     */
+    public String get(URI uri) throws IOException {
+        return invia(uri, "application/json", HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * GET di un'immagine (mappe statiche), con le stesse protezioni di {@link #get(URI)}.
+     *
+     * @return Byte della risposta 2xx
+     */
+    public byte[] getImmagine(URI uri) throws IOException {
+        return invia(uri, "image/*", HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private <T> T invia(URI uri, String accept, HttpResponse.BodyHandler<T> corpo) throws IOException {
+        if (!permessi.tryAcquire()) {
+            throw new NonDisponibile("Troppe chiamate a Geoapify in corso (" + maxConcorrenti + ")");
+        }
+        try {
+            autorizza();
+            // Ogni chiamata autorizzata registra un esito: una prova senza esito lascerebbe
+            // il circuito semi-aperto per sempre
+            boolean esitoRegistrato = false;
+            try {
+                HttpRequest richiesta = HttpRequest.newBuilder(uri)
+                    .timeout(readTimeout)
+                    .header("Accept", accept)
+                    .GET()
+                    .build();
+                HttpResponse<T> risposta;
+                try {
+                    risposta = httpClient.send(richiesta, corpo);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Chiamata a Geoapify interrotta");
+                }
+
+                int status = risposta.statusCode();
+                if (status >= 500 || status == 429) {
+                    throw new ErroreHttp(status);
+                }
+                registraSuccesso();
+                esitoRegistrato = true;
+                if (status >= 400) {
+                    throw new ErroreHttp(status);
+                }
+                return risposta.body();
+            } finally {
+                // Timeout, errori di rete, 5xx/429 ed eccezioni inattese (URI non valida, handler della risposta)
+                if (!esitoRegistrato) {
+                    registraErrore();
+                }
+            }
+        } finally {
+            permessi.release();
+        }
+    }
+
+    /**
+     * @return Stato corrente del circuito
+     */
+    public synchronized Stato getStato() {
+        if (stato == Stato.APERTO && System.currentTimeMillis() >= apertoFinoA) {
+            return Stato.SEMI_APERTO;
+        }
+        return stato;
+    }
+
+    /**
+     * Lascia passare la chiamata o lancia {@link NonDisponibile}.
+     * Allo scadere dell'apertura passa una sola chiamata di prova.
+     */
+    private synchronized void autorizza() {
+        switch (stato) {
+            case CHIUSO -> { }
+            case APERTO -> {
+                if (System.currentTimeMillis() < apertoFinoA) {
+                    throw new NonDisponibile("Circuito Geoapify aperto");
+                }
+                stato = Stato.SEMI_APERTO;
+                logger.info("Circuito Geoapify semi-aperto: chiamata di prova");
+            }
+            case SEMI_APERTO -> throw new NonDisponibile("Circuito Geoapify in prova");
+        }
+    }
+
+    private synchronized void registraSuccesso() {
+        if (stato != Stato.CHIUSO) {
+            logger.info("Circuito Geoapify chiuso");
+        }
+        stato = Stato.CHIUSO;
+        erroriConsecutivi = 0;
+    }
+
+    private synchronized void registraErrore() {
+        erroriConsecutivi++;
+        if (stato == Stato.SEMI_APERTO || erroriConsecutivi >= sogliaErrori) {
+            if (stato != Stato.APERTO) {
+                logger.warn("Circuito Geoapify aperto per {} dopo {} errori consecutivi", apertura, erroriConsecutivi);
+            }
+            stato = Stato.APERTO;
+            apertoFinoA = System.currentTimeMillis() + apertura.toMillis();
+        }
+    }
+
+    /**
+     * Circuito chiuso e contatori azzerati, per i test.
+     */
+    synchronized void reimposta() {
+        stato = Stato.CHIUSO;
+        erroriConsecutivi = 0;
+        apertoFinoA = 0;
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Service per la cache delle risposte Geoapify usate nella validazione degli indirizzi.
+ *
+ * Il frontend ripete la stessa ricerca a ogni battuta e a ogni ritorno sul form:
+ * la risposta viene conservata per indirizzo normalizzato (minuscolo, spazi e
+ * virgole compattati) e riletta senza chiamare Geoapify.
+ *
+ * Livelli:
+ * 1. Memoria: LRU limitata a geoapify.cache.max-voci risposte
+ * 2. Database (tabella Geocoding_cache): sopravvive ai riavvii
+ * 3. Geoapify: solo se l'indirizzo non è in cache o la risposta è scaduta
+ *
+ * Scadenze:
+ * - risposta con risultati (positiva): geoapify.cache.ttl-positivo, default 7 giorni
+ * - risposta senza risultati (negativa): geoapify.cache.ttl-negativo, default 10 minuti,
+ *   così un indirizzo digitato a metà non resta "inesistente" a lungo
+ * - errori di Geoapify (timeout, 4xx, 5xx): mai in cache
+ *
+ * Richieste concorrenti per lo stesso indirizzo non ancora in cache fanno una sola
+ * chiamata a Geoapify: le altre attendono la risposta della prima (single-flight).
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.immobiliaris.demo.entity.GeocodingCache;
+import com.immobiliaris.demo.repository.GeocodingCacheRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+@Service
+public class GeocodingCacheService {
+    private static final Logger logger = LoggerFactory.getLogger(GeocodingCacheService.class);
+
+    /** Lunghezza massima dell'indirizzo salvato nella colonna Indirizzo */
+    private static final int LUNGHEZZA_INDIRIZZO = 500;
+
+    @Autowired
+    private GeocodingCacheRepository geocodingCacheRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${geoapify.cache.ttl-positivo:7d}")
+    private Duration ttlPositivo;
+
+    @Value("${geoapify.cache.ttl-negativo:10m}")
+    private Duration ttlNegativo;
+
+    @Value("${geoapify.cache.max-voci:10000}")
+    private int maxVoci;
+
+    /** Risposta in cache con la sua scadenza */
+    private record Voce(String risposta, LocalDateTime scadenza) {
+        boolean valida(LocalDateTime adesso) {
+            return scadenza.isAfter(adesso);
+        }
+    }
+
+    /** LRU in memoria, in ordine di accesso */
+    private Map<String, Voce> memoria;
+
+    /** Chiamate a Geoapify in corso per chiave */
+    private final Map<String, CompletableFuture<String>> inCorso = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void inizializza() {
+        memoria = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Voce> eldest) {
+                return size() > maxVoci;
+            }
+        };
+        try {
+            int cancellate = geocodingCacheRepository.deleteScadute(LocalDateTime.now());
+            logger.info("Cache geocoding: {} risposte scadute cancellate", cancellate);
+        } catch (Exception e) {
+            logger.warn("Pulizia della cache geocoding non riuscita: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Risposta Geoapify per l'indirizzo, dalla cache o dalla chiamata indicata.
+     *
+     * @param indirizzo Testo cercato su Geoapify
+     * @param chiamata Chiamata a Geoapify, eseguita solo se la risposta non è in cache
+     * @return Corpo JSON della risposta
+     * @throws Exception l'errore della chiamata, anche per le richieste che la stavano attendendo
+     */
+    public String cerca(String indirizzo, Callable<String> chiamata) throws Exception {
+        String normalizzato = normalizza(indirizzo);
+        String chiave = chiave(normalizzato);
+        LocalDateTime adesso = LocalDateTime.now();
+
+        Voce voce = leggiMemoria(chiave);
+        if (voce != null && voce.valida(adesso)) {
+            return voce.risposta();
+        }
+
+        CompletableFuture<String> mia = new CompletableFuture<>();
+        CompletableFuture<String> altrui = inCorso.putIfAbsent(chiave, mia);
+        if (altrui != null) {
+            return attendi(altrui);
+        }
+
+        try {
+            String risposta = carica(chiave, normalizzato, chiamata, adesso);
+            mia.complete(risposta);
+            return risposta;
+        } catch (Exception e) {
+            mia.completeExceptionally(e);
+            throw e;
+        } finally {
+            inCorso.remove(chiave, mia);
+        }
+    }
+
+    /**
+     * Database, poi Geoapify. Eseguito da una sola richiesta per chiave alla volta.
+     */
+    private String carica(String chiave, String normalizzato, Callable<String> chiamata, LocalDateTime adesso)
+            throws Exception {
+        GeocodingCache salvata = geocodingCacheRepository.findById(chiave).orElse(null);
+        if (salvata != null && salvata.getScadenza().isAfter(adesso)) {
+            scriviMemoria(chiave, new Voce(salvata.getRisposta(), salvata.getScadenza()));
+            return salvata.getRisposta();
+        }
+
+        String risposta = chiamata.call();
+        boolean positiva = positiva(risposta);
+        LocalDateTime scadenza = LocalDateTime.now().plus(positiva ? ttlPositivo : ttlNegativo);
+        scriviMemoria(chiave, new Voce(risposta, scadenza));
+        try {
+            String testo = normalizzato.length() > LUNGHEZZA_INDIRIZZO
+                ? normalizzato.substring(0, LUNGHEZZA_INDIRIZZO)
+                : normalizzato;
+            geocodingCacheRepository.save(new GeocodingCache(chiave, testo, risposta, positiva, scadenza, adesso));
+        } catch (Exception e) {
+            // La risposta resta valida: manca solo la persistenza
+            logger.warn("Risposta geocoding non salvata nel database: {}", e.getMessage());
+        }
+        return risposta;
+    }
+
+    /**
+     * true se la risposta ha almeno un risultato; un JSON non valido fa fallire la chiamata
+     * e quindi non entra in cache.
+     */
+    private boolean positiva(String risposta) throws Exception {
+        return objectMapper.readTree(risposta).path("features").size() > 0;
+    }
+
+    private static String attendi(CompletableFuture<String> chiamata) throws Exception {
+        try {
+            return chiamata.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception causa ? causa : e;
+        }
+    }
+
+    private Voce leggiMemoria(String chiave) {
+        synchronized (memoria) {
+            return memoria.get(chiave);
+        }
+    }
+
+    private void scriviMemoria(String chiave, Voce voce) {
+        synchronized (memoria) {
+            memoria.put(chiave, voce);
+        }
+    }
+
+    /**
+     * Svuota la cache in memoria (il database resta), per simulare un riavvio nei test.
+     */
+    void svuotaMemoria() {
+        synchronized (memoria) {
+            memoria.clear();
+        }
+    }
+
+    /**
+     * Testo su cui si calcola la chiave: "Via  Roma 10 ,Torino" e "via roma 10, torino"
+     * sono lo stesso indirizzo.
+     */
+    static String normalizza(String indirizzo) {
+        return indirizzo.trim()
+            .toLowerCase(Locale.ITALIAN)
+            .replaceAll("\\s+", " ")
+            .replaceAll(" ?, ?", ", ");
+    }
+
+    private static String chiave(String normalizzato) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(normalizzato.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
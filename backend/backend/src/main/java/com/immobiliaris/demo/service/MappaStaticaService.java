@@ -0,0 +1,367 @@
+/**
+ * Service per le mappe statiche Geoapify servite dal backend (GET /api/map/static).
+ *
+ * Il browser riceve l'indirizzo del proxy, mai quello di Geoapify: la chiave API
+ * resta sul server. Gli indirizzi generati da {@link #url(Mappa)} sono firmati (parametro
+ * sig, HMAC-SHA256 dei parametri normalizzati con la chiave mappe.firma.chiave): il proxy
+ * serve solo le mappe che il backend ha generato, così nessuno può usarlo per scaricare
+ * mappe a piacere con la chiave Geoapify e riempire la cache. Senza mappe.firma.chiave
+ * la chiave è casuale a ogni avvio e gli URL emessi prima di un riavvio non valgono più
+ * (con più istanze va configurata, uguale per tutte). Ogni immagine distinta (centro, zoom, dimensioni, stile, marker)
+ * viene scaricata una sola volta e salvata su disco come {chiave}.png, dove la chiave
+ * è lo SHA-256 dei parametri normalizzati (usata anche come ETag: a parità di
+ * parametri l'immagine non cambia).
+ *
+ * Cache su disco:
+ * - directory mappe.cache.directory (default ${java.io.tmpdir}/immobiliaris-mappe)
+ * - oltre mappe.cache.max-mb (default 128) si cancellano le immagini usate meno di
+ *   recente fino all'80% del limite: ogni lettura aggiorna la data di modifica del file
+ * - richieste concorrenti per la stessa immagine non ancora in cache la scaricano una volta
+ *
+ * Le chiamate a Geoapify passano da {@link GeoapifyClient} (timeout, circuit breaker).
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Service
+public class MappaStaticaService {
+    private static final Logger logger = LoggerFactory.getLogger(MappaStaticaService.class);
+
+    /** Percorso dell'endpoint che serve le immagini */
+    public static final String PERCORSO = "/api/map/static";
+
+    private static final String ESTENSIONE = ".png";
+    private static final String HMAC = "HmacSHA256";
+    private static final Pattern STILE = Pattern.compile("[a-z0-9-]{1,40}");
+
+    /**
+     * Parametri normalizzati di una mappa: coordinate a 6 decimali, zoom 1-20,
+     * dimensioni 100-1280 px, testo del marker di al più un carattere.
+     *
+     * @param marker true per il marker rosso al centro
+     * @param testoMarker Testo nel marker (null: nessuno)
+     */
+    public record Mappa(double lat, double lon, int zoom, int larghezza, int altezza, String stile,
+                        boolean marker, String testoMarker) {
+
+        public Mappa {
+            if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+                throw new IllegalArgumentException("Coordinate non valide");
+            }
+            if (zoom < 1 || zoom > 20) {
+                throw new IllegalArgumentException("zoom deve essere tra 1 e 20");
+            }
+            if (larghezza < 100 || larghezza > 1280 || altezza < 100 || altezza > 1280) {
+                throw new IllegalArgumentException("width e height devono essere tra 100 e 1280");
+            }
+            if (stile == null || !STILE.matcher(stile).matches()) {
+                throw new IllegalArgumentException("style non valido");
+            }
+            if (testoMarker != null && !testoValido(testoMarker)) {
+                throw new IllegalArgumentException("Il testo del marker deve essere una lettera, una cifra o un simbolo");
+            }
+            lat = Math.round(lat * 1e6) / 1e6;
+            lon = Math.round(lon * 1e6) / 1e6;
+            if (!marker) testoMarker = null;
+        }
+
+        /**
+         * Mappa 600x400, zoom 15, con marker: quella dei suggerimenti di indirizzo.
+         */
+        public static Mappa conMarker(double lat, double lon) {
+            return new Mappa(lat, lon, 15, 600, 400, "osm-carto", true, null);
+        }
+
+        /**
+         * Parametri dell'endpoint proxy, in ordine fisso: base della chiave di cache.
+         */
+        UriComponentsBuilder parametri(UriComponentsBuilder uri) {
+            uri.queryParam("lat", String.format(Locale.US, "%.6f", lat))
+                .queryParam("lon", String.format(Locale.US, "%.6f", lon))
+                .queryParam("zoom", zoom)
+                .queryParam("width", larghezza)
+                .queryParam("height", altezza)
+                .queryParam("style", stile);
+            if (marker) {
+                uri.queryParam("marker", true);
+                if (testoMarker != null) uri.queryParam("text", testoMarker);
+            }
+            return uri;
+        }
+
+        /** Un solo carattere, senza i separatori dei parametri Geoapify (;:,) */
+        private static boolean testoValido(String testo) {
+            if (testo.isEmpty() || testo.codePointCount(0, testo.length()) != 1) return false;
+            int c = testo.codePointAt(0);
+            return Character.isLetterOrDigit(c) || c > 0x2000;
+        }
+    }
+
+    /**
+     * Immagine in cache: chiave (ETag) e contenuto PNG.
+     */
+    public record Immagine(String chiave, byte[] dati) {}
+
+    @Autowired
+    private GeoapifyClient geoapifyClient;
+
+    @Value("${geoapify.api.key:your_api_key_here}")
+    private String geoapifyApiKey;
+
+    @Value("${geoapify.maps.url:https://maps.geoapify.com}")
+    private String geoapifyMapsUrl;
+
+    @Value("${mappe.cache.directory:${java.io.tmpdir}/immobiliaris-mappe}")
+    private Path directory;
+
+    @Value("${mappe.cache.max-mb:128}")
+    private long maxMb;
+
+    /** Chiave delle firme degli URL (vuota: casuale a ogni avvio) */
+    @Value("${mappe.firma.chiave:}")
+    private String chiaveFirma;
+
+    private SecretKeySpec firma;
+
+    private final AtomicLong occupazione = new AtomicLong();
+
+    /** Download in corso per chiave */
+    private final Map<String, CompletableFuture<Immagine>> inCorso = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void inizializza() throws IOException {
+        byte[] segreto;
+        if (chiaveFirma.isBlank()) {
+            segreto = new byte[32];
+            new SecureRandom().nextBytes(segreto);
+        } else {
+            segreto = chiaveFirma.getBytes(StandardCharsets.UTF_8);
+        }
+        firma = new SecretKeySpec(segreto, HMAC);
+
+        Files.createDirectories(directory);
+        try (Stream<Path> file = Files.list(directory)) {
+            occupazione.set(file.filter(f -> f.toString().endsWith(ESTENSIONE)).mapToLong(MappaStaticaService::dimensione).sum());
+        }
+        logger.info("Cache mappe statiche in {} ({} KB)", directory, occupazione.get() / 1024);
+    }
+
+    /**
+     * URL firmato della mappa da dare al browser: assoluto se c'è una richiesta HTTP in corso
+     * (il frontend può stare su un'altra origine), altrimenti relativo.
+     */
+    public String url(Mappa mappa) {
+        UriComponentsBuilder uri = RequestContextHolder.getRequestAttributes() == null
+            ? UriComponentsBuilder.fromPath(PERCORSO)
+            : ServletUriComponentsBuilder.fromCurrentContextPath().path(PERCORSO);
+        return mappa.parametri(uri).queryParam("sig", firma(mappa)).build().encode().toUriString();
+    }
+
+    /**
+     * @param sig Firma ricevuta con la richiesta (null se assente)
+     * @return true se la mappa è stata generata da {@link #url(Mappa)}
+     */
+    public boolean firmaValida(Mappa mappa, String sig) {
+        return sig != null && MessageDigest.isEqual(
+            firma(mappa).getBytes(StandardCharsets.US_ASCII), sig.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String firma(Mappa mappa) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(firma);
+            String query = mappa.parametri(UriComponentsBuilder.newInstance()).build().getQuery();
+            return HexFormat.of().formatHex(mac.doFinal(query.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Chiave di cache ed ETag della mappa, senza leggerla né scaricarla.
+     */
+    public String chiave(Mappa mappa) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            String query = mappa.parametri(UriComponentsBuilder.newInstance()).build().getQuery();
+            return HexFormat.of().formatHex(sha.digest(query.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Immagine della mappa dalla cache su disco, scaricandola da Geoapify se manca.
+     *
+     * @throws GeoapifyClient.NonDisponibile se Geoapify non è chiamabile (circuito aperto)
+     * @throws IOException se il download o la scrittura su disco falliscono
+     */
+    public Immagine ottieni(Mappa mappa) throws IOException {
+        String chiave = chiave(mappa);
+        Immagine inCache = leggi(chiave);
+        if (inCache != null) {
+            return inCache;
+        }
+
+        CompletableFuture<Immagine> mio = new CompletableFuture<>();
+        CompletableFuture<Immagine> altrui = inCorso.putIfAbsent(chiave, mio);
+        if (altrui != null) {
+            return attendi(altrui);
+        }
+        try {
+            Immagine immagine = scarica(mappa, chiave);
+            mio.complete(immagine);
+            return immagine;
+        } catch (IOException | RuntimeException e) {
+            mio.completeExceptionally(e);
+            throw e;
+        } finally {
+            inCorso.remove(chiave, mio);
+        }
+    }
+
+    private Immagine leggi(String chiave) throws IOException {
+        Path file = directory.resolve(chiave + ESTENSIONE);
+        try {
+            byte[] dati = Files.readAllBytes(file);
+            // Data di modifica = ultimo uso: la riduzione cancella le meno usate
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Immagine(chiave, dati);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private Immagine scarica(Mappa mappa, String chiave) throws IOException {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(geoapifyMapsUrl)
+            .path("/v1/staticmap")
+            .queryParam("style", mappa.stile())
+            .queryParam("center", String.format(Locale.US, "lonlat:%.6f,%.6f", mappa.lon(), mappa.lat()))
+            .queryParam("zoom", mappa.zoom())
+            .queryParam("width", mappa.larghezza())
+            .queryParam("height", mappa.altezza())
+            .queryParam("format", "png");
+        if (mappa.marker()) {
+            String marker = String.format(Locale.US, "lonlat:%.6f,%.6f;color:red;size:medium", mappa.lon(), mappa.lat());
+            if (mappa.testoMarker() != null) marker += ";text:" + mappa.testoMarker();
+            uri.queryParam("marker", marker);
+        }
+        URI indirizzo = uri.queryParam("apiKey", geoapifyApiKey).build().encode().toUri();
+
+        byte[] dati = geoapifyClient.getImmagine(indirizzo);
+
+        Path file = directory.resolve(chiave + ESTENSIONE);
+        Path temporaneo = Files.createTempFile(directory, chiave, ".tmp");
+        try {
+            Files.write(temporaneo, dati);
+            Files.move(temporaneo, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaneo);
+            throw e;
+        }
+        logger.debug("Mappa {} scaricata ({} byte)", chiave, dati.length);
+
+        if (occupazione.addAndGet(dati.length) > maxMb * 1024 * 1024) {
+            riduci(file);
+        }
+        return new Immagine(chiave, dati);
+    }
+
+    /**
+     * Cancella le immagini usate meno di recente (esclusa quella appena scritta) fino all'80% del limite.
+     */
+    private synchronized void riduci(Path daTenere) throws IOException {
+        long obiettivo = maxMb * 1024 * 1024 * 8 / 10;
+        if (occupazione.get() <= obiettivo) return;
+
+        List<Path> file;
+        try (Stream<Path> elenco = Files.list(directory)) {
+            file = elenco.filter(f -> f.toString().endsWith(ESTENSIONE) && !f.equals(daTenere))
+                .sorted(Comparator.comparing(MappaStaticaService::ultimaModifica))
+                .toList();
+        }
+        int cancellati = 0;
+        for (Path f : file) {
+            if (occupazione.get() <= obiettivo) break;
+            try {
+                long dimensione = Files.size(f);
+                if (Files.deleteIfExists(f)) {
+                    occupazione.addAndGet(-dimensione);
+                    cancellati++;
+                }
+            } catch (IOException e) {
+                // Già cancellato o illeggibile: si passa al successivo
+            }
+        }
+        logger.info("Cache mappe oltre {} MB: cancellate {} immagini", maxMb, cancellati);
+    }
+
+    private static Immagine attendi(CompletableFuture<Immagine> download) throws IOException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Attesa della mappa interrotta");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static long dimensione(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime ultimaModifica(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * Modello precompilato dei coefficienti della valutazione AI.
+ *
+ * I coefficienti sono tabelle di double primitivi indicizzate per enum
+ * (condizioni, tipologia, riscaldamento, accessori), costruite una sola volta
+ * da un file di configurazione ({@link #da(Properties)}). Il modello è immutabile:
+ * la ricarica crea una nuova istanza ({@link ModelloPrezzoService}).
+ *
+ * Il calcolo non alloca oggetti: nessun boxing degli intermedi e riconoscimento
+ * dei valori testuali con {@code equalsIgnoreCase} sulle etichette degli enum.
+ * L'ordine delle operazioni in virgola mobile è lo stesso della formula originale
+ * di {@link ValutazioneService}, quindi i prezzi coincidono al centesimo.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see ModelloPrezzoService
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+public final class ModelloPrezzo {
+
+    /** Condizioni dell'immobile (ALTRO = valore non riconosciuto o assente) */
+    public enum Condizioni implements Etichettato {
+        NUOVO("Nuovo"),
+        OTTIMO("Ottimo"),
+        BUONO("Buono"),
+        DA_RISTRUTTURARE("Da ristrutturare"),
+        ALTRO();
+
+        private static final Condizioni[] VALORI = values();
+        private final String[] etichette;
+
+        Condizioni(String... etichette) {
+            this.etichette = etichette;
+        }
+
+        @Override
+        public String[] etichette() {
+            return etichette;
+        }
+
+        /** Riconosce il valore salvato nell'immobile, senza distinzione maiuscole/minuscole */
+        public static Condizioni da(String valore) {
+            return riconosci(VALORI, valore, ALTRO);
+        }
+    }
+
+    /** Tipologia dell'immobile (ALTRO = valore non riconosciuto o assente) */
+    public enum Tipologia implements Etichettato {
+        VILLA("Villa"),
+        ATTICO("Attico"),
+        LOFT("Loft"),
+        APPARTAMENTO("Appartamento"),
+        ALTRO();
+
+        private static final Tipologia[] VALORI = values();
+        private final String[] etichette;
+
+        Tipologia(String... etichette) {
+            this.etichette = etichette;
+        }
+
+        @Override
+        public String[] etichette() {
+            return etichette;
+        }
+
+        public static Tipologia da(String valore) {
+            return riconosci(VALORI, valore, ALTRO);
+        }
+    }
+
+    /** Tipo di riscaldamento (ALTRO = valore non riconosciuto o assente) */
+    public enum Riscaldamento implements Etichettato {
+        TELERISCALDAMENTO("Teleriscaldamento"),
+        AUTONOMO("Autonomo"),
+        CENTRALIZZATO_OBSOLETO("Centralizzato (Obsoleto)"),
+        ALTRO();
+
+        private static final Riscaldamento[] VALORI = values();
+        private final String[] etichette;
+
+        Riscaldamento(String... etichette) {
+            this.etichette = etichette;
+        }
+
+        @Override
+        public String[] etichette() {
+            return etichette;
+        }
+
+        public static Riscaldamento da(String valore) {
+            return riconosci(VALORI, valore, ALTRO);
+        }
+    }
+
+    /** Valori testuali con cui un enum compare nei dati degli immobili */
+    interface Etichettato {
+        String[] etichette();
+    }
+
+    /** Accessori, nell'ordine in cui le percentuali vengono sommate */
+    public enum Accessorio {
+        ASCENSORE, BALCONE, TERRAZZO, GIARDINO, CANTINA, GARAGE
+    }
+
+    /** Nome del file di configurazione con i coefficienti predefiniti (classpath) */
+    public static final String RISORSA_PREDEFINITA = "valutazione-coefficienti.properties";
+
+    private final double[] condizioni;
+    private final double[] tipologia;
+    private final double[] riscaldamento;
+    private final double[] accessori;
+
+    private final double mqPerBagno;
+    private final double penalitaBagni;
+    private final double mqPerStanza;
+    private final double penalitaStanze;
+    private final double bonusVillaMultilivello;
+    private final double bonusPerPiano;
+
+    private ModelloPrezzo(Properties p) {
+        this.condizioni = tabella(p, "condizioni", Condizioni.values(), Condizioni.ALTRO, 1.0);
+        this.tipologia = tabella(p, "tipologia", Tipologia.values(), Tipologia.ALTRO, 1.0);
+        this.riscaldamento = tabella(p, "riscaldamento", Riscaldamento.values(), Riscaldamento.ALTRO, 0.0);
+        this.accessori = tabella(p, "accessori", Accessorio.values(), null, 0.0);
+        this.mqPerBagno = valore(p, "funzionale.mq_per_bagno");
+        this.penalitaBagni = valore(p, "funzionale.penalita_bagni");
+        this.mqPerStanza = valore(p, "funzionale.mq_per_stanza");
+        this.penalitaStanze = valore(p, "funzionale.penalita_stanze");
+        this.bonusVillaMultilivello = valore(p, "piano.bonus_villa_multilivello");
+        this.bonusPerPiano = valore(p, "piano.bonus_per_piano");
+
+        if (mqPerBagno <= 0 || mqPerStanza <= 0) {
+            throw new IllegalArgumentException("funzionale.mq_per_bagno e funzionale.mq_per_stanza devono essere positivi");
+        }
+    }
+
+    /**
+     * Compila il modello dai coefficienti configurati.
+     *
+     * @param coefficienti Chiavi come {@code condizioni.nuovo}, {@code accessori.garage}, ...
+     * @return Modello immutabile
+     * @throws IllegalArgumentException se manca un coefficiente o non è un numero valido
+     */
+    public static ModelloPrezzo da(Properties coefficienti) {
+        return new ModelloPrezzo(coefficienti);
+    }
+
+    /**
+     * Calcola il prezzo AI dell'immobile.
+     *
+     * @param immobile Immobile da valutare
+     * @param quotazioneBase Prezzo medio al mq della zona (CAP)
+     * @return Prezzo stimato in euro (intero), oppure 0 se metratura o quotazione non sono validi
+     */
+    public int calcola(Immobile immobile, double quotazioneBase) {
+        Integer metraturaValore = immobile.getMetratura();
+        if (metraturaValore == null || metraturaValore <= 0 || quotazioneBase <= 0) return 0;
+        int metratura = metraturaValore;
+
+        // C_Funzionale: bagni insufficienti / stanze troppo piccole
+        double moltiplicatoreBagni = 1.00;
+        double moltiplicatoreStanze = 1.00;
+        Integer bagni = immobile.getBagni();
+        if (bagni != null && bagni > 0 && bagni < (int) Math.ceil(metratura / mqPerBagno)) {
+            moltiplicatoreBagni = penalitaBagni;
+        }
+        Integer stanze = immobile.getStanze();
+        if (stanze != null && stanze > 0 && stanze > (int) Math.floor(metratura / mqPerStanza)) {
+            moltiplicatoreStanze = penalitaStanze;
+        }
+        double coefficienteFunzionale = moltiplicatoreBagni * moltiplicatoreStanze;
+
+        // C_Qualitativo: condizioni × tipologia
+        Tipologia tipo = Tipologia.da(immobile.getTipologia());
+        double coefficienteQualitativo = condizioni[Condizioni.da(immobile.getCondizioni()).ordinal()]
+                * tipologia[tipo.ordinal()];
+
+        // M_Finale: accessori (stesso ordine di somma della formula originale), riscaldamento, piano
+        double percentualeAccessori = 0.0;
+        if (vero(immobile.getAscensore())) percentualeAccessori += accessori[Accessorio.ASCENSORE.ordinal()];
+        if (vero(immobile.getBalcone())) percentualeAccessori += accessori[Accessorio.BALCONE.ordinal()];
+        if (vero(immobile.getTerrazzo())) percentualeAccessori += accessori[Accessorio.TERRAZZO.ordinal()];
+        if (vero(immobile.getGiardino())) percentualeAccessori += accessori[Accessorio.GIARDINO.ordinal()];
+        if (vero(immobile.getCantina())) percentualeAccessori += accessori[Accessorio.CANTINA.ordinal()];
+        if (vero(immobile.getGarage())) percentualeAccessori += accessori[Accessorio.GARAGE.ordinal()];
+
+        percentualeAccessori += riscaldamento[Riscaldamento.da(immobile.getRiscaldamento()).ordinal()];
+
+        double percentualePianoPerAltezza = 0.0;
+        Integer piano = immobile.getPiano();
+        if (tipo == Tipologia.VILLA) {
+            if (piano != null && piano > 1) percentualeAccessori += bonusVillaMultilivello;
+        } else if (piano != null && piano > 0) {
+            percentualePianoPerAltezza = piano * bonusPerPiano;
+        }
+
+        double moltiplicatoreFinale = 1.0 + percentualeAccessori + percentualePianoPerAltezza;
+
+        double prezzo = (metratura * quotazioneBase)
+                * coefficienteFunzionale
+                * coefficienteQualitativo
+                * moltiplicatoreFinale;
+        return (int) prezzo;
+    }
+
+    /**
+     * Coefficienti correnti, con le stesse chiavi del file di configurazione
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> mappa = new LinkedHashMap<>();
+        mappa.put("condizioni", voci(Condizioni.values(), condizioni));
+        mappa.put("tipologia", voci(Tipologia.values(), tipologia));
+        mappa.put("riscaldamento", voci(Riscaldamento.values(), riscaldamento));
+        mappa.put("accessori", voci(Accessorio.values(), accessori));
+
+        Map<String, Object> funzionale = new LinkedHashMap<>();
+        funzionale.put("mq_per_bagno", mqPerBagno);
+        funzionale.put("penalita_bagni", penalitaBagni);
+        funzionale.put("mq_per_stanza", mqPerStanza);
+        funzionale.put("penalita_stanze", penalitaStanze);
+        mappa.put("funzionale", funzionale);
+
+        Map<String, Object> piano = new LinkedHashMap<>();
+        piano.put("bonus_villa_multilivello", bonusVillaMultilivello);
+        piano.put("bonus_per_piano", bonusPerPiano);
+        mappa.put("piano", piano);
+        return mappa;
+    }
+
+    private static boolean vero(Boolean valore) {
+        return valore != null && valore;
+    }
+
+    private static <E extends Enum<E> & Etichettato> E riconosci(E[] valori, String valore, E altro) {
+        if (valore == null) return altro;
+        for (E e : valori) {
+            for (String etichetta : e.etichette()) {
+                if (etichetta.equalsIgnoreCase(valore)) return e;
+            }
+        }
+        return altro;
+    }
+
+    private static <E extends Enum<E>> double[] tabella(Properties p, String prefisso, E[] valori,
+                                                        E altro, double neutro) {
+        double[] tabella = new double[valori.length];
+        for (E e : valori) {
+            String chiave = chiave(prefisso, e);
+            tabella[e.ordinal()] = e == altro && p.getProperty(chiave) == null ? neutro : valore(p, chiave);
+        }
+        return tabella;
+    }
+
+    private static double valore(Properties p, String chiave) {
+        String testo = p.getProperty(chiave);
+        if (testo == null || testo.isBlank()) {
+            throw new IllegalArgumentException("Coefficiente mancante: " + chiave);
+        }
+        try {
+            double valore = Double.parseDouble(testo.trim());
+            if (Double.isNaN(valore) || Double.isInfinite(valore)) {
+                throw new NumberFormatException(testo);
+            }
+            return valore;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Coefficiente non valido per " + chiave + ": " + testo);
+        }
+    }
+
+    private static Map<String, Double> voci(Enum<?>[] valori, double[] tabella) {
+        Map<String, Double> voci = new LinkedHashMap<>();
+        for (Enum<?> e : valori) {
+            voci.put(e.name().toLowerCase(Locale.ROOT), tabella[e.ordinal()]);
+        }
+        return voci;
+    }
+
+    private static String chiave(String prefisso, Enum<?> e) {
+        return prefisso + "." + e.name().toLowerCase(Locale.ROOT);
+    }
+}
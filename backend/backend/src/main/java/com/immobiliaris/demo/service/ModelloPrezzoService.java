@@ -0,0 +1,98 @@
+/**
+ * Gestione del {@link ModelloPrezzo} usato dalla valutazione AI.
+ *
+ * I coefficienti predefiniti sono nel file {@code valutazione-coefficienti.properties}
+ * del classpath; se è impostata la proprietà {@code valutazione.coefficienti.file}, le chiavi
+ * di quel file esterno sovrascrivono quelle predefinite.
+ *
+ * La ricarica ({@link #ricarica()}) rilegge i file, compila un nuovo modello e lo sostituisce
+ * in modo atomico: se i coefficienti non sono validi resta in uso il modello precedente.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see ModelloPrezzo
+ */
+package com.immobiliaris.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+@Service
+public class ModelloPrezzoService {
+    private static final Logger logger = LoggerFactory.getLogger(ModelloPrezzoService.class);
+
+    /** Percorso opzionale del file con i coefficienti da sovrascrivere */
+    @Value("${valutazione.coefficienti.file:}")
+    private String fileCoefficienti;
+
+    /** Modello corrente, sostituito per intero ad ogni ricarica */
+    private volatile ModelloPrezzo modello;
+
+    /**
+     * Caricamento all'avvio: coefficienti non validi bloccano l'avvio dell'applicazione.
+     */
+    @PostConstruct
+    public void init() {
+        ricarica();
+    }
+
+    /**
+     * @return Modello corrente
+     */
+    public ModelloPrezzo getModello() {
+        return modello;
+    }
+
+    /**
+     * Rilegge i coefficienti e sostituisce il modello in modo atomico.
+     *
+     * @return Nuovo modello in uso
+     * @throws IllegalArgumentException se un coefficiente manca o non è valido (modello invariato)
+     * @throws UncheckedIOException se il file dei coefficienti non è leggibile (modello invariato)
+     */
+    public synchronized ModelloPrezzo ricarica() {
+        ModelloPrezzo nuovo = ModelloPrezzo.da(leggiCoefficienti(fileCoefficienti));
+        modello = nuovo;
+        logger.info("Modello prezzo AI caricato{}",
+            fileCoefficienti == null || fileCoefficienti.isBlank() ? "" : " (con " + fileCoefficienti + ")");
+        return nuovo;
+    }
+
+    /**
+     * Coefficienti predefiniti del classpath, sovrascritti da quelli del file esterno se presente.
+     */
+    static Properties leggiCoefficienti(String fileEsterno) {
+        Properties coefficienti = new Properties();
+        try (InputStream in = ModelloPrezzo.class.getClassLoader().getResourceAsStream(ModelloPrezzo.RISORSA_PREDEFINITA)) {
+            if (in == null) {
+                throw new IllegalStateException("Risorsa " + ModelloPrezzo.RISORSA_PREDEFINITA + " non trovata");
+            }
+            coefficienti.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (fileEsterno != null && !fileEsterno.isBlank()) {
+            try (Reader reader = Files.newBufferedReader(Path.of(fileEsterno), StandardCharsets.UTF_8)) {
+                coefficienti.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Impossibile leggere " + fileEsterno, e);
+            }
+        }
+        return coefficienti;
+    }
+}
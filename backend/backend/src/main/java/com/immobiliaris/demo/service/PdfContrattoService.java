@@ -10,70 +10,286 @@ import com.immobiliaris.demo.entity.Valutazione;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
 
+/**
+ * Generazione del contratto di mandato in PDF.
+ *
+ * Le parti fisse del contratto (intestazione e titolo, dichiarazioni, obblighi, GDPR,
+ * pagina delle clausole vessatorie) sono impaginate una sola volta alla creazione del service, in un PDF
+ * modello con una pagina per blocco ritagliata sull'altezza del blocco. Ogni contratto
+ * impagina solo le sezioni con dati (parti, oggetto, condizioni, durata, compenso,
+ * firme) e importa i blocchi fissi come form XObject, inseriti nel flusso del
+ * documento come immagini vettoriali: il testo resta selezionabile.
+ *
+ * Nelle sezioni dinamiche l'a capo usa {@link #A_CAPO}, equivalente alla regola
+ * predefinita di iText ma senza copiare la riga a ogni carattere esaminato.
+ */
 @Service
 public class PdfContrattoService {
 
+    /** Da incrementare a ogni modifica del layout: invalida i PDF già archiviati */
+    static final int VERSIONE_LAYOUT = 2;
+
+    private static final float MARGINE = 60;
+
+    /** Larghezza utile di una pagina A4 con i margini del contratto */
+    private static final float LARGHEZZA_BLOCCO = PageSize.A4.getWidth() - 2 * MARGINE;
+
+    /** Pagine del modello statico (una per blocco, nell'ordine di {@link #precompilaModello()}) */
+    private static final int BLOCCO_INTESTAZIONE = 1;
+    private static final int BLOCCO_DICHIARAZIONI = 2;
+    private static final int BLOCCO_OBBLIGHI = 3;
+    private static final int BLOCCO_GDPR = 4;
+    private static final int BLOCCO_CLAUSOLE_VESSATORIE = 5;
+
+    private static final BaseColor COLOR_HEADER = new BaseColor(41, 128, 185); // Blu professionale
+    private static final BaseColor COLOR_SFONDO_RIQUADRO = new BaseColor(245, 248, 250);
+    private static final BaseColor COLOR_BORDO_RIGA = new BaseColor(220, 220, 220);
+    private static final BaseColor COLOR_SFONDO_ETICHETTA = new BaseColor(250, 250, 250);
+
     private static final Font FONT_TITLE = new Font(Font.FontFamily.HELVETICA, 18, Font.BOLD);
     private static final Font FONT_SUBTITLE = new Font(Font.FontFamily.HELVETICA, 13, Font.BOLD);
     private static final Font FONT_NORMAL = new Font(Font.FontFamily.HELVETICA, 11, Font.NORMAL);
+    private static final Font FONT_BOLD = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD);
     private static final Font FONT_SMALL = new Font(Font.FontFamily.HELVETICA, 9, Font.NORMAL);
     private static final Font FONT_COMPANY = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD, BaseColor.DARK_GRAY);
-    private static final BaseColor COLOR_HEADER = new BaseColor(41, 128, 185); // Blu professionale
+    private static final Font FONT_SEPARATORE = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
+    private static final Font FONT_ETICHETTA = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD);
+    private static final Font FONT_PREZZO = new Font(Font.FontFamily.HELVETICA, 14, Font.BOLD, COLOR_HEADER);
+    private static final Font FONT_PERCENTUALE = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD, COLOR_HEADER);
+    private static final Font FONT_FINE = new Font(Font.FontFamily.HELVETICA, 9, Font.ITALIC, BaseColor.GRAY);
+
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    /**
+     * Regola di a capo di {@link DefaultSplitCharacter} senza allocazioni.
+     * La classe di iText copia l'intera riga in una String (e poi in un char[]) per ogni
+     * carattere esaminato, per non spezzare le date gg-mm-aaaa: qui quel controllo resta
+     * solo per il trattino, l'unico carattere che riguarda.
+     */
+    private static final SplitCharacter A_CAPO = new DefaultSplitCharacter() {
+        @Override
+        public boolean isSplitCharacter(int start, int current, int end, char[] cc, PdfChunk[] ck) {
+            char c = getCurrentCharacter(current, cc, ck);
+            if (c == '-') {
+                return super.isSplitCharacter(start, current, end, cc, ck);
+            }
+            if (c <= ' ' || c == '\u2010') {
+                return true;
+            }
+            if (c < '\u2002') {
+                return false;
+            }
+            return (c >= '\u2002' && c <= '\u200b')
+                || (c >= '\u2e80' && c < '\ud7a0')
+                || (c >= '\uf900' && c < '\ufb00')
+                || (c >= '\ufe30' && c < '\ufe50')
+                || (c >= '\uff61' && c < '\uffa0');
+        }
+    };
+
+    /** Blocco statico del contratto, impaginato una sola volta */
+    @FunctionalInterface
+    private interface Blocco {
+        void scrivi(Document document) throws DocumentException;
+    }
+
+    /** PDF modello con i blocchi statici già impaginati (immutabile, condiviso tra i thread) */
+    private final byte[] modelloStatico;
+
+    public PdfContrattoService() {
+        try {
+            modelloStatico = precompilaModello();
+        } catch (DocumentException e) {
+            throw new IllegalStateException("Impossibile precompilare il modello del contratto", e);
+        }
+    }
 
     public byte[] generaContrattoPdf(Contratto contratto) throws Exception {
-        Document document = new Document(PageSize.A4, 60, 60, 60, 60);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, baos);
-        
-        document.open();
+        generaContrattoPdf(contratto, baos);
+        return baos.toByteArray();
+    }
 
-        // Intestazione Azienda
-        aggiungiIntestazione(document);
-        
-        // Titolo
-        Paragraph titolo = new Paragraph("INCARICO DI MEDIAZIONE IN ESCLUSIVA\nPER LA VENDITA IMMOBILIARE", FONT_TITLE);
-        titolo.setAlignment(Element.ALIGN_CENTER);
-        titolo.setSpacingBefore(10);
-        titolo.setSpacingAfter(25);
-        document.add(titolo);
+    /**
+     * Scrive il PDF del contratto direttamente su uno stream, man mano che le pagine
+     * vengono chiuse: il documento non viene mai tenuto intero in memoria.
+     * Lo stream non viene chiuso.
+     *
+     * @param contratto Contratto con immobile, proprietario, agente e valutazione
+     * @param out Destinazione del PDF (risposta HTTP, file)
+     */
+    public void generaContrattoPdf(Contratto contratto, OutputStream out) throws Exception {
+        Document document = new Document(PageSize.A4, MARGINE, MARGINE, MARGINE, MARGINE);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setCloseStream(false);
+        // PDF 1.5: oggetti e tabella xref compressi in object stream
+        writer.setFullCompression();
+        // I blocchi statici sono immagini: non vanno spostati dopo il testo che li segue
+        writer.setStrictImageSequence(true);
+        PdfReader modello = new PdfReader(modelloStatico);
+        // Il modello va chiuso anche se la generazione si interrompe a metà
+        try {
+            document.open();
 
-        // Sezione 1: LE PARTI
-        aggiungiSezioneParti(document, contratto);
+            // Intestazione Azienda e titolo
+            document.add(blocco(writer, modello, BLOCCO_INTESTAZIONE));
+
+            // Sezione 1: LE PARTI
+            aggiungiSezioneParti(document, contratto);
         
-        // Sezione 2: OGGETTO DELL'INCARICO
-        aggiungiSezioneOggetto(document, contratto);
+            // Sezione 2: OGGETTO DELL'INCARICO
+            aggiungiSezioneOggetto(document, contratto);
         
-        // Sezione 3: CONDIZIONI DI VENDITA
-        aggiungiSezioneCondizioni(document, contratto);
+            // Sezione 3: CONDIZIONI DI VENDITA
+            aggiungiSezioneCondizioni(document, contratto);
         
-        // Sezione 4: DURATA DELL'INCARICO
-        aggiungiSezioneDurata(document, contratto);
+            // Sezione 4: DURATA DELL'INCARICO
+            aggiungiSezioneDurata(document, contratto);
         
-        // Sezione 5: COMPENSO (PROVVIGIONE)
-        aggiungiSezioneCompenso(document, contratto);
+            // Sezione 5: COMPENSO (PROVVIGIONE)
+            aggiungiSezioneCompenso(document, contratto);
         
-        // Sezione 6: DICHIARAZIONI DEL MANDANTE
-        aggiungiSezioneDichiarazioni(document, contratto);
+            // Sezione 6: DICHIARAZIONI DEL MANDANTE
+            document.add(blocco(writer, modello, BLOCCO_DICHIARAZIONI));
         
-        // Sezione 7: OBBLIGHI E CLAUSOLA PENALE
-        aggiungiSezioneObblighi(document);
+            // Sezione 7: OBBLIGHI E CLAUSOLA PENALE
+            document.add(blocco(writer, modello, BLOCCO_OBBLIGHI));
         
-        // Sezione 8: TRATTAMENTO DATI PERSONALI
-        aggiungiSezioneGdpr(document);
+            // Sezione 8: TRATTAMENTO DATI PERSONALI
+            document.add(blocco(writer, modello, BLOCCO_GDPR));
         
-        // Firme
-        aggiungiFirme(document, contratto);
+            // Firme
+            aggiungiFirme(document, contratto);
         
-        // Clausole Vessatorie
-        aggiungiClausoleVessatorie(document);
+            // Clausole Vessatorie (pagina a sé)
+            document.newPage();
+            document.add(blocco(writer, modello, BLOCCO_CLAUSOLE_VESSATORIE));
+
+            document.close();
+        } finally {
+            modello.close();
+        }
+    }
+
+    /**
+     * Impronta SHA-256 (esadecimale) dei dati che finiscono nel PDF del contratto.
+     * Due contratti con la stessa impronta producono lo stesso documento: è la chiave
+     * dell'archivio dei PDF generati ({@link ArchivioPdfContrattiService}).
+     *
+     * Va aggiornata insieme alle sezioni dinamiche; per modifiche al solo layout basta
+     * incrementare {@link #VERSIONE_LAYOUT}.
+     */
+    public String impronta(Contratto contratto) {
+        Immobile immobile = contratto.getImmobile();
+        User proprietario = contratto.getUtente();
+        User agente = contratto.getAgente();
+        Valutazione valutazione = contratto.getValutazione();
+
+        StringBuilder dati = new StringBuilder(256).append(VERSIONE_LAYOUT);
+        campi(dati, contratto.getId(), contratto.getDataInizio(), contratto.getDataFine(),
+            contratto.getPercentualeCommissione());
+        campi(dati, proprietario.getNome(), proprietario.getCognome(), proprietario.getEmail(),
+            proprietario.getTelefono());
+        campi(dati, agente.getNome(), agente.getCognome());
+        campi(dati, immobile.getCitta(), immobile.getProvincia(), immobile.getCap(), immobile.getVia(),
+            immobile.getPiano(), immobile.getAscensore(), immobile.getTipologia(), immobile.getMetratura(),
+            immobile.getStanze(), immobile.getBagni(), immobile.getCondizioni(), immobile.getBalcone(),
+            immobile.getTerrazzo(), immobile.getCantina(), immobile.getGarage(), immobile.getGiardino());
+        if (valutazione != null) {
+            campi(dati, valutazione.getPrezzoUmano(), valutazione.getPrezzoAI());
+        }
 
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(dati.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+
+    private static void campi(StringBuilder dati, Object... valori) {
+        for (Object valore : valori) {
+            // Separatore che non compare nei dati: "ab"+"c" e "a"+"bc" restano distinti
+            dati.append('\u0000').append(valore);
+        }
+    }
+
+    /**
+     * Impagina i blocchi statici in un PDF con una pagina per blocco, larga quanto l'area
+     * utile di una pagina A4 e alta quanto il blocco (misurata con una prima impaginazione).
+     */
+    static byte[] precompilaModello() throws DocumentException {
+        Blocco[] blocchi = {
+            PdfContrattoService::aggiungiIntestazione,
+            PdfContrattoService::aggiungiSezioneDichiarazioni,
+            PdfContrattoService::aggiungiSezioneObblighi,
+            PdfContrattoService::aggiungiSezioneGdpr,
+            PdfContrattoService::aggiungiClausoleVessatorie
+        };
+
+        float[] altezze = new float[blocchi.length];
+        for (int i = 0; i < blocchi.length; i++) {
+            altezze[i] = misuraAltezza(blocchi[i]);
+        }
+
+        Document document = new Document(new Rectangle(LARGHEZZA_BLOCCO, altezze[0]), 0, 0, 0, 0);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PdfWriter.getInstance(document, baos);
+        document.open();
+        for (int i = 0; i < blocchi.length; i++) {
+            if (i > 0) {
+                document.setPageSize(new Rectangle(LARGHEZZA_BLOCCO, altezze[i]));
+                document.newPage();
+            }
+            blocchi[i].scrivi(document);
+        }
         document.close();
         return baos.toByteArray();
     }
 
-    private void aggiungiIntestazione(Document document) throws DocumentException {
+    /**
+     * Altezza occupata da un blocco su una pagina alta quanto l'area utile di una A4.
+     */
+    private static float misuraAltezza(Blocco blocco) throws DocumentException {
+        float altezzaPagina = PageSize.A4.getHeight() - 2 * MARGINE;
+        Document document = new Document(new Rectangle(LARGHEZZA_BLOCCO, altezzaPagina), 0, 0, 0, 0);
+        PdfWriter writer = PdfWriter.getInstance(document, new ByteArrayOutputStream());
+        document.open();
+        blocco.scrivi(document);
+        float altezza = (float) Math.ceil(altezzaPagina - writer.getVerticalPosition(true));
+        if (writer.getPageNumber() > 1) {
+            throw new IllegalStateException("Blocco statico più lungo di una pagina");
+        }
+        document.close();
+        return altezza;
+    }
+
+    /**
+     * Importa un blocco del modello nel documento: form XObject inserito come immagine
+     * nel flusso del testo.
+     */
+    private static Image blocco(PdfWriter writer, PdfReader modello, int pagina) throws BadElementException {
+        return Image.getInstance(writer.getImportedPage(modello, pagina));
+    }
+
+    /**
+     * Applica {@link #A_CAPO} a tutti i chunk di un testo delle sezioni dinamiche.
+     */
+    private static <T extends Phrase> T aCapo(T testo) {
+        for (Chunk chunk : testo.getChunks()) {
+            chunk.setSplitCharacter(A_CAPO);
+        }
+        return testo;
+    }
+
+    private static void aggiungiIntestazione(Document document) throws DocumentException {
         Paragraph intestazione = new Paragraph();
         intestazione.add(new Chunk("IMMOBILIARIS S.R.L.\n", FONT_COMPANY));
         intestazione.add(new Chunk("Sede Legale: Corso Duca degli Abruzzi, 24 - 10129 Torino (TO)\n", FONT_SMALL));
@@ -90,6 +306,12 @@ public class PdfContrattoService {
         document.add(linebreak);
         document.add(Chunk.NEWLINE);
         document.add(Chunk.NEWLINE);
+
+        Paragraph titolo = new Paragraph("INCARICO DI MEDIAZIONE IN ESCLUSIVA\nPER LA VENDITA IMMOBILIARE", FONT_TITLE);
+        titolo.setAlignment(Element.ALIGN_CENTER);
+        titolo.setSpacingBefore(10);
+        titolo.setSpacingAfter(25);
+        document.add(titolo);
     }
 
     private void aggiungiSezioneParti(Document document, Contratto contratto) throws DocumentException {
@@ -98,12 +320,12 @@ public class PdfContrattoService {
         
         Paragraph titolo = new Paragraph("1. LE PARTI\n", FONT_SUBTITLE);
         titolo.setSpacingAfter(10);
-        document.add(titolo);
+        document.add(aCapo(titolo));
         
         Paragraph intro = new Paragraph("Tra i sottoscritti:\n", FONT_NORMAL);
         intro.setSpacingAfter(12);
         intro.setAlignment(Element.ALIGN_CENTER);
-        document.add(intro);
+        document.add(aCapo(intro));
         
         PdfPTable partiTable = new PdfPTable(1);
         partiTable.setWidthPercentage(90);
@@ -117,25 +339,25 @@ public class PdfContrattoService {
         cellMandante.setBorderColor(COLOR_HEADER);
         cellMandante.setBorderWidth(1);
         cellMandante.setPadding(12);
-        cellMandante.setBackgroundColor(new BaseColor(245, 248, 250));
+        cellMandante.setBackgroundColor(COLOR_SFONDO_RIQUADRO);
         
         Paragraph mandante = new Paragraph();
-        mandante.add(new Chunk("LA PARTE VENDITRICE (di seguito \"Mandante\")\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        mandante.add(new Chunk("LA PARTE VENDITRICE (di seguito \"Mandante\")\n", FONT_BOLD));
         mandante.add(new Chunk("\nSig./Sig.ra: ", FONT_NORMAL));
-        mandante.add(new Chunk(proprietario.getNome() + " " + proprietario.getCognome() + "\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        mandante.add(new Chunk(proprietario.getNome() + " " + proprietario.getCognome() + "\n", FONT_BOLD));
         mandante.add(new Chunk("Email: " + proprietario.getEmail() + "\n", FONT_NORMAL));
         mandante.add(new Chunk("Telefono: " + (proprietario.getTelefono() != null ? proprietario.getTelefono() : "N/A"), FONT_NORMAL));
         mandante.setAlignment(Element.ALIGN_CENTER);
-        cellMandante.addElement(mandante);
+        cellMandante.addElement(aCapo(mandante));
         partiTable.addCell(cellMandante);
         
         document.add(partiTable);
         
-        Paragraph separatore = new Paragraph("E\n", new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD));
+        Paragraph separatore = new Paragraph("E\n", FONT_SEPARATORE);
         separatore.setAlignment(Element.ALIGN_CENTER);
         separatore.setSpacingBefore(10);
         separatore.setSpacingAfter(10);
-        document.add(separatore);
+        document.add(aCapo(separatore));
         
         // Agente
         PdfPTable agenteTable = new PdfPTable(1);
@@ -148,15 +370,15 @@ public class PdfContrattoService {
         cellAgente.setBorderColor(COLOR_HEADER);
         cellAgente.setBorderWidth(1);
         cellAgente.setPadding(12);
-        cellAgente.setBackgroundColor(new BaseColor(245, 248, 250));
+        cellAgente.setBackgroundColor(COLOR_SFONDO_RIQUADRO);
         
         Paragraph agenteP = new Paragraph();
-        agenteP.add(new Chunk("L'AGENZIA IMMOBILIARE (di seguito \"Agente\")\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        agenteP.add(new Chunk("L'AGENZIA IMMOBILIARE (di seguito \"Agente\")\n", FONT_BOLD));
         agenteP.add(new Chunk("\nIMMOBILIARIS S.R.L., in persona del Sig./Sig.ra ", FONT_NORMAL));
-        agenteP.add(new Chunk(agente.getNome() + " " + agente.getCognome() + "\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        agenteP.add(new Chunk(agente.getNome() + " " + agente.getCognome() + "\n", FONT_BOLD));
         agenteP.add(new Chunk("regolarmente iscritta al Ruolo Agenti di Affari in Mediazione presso la CCIAA di Torino.", FONT_NORMAL));
         agenteP.setAlignment(Element.ALIGN_CENTER);
-        cellAgente.addElement(agenteP);
+        cellAgente.addElement(aCapo(agenteP));
         agenteTable.addCell(cellAgente);
         
         document.add(agenteTable);
@@ -167,12 +389,12 @@ public class PdfContrattoService {
         
         Paragraph titolo = new Paragraph("2. OGGETTO DELL'INCARICO\n", FONT_SUBTITLE);
         titolo.setSpacingAfter(10);
-        document.add(titolo);
+        document.add(aCapo(titolo));
         
         Paragraph intro = new Paragraph("Il Mandante conferisce all'Agente l'incarico IN ESCLUSIVA di promuovere la vendita dell'unità immobiliare sita in:\n", FONT_NORMAL);
         intro.setSpacingAfter(12);
         intro.setAlignment(Element.ALIGN_JUSTIFIED);
-        document.add(intro);
+        document.add(aCapo(intro));
         
         PdfPTable table = new PdfPTable(2);
         table.setWidthPercentage(85);
@@ -194,7 +416,7 @@ public class PdfContrattoService {
         document.add(table);
         
         Paragraph composizione = new Paragraph();
-        composizione.add(new Chunk("\nDotazioni: ", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        composizione.add(new Chunk("\nDotazioni: ", FONT_BOLD));
         StringBuilder dotazioni = new StringBuilder();
         if (immobile.getBalcone() != null && immobile.getBalcone()) dotazioni.append("Balcone, ");
         if (immobile.getTerrazzo() != null && immobile.getTerrazzo()) dotazioni.append("Terrazzo, ");
@@ -209,7 +431,7 @@ public class PdfContrattoService {
         }
         composizione.setSpacingAfter(18);
         composizione.setAlignment(Element.ALIGN_CENTER);
-        document.add(composizione);
+        document.add(aCapo(composizione));
     }
 
     private void aggiungiSezioneCondizioni(Document document, Contratto contratto) throws DocumentException {
@@ -220,39 +442,38 @@ public class PdfContrattoService {
         
         Paragraph titolo = new Paragraph("3. CONDIZIONI DI VENDITA\n", FONT_SUBTITLE);
         titolo.setSpacingAfter(12);
-        document.add(titolo);
+        document.add(aCapo(titolo));
         
         Paragraph prezzo = new Paragraph();
         prezzo.add(new Chunk("Il prezzo richiesto per la vendita è stabilito in:\n\n", FONT_NORMAL));
-        prezzo.add(new Chunk("€ " + String.format("%,d", prezzoUmano) + "\n", new Font(Font.FontFamily.HELVETICA, 14, Font.BOLD, COLOR_HEADER)));
+        prezzo.add(new Chunk("€ " + String.format("%,d", prezzoUmano) + "\n", FONT_PREZZO));
         prezzo.setAlignment(Element.ALIGN_CENTER);
         prezzo.setSpacingAfter(12);
-        document.add(prezzo);
+        document.add(aCapo(prezzo));
         
         Paragraph nota = new Paragraph("Il Mandante dichiara che l'immobile al momento del rogito notarile sarà libero da persone e cose.\n", FONT_NORMAL);
         nota.setAlignment(Element.ALIGN_JUSTIFIED);
         nota.setSpacingAfter(18);
-        document.add(nota);
+        document.add(aCapo(nota));
     }
 
     private void aggiungiSezioneDurata(Document document, Contratto contratto) throws DocumentException {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        String dataInizio = contratto.getDataInizio() != null ? contratto.getDataInizio().format(formatter) : "___________";
-        String dataFine = contratto.getDataFine() != null ? contratto.getDataFine().format(formatter) : "___________";
+        String dataInizio = contratto.getDataInizio() != null ? contratto.getDataInizio().format(FORMATO_DATA) : "___________";
+        String dataFine = contratto.getDataFine() != null ? contratto.getDataFine().format(FORMATO_DATA) : "___________";
         
         Paragraph titolo = new Paragraph("4. DURATA DELL'INCARICO\n", FONT_SUBTITLE);
         titolo.setSpacingAfter(12);
-        document.add(titolo);
+        document.add(aCapo(titolo));
         
         Paragraph durata = new Paragraph();
         durata.add(new Chunk("Il presente incarico ha validità dal ", FONT_NORMAL));
-        durata.add(new Chunk(dataInizio, new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        durata.add(new Chunk(dataInizio, FONT_BOLD));
         durata.add(new Chunk(" al ", FONT_NORMAL));
-        durata.add(new Chunk(dataFine + "\n\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        durata.add(new Chunk(dataFine + "\n\n", FONT_BOLD));
         durata.add(new Chunk("Alla scadenza, l'incarico cesserà automaticamente senza bisogno di disdetta.", FONT_NORMAL));
         durata.setAlignment(Element.ALIGN_JUSTIFIED);
         durata.setSpacingAfter(18);
-        document.add(durata);
+        document.add(aCapo(durata));
     }
 
     private void aggiungiSezioneCompenso(Document document, Contratto contratto) throws DocumentException {
@@ -260,20 +481,20 @@ public class PdfContrattoService {
         
         Paragraph titolo = new Paragraph("5. COMPENSO (PROVVIGIONE)\n", FONT_SUBTITLE);
         titolo.setSpacingAfter(12);
-        document.add(titolo);
+        document.add(aCapo(titolo));
         
         Paragraph compenso = new Paragraph();
         compenso.add(new Chunk("In caso di conclusione dell'affare durante la durata dell'incarico, il Mandante riconosce all'Agente una provvigione pari al ", FONT_NORMAL));
-        compenso.add(new Chunk(String.format("%.2f", percentuale) + "%", new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD, COLOR_HEADER)));
+        compenso.add(new Chunk(String.format("%.2f", percentuale) + "%", FONT_PERCENTUALE));
         compenso.add(new Chunk(" + IVA di legge sul prezzo di vendita accettato.\n\n", FONT_NORMAL));
         compenso.add(new Chunk("Il diritto alla provvigione matura alla comunicazione dell'avvenuta accettazione della proposta di acquisto. ", FONT_NORMAL));
         compenso.add(new Chunk("La provvigione sarà altresì dovuta in caso di vendita conclusa anche successivamente alla scadenza dell'incarico a soggetti presentati o segnalati dall'Agente durante il periodo di validità dello stesso.", FONT_NORMAL));
         compenso.setAlignment(Element.ALIGN_JUSTIFIED);
         compenso.setSpacingAfter(18);
-        document.add(compenso);
+        document.add(aCapo(compenso));
     }
 
-    private void aggiungiSezioneDichiarazioni(Document document, Contratto contratto) throws DocumentException {
+    private static void aggiungiSezioneDichiarazioni(Document document) throws DocumentException {
         Paragraph titolo = new Paragraph("6. DICHIARAZIONI DEL MANDANTE (Stato dell'immobile)\n", FONT_SUBTITLE);
         titolo.setSpacingAfter(10);
         document.add(titolo);
@@ -295,34 +516,34 @@ public class PdfContrattoService {
         document.add(new Paragraph("\n"));
     }
 
-    private void aggiungiSezioneObblighi(Document document) throws DocumentException {
+    private static void aggiungiSezioneObblighi(Document document) throws DocumentException {
         Paragraph titolo = new Paragraph("7. OBBLIGHI E CLAUSOLA PENALE\n", FONT_SUBTITLE);
         titolo.setSpacingAfter(12);
         document.add(titolo);
         
         Paragraph obbligoMandante = new Paragraph();
-        obbligoMandante.add(new Chunk("Obblighi del Mandante: ", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        obbligoMandante.add(new Chunk("Obblighi del Mandante: ", FONT_BOLD));
         obbligoMandante.add(new Chunk("Durante il periodo di esclusiva, il Mandante si obbliga a non vendere direttamente l'immobile e a non conferire incarico ad altre agenzie.", FONT_NORMAL));
         obbligoMandante.setAlignment(Element.ALIGN_JUSTIFIED);
         obbligoMandante.setSpacingAfter(10);
         document.add(obbligoMandante);
         
         Paragraph penale = new Paragraph();
-        penale.add(new Chunk("Penale: ", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        penale.add(new Chunk("Penale: ", FONT_BOLD));
         penale.add(new Chunk("In caso di violazione dell'esclusiva, rifiuto di vendere al prezzo stabilito (o superiore) in presenza di una proposta conforme, o revoca anticipata dell'incarico, il Mandante verserà all'Agente una penale pari al 70% della provvigione pattuita calcolata sul prezzo di vendita indicato all'art. 3.", FONT_NORMAL));
         penale.setAlignment(Element.ALIGN_JUSTIFIED);
         penale.setSpacingAfter(10);
         document.add(penale);
         
         Paragraph obbligoAgente = new Paragraph();
-        obbligoAgente.add(new Chunk("Obblighi dell'Agente: ", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        obbligoAgente.add(new Chunk("Obblighi dell'Agente: ", FONT_BOLD));
         obbligoAgente.add(new Chunk("L'Agente si impegna a promuovere la vendita con la diligenza professionale, pubblicizzando l'immobile sui propri canali, organizzando visite e tenendo informato il Mandante.", FONT_NORMAL));
         obbligoAgente.setAlignment(Element.ALIGN_JUSTIFIED);
         obbligoAgente.setSpacingAfter(18);
         document.add(obbligoAgente);
     }
 
-    private void aggiungiSezioneGdpr(Document document) throws DocumentException {
+    private static void aggiungiSezioneGdpr(Document document) throws DocumentException {
         Paragraph titolo = new Paragraph("8. TRATTAMENTO DATI PERSONALI (GDPR)\n", FONT_SUBTITLE);
         titolo.setSpacingAfter(10);
         document.add(titolo);
@@ -334,14 +555,13 @@ public class PdfContrattoService {
     }
 
     private void aggiungiFirme(Document document, Contratto contratto) throws DocumentException {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        String data = contratto.getDataInizio() != null ? contratto.getDataInizio().format(formatter) : "___________";
+        String data = contratto.getDataInizio() != null ? contratto.getDataInizio().format(FORMATO_DATA) : "___________";
         
-        Paragraph luogoData = new Paragraph("Luogo e Data: Torino, li " + data + "\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD));
+        Paragraph luogoData = new Paragraph("Luogo e Data: Torino, li " + data + "\n", FONT_BOLD);
         luogoData.setSpacingBefore(25);
         luogoData.setSpacingAfter(20);
         luogoData.setAlignment(Element.ALIGN_CENTER);
-        document.add(luogoData);
+        document.add(aCapo(luogoData));
         
         PdfPTable firmeTable = new PdfPTable(2);
         firmeTable.setWidthPercentage(85);
@@ -352,21 +572,21 @@ public class PdfContrattoService {
         cellMandante.setBorder(Rectangle.NO_BORDER);
         cellMandante.setPadding(10);
         Paragraph mandante = new Paragraph();
-        mandante.add(new Chunk("IL MANDANTE\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        mandante.add(new Chunk("IL MANDANTE\n", FONT_BOLD));
         mandante.add(new Chunk("(Firma)\n\n\n\n", FONT_SMALL));
         mandante.add(new Chunk("_________________________________", FONT_NORMAL));
         mandante.setAlignment(Element.ALIGN_CENTER);
-        cellMandante.addElement(mandante);
+        cellMandante.addElement(aCapo(mandante));
         
         PdfPCell cellAgente = new PdfPCell();
         cellAgente.setBorder(Rectangle.NO_BORDER);
         cellAgente.setPadding(10);
         Paragraph agente = new Paragraph();
-        agente.add(new Chunk("L'AGENTE\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        agente.add(new Chunk("L'AGENTE\n", FONT_BOLD));
         agente.add(new Chunk("(Timbro e Firma)\n\n\n\n", FONT_SMALL));
         agente.add(new Chunk("_________________________________", FONT_NORMAL));
         agente.setAlignment(Element.ALIGN_CENTER);
-        cellAgente.addElement(agente);
+        cellAgente.addElement(aCapo(agente));
         
         firmeTable.addCell(cellMandante);
         firmeTable.addCell(cellAgente);
@@ -374,9 +594,7 @@ public class PdfContrattoService {
         document.add(firmeTable);
     }
 
-    private void aggiungiClausoleVessatorie(Document document) throws DocumentException {
-        document.newPage();
-        
+    private static void aggiungiClausoleVessatorie(Document document) throws DocumentException {
         Paragraph titolo = new Paragraph("APPROVAZIONE SPECIFICA CLAUSOLE VESSATORIE\n", FONT_SUBTITLE);
         titolo.setAlignment(Element.ALIGN_CENTER);
         titolo.setSpacingAfter(15);
@@ -398,7 +616,7 @@ public class PdfContrattoService {
         document.add(new Paragraph("\n\n"));
         
         Paragraph firma = new Paragraph();
-        firma.add(new Chunk("IL MANDANTE\n", new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD)));
+        firma.add(new Chunk("IL MANDANTE\n", FONT_BOLD));
         firma.add(new Chunk("(Firma per accettazione)\n\n\n\n", FONT_SMALL));
         firma.add(new Chunk("_________________________________", FONT_NORMAL));
         firma.setAlignment(Element.ALIGN_CENTER);
@@ -411,22 +629,22 @@ public class PdfContrattoService {
         Chunk finalLinebreak = new Chunk(finalLine);
         document.add(finalLinebreak);
         
-        Paragraph fine = new Paragraph("\n(Fine del Documento)", new Font(Font.FontFamily.HELVETICA, 9, Font.ITALIC, BaseColor.GRAY));
+        Paragraph fine = new Paragraph("\n(Fine del Documento)", FONT_FINE);
         fine.setAlignment(Element.ALIGN_CENTER);
         document.add(fine);
     }
 
     private void aggiungiRigaTabella(PdfPTable table, String label, String value) {
-        PdfPCell cellLabel = new PdfPCell(new Phrase(label, new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD)));
+        PdfPCell cellLabel = new PdfPCell(aCapo(new Phrase(label, FONT_ETICHETTA)));
         cellLabel.setBorder(Rectangle.BOTTOM);
-        cellLabel.setBorderColor(new BaseColor(220, 220, 220));
+        cellLabel.setBorderColor(COLOR_BORDO_RIGA);
         cellLabel.setBorderWidth(0.5f);
         cellLabel.setPadding(8);
-        cellLabel.setBackgroundColor(new BaseColor(250, 250, 250));
+        cellLabel.setBackgroundColor(COLOR_SFONDO_ETICHETTA);
         
-        PdfPCell cellValue = new PdfPCell(new Phrase(value != null ? value : "N/A", FONT_NORMAL));
+        PdfPCell cellValue = new PdfPCell(aCapo(new Phrase(value != null ? value : "N/A", FONT_NORMAL)));
         cellValue.setBorder(Rectangle.BOTTOM);
-        cellValue.setBorderColor(new BaseColor(220, 220, 220));
+        cellValue.setBorderColor(COLOR_BORDO_RIGA);
         cellValue.setBorderWidth(0.5f);
         cellValue.setPadding(8);
         
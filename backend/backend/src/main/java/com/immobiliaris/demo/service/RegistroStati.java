@@ -0,0 +1,226 @@
+/**
+ * Registro in memoria degli stati di valutazioni, contratti e immobili.
+ *
+ * Le tabelle Stati_valutazione, Stati_contratto e Stati_immobile sono piccole e fisse
+ * (popolate dalla migrazione V7): vengono lette tutte all'avvio e il codice risolve gli
+ * stati per codice ({@link CodiceValutazione}, {@link CodiceContratto}, {@link CodiceImmobile})
+ * senza query. Le query dei repository filtrano sull'id dello stato (colonna FK indicizzata)
+ * invece di unire la tabella degli stati e confrontarne il nome.
+ *
+ * Aggiornamento copy-on-write: ad ogni inserimento o cancellazione di uno stato
+ * ({@link StatoEntityListener}, dopo il commit) viene costruito un nuovo snapshot
+ * immutabile e sostituito in modo atomico.
+ *
+ * Gli stati restituiti sono istanze staccate condivise tra i thread: si possono assegnare
+ * alle entità (es. {@code valutazione.setStatoValutazione(...)}) ma non vanno modificate.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see StatoEntityListener
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.StatoContratto;
+import com.immobiliaris.demo.entity.StatoImmobile;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.repository.StatoContrattoRepository;
+import com.immobiliaris.demo.repository.StatoImmobileRepository;
+import com.immobiliaris.demo.repository.StatoValutazioneRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+@Component
+public class RegistroStati {
+    private static final Logger logger = LoggerFactory.getLogger(RegistroStati.class);
+
+    /** Stati di una valutazione (Stati_valutazione.Nome) */
+    public enum CodiceValutazione {
+        SOLO_AI("solo_AI"), IN_VERIFICA("in_verifica"), APPROVATA("approvata");
+
+        private final String nome;
+
+        CodiceValutazione(String nome) {
+            this.nome = nome;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+    }
+
+    /** Stati di un contratto (Stati_contratto.Nome) */
+    public enum CodiceContratto {
+        BOZZA("bozza"), ATTIVO("attivo"), SCADUTO("scaduto"), CHIUSO("chiuso");
+
+        private final String nome;
+
+        CodiceContratto(String nome) {
+            this.nome = nome;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+    }
+
+    /** Stati di un immobile (Stati_immobile.Nome) */
+    public enum CodiceImmobile {
+        ATTIVO("attivo"), VENDUTO("venduto"), RITIRATO("ritirato");
+
+        private final String nome;
+
+        CodiceImmobile(String nome) {
+            this.nome = nome;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+    }
+
+    /** Snapshot immutabile: stati per nome in minuscolo */
+    private record Snapshot(Map<String, StatoValutazione> valutazioni,
+                            Map<String, StatoContratto> contratti,
+                            Map<String, StatoImmobile> immobili) {}
+
+    @Autowired
+    private StatoValutazioneRepository statoValutazioneRepository;
+
+    @Autowired
+    private StatoContrattoRepository statoContrattoRepository;
+
+    @Autowired
+    private StatoImmobileRepository statoImmobileRepository;
+
+    /** Snapshot corrente, sostituito per intero ad ogni ricarica */
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Map.of());
+
+    /**
+     * Caricamento all'avvio, prima che l'applicazione riceva richieste.
+     */
+    @PostConstruct
+    public void ricarica() {
+        Snapshot nuovo = new Snapshot(
+            perNome(statoValutazioneRepository.findAll(), StatoValutazione::getNome, StatoValutazione::getId),
+            perNome(statoContrattoRepository.findAll(), StatoContratto::getNome, StatoContratto::getId),
+            perNome(statoImmobileRepository.findAll(), StatoImmobile::getNome, StatoImmobile::getId));
+        snapshot = nuovo;
+        logger.debug("Registro stati caricato: {} valutazione, {} contratto, {} immobile",
+            nuovo.valutazioni().size(), nuovo.contratti().size(), nuovo.immobili().size());
+    }
+
+    /**
+     * @return stato della valutazione, da assegnare alle entità
+     * @throws IllegalStateException se lo stato non è presente nel database
+     */
+    public StatoValutazione get(CodiceValutazione codice) {
+        return richiesto(snapshot.valutazioni(), codice.getNome(), "Stati_valutazione");
+    }
+
+    /**
+     * @return stato del contratto, da assegnare alle entità
+     * @throws IllegalStateException se lo stato non è presente nel database
+     */
+    public StatoContratto get(CodiceContratto codice) {
+        return richiesto(snapshot.contratti(), codice.getNome(), "Stati_contratto");
+    }
+
+    /**
+     * @return stato dell'immobile, da assegnare alle entità
+     * @throws IllegalStateException se lo stato non è presente nel database
+     */
+    public StatoImmobile get(CodiceImmobile codice) {
+        return richiesto(snapshot.immobili(), codice.getNome(), "Stati_immobile");
+    }
+
+    /**
+     * @return id dello stato, null se non è presente nel database (nessuna riga lo può avere)
+     */
+    public Integer id(CodiceValutazione codice) {
+        StatoValutazione stato = snapshot.valutazioni().get(chiave(codice.getNome()));
+        return stato != null ? stato.getId() : null;
+    }
+
+    /**
+     * @return id dello stato, null se non è presente nel database (nessuna riga lo può avere)
+     */
+    public Integer id(CodiceContratto codice) {
+        StatoContratto stato = snapshot.contratti().get(chiave(codice.getNome()));
+        return stato != null ? stato.getId() : null;
+    }
+
+    /**
+     * @return id dello stato, null se non è presente nel database (nessuna riga lo può avere)
+     */
+    public Integer id(CodiceImmobile codice) {
+        StatoImmobile stato = snapshot.immobili().get(chiave(codice.getNome()));
+        return stato != null ? stato.getId() : null;
+    }
+
+    /**
+     * Id degli stati contratto con i nomi indicati (case-insensitive), per i filtri scelti
+     * dall'utente. I nomi sconosciuti sono ignorati.
+     */
+    public List<Integer> idContratti(Collection<String> nomi) {
+        Map<String, StatoContratto> contratti = snapshot.contratti();
+        return nomi.stream()
+            .filter(Objects::nonNull)
+            .map(nome -> contratti.get(chiave(nome)))
+            .filter(Objects::nonNull)
+            .map(StatoContratto::getId)
+            .distinct()
+            .toList();
+    }
+
+    /**
+     * Confronta lo stato di una valutazione per id, senza leggerne il nome.
+     */
+    public boolean is(StatoValutazione stato, CodiceValutazione codice) {
+        return stato != null && stato.getId() != null && stato.getId().equals(id(codice));
+    }
+
+    /**
+     * Confronta lo stato di un contratto per id, senza leggerne il nome.
+     */
+    public boolean is(StatoContratto stato, CodiceContratto codice) {
+        return stato != null && stato.getId() != null && stato.getId().equals(id(codice));
+    }
+
+    private static <T> T richiesto(Map<String, T> stati, String nome, String tabella) {
+        T stato = stati.get(chiave(nome));
+        if (stato == null) {
+            throw new IllegalStateException("Stato '" + nome + "' non presente in " + tabella);
+        }
+        return stato;
+    }
+
+    /**
+     * Indicizza gli stati per nome in minuscolo; con nomi duplicati vale l'id più basso.
+     */
+    private static <T> Map<String, T> perNome(List<T> stati, Function<T, String> nome, Function<T, Integer> id) {
+        Map<String, T> mappa = new LinkedHashMap<>();
+        stati.stream()
+            .filter(s -> nome.apply(s) != null && id.apply(s) != null)
+            .sorted(Comparator.comparing(id))
+            .forEach(s -> mappa.putIfAbsent(chiave(nome.apply(s)), s));
+        return Map.copyOf(mappa);
+    }
+
+    private static String chiave(String nome) {
+        return nome.toLowerCase(Locale.ROOT);
+    }
+}
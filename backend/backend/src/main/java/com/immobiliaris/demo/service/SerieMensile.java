@@ -0,0 +1,127 @@
+/**
+ * Serie temporale a bucket mensili (YearMonth) per i grafici della dashboard.
+ *
+ * Definisce una finestra di mesi consecutivi e accumula, per ogni mese, un conteggio
+ * e un totale. I valori arrivano da query raggruppate per mese ({@link ConteggioMensile})
+ * o da altre sorgenti già aggregate; i mesi senza dati restano a zero.
+ * In questo modo la serie si calcola con una query per entità invece di ricaricare
+ * la tabella per ogni mese.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.repository.ConteggioMensile;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SerieMensile {
+
+    /** Valori per mese: [numero, totale], in ordine cronologico */
+    private final Map<YearMonth, long[]> valori = new LinkedHashMap<>();
+
+    private final YearMonth primo;
+    private final YearMonth ultimo;
+
+    private SerieMensile(YearMonth ultimo, int numeroMesi) {
+        if (numeroMesi <= 0) {
+            throw new IllegalArgumentException("Il numero di mesi deve essere positivo");
+        }
+        this.ultimo = ultimo;
+        this.primo = ultimo.minusMonths(numeroMesi - 1L);
+        for (YearMonth mese = primo; !mese.isAfter(ultimo); mese = mese.plusMonths(1)) {
+            valori.put(mese, new long[2]);
+        }
+    }
+
+    /**
+     * Crea una serie di mesi consecutivi che termina con il mese indicato (incluso).
+     *
+     * @param ultimo Ultimo mese della serie
+     * @param numeroMesi Numero di mesi della serie
+     * @return Serie vuota (tutti i mesi a zero)
+     */
+    public static SerieMensile ultimiMesi(YearMonth ultimo, int numeroMesi) {
+        return new SerieMensile(ultimo, numeroMesi);
+    }
+
+    /**
+     * @return Inizio della finestra (primo giorno del primo mese, incluso)
+     */
+    public LocalDateTime getInizio() {
+        return primo.atDay(1).atStartOfDay();
+    }
+
+    /**
+     * @return Fine della finestra (primo giorno del mese successivo all'ultimo, escluso)
+     */
+    public LocalDateTime getFine() {
+        return ultimo.plusMonths(1).atDay(1).atStartOfDay();
+    }
+
+    /**
+     * @return Mesi della serie in ordine cronologico (il più vecchio per primo)
+     */
+    public List<YearMonth> getMesi() {
+        return Collections.unmodifiableList(new ArrayList<>(valori.keySet()));
+    }
+
+    /**
+     * Accumula i valori di un mese. I mesi fuori dalla finestra vengono ignorati.
+     *
+     * @param mese Mese di riferimento
+     * @param numero Conteggio da aggiungere
+     * @param totale Importo da aggiungere
+     * @return questa serie
+     */
+    public SerieMensile aggiungi(YearMonth mese, long numero, long totale) {
+        long[] coppia = valori.get(mese);
+        if (coppia != null) {
+            coppia[0] += numero;
+            coppia[1] += totale;
+        }
+        return this;
+    }
+
+    /**
+     * Accumula le righe di una query raggruppata per anno e mese.
+     *
+     * @param righe Righe {@link ConteggioMensile}
+     * @return questa serie
+     */
+    public SerieMensile aggiungi(List<? extends ConteggioMensile> righe) {
+        for (ConteggioMensile riga : righe) {
+            if (riga.getAnno() == null || riga.getMese() == null) continue;
+            aggiungi(YearMonth.of(riga.getAnno(), riga.getMese()),
+                riga.getNumero() != null ? riga.getNumero() : 0,
+                riga.getTotale() != null ? riga.getTotale() : 0);
+        }
+        return this;
+    }
+
+    /**
+     * @param mese Mese richiesto
+     * @return Conteggio del mese (0 se assente o fuori finestra)
+     */
+    public long getNumero(YearMonth mese) {
+        long[] coppia = valori.get(mese);
+        return coppia != null ? coppia[0] : 0;
+    }
+
+    /**
+     * @param mese Mese richiesto
+     * @return Totale del mese (0 se assente o fuori finestra)
+     */
+    public long getTotale(YearMonth mese) {
+        long[] coppia = valori.get(mese);
+        return coppia != null ? coppia[1] : 0;
+    }
+}
@@ -1,22 +1,31 @@
 package com.immobiliaris.demo.service;
 
+import com.immobiliaris.demo.dto.ContrattoRiga;
+import com.immobiliaris.demo.dto.CursorePagina;
+import com.immobiliaris.demo.dto.ImmobileDettaglioRiga;
+import com.immobiliaris.demo.dto.ValutazioneInVerificaRiga;
+import com.immobiliaris.demo.dto.ValutazioneSoloAIRiga;
 import com.immobiliaris.demo.entity.Immobile;
-import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.User;
 import com.immobiliaris.demo.entity.Valutazione;
 import com.immobiliaris.demo.repository.*;
+import com.immobiliaris.demo.service.RegistroStati.CodiceContratto;
+import com.immobiliaris.demo.service.RegistroStati.CodiceValutazione;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import com.immobiliaris.demo.entity.Contratto;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +33,12 @@ import org.slf4j.LoggerFactory;
 public class StatisticsService {
     private static final Logger logger = LoggerFactory.getLogger(StatisticsService.class);
 
+    /** Righe massime per pagina nelle liste "carica altri" */
+    private static final int MAX_RIGHE_PAGINA = 100;
+
+    /** Posizione di partenza della prima pagina keyset (massimo DATETIME di MySQL) */
+    private static final LocalDateTime DATA_MASSIMA = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
     @Autowired
     private ContrattoJpaRepository contrattoRepository;
 
@@ -43,18 +58,20 @@ public class StatisticsService {
     private ImmobileJpaRepository immobileJpaRepository;
 
     @Autowired
-    private StatoValutazioneRepository statoValutazioneRepository;
+    private RegistroStati registroStati;
+
+    @Autowired
+    private DashboardAggregateStore dashboardAggregateStore;
 
     /**
      * Ottiene le statistiche complete per l'amministratore
      * Include: statistiche totali, statistiche mensili e ultimi 10 immobili
      * @return Map con tutte le statistiche
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> getAdminDashboardData() {
         Map<String, Object> data = new LinkedHashMap<>();
 
-
-
         // Statistiche totali e mensili
         Map<String, Long> stats = new LinkedHashMap<>();
 
@@ -63,58 +80,32 @@ public class StatisticsService {
         LocalDateTime dataLimiteSettimanale = LocalDateTime.now().minusWeeks(1);
 
         // TOTALE IMMOBILI
-        Long totaleImmobili = immobileRepository.count();
-        stats.put("totaleImmobili", totaleImmobili);
+        stats.put("totaleImmobili", dashboardAggregateStore.getTotaleImmobili());
 
         // TOTALE IMMOBILI CON VALUTAZIONE IN VERIFICA
-        Long immobiliInVerifica = valutazioneRepository.countByStatoValutazioneNome("in_verifica");
-        stats.put("immobiliInVerifica", immobiliInVerifica);
+        stats.put("immobiliInVerifica", dashboardAggregateStore.getImmobiliInVerifica());
 
         // CONTRATTI CONCLUSI
-        Long contrattiConclusi = contrattoRepository.countByStatoContrattoNome("chiuso");
-        stats.put("contrattiConclusi", contrattiConclusi);
+        stats.put("contrattiConclusi", dashboardAggregateStore.getContrattiConclusi());
 
         // FATTURATO TOTALE DEI CONTRATTI CONCLUSI (somma prezzoUmano dalle valutazioni)
-        List<Contratto> contrattiChiusi = contrattoRepository.findByStatoContrattoNome("chiuso");
-        long fatturatoTotale = contrattiChiusi.stream()
-            .map(c -> {
-                if (c.getValutazione() != null && c.getValutazione().getPrezzoUmano() != null) {
-                    return (long) c.getValutazione().getPrezzoUmano();
-                }
-                return 0L;
-            })
-            .reduce(0L, Long::sum);
-        stats.put("fatturatoTotale", fatturatoTotale);
+        stats.put("fatturatoTotale", dashboardAggregateStore.getFatturatoTotale());
 
         // REGISTRAZIONI IMMOBILI NELL'ULTIMO MESE (ultimi 30 giorni)
-        Long immobiliRegistratiMensili = immobileRepository.countByDataRegistrazioneAfter(dataLimiteMensile);
-        stats.put("immobiliRegistratiMensili", immobiliRegistratiMensili);
+        stats.put("immobiliRegistratiMensili", dashboardAggregateStore.countImmobiliRegistratiDopo(dataLimiteMensile));
 
         // REGISTRAZIONI IMMOBILI NELL'ULTIMA SETTIMANA (ultimi 7 giorni)
-        Long immobiliRegistratiSettimanali = immobileRepository.countByDataRegistrazioneAfter(dataLimiteSettimanale);
-        stats.put("immobiliRegistratiSettimanali", immobiliRegistratiSettimanali);
+        stats.put("immobiliRegistratiSettimanali", dashboardAggregateStore.countImmobiliRegistratiDopo(dataLimiteSettimanale));
 
-        // TOTALE AGENTI
-        List<com.immobiliaris.demo.entity.User> tuttiAgenti = userRepository.findAll().stream()
-            .filter(u -> u.getTipoUtente() != null && u.getTipoUtente().getIdTipo() == 2)
-            .collect(Collectors.toList());
-        
-        // Separa agenti normali da agenti stage
-        long agentiNormali = tuttiAgenti.stream()
-            .filter(u -> u.getContratto() == null || !u.getContratto().equalsIgnoreCase("stage"))
-            .count();
-        
-        long agentiStage = tuttiAgenti.stream()
-            .filter(u -> u.getContratto() != null && u.getContratto().equalsIgnoreCase("stage"))
-            .count();
-        
-        stats.put("totaleAgenti", agentiNormali);
-        stats.put("agentiStage", agentiStage);
+        // TOTALE AGENTI (agenti normali e agenti stage separati)
+        stats.put("totaleAgenti", dashboardAggregateStore.getTotaleAgenti());
+        stats.put("agentiStage", dashboardAggregateStore.getAgentiStage());
 
         data.put("statistics", stats);
 
         // Ultimi 10 immobili aggiunti (Spring trova automaticamente i primi 10)
         List<Immobile> immobili = immobileRepository.findTop10ByOrderByDataRegistrazioneDesc();
+        Map<Integer, User> agentiUltimi10 = findAgentiPerImmobili(immobili);
 
         // Trasforma in Map per JSON
         List<Map<String, Object>> ultimi10Immobili = immobili.stream().map(i -> {
@@ -122,7 +113,7 @@ public class StatisticsService {
             immobileMap.put("tipo", i.getTipologia());
             immobileMap.put("nomeProprietario", i.getProprietario().getNome() + " " + i.getProprietario().getCognome());
 
-            String agenteNome = findAgenteForImmobile(i.getId());
+            String agenteNome = nomeCompleto(agentiUltimi10.get(i.getId()));
             immobileMap.put("agenteAssegnato", agenteNome);
 
             return immobileMap;
@@ -130,16 +121,8 @@ public class StatisticsService {
 
         data.put("ultimi10Immobili", ultimi10Immobili);
 
-            // Statistiche immobili per tipo (Appartamento, Attico, Villa, Loft)
-            List<Immobile> tuttiImmobili = immobileRepository.findAll();
-            Map<String, Long> immobiliPerTipo = tuttiImmobili.stream()
-                .filter(i -> i.getTipologia() != null)
-                .filter(i -> {
-                    String tipo = i.getTipologia().toLowerCase();
-                    return tipo.equals("appartamento") || tipo.equals("attico") || tipo.equals("villa") || tipo.equals("loft");
-                })
-                .collect(Collectors.groupingBy(i -> i.getTipologia(), Collectors.counting()));
-            data.put("immobiliPerTipo", immobiliPerTipo);
+        // Statistiche immobili per tipo (Appartamento, Attico, Villa, Loft)
+        data.put("immobiliPerTipo", dashboardAggregateStore.getImmobiliPerTipo());
 
         // Aggiungi contratti per mese (ultimi 6 mesi)
         data.putAll(getContrattiPerMese());
@@ -156,6 +139,19 @@ public class StatisticsService {
         return data;
     }
 
+    /**
+     * Parte dell'ETag della dashboard admin che dipende dall'ora corrente: il mese
+     * (contratti per mese, top agenti) e, per le registrazioni degli ultimi 30 e 7 giorni,
+     * la registrazione più vecchia ancora dentro la finestra. Letta dallo store, senza query.
+     * @return Chiave da passare a {@link VersioneDatiService#etag}
+     */
+    public String getAdminDashboardChiave() {
+        LocalDateTime adesso = LocalDateTime.now();
+        return "dashboard-admin|" + YearMonth.from(adesso)
+            + "|" + dashboardAggregateStore.getPrimaRegistrazioneDopo(adesso.minusMonths(1))
+            + "|" + dashboardAggregateStore.getPrimaRegistrazioneDopo(adesso.minusWeeks(1));
+    }
+
     /**
      * Contratti stipulati per mese negli ultimi 6 mesi
      * @return Map con mese e relativi dati (numero contratti, totale prezzo immobili)
@@ -164,34 +160,20 @@ public class StatisticsService {
         Map<String, Object> result = new LinkedHashMap<>();
         List<Map<String, Object>> contrattiMensili = new java.util.ArrayList<>();
 
-        for (int i = 5; i >= 0; i--) {
-            LocalDateTime inizio = LocalDateTime.now().minusMonths(i).withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime fine = inizio.plusMonths(1).minusDays(1).withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-
-                List<Contratto> contrattiMese = contrattoRepository.findByStatoContrattoNome("chiuso")
-                    .stream()
-                    .filter(c -> c.getDataInizio() != null && 
-                        !c.getDataInizio().isBefore(inizio) && 
-                        !c.getDataInizio().isAfter(fine))
-                    .collect(Collectors.toList());
-
-            // Sostituisco unboxing possibly null value
-            Integer totalePrezzoMese = contrattiMese.stream()
-                .map(c -> {
-                    if (c.getImmobile() != null && c.getImmobile().getPrezzo() != null) {
-                        return c.getImmobile().getPrezzo();
-                    } else {
-                        return 0;
-                    }
-                })
-                .reduce(0, Integer::sum);
+        // Ultimi 6 mesi, mese corrente incluso: i bucket arrivano già aggregati dallo store
+        SerieMensile serie = SerieMensile.ultimiMesi(YearMonth.now(), 6);
+        for (YearMonth mese : serie.getMesi()) {
+            DashboardAggregateStore.ContrattiMese contrattiMese = dashboardAggregateStore.getContrattiMese(mese);
+            serie.aggiungi(mese, contrattiMese.numeroContratti(), contrattiMese.totalePrezzoImmobili());
+        }
 
-            Map<String, Object> mese = new LinkedHashMap<>();
-            mese.put("mese", String.format("%02d/%d", inizio.getMonthValue(), inizio.getYear()));
-            mese.put("numeroContratti", (long) contrattiMese.size());
-            mese.put("totalePrezzoImmobili", totalePrezzoMese);
+        for (YearMonth mese : serie.getMesi()) {
+            Map<String, Object> meseMap = new LinkedHashMap<>();
+            meseMap.put("mese", String.format("%02d/%d", mese.getMonthValue(), mese.getYear()));
+            meseMap.put("numeroContratti", serie.getNumero(mese));
+            meseMap.put("totalePrezzoImmobili", (int) serie.getTotale(mese));
 
-            contrattiMensili.add(mese);
+            contrattiMensili.add(meseMap);
         }
 
         result.put("contrattiPerMese", contrattiMensili);
@@ -205,115 +187,56 @@ public class StatisticsService {
     public Map<String, Object> getTop3Agenti() {
         Map<String, Object> result = new LinkedHashMap<>();
 
-        LocalDateTime oggi = LocalDateTime.now();
-        LocalDateTime inizio = oggi.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-        LocalDateTime fine = inizio.plusMonths(1).minusDays(1).withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-
-        System.out.println("DEBUG: Data inizio mese: " + inizio);
-        System.out.println("DEBUG: Data fine mese: " + fine);
-
+        List<Map<String, Object>> top3 = new java.util.ArrayList<>();
+        for (DashboardAggregateStore.RiepilogoAgente riepilogo : dashboardAggregateStore.getTopAgentiMese(YearMonth.now(), 3)) {
+            String nome = riepilogo.nome();
+            String cognome = riepilogo.cognome();
+
+            // L'agente del contratto non è nell'anagrafica agenti: recupera l'utente
+            if (nome == null && cognome == null) {
+                com.immobiliaris.demo.entity.User user = userRepository.findById(riepilogo.idAgente()).orElse(null);
+                if (user == null) {
+                    logger.warn("Agente non trovato con ID: {}", riepilogo.idAgente());
+                    continue;
+                }
+                nome = user.getNome();
+                cognome = user.getCognome();
+            }
 
-        List<Contratto> tuttiContratti = contrattoRepository.findByStatoContrattoNome("chiuso");
-        logger.info("DEBUG: Contratti chiusi trovati: {}", tuttiContratti.size());
-        for (Contratto c : tuttiContratti) {
-            logger.info("DEBUG: Contratto ID: {}, data_inizio: {}, stato: {}, agente: {}", c.getId(), c.getDataInizio(), (c.getStatoContratto() != null ? c.getStatoContratto().getNome() : "NULL"), (c.getAgente() != null ? c.getAgente().getIdUtente() : "NULL"));
+            Map<String, Object> agente = new LinkedHashMap<>();
+            agente.put("nomeAgente", nome + " " + cognome);
+            agente.put("numeroContratti", riepilogo.contrattiConclusi());
+            agente.put("fatturato", (int) riepilogo.fatturato());
+            top3.add(agente);
         }
 
-        List<Contratto> contrattiConclusiMese = tuttiContratti.stream()
-                .filter(c -> {
-                    boolean hasData = c.getDataInizio() != null;
-                    boolean isInRange = hasData && !c.getDataInizio().isBefore(inizio) && !c.getDataInizio().isAfter(fine);
-                    if (hasData && isInRange) {
-                        System.out.println("DEBUG MATCH: Contratto " + c.getId() + " del " + c.getDataInizio());
-                    }
-                    return isInRange;
-                })
-                .collect(Collectors.toList());
-
-        System.out.println("DEBUG: Contratti conclusi nel mese corrente (filtrati): " + contrattiConclusiMese.size());
-
-        Map<?, List<Contratto>> agenteContrattiMapRaw = contrattiConclusiMese.stream()
-                .filter(c -> c.getAgente() != null && c.getAgente().getIdUtente() != null)
-                .collect(Collectors.groupingBy(c -> c.getAgente().getIdUtente()));
-
-        System.out.println("Agenti trovati nel mese: " + agenteContrattiMapRaw.size());
-
-        List<Map<String, Object>> top3 = agenteContrattiMapRaw.entrySet().stream()
-                .sorted((a, b) -> Integer.compare(b.getValue().size(), a.getValue().size()))
-                .limit(3)
-                .map(entry -> {
-                    Map<String, Object> agente = new LinkedHashMap<>();
-                    try {
-                        Object keyObj = entry.getKey();
-                        System.out.println("DEBUG: Key object type: " + keyObj.getClass().getName() + ", value: " + keyObj);
-                        
-                        // Sostituisco instanceof con pattern matching
-                        Integer agenteId;
-                        if (keyObj instanceof Long l) {
-                            agenteId = l.intValue();
-                        } else if (keyObj instanceof Integer i) {
-                            agenteId = i;
-                        } else {
-                            throw new ClassCastException("Tipo di key non supportato: " + keyObj.getClass().getName());
-                        }
-                        System.out.println("DEBUG: Casting successful, agenteId = " + agenteId);
-                        System.out.println("DEBUG: Cercando agente con ID: " + agenteId);
-                        
-                        com.immobiliaris.demo.entity.User user = userRepository.findById((long) agenteId)
-                                .orElse(null);
-                        
-                        System.out.println("DEBUG: User trovato: " + (user != null ? "SÌ" : "NO"));
-                        
-                        if (user != null) {
-                            System.out.println("DEBUG: Agente trovato: " + user.getNome() + " " + user.getCognome() + 
-                                    " con " + entry.getValue().size() + " contratti nel mese");
-                            
-                            Integer fatturato = entry.getValue().stream()
-                                .map(c -> {
-                                    if (c.getValutazione() != null && c.getValutazione().getPrezzoUmano() != null) {
-                                        return c.getValutazione().getPrezzoUmano();
-                                    } else {
-                                        return 0;
-                                    }
-                                })
-                                .reduce(0, Integer::sum);
-                            
-                            agente.put("nomeAgente", user.getNome() + " " + user.getCognome());
-                            agente.put("numeroContratti", (long) entry.getValue().size());
-                            agente.put("fatturato", fatturato);
-                            
-                            System.out.println("DEBUG: Agente aggiunto a top3. Map size: " + agente.size());
-                        } else {
-                            System.out.println("DEBUG: Agente non trovato con ID: " + agenteId);
-                        }
-                    } catch (ClassCastException e) {
-                        System.err.println("DEBUG: ClassCastException nel casting della key: " + e.getMessage());
-                        logger.error("DEBUG: ClassCastException nel casting della key: {}", e.getMessage(), e);
-                    } catch (Exception e) {
-                        System.err.println("DEBUG: Errore nel recupero agente: " + e.getMessage());
-                        logger.error("DEBUG: Errore nel recupero agente: {}", e.getMessage(), e);
-                    }
-                    return agente;
-                })
-                .filter(m -> !m.isEmpty())
-                .collect(Collectors.toList());
-
-        System.out.println("Top 3 agenti del mese trovati: " + top3.size());
         result.put("top3Agenti", top3);
         return result;
     }
 
     /**
-     * Trova l'agente assegnato per un immobile dalla tabella Valutazioni
+     * Trova l'ultimo agente assegnato per ogni immobile della lista dalla tabella Valutazioni
+     * Una sola query per tutta la lista (invece di una per immobile)
+     */
+    private Map<Integer, User> findAgentiPerImmobili(List<Immobile> immobili) {
+        return valutazioneRepository.findUltimoAgentePerImmobile(
+            immobili.stream().map(Immobile::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * Trova la valutazione più recente per ogni immobile della lista
+     * Una sola query per tutta la lista (invece di una per immobile)
      */
-    private String findAgenteForImmobile(Integer idImmobile) {
-        List<Valutazione> valutazioni = valutazioneRepository.findAll();
-        return valutazioni.stream()
-            .filter(v -> v.getImmobile() != null && v.getImmobile().getId().equals(idImmobile))
-            .filter(v -> v.getAgente() != null)
-            .findFirst()
-            .map(v -> v.getAgente().getNome() + " " + v.getAgente().getCognome())
-            .orElse(null);
+    private Map<Integer, Valutazione> findUltimeValutazioniPerImmobili(List<Immobile> immobili) {
+        return valutazioneRepository.findUltimaValutazionePerImmobile(
+            immobili.stream().map(Immobile::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * Nome e cognome dell'utente, null se l'utente non c'è
+     */
+    private String nomeCompleto(User user) {
+        return user != null ? user.getNome() + " " + user.getCognome() : null;
     }
 
     /**
@@ -325,8 +248,7 @@ public class StatisticsService {
         Map<String, Long> stats = new LinkedHashMap<>();
 
         // Ottieni ID dell'agente
-        Long idAgenteObj = userRepository.findIdByEmail(emailAgente);
-        Integer idAgente = idAgenteObj != null ? idAgenteObj.intValue() : null;
+        Long idAgente = userRepository.findIdByEmail(emailAgente);
 
         if (idAgente == null) {
             // Ritorna statistiche vuote se l'agente non viene trovato
@@ -337,13 +259,13 @@ public class StatisticsService {
         }
 
         // Contratti conclusi dall'agente (stato 'chiuso')
-        stats.put("contrattiConclusi", contrattoRepository.countByStatoContrattoNomeAndAgenteIdUtente("chiuso", idAgente));
+        stats.put("contrattiConclusi", contrattoRepository.countByStatoContrattoIdAndAgenteIdUtente(registroStati.id(CodiceContratto.CHIUSO), idAgente));
 
         // Valutazioni in corso dell'agente (stato 'in_verifica')
-        stats.put("valutazioniInCorso", valutazioneRepository.countByStatoValutazioneNomeAndAgenteIdUtente("in_verifica", idAgente));
+        stats.put("valutazioniInCorso", valutazioneRepository.countByStatoValutazioneIdAndAgenteIdUtente(registroStati.id(CodiceValutazione.IN_VERIFICA), idAgente));
 
         // Totale valutazioni con AI nel sistema (tutte, anche senza agente assegnato)
-        stats.put("valutazioniConAI", valutazioneRepository.countByStatoValutazioneNome("solo_AI"));
+        stats.put("valutazioniConAI", valutazioneRepository.countByStatoValutazioneId(registroStati.id(CodiceValutazione.SOLO_AI)));
 
         return stats;
     }
@@ -354,12 +276,14 @@ public class StatisticsService {
      * @param size Numero elementi per pagina
      * @return Map con lista immobili e informazioni paginazione
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> getImmobiliPaginated(int page, int size) {
         Map<String, Object> result = new LinkedHashMap<>();
 
         // Ottieni immobili della pagina con Spring Data JPA ordinati per ID decrescente
         Pageable pageable = PageRequest.of(page, size);
         Page<Immobile> immobiliPage = immobileRepository.findAllByOrderByIdDesc(pageable);
+        Map<Integer, User> agentiPagina = findAgentiPerImmobili(immobiliPage.getContent());
 
         // Trasforma in Map per JSON
         List<Map<String, Object>> immobili = immobiliPage.getContent().stream().map(i -> {
@@ -367,7 +291,7 @@ public class StatisticsService {
             immobileMap.put("tipo", i.getTipologia());
             immobileMap.put("nomeProprietario", i.getProprietario().getNome() + " " + i.getProprietario().getCognome());
 
-            String agenteNome = findAgenteForImmobile(i.getId());
+            String agenteNome = nomeCompleto(agentiPagina.get(i.getId()));
             immobileMap.put("agenteAssegnato", agenteNome);
 
             return immobileMap;
@@ -388,6 +312,7 @@ public class StatisticsService {
      * Carica immobili usando offset e limit (uso per "Load more" nel frontend)
      * Restituisce una mappa con la lista di immobili, nextOffset e hasMore
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> getImmobiliLoadMore(int offset, int limit) {
         List<Map<String, Object>> items = new java.util.ArrayList<>();
 
@@ -402,6 +327,7 @@ public class StatisticsService {
             Page<Immobile> p = immobileRepository.findAllByOrderByIdDesc(PageRequest.of(page, limit));
             List<Immobile> content = p.getContent();
             if (content.isEmpty()) break;
+            Map<Integer, Valutazione> valutazioniPagina = findUltimeValutazioniPerImmobili(content);
 
             for (int i = indexInPage; i < content.size() && items.size() < limit; i++) {
                 Immobile iObj = content.get(i);
@@ -409,12 +335,11 @@ public class StatisticsService {
                 immobileMap.put("tipo", iObj.getTipologia());
                 immobileMap.put("nomeProprietario", iObj.getProprietario() != null ? iObj.getProprietario().getNome() + " " + iObj.getProprietario().getCognome() : null);
 
-                List<Valutazione> valutazioni = valutazioneJpaRepository.findByImmobileIdOrderByDataValutazioneDesc(iObj.getId());
+                Valutazione valutazione = valutazioniPagina.get(iObj.getId()); // La più recente
                 String statoValutazione = null;
                 String agenteNome = null;
                 
-                if (!valutazioni.isEmpty()) {
-                    Valutazione valutazione = valutazioni.get(0); // Prende la più recente
+                if (valutazione != null) {
                     if (valutazione.getStatoValutazione() != null) {
                         statoValutazione = valutazione.getStatoValutazione().getNome();
                     }
@@ -451,265 +376,79 @@ public class StatisticsService {
     }
 
     /**
-     * Restituisce contratti chiusi con offset/limit per load-more (come dashboard)
+     * Restituisce contratti chiusi per load-more (come dashboard), dal più recente per data fine
      * Mostra i dettagli dell'immobile associato (tipo, proprietario, data, agente)
+     * @param cursore Cursore restituito dalla pagina precedente (null per la prima pagina)
+     * @param limit Numero di contratti da restituire
+     * @throws IllegalArgumentException se il cursore non è valido
      */
-    public Map<String, Object> getContrattiChiusiLoadMore(int offset, int limit) {
+    @Transactional(readOnly = true)
+    public Map<String, Object> getContrattiChiusiLoadMore(String cursore, int limit) {
         Map<String, Object> result = new LinkedHashMap<>();
 
-        // Ottieni tutti i contratti chiusi (nota: non usiamo Page perché findByStatoContrattoNome non è pageable)
-        List<Contratto> tuttiContratti = contrattoRepository.findByStatoContrattoNome("chiuso");
-
-        // Applica offset e limit manualmente
-        int totalContratti = tuttiContratti.size();
-        List<Contratto> contractiBatch = tuttiContratti.stream()
-            .skip(offset)
-            .limit(limit)
-            .collect(Collectors.toList());
-
-        // Trasforma in Map mostrando i dettagli dell'immobile
-        List<Map<String, Object>> contrattiData = contractiBatch.stream().map(c -> {
-            Map<String, Object> m = new LinkedHashMap<>();
-
-            // Dati contratto
-            m.put("numeroContratto", c.getNumeroContratto());
-            m.put("dataInvio", c.getDataInvio());
-            m.put("dataRicezione", c.getDataRicezione());
-            m.put("dataInizio", c.getDataInizio());
-            m.put("dataFine", c.getDataFine());
-
-            // Valutazione umana (se disponibile)
-            if (c.getValutazione() != null) {
-                m.put("valutazioneUmana", c.getValutazione().getPrezzoUmano());
-            } else {
-                m.put("valutazioneUmana", null);
-            }
-
-            // Dati immobile (come nel dashboard)
-            if (c.getImmobile() != null) {
-                Immobile immobile = c.getImmobile();
-                m.put("tipo", immobile.getTipologia());
-                m.put("nomeProprietario", immobile.getProprietario().getNome() + " " + immobile.getProprietario().getCognome());
-
-                String agenteNome = null;
-                if (c.getAgente() != null) {
-                    agenteNome = c.getAgente().getNome() + " " + c.getAgente().getCognome();
-                }
-                m.put("agenteAssegnato", agenteNome);
-            } else {
-                m.put("tipo", null);
-                m.put("nomeProprietario", null);
-                m.put("agenteAssegnato", null);
-            }
-
-            return m;
-        }).collect(Collectors.toList());
+        // Righe già nella forma della risposta (tipo, proprietario, agente dalla stessa query)
+        Integer chiuso = registroStati.id(CodiceContratto.CHIUSO);
+        PaginaKeyset<ContrattoRiga> pagina = caricaPagina(cursore, limit, Long.MAX_VALUE,
+            (data, dopoId, blocco) -> contrattoRepository.findPaginaByStatoConDataFine(chiuso, data, dopoId, blocco),
+            (dopoId, blocco) -> contrattoRepository.findPaginaByStatoSenzaDataFine(chiuso, dopoId, blocco),
+            ContrattoRiga::dataFine, ContrattoRiga::id);
 
-        result.put("contratti", contrattiData);
-        result.put("nextOffset", offset + limit);
-        result.put("hasMore", (offset + limit) < totalContratti);
-        result.put("pageSize", contractiBatch.size());
+        result.put("contratti", pagina.righe());
+        result.put("nextCursor", pagina.cursoreSuccessivo());
+        result.put("hasMore", pagina.altre());
+        result.put("pageSize", pagina.righe().size());
 
         return result;
     }
 
     /**
-     * Restituisce valutazioni generate solo da AI con offset/limit
+     * Restituisce valutazioni generate solo da AI per load-more, dalla più recente
      * Mostra i dettagli dell'immobile e il prezzo stimato dall'AI
+     * @param cursore Cursore restituito dalla pagina precedente (null per la prima pagina)
+     * @param limit Numero di valutazioni da restituire
+     * @throws IllegalArgumentException se il cursore non è valido
      */
-    public Map<String, Object> getValutazioniSoloAILoadMore(int offset, int limit) {
+    @Transactional(readOnly = true)
+    public Map<String, Object> getValutazioniSoloAILoadMore(String cursore, int limit) {
         Map<String, Object> result = new LinkedHashMap<>();
 
-        // Ottieni tutte le valutazioni con stato "solo_AI"
-        List<Valutazione> tutteValutazioni = valutazioneRepository.findByStatoValutazioneNome("solo_AI");
-
-        // Applica offset e limit manualmente
-        int totalValutazioni = tutteValutazioni.size();
-        List<Valutazione> valutazioniBatch = tutteValutazioni.stream()
-            .skip(offset)
-            .limit(limit)
-            .collect(Collectors.toList());
-
-        // Trasforma in Map mostrando i dettagli della valutazione
-        List<Map<String, Object>> valuazioniData = valutazioniBatch.stream().map(v -> {
-            Map<String, Object> m = new LinkedHashMap<>();
-
-            // ID della valutazione (per operazioni di eliminazione)
-            m.put("id", v.getId());
-
-            // Dati valutazione
-            m.put("prezzoAI", v.getPrezzoAI());
-            // Se dataValutazione è null, usa la data di registrazione dell'immobile
-            LocalDateTime dataToShow = v.getDataValutazione() != null ? v.getDataValutazione() : (v.getImmobile() != null ? v.getImmobile().getDataRegistrazione() : null);
-            m.put("dataValutazione", dataToShow != null ? dataToShow.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : null);
-            m.put("descrizione", v.getDescrizione());
-
-            if (v.getImmobile() != null) {
-                Immobile immobile = v.getImmobile();
-                m.put("tipo", immobile.getTipologia());
-                m.put("via", immobile.getVia());
-                m.put("citta", immobile.getCitta());
-                m.put("cap", immobile.getCap());
-                m.put("provincia", immobile.getProvincia());
-                m.put("metratura", immobile.getMetratura());
-                m.put("condizioni", immobile.getCondizioni());
-                m.put("stanze", immobile.getStanze());
-                m.put("bagni", immobile.getBagni());
-                m.put("piano", immobile.getPiano());
-                m.put("ascensore", immobile.getAscensore());
-                m.put("garage", immobile.getGarage());
-                m.put("giardino", immobile.getGiardino());
-                m.put("balcone", immobile.getBalcone());
-                m.put("terrazzo", immobile.getTerrazzo());
-                m.put("cantina", immobile.getCantina());
-                m.put("riscaldamento", immobile.getRiscaldamento());
-
-                if (immobile.getProprietario() != null) {
-                    m.put("nomeProprietario", immobile.getProprietario().getNome() + " " + immobile.getProprietario().getCognome());
-                    m.put("emailProprietario", immobile.getProprietario().getEmail());
-                    m.put("telefonoProprietario", immobile.getProprietario().getTelefono());
-                } else {
-                    m.put("nomeProprietario", null);
-                    m.put("emailProprietario", null);
-                    m.put("telefonoProprietario", null);
-                }
-
-                m.put("descrizione", immobile.getDescrizione());
-            } else {
-                m.put("tipo", null);
-                m.put("via", null);
-                m.put("citta", null);
-                m.put("cap", null);
-                m.put("provincia", null);
-                m.put("metratura", null);
-                m.put("condizioni", null);
-                m.put("stanze", null);
-                m.put("bagni", null);
-                m.put("piano", null);
-                m.put("ascensore", null);
-                m.put("garage", null);
-                m.put("giardino", null);
-                m.put("balcone", null);
-                m.put("terrazzo", null);
-                m.put("cantina", null);
-                m.put("riscaldamento", null);
-                m.put("nomeProprietario", null);
-                m.put("emailProprietario", null);
-                m.put("telefonoProprietario", null);
-                m.put("descrizione", null);
-            }
-
-            return m;
-        }).collect(Collectors.toList());
-
-        result.put("valutazioni", valuazioniData);
-        result.put("nextOffset", offset + limit);
-        result.put("hasMore", (offset + limit) < totalValutazioni);
-        result.put("pageSize", valutazioniBatch.size());
+        // Righe già nella forma della risposta (immobile e proprietario dalla stessa query)
+        Integer soloAI = registroStati.id(CodiceValutazione.SOLO_AI);
+        PaginaKeyset<ValutazioneSoloAIRiga> pagina = caricaPagina(cursore, limit, Integer.MAX_VALUE,
+            (data, dopoId, blocco) -> valutazioneRepository.findPaginaSoloAIConData(soloAI, data, Math.toIntExact(dopoId), blocco),
+            (dopoId, blocco) -> valutazioneRepository.findPaginaSoloAISenzaData(soloAI, Math.toIntExact(dopoId), blocco),
+            ValutazioneSoloAIRiga::dataValutazione, v -> v.id().longValue());
+
+        result.put("valutazioni", pagina.righe());
+        result.put("nextCursor", pagina.cursoreSuccessivo());
+        result.put("hasMore", pagina.altre());
+        result.put("pageSize", pagina.righe().size());
         result.put("agents", getAllAgents());
 
         return result;
     }
 
-    public Map<String, Object> getValutazioniInVerficaLoadMore(int offset, int limit) {
+    /**
+     * Restituisce valutazioni in verifica per load-more, dalla più recente
+     * @param cursore Cursore restituito dalla pagina precedente (null per la prima pagina)
+     * @param limit Numero di valutazioni da restituire
+     * @throws IllegalArgumentException se il cursore non è valido
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getValutazioniInVerficaLoadMore(String cursore, int limit) {
         Map<String, Object> result = new LinkedHashMap<>();
 
-        // Ottieni tutte le valutazioni con stato "in_verifica"
-        List<Valutazione> tutteValutazioni = valutazioneRepository.findByStatoValutazioneNome("in_verifica");
+        // Righe già nella forma della risposta (agente, immobile e proprietario dalla stessa query)
+        Integer inVerifica = registroStati.id(CodiceValutazione.IN_VERIFICA);
+        PaginaKeyset<ValutazioneInVerificaRiga> pagina = caricaPagina(cursore, limit, Integer.MAX_VALUE,
+            (data, dopoId, blocco) -> valutazioneRepository.findPaginaInVerificaConData(inVerifica, data, Math.toIntExact(dopoId), blocco),
+            (dopoId, blocco) -> valutazioneRepository.findPaginaInVerificaSenzaData(inVerifica, Math.toIntExact(dopoId), blocco),
+            ValutazioneInVerificaRiga::dataValutazione, v -> v.id().longValue());
 
-        // Applica offset e limit manualmente
-        int totalValutazioni = tutteValutazioni.size();
-        List<Valutazione> valutazioniBatch = tutteValutazioni.stream()
-            .skip(offset)
-            .limit(limit)
-            .collect(Collectors.toList());
-
-        // Trasforma in Map mostrando TUTTI i campi della tabella valutazione
-        List<Map<String, Object>> valuazioniData = valutazioniBatch.stream().map(v -> {
-            Map<String, Object> m = new LinkedHashMap<>();
-
-            // ID della valutazione (per operazioni di eliminazione)
-            m.put("id", v.getId());
-
-            // Tutti i campi della tabella Valutazioni
-            m.put("prezzoAI", v.getPrezzoAI());
-            m.put("prezzoUmano", v.getPrezzoUmano());
-            m.put("dataValutazione", v.getDataValutazione());
-            m.put("statoValutazione", v.getStatoValutazione() != null ? v.getStatoValutazione().getNome() : null);
-            m.put("descrizione", v.getDescrizione());
-
-            // Dati agente
-            if (v.getAgente() != null) {
-                m.put("nomeAgente", v.getAgente().getNome() + " " + v.getAgente().getCognome());
-                m.put("emailAgente", v.getAgente().getEmail());
-            } else {
-                m.put("nomeAgente", null);
-                m.put("emailAgente", null);
-            }
-
-            // Dati immobile COMPLETI
-            if (v.getImmobile() != null) {
-                Immobile immobile = v.getImmobile();
-                m.put("tipo", immobile.getTipologia());
-                m.put("via", immobile.getVia());
-                m.put("citta", immobile.getCitta());
-                m.put("cap", immobile.getCap());
-                m.put("provincia", immobile.getProvincia());
-                m.put("metratura", immobile.getMetratura());
-                m.put("condizioni", immobile.getCondizioni());
-                m.put("stanze", immobile.getStanze());
-                m.put("bagni", immobile.getBagni());
-                m.put("piano", immobile.getPiano());
-                m.put("ascensore", immobile.getAscensore());
-                m.put("garage", immobile.getGarage());
-                m.put("giardino", immobile.getGiardino());
-                m.put("balcone", immobile.getBalcone());
-                m.put("terrazzo", immobile.getTerrazzo());
-                m.put("cantina", immobile.getCantina());
-                m.put("riscaldamento", immobile.getRiscaldamento());
-
-                if (immobile.getProprietario() != null) {
-                    m.put("nomeProprietario", immobile.getProprietario().getNome() + " " + immobile.getProprietario().getCognome());
-                    m.put("emailProprietario", immobile.getProprietario().getEmail());
-                    m.put("telefonoProprietario", immobile.getProprietario().getTelefono());
-                } else {
-                    m.put("nomeProprietario", null);
-                    m.put("emailProprietario", null);
-                    m.put("telefonoProprietario", null);
-                }
-
-                m.put("descrizione", immobile.getDescrizione());
-            } else {
-                m.put("tipo", null);
-                m.put("via", null);
-                m.put("citta", null);
-                m.put("cap", null);
-                m.put("provincia", null);
-                m.put("metratura", null);
-                m.put("condizioni", null);
-                m.put("stanze", null);
-                m.put("bagni", null);
-                m.put("piano", null);
-                m.put("ascensore", null);
-                m.put("garage", null);
-                m.put("giardino", null);
-                m.put("balcone", null);
-                m.put("terrazzo", null);
-                m.put("cantina", null);
-                m.put("riscaldamento", null);
-                m.put("nomeProprietario", null);
-                m.put("emailProprietario", null);
-                m.put("telefonoProprietario", null);
-                m.put("descrizione", null);
-            }
-
-            return m;
-        }).collect(Collectors.toList());
-
-        result.put("valutazioni", valuazioniData);
-        result.put("nextOffset", offset + limit);
-        result.put("hasMore", (offset + limit) < totalValutazioni);
-        result.put("pageSize", valutazioniBatch.size());
+        result.put("valutazioni", pagina.righe());
+        result.put("nextCursor", pagina.cursoreSuccessivo());
+        result.put("hasMore", pagina.altre());
+        result.put("pageSize", pagina.righe().size());
 
         return result;
     }
@@ -833,16 +572,14 @@ public class StatisticsService {
     public void assegnaAgenteValutazioneAI(Integer idValutazione, Long idAgente) {
         Valutazione valutazione = valutazioneRepository.findById(idValutazione)
             .orElseThrow(() -> new RuntimeException("Valutazione non trovata"));
-        if (!"solo_AI".equalsIgnoreCase(valutazione.getStatoValutazione().getNome())) {
+        if (!registroStati.is(valutazione.getStatoValutazione(), CodiceValutazione.SOLO_AI)) {
             throw new RuntimeException("La valutazione non è di tipo solo_AI");
         }
         com.immobiliaris.demo.entity.User agente = userRepository.findById(idAgente)
             .orElseThrow(() -> new RuntimeException("Agente non trovato"));
         valutazione.setAgente(agente);
         // Cambia lo stato in "in_verifica"
-        StatoValutazione nuovoStato = statoValutazioneRepository.findByNome("in_verifica")
-            .orElseThrow(() -> new RuntimeException("Stato 'in_verifica' non trovato"));
-        valutazione.setStatoValutazione(nuovoStato);
+        valutazione.setStatoValutazione(registroStati.get(CodiceValutazione.IN_VERIFICA));
         
         // Imposta la data valutazione quando l'agente prende in carico
         valutazione.setDataValutazione(LocalDateTime.now());
@@ -856,8 +593,7 @@ public class StatisticsService {
      * @return Lista di mappe con nome e cognome concatenati
      */
     public List<Map<String, String>> getAllAgents() {
-        return userRepository.findAll().stream()
-                .filter(user -> user.getTipoUtente() != null && user.getTipoUtente().getIdTipo() == 2)
+        return userRepository.findByTipoUtenteIdTipo(2).stream()
                 .map(user -> {
                     Map<String, String> agentMap = new LinkedHashMap<>();
                     agentMap.put("id", String.valueOf(user.getIdUtente()));
@@ -875,47 +611,21 @@ public class StatisticsService {
     public Map<String, Object> getTuttiAgentiConStatistiche() {
         Map<String, Object> result = new LinkedHashMap<>();
 
-        // Ottieni tutti gli agenti (idTipo = 2)
-        List<com.immobiliaris.demo.entity.User> tuttiAgenti = userRepository.findAll().stream()
-            .filter(u -> u.getTipoUtente() != null && u.getTipoUtente().getIdTipo() == 2)
-            .collect(Collectors.toList());
-
-        // Per ogni agente, calcola le statistiche richieste
-        List<Map<String, Object>> agentiDati = tuttiAgenti.stream()
+        List<Map<String, Object>> agentiDati = dashboardAggregateStore.getAgenti().stream()
+            // Ordina per numero di contratti conclusi in modo decrescente
+            .sorted((a, b) -> Long.compare(b.contrattiConclusi(), a.contrattiConclusi()))
             .map(agente -> {
                 Map<String, Object> agentMap = new LinkedHashMap<>();
-                
-                // Nome e Cognome
-                agentMap.put("nome", agente.getNome());
-                agentMap.put("cognome", agente.getCognome());
-                
+                agentMap.put("nome", agente.nome());
+                agentMap.put("cognome", agente.cognome());
                 // Contratti conclusi dell'agente (stato "chiuso")
-                List<Contratto> contrattiConclusi = contrattoRepository.findByStatoContrattoNome("chiuso")
-                    .stream()
-                    .filter(c -> c.getAgente() != null && c.getAgente().getIdUtente().equals(agente.getIdUtente()))
-                    .collect(Collectors.toList());
-                
-                agentMap.put("contrattiConclusi", (long) contrattiConclusi.size());
-                
+                agentMap.put("contrattiConclusi", agente.contrattiConclusi());
                 // Immobili in gestione = valutazioni con stato "in_verifica" dell'agente
-                long immobiliInGestione = valutazioneRepository.countByStatoValutazioneNomeAndAgenteIdUtente("in_verifica", agente.getIdUtente().intValue());
-                agentMap.put("immobiliInGestione", immobiliInGestione);
-                
+                agentMap.put("immobiliInGestione", agente.immobiliInGestione());
                 // Fatturato = somma dei prezzoUmano delle valutazioni collegate ai contratti chiusi
-                long fatturato = contrattiConclusi.stream()
-                    .map(c -> {
-                        if (c.getValutazione() != null && c.getValutazione().getPrezzoUmano() != null) {
-                            return (long) c.getValutazione().getPrezzoUmano();
-                        }
-                        return 0L;
-                    })
-                    .reduce(0L, Long::sum);
-                agentMap.put("fatturato", fatturato);
-                
+                agentMap.put("fatturato", agente.fatturato());
                 return agentMap;
             })
-            // Ordina per numero di contratti conclusi in modo decrescente
-            .sorted((a, b) -> Long.compare((Long) b.get("contrattiConclusi"), (Long) a.get("contrattiConclusi")))
             .collect(Collectors.toList());
 
         result.put("agenti", agentiDati);
@@ -929,55 +639,9 @@ public class StatisticsService {
     public Map<String, Object> getTempiProcessoEPerformance() {
         Map<String, Object> result = new LinkedHashMap<>();
 
-        // Ottieni tutti gli immobili con valutazione e contratto
-        List<Immobile> immobili = immobileRepository.findAll();
-        
-        // Lista per calcolare tempo AI -> Presa in carico
-        List<Long> tempiAIaPresaInCarico = new java.util.ArrayList<>();
-        
-        // Lista per calcolare tempo Presa in carico -> Firma contratto
-        List<Long> tempiPresaInCaricoaContratto = new java.util.ArrayList<>();
-
-        for (Immobile immobile : immobili) {
-            // Trova la valutazione più recente dell'immobile
-            List<Valutazione> valutazioni = valutazioneRepository.findByImmobileIdOrderByDataValutazioneDesc(immobile.getId());
-            
-            if (!valutazioni.isEmpty()) {
-                Valutazione valutazione = valutazioni.get(0);
-                
-                // Tempo AI -> Presa in carico (se esiste dataValutazione)
-                if (valutazione.getDataValutazione() != null && immobile.getDataRegistrazione() != null) {
-                    long secondi = java.time.Duration.between(
-                        immobile.getDataRegistrazione(), 
-                        valutazione.getDataValutazione()
-                    ).getSeconds();
-                    tempiAIaPresaInCarico.add(secondi);
-                }
-                
-                // Tempo Presa in carico -> Firma contratto
-                if (valutazione.getDataValutazione() != null) {
-                    // Trova contratto collegato a questa valutazione
-                    List<Contratto> contratti = contrattoRepository.findByStatoContrattoNome("chiuso").stream()
-                        .filter(c -> c.getValutazione() != null && 
-                                     c.getValutazione().getId().equals(valutazione.getId()) &&
-                                     c.getDataInizio() != null)
-                        .collect(Collectors.toList());
-                    
-                    if (!contratti.isEmpty()) {
-                        Contratto contratto = contratti.get(0);
-                        long secondi = java.time.Duration.between(
-                            valutazione.getDataValutazione(), 
-                            contratto.getDataInizio()
-                        ).getSeconds();
-                        tempiPresaInCaricoaContratto.add(secondi);
-                    }
-                }
-            }
-        }
-
-        // Calcola medie
-        Map<String, Object> tempoAIaPresaInCaricoMap = calcolaTempoMedio(tempiAIaPresaInCarico);
-        Map<String, Object> tempoPresaInCaricoaContrattoMap = calcolaTempoMedio(tempiPresaInCaricoaContratto);
+        // Medie mantenute dallo store: AI -> Presa in carico, Presa in carico -> Firma contratto
+        Map<String, Object> tempoAIaPresaInCaricoMap = calcolaTempoMedio(dashboardAggregateStore.getMediaTempoAIaPresaInCarico());
+        Map<String, Object> tempoPresaInCaricoaContrattoMap = calcolaTempoMedio(dashboardAggregateStore.getMediaTempoPresaInCaricoaContratto());
 
         result.put("tempoAIaPresaInCarico", tempoAIaPresaInCaricoMap);
         result.put("tempoPresaInCaricoaContratto", tempoPresaInCaricoaContrattoMap);
@@ -994,13 +658,13 @@ public class StatisticsService {
 
     /**
      * Calcola il tempo medio in giorni, ore, minuti e secondi
-     * @param tempiInSecondi Lista di tempi in secondi
+     * @param media Tempo medio in secondi (null se non ci sono campioni)
      * @return Map con giorni, ore, minuti, secondi
      */
-    private Map<String, Object> calcolaTempoMedio(List<Long> tempiInSecondi) {
+    private Map<String, Object> calcolaTempoMedio(Long media) {
         Map<String, Object> result = new LinkedHashMap<>();
         
-        if (tempiInSecondi.isEmpty()) {
+        if (media == null) {
             result.put("giorni", 0);
             result.put("ore", 0);
             result.put("minuti", 0);
@@ -1009,11 +673,7 @@ public class StatisticsService {
             return result;
         }
 
-        // Calcola media
-        long mediaSecondi = (long) tempiInSecondi.stream()
-            .mapToLong(Long::longValue)
-            .average()
-            .orElse(0.0);
+        long mediaSecondi = media;
 
         // Converti in giorni, ore, minuti, secondi
         long giorni = mediaSecondi / 86400;
@@ -1101,110 +761,93 @@ public class StatisticsService {
     }
 
     /**
-     * Ottiene tutti gli immobili con tutti i dettagli inclusi prezzoAI e prezzoUmano dalla valutazione
-     * @param offset Offset per la paginazione
+     * Ottiene gli immobili, dal più recente, con tutti i dettagli inclusi prezzoAI e prezzoUmano dalla valutazione
+     * @param cursore Cursore restituito dalla pagina precedente (null per la prima pagina)
      * @param limit Numero di elementi da restituire
      * @return Map con immobili e metadati di paginazione
+     * @throws IllegalArgumentException se il cursore non è valido
      */
-    public Map<String, Object> getTuttiImmobiliConDettagli(int offset, int limit) {
+    @Transactional(readOnly = true)
+    public Map<String, Object> getTuttiImmobiliConDettagli(String cursore, int limit) {
         Map<String, Object> result = new LinkedHashMap<>();
 
-        // Ottieni tutti gli immobili ordinati per data registrazione discendente
-        List<Immobile> tuttiImmobili = immobileRepository.findAll().stream()
-            .sorted((a, b) -> b.getDataRegistrazione().compareTo(a.getDataRegistrazione()))
-            .collect(Collectors.toList());
+        // Righe già nella forma della risposta (proprietario e valutazione più recente dalla stessa query)
+        PaginaKeyset<ImmobileDettaglioRiga> pagina = caricaPagina(cursore, limit, Integer.MAX_VALUE,
+            (data, dopoId, blocco) -> immobileRepository.findPaginaConData(data, Math.toIntExact(dopoId), blocco),
+            (dopoId, blocco) -> immobileRepository.findPaginaSenzaData(Math.toIntExact(dopoId), blocco),
+            ImmobileDettaglioRiga::dataRegistrazione, i -> i.id().longValue());
 
-        // Applica offset e limit
-        int totalImmobili = tuttiImmobili.size();
-        List<Immobile> immobiliBatch = tuttiImmobili.stream()
-            .skip(offset)
-            .limit(limit)
-            .collect(Collectors.toList());
+        result.put("immobili", pagina.righe());
+        result.put("nextCursor", pagina.cursoreSuccessivo());
+        result.put("hasMore", pagina.altre());
+        result.put("pageSize", pagina.righe().size());
+        result.put("total", immobileRepository.count());
 
-        // Trasforma in Map con tutti i dettagli
-        List<Map<String, Object>> immobiliData = immobiliBatch.stream().map(immobile -> {
-            Map<String, Object> m = new LinkedHashMap<>();
-
-            // Dati base immobile
-            m.put("id", immobile.getId());
-            m.put("via", immobile.getVia());
-            m.put("citta", immobile.getCitta());
-            m.put("cap", immobile.getCap());
-            m.put("provincia", immobile.getProvincia());
-            m.put("tipologia", immobile.getTipologia());
-            m.put("metratura", immobile.getMetratura());
-            m.put("condizioni", immobile.getCondizioni());
-            m.put("stanze", immobile.getStanze());
-            m.put("bagni", immobile.getBagni());
-            m.put("riscaldamento", immobile.getRiscaldamento());
-            m.put("piano", immobile.getPiano());
-            m.put("ascensore", immobile.getAscensore());
-            m.put("garage", immobile.getGarage());
-            m.put("giardino", immobile.getGiardino());
-            m.put("balcone", immobile.getBalcone());
-            m.put("terrazzo", immobile.getTerrazzo());
-            m.put("cantina", immobile.getCantina());
-            m.put("prezzo", immobile.getPrezzo());
-            m.put("descrizione", immobile.getDescrizione());
-            m.put("dataRegistrazione", immobile.getDataRegistrazione());
-
-            // Stato immobile
-            if (immobile.getStatoImmobile() != null) {
-                m.put("statoImmobile", immobile.getStatoImmobile().getNome());
-            } else {
-                m.put("statoImmobile", null);
-            }
-
-            // Dati proprietario
-            if (immobile.getProprietario() != null) {
-                m.put("nomeProprietario", immobile.getProprietario().getNome() + " " + immobile.getProprietario().getCognome());
-                m.put("emailProprietario", immobile.getProprietario().getEmail());
-                m.put("telefonoProprietario", immobile.getProprietario().getTelefono());
-            } else {
-                m.put("nomeProprietario", null);
-                m.put("emailProprietario", null);
-                m.put("telefonoProprietario", null);
-            }
+        return result;
+    }
 
-            // Trova la valutazione più recente per questo immobile
-            List<Valutazione> valutazioni = valutazioneRepository.findByImmobileIdOrderByDataValutazioneDesc(immobile.getId());
-            if (!valutazioni.isEmpty()) {
-                Valutazione valutazioneRecente = valutazioni.get(0);
-                m.put("prezzoAI", valutazioneRecente.getPrezzoAI());
-                m.put("prezzoUmano", valutazioneRecente.getPrezzoUmano());
-                m.put("dataValutazione", valutazioneRecente.getDataValutazione());
-                m.put("descrizioneValutazione", valutazioneRecente.getDescrizione());
-                
-                if (valutazioneRecente.getStatoValutazione() != null) {
-                    m.put("statoValutazione", valutazioneRecente.getStatoValutazione().getNome());
-                } else {
-                    m.put("statoValutazione", null);
-                }
-                
-                if (valutazioneRecente.getAgente() != null) {
-                    m.put("agenteAssegnato", valutazioneRecente.getAgente().getNome() + " " + valutazioneRecente.getAgente().getCognome());
-                } else {
-                    m.put("agenteAssegnato", null);
-                }
-            } else {
-                m.put("prezzoAI", null);
-                m.put("prezzoUmano", null);
-                m.put("dataValutazione", null);
-                m.put("descrizioneValutazione", null);
-                m.put("statoValutazione", null);
-                m.put("agenteAssegnato", null);
-            }
+    /**
+     * Query keyset per le righe con data, dopo la posizione (data, dopoId)
+     */
+    @FunctionalInterface
+    private interface QueryConData<T> {
+        List<T> dopo(LocalDateTime data, long dopoId, Pageable blocco);
+    }
 
-            return m;
-        }).collect(Collectors.toList());
+    /**
+     * Query keyset per le righe senza data, con id minore di dopoId
+     */
+    @FunctionalInterface
+    private interface QuerySenzaData<T> {
+        List<T> dopo(long dopoId, Pageable blocco);
+    }
 
-        result.put("immobili", immobiliData);
-        result.put("nextOffset", offset + limit);
-        result.put("hasMore", (offset + limit) < totalImmobili);
-        result.put("pageSize", immobiliBatch.size());
-        result.put("total", totalImmobili);
+    /**
+     * Pagina di una lista "carica altri"
+     * @param righe Righe della pagina
+     * @param cursoreSuccessivo Cursore della pagina successiva (null se non ce ne sono altre)
+     * @param altre true se esistono altre righe dopo questa pagina
+     */
+    private record PaginaKeyset<T>(List<T> righe, String cursoreSuccessivo, boolean altre) {}
 
-        return result;
+    /**
+     * Carica una pagina in ordine (data DESC, id DESC) partendo dal cursore, con le righe senza
+     * data in coda per id decrescente. Legge al più limit + 1 righe: quella in più dice solo se
+     * esiste una pagina successiva, quindi il costo non dipende dalla profondità della pagina.
+     *
+     * @param cursoreClient Cursore ricevuto dal client (null per la prima pagina)
+     * @param limit Dimensione della pagina
+     * @param idMassimo Id maggiore di qualunque id della tabella (inizio delle righe senza data),
+     *                  anche limite degli id accettati nel cursore
+     * @throws IllegalArgumentException se il cursore non è valido
+     */
+    private <T> PaginaKeyset<T> caricaPagina(String cursoreClient, int limit, long idMassimo,
+                                             QueryConData<T> conData, QuerySenzaData<T> senzaData,
+                                             Function<T, LocalDateTime> dataDi, Function<T, Long> idDi) {
+        CursorePagina cursore = CursorePagina.decodifica(cursoreClient, idMassimo);
+        int dimensione = Math.min(Math.max(1, limit), MAX_RIGHE_PAGINA);
+        List<T> righe = new ArrayList<>(dimensione + 1);
+        if (cursore == null || cursore.data() != null) {
+            LocalDateTime data = cursore != null ? cursore.data() : DATA_MASSIMA;
+            long dopoId = cursore != null ? cursore.id() : idMassimo;
+            righe.addAll(conData.dopo(data, dopoId, PageRequest.of(0, dimensione + 1)));
+        }
+        if (righe.size() <= dimensione) {
+            // Righe con data finite: si prosegue con quelle senza data
+            long dopoId = cursore != null && cursore.data() == null ? cursore.id() : idMassimo;
+            righe.addAll(senzaData.dopo(dopoId, PageRequest.of(0, dimensione + 1 - righe.size())));
+        }
+
+        boolean altre = righe.size() > dimensione;
+        if (altre) {
+            righe = righe.subList(0, dimensione);
+        }
+        String cursoreSuccessivo = null;
+        if (altre) {
+            T ultima = righe.get(righe.size() - 1);
+            cursoreSuccessivo = new CursorePagina(dataDi.apply(ultima), idDi.apply(ultima)).codifica();
+        }
+        return new PaginaKeyset<>(righe, cursoreSuccessivo, altre);
     }
 }
 
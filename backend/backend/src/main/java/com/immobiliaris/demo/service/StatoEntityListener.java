@@ -0,0 +1,52 @@
+/**
+ * Entity listener JPA che ricarica il {@link RegistroStati} quando uno stato
+ * (immobile, valutazione o contratto) viene inserito o eliminato.
+ *
+ * Gli stati sono @Immutable: Hibernate non li aggiorna mai, per questo non c'è
+ * un callback @PostUpdate. La ricarica avviene dopo il commit della transazione
+ * (o subito se non c'è una transazione attiva), così un rollback non altera il registro.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see RegistroStati
+ */
+package com.immobiliaris.demo.service;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class StatoEntityListener {
+
+    @Autowired
+    private ObjectProvider<RegistroStati> registroProvider;
+
+    @PostPersist
+    @PostRemove
+    public void onModifica(Object stato) {
+        RegistroStati registro = registroProvider != null ? registroProvider.getIfAvailable() : null;
+        if (registro == null) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Più stati modificati nella stessa transazione: una sola ricarica
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                if (sync instanceof RicaricaDopoCommit) return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new RicaricaDopoCommit(registro));
+        } else {
+            registro.ricarica();
+        }
+    }
+
+    private record RicaricaDopoCommit(RegistroStati registro) implements TransactionSynchronization {
+        @Override
+        public void afterCommit() {
+            registro.ricarica();
+        }
+    }
+}
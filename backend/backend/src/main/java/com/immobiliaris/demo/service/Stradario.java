@@ -0,0 +1,387 @@
+/**
+ * Stradario in memoria delle città servite, per l'autocompletamento degli indirizzi
+ * senza chiamare Geoapify.
+ *
+ * Le vie arrivano dal file stradario.csv del classpath (citta;via;cap;civico_da;civico_a),
+ * oppure dal file indicato in {@code stradario.file}. Per ogni città viene costruito un trie
+ * su array primitivi:
+ * - nodi numerati in profondità, figli di un nodo contigui e ordinati per carattere
+ *   (ricerca binaria sul carattere successivo)
+ * - le chiavi sono ordinate, quindi le vie sotto un nodo sono un intervallo
+ *   [primaVoce, fineVoce) dell'array delle voci: nessuna visita del sotto-albero
+ *
+ * Ogni via è indicizzata con il nome completo ("via roma") e senza il tipo di strada
+ * ("roma"); le chiavi sono in minuscolo e senza accenti. Una ricerca costa un passo
+ * per carattere del prefisso più la copia dei risultati.
+ *
+ * Se il testo termina con un civico ("Via Nizza 150") si restituisce solo il tratto
+ * che lo contiene, con il suo CAP.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.dto.AddressValidationResponse.AddressSuggestion;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+public class Stradario {
+    private static final Logger logger = LoggerFactory.getLogger(Stradario.class);
+
+    static final String RISORSA_PREDEFINITA = "stradario.csv";
+
+    /** Tipi di strada tolti per la seconda chiave ("corso francia" -> "francia") */
+    private static final Set<String> TIPI_STRADA = Set.of("via", "viale", "corso", "piazza", "piazzale",
+        "piazzetta", "largo", "strada", "vicolo", "lungo", "spalto", "frazione", "borgo", "contrada", "localita");
+
+    /** Percorso opzionale di uno stradario completo, al posto di quello del classpath */
+    @Value("${stradario.file:}")
+    private String fileStradario;
+
+    /**
+     * Tratto di strada: una riga dello stradario.
+     */
+    public record Strada(String via, String citta, String cap, int civicoDa, int civicoA) {
+        boolean contiene(int civico) {
+            return civico >= civicoDa && civico <= civicoA;
+        }
+    }
+
+    /** Trie per città (chiave: città normalizzata), sostituiti insieme a ogni caricamento */
+    private volatile Map<String, Trie> perCitta = Map.of();
+
+    @PostConstruct
+    void inizializza() {
+        if (fileStradario == null || fileStradario.isBlank()) {
+            try (InputStream in = Stradario.class.getClassLoader().getResourceAsStream(RISORSA_PREDEFINITA)) {
+                if (in == null) {
+                    throw new IllegalStateException("Risorsa " + RISORSA_PREDEFINITA + " non trovata");
+                }
+                carica(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            try (BufferedReader reader = Files.newBufferedReader(Path.of(fileStradario), StandardCharsets.UTF_8)) {
+                carica(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Impossibile leggere " + fileStradario, e);
+            }
+        }
+    }
+
+    /**
+     * Legge lo stradario e sostituisce gli indici in modo atomico.
+     * Le righe vuote e quelle che iniziano con # sono ignorate.
+     *
+     * @throws IllegalArgumentException se una riga non rispetta il formato
+     */
+    void carica(BufferedReader reader) throws IOException {
+        Map<String, List<Strada>> strade = new LinkedHashMap<>();
+        String riga;
+        int numero = 0;
+        while ((riga = reader.readLine()) != null) {
+            numero++;
+            riga = riga.strip();
+            if (riga.isEmpty() || riga.startsWith("#")) continue;
+
+            String[] campi = riga.split(";");
+            if (campi.length != 5) {
+                throw new IllegalArgumentException("Stradario, riga " + numero + ": attesi 5 campi, trovati " + campi.length);
+            }
+            try {
+                Strada strada = new Strada(campi[1].strip(), campi[0].strip(), campi[2].strip(),
+                    Integer.parseInt(campi[3].strip()), Integer.parseInt(campi[4].strip()));
+                strade.computeIfAbsent(normalizza(strada.citta()), k -> new ArrayList<>()).add(strada);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Stradario, riga " + numero + ": civico non valido", e);
+            }
+        }
+
+        Map<String, Trie> nuovi = new LinkedHashMap<>();
+        int totale = 0;
+        for (Map.Entry<String, List<Strada>> citta : strade.entrySet()) {
+            nuovi.put(citta.getKey(), Trie.costruisci(citta.getValue()));
+            totale += citta.getValue().size();
+        }
+        perCitta = nuovi;
+        logger.info("Stradario caricato: {} tratti di strada in {}", totale, nuovi.keySet());
+    }
+
+    /**
+     * Vie che iniziano con il testo digitato.
+     *
+     * @param testo Inizio del nome della via, con o senza tipo e con civico facoltativo
+     *              ("Via Ro", "roma", "Corso Francia 200")
+     * @param citta Città (null o vuota: tutte)
+     * @param limite Numero massimo di suggerimenti
+     * @return Suggerimenti in ordine alfabetico, senza coordinate; vuota se nessuna via corrisponde
+     */
+    public List<AddressSuggestion> suggerisci(String testo, String citta, int limite) {
+        List<AddressSuggestion> risultati = new ArrayList<>();
+        if (testo == null || limite <= 0) return risultati;
+
+        String prefisso = normalizza(testo);
+        int civico = -1;
+        int spazio = prefisso.lastIndexOf(' ');
+        if (spazio > 0 && inizioCivico(prefisso, spazio + 1)) {
+            civico = leggiCivico(prefisso, spazio + 1);
+            prefisso = prefisso.substring(0, spazio);
+        }
+        if (prefisso.isEmpty()) return risultati;
+
+        Map<String, Trie> indici = perCitta;
+        if (citta != null && !citta.isBlank()) {
+            Trie trie = indici.get(normalizza(citta));
+            if (trie != null) {
+                trie.cerca(prefisso, civico, limite, risultati);
+            }
+            return risultati;
+        }
+        for (Trie trie : indici.values()) {
+            trie.cerca(prefisso, civico, limite, risultati);
+        }
+        risultati.sort(Comparator.comparing(AddressSuggestion::getVia).thenComparing(AddressSuggestion::getCitta));
+        return risultati.size() > limite ? new ArrayList<>(risultati.subList(0, limite)) : risultati;
+    }
+
+    /**
+     * Minuscolo, senza accenti, punteggiatura e spazi multipli: "Sant’Ottavio" -> "sant ottavio".
+     */
+    static String normalizza(String testo) {
+        String senzaAccenti = Normalizer.normalize(testo, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(senzaAccenti.length());
+        boolean spazio = true;
+        for (int i = 0; i < senzaAccenti.length(); i++) {
+            char c = senzaAccenti.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+                spazio = false;
+            } else if (!spazio) {
+                sb.append(' ');
+                spazio = true;
+            }
+        }
+        int fine = sb.length();
+        if (fine > 0 && sb.charAt(fine - 1) == ' ') sb.setLength(fine - 1);
+        return sb.toString();
+    }
+
+    /** Ultima parola composta da cifre e al più una lettera finale ("10", "10b") */
+    private static boolean inizioCivico(String testo, int da) {
+        int i = da;
+        while (i < testo.length() && Character.isDigit(testo.charAt(i))) i++;
+        return i > da && i >= testo.length() - 1 && i - da <= 5;
+    }
+
+    private static int leggiCivico(String testo, int da) {
+        int valore = 0;
+        for (int i = da; i < testo.length() && Character.isDigit(testo.charAt(i)); i++) {
+            valore = valore * 10 + (testo.charAt(i) - '0');
+        }
+        return valore;
+    }
+
+    /**
+     * Trie immutabile di una città, su array primitivi.
+     */
+    private static final class Trie {
+        /** Tratti di strada, nell'ordine delle chiavi */
+        private final Strada[] voci;
+        /** Carattere dell'arco che entra nel nodo */
+        private final char[] etichetta;
+        private final int[] primoFiglio;
+        private final int[] numeroFigli;
+        /** Intervallo [primaVoce, fineVoce) delle voci sotto il nodo */
+        private final int[] primaVoce;
+        private final int[] fineVoce;
+
+        private Trie(Strada[] voci, char[] etichetta, int[] primoFiglio, int[] numeroFigli,
+                     int[] primaVoce, int[] fineVoce) {
+            this.voci = voci;
+            this.etichetta = etichetta;
+            this.primoFiglio = primoFiglio;
+            this.numeroFigli = numeroFigli;
+            this.primaVoce = primaVoce;
+            this.fineVoce = fineVoce;
+        }
+
+        private record Chiave(String testo, Strada strada) {}
+
+        static Trie costruisci(List<Strada> strade) {
+            List<Chiave> chiavi = new ArrayList<>(strade.size() * 2);
+            for (Strada strada : strade) {
+                String completa = normalizza(strada.via());
+                chiavi.add(new Chiave(completa, strada));
+                int spazio = completa.indexOf(' ');
+                if (spazio > 0 && TIPI_STRADA.contains(completa.substring(0, spazio))) {
+                    chiavi.add(new Chiave(completa.substring(spazio + 1), strada));
+                }
+            }
+            // A parità di chiave i tratti della stessa via sono adiacenti, per civico crescente
+            chiavi.sort(Comparator.comparing(Chiave::testo)
+                .thenComparing(c -> c.strada().via())
+                .thenComparingInt(c -> c.strada().civicoDa()));
+
+            int massimoNodi = 1;
+            for (Chiave chiave : chiavi) massimoNodi += chiave.testo().length();
+
+            String[] testi = new String[chiavi.size()];
+            Strada[] voci = new Strada[chiavi.size()];
+            for (int i = 0; i < testi.length; i++) {
+                testi[i] = chiavi.get(i).testo();
+                voci[i] = chiavi.get(i).strada();
+            }
+
+            Costruttore c = new Costruttore(testi, massimoNodi);
+            c.espandi(0, 0, testi.length, 0);
+            int n = c.nodi;
+            return new Trie(voci, Arrays.copyOf(c.etichetta, n), Arrays.copyOf(c.primoFiglio, n),
+                Arrays.copyOf(c.numeroFigli, n), Arrays.copyOf(c.primaVoce, n), Arrays.copyOf(c.fineVoce, n));
+        }
+
+        /**
+         * Aggiunge a {@code risultati} al più {@code limite} vie con il prefisso dato,
+         * una per via (o, con il civico, il tratto che lo contiene).
+         */
+        void cerca(String prefisso, int civico, int limite, List<AddressSuggestion> risultati) {
+            int nodo = 0;
+            for (int i = 0; i < prefisso.length() && nodo >= 0; i++) {
+                nodo = figlio(nodo, prefisso.charAt(i));
+            }
+            if (nodo < 0) return;
+
+            int aggiunti = 0;
+            Strada precedente = null;
+            for (int v = primaVoce[nodo]; v < fineVoce[nodo] && aggiunti < limite; v++) {
+                Strada strada = voci[v];
+                if (civico >= 0 && !strada.contiene(civico)) continue;
+                if (civico < 0 && precedente != null && precedente.via().equals(strada.via())) {
+                    // Altro tratto della stessa via: un solo suggerimento, CAP solo se unico
+                    if (!strada.cap().equals(precedente.cap())) {
+                        risultati.get(risultati.size() - 1).setCap(null);
+                    }
+                    continue;
+                }
+                if (gia(risultati, strada)) continue;
+                risultati.add(suggerimento(strada, civico));
+                precedente = strada;
+                aggiunti++;
+            }
+        }
+
+        /** Figlio del nodo con l'etichetta data, -1 se assente */
+        private int figlio(int nodo, char c) {
+            int basso = primoFiglio[nodo];
+            int alto = basso + numeroFigli[nodo] - 1;
+            while (basso <= alto) {
+                int medio = (basso + alto) >>> 1;
+                char e = etichetta[medio];
+                if (e < c) basso = medio + 1;
+                else if (e > c) alto = medio - 1;
+                else return medio;
+            }
+            return -1;
+        }
+
+        /** La stessa via può arrivare da entrambe le chiavi (completa e senza tipo) */
+        private static boolean gia(List<AddressSuggestion> risultati, Strada strada) {
+            for (AddressSuggestion s : risultati) {
+                if (s.getVia().equals(strada.via()) && s.getCitta().equals(strada.citta())) return true;
+            }
+            return false;
+        }
+
+        private static AddressSuggestion suggerimento(Strada strada, int civico) {
+            AddressSuggestion s = new AddressSuggestion();
+            s.setVia(strada.via());
+            s.setCitta(strada.citta());
+            s.setCap(strada.cap());
+            StringBuilder display = new StringBuilder(strada.via());
+            if (civico >= 0) {
+                s.setCivico(String.valueOf(civico));
+                display.append(' ').append(civico);
+            }
+            display.append(", ").append(strada.citta()).append(' ').append(strada.cap());
+            s.setDisplayName(display.toString());
+            return s;
+        }
+    }
+
+    /**
+     * Numerazione dei nodi in profondità: i figli di un nodo ricevono indici contigui
+     * prima di essere espansi.
+     */
+    private static final class Costruttore {
+        private final String[] testi;
+        private final char[] etichetta;
+        private final int[] primoFiglio;
+        private final int[] numeroFigli;
+        private final int[] primaVoce;
+        private final int[] fineVoce;
+        private int nodi = 1;
+
+        Costruttore(String[] testi, int massimoNodi) {
+            this.testi = testi;
+            etichetta = new char[massimoNodi];
+            primoFiglio = new int[massimoNodi];
+            numeroFigli = new int[massimoNodi];
+            primaVoce = new int[massimoNodi];
+            fineVoce = new int[massimoNodi];
+        }
+
+        /** Espande il nodo che copre le chiavi [da, a), tutte con lo stesso prefisso di lunghezza profondita */
+        void espandi(int nodo, int da, int a, int profondita) {
+            primaVoce[nodo] = da;
+            fineVoce[nodo] = a;
+
+            // Le chiavi che finiscono qui precedono le altre nell'ordinamento
+            int i = da;
+            while (i < a && testi[i].length() == profondita) i++;
+
+            int figli = 0;
+            for (int j = i; j < a; ) {
+                char c = testi[j].charAt(profondita);
+                while (j < a && testi[j].charAt(profondita) == c) j++;
+                figli++;
+            }
+            int primo = nodi;
+            primoFiglio[nodo] = primo;
+            numeroFigli[nodo] = figli;
+            nodi += figli;
+
+            int k = 0;
+            for (int j = i; j < a; k++) {
+                char c = testi[j].charAt(profondita);
+                int inizio = j;
+                while (j < a && testi[j].charAt(profondita) == c) j++;
+                etichetta[primo + k] = c;
+                espandi(primo + k, inizio, j, profondita + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/**
+ * Service per la rivalutazione AI massiva degli immobili.
+ *
+ * Pipeline (un job alla volta, in background):
+ * 1. Lettura degli immobili a blocchi (keyset su Id_immobile) con le sole colonne
+ *    necessarie al calcolo, eventualmente filtrati per CAP
+ * 2. Calcolo del prezzo AI in parallelo sui core disponibili
+ *    (stessa formula di {@link ValutazioneService#valutaImmobile(Immobile)})
+ * 3. Inserimento delle nuove valutazioni "solo_AI" con batch JDBC, una transazione per blocco
+ *
+ * Come le valutazioni "solo_AI" create dal form, quelle massive non hanno Data_valutazione:
+ * la data è quella della presa in carico da parte di un agente. Così non diventano la
+ * valutazione più recente (ORDER BY Data_valutazione DESC NULLS LAST) degli immobili
+ * già valutati e non cambiano liste admin, esportazioni e tempi medi della dashboard.
+ *
+ * Gli immobili con prezzo 0 (CAP non mappato o metratura mancante) vengono saltati.
+ * Al termine gli aggregati della dashboard vengono ricostruiti, perché gli insert
+ * JDBC non passano dagli entity listener JPA; per lo stesso motivo la versione delle
+ * valutazioni ({@link VersioneDatiService}) viene incrementata dopo ogni blocco e alla fine.
+ * I job conclusi restano consultabili per valutazioni.bulk.conservazione-job, poi vengono rimossi.
+ *
+ * Su MySQL aggiungere rewriteBatchedStatements=true all'URL JDBC per trasformare
+ * ogni batch in un unico INSERT multi-riga.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.service.RegistroStati.CodiceValutazione;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+@Service
+public class ValutazioneBulkService {
+    private static final Logger logger = LoggerFactory.getLogger(ValutazioneBulkService.class);
+
+    /** Numero di immobili letti, calcolati e inseriti per blocco */
+    static final int DIMENSIONE_BLOCCO = 1000;
+
+    private static final String SELECT_IMMOBILI =
+        "SELECT Id_immobile, CAP, Metratura, Piano, Stanze, Bagni, Tipologia, Condizioni, Riscaldamento, " +
+        "Ascensore, Garage, Giardino, Balcone, Terrazzo, Cantina " +
+        "FROM Immobili WHERE Id_immobile > ? ";
+
+    private static final String INSERT_VALUTAZIONE =
+        "INSERT INTO Valutazioni (Prezzo_AI, Data_valutazione, Id_stato_valutazione, Descrizione, Id_immobile) " +
+        "VALUES (?, NULL, ?, ?, ?)";
+
+    @Autowired
+    private ValutazioneService valutazioneService;
+
+    @Autowired
+    private RegistroStati registroStati;
+
+    @Autowired
+    private DashboardAggregateStore dashboardAggregateStore;
+
+    @Autowired
+    private VersioneDatiService versioneDatiService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** Per quanto tempo un job concluso resta consultabile */
+    @Value("${valutazioni.bulk.conservazione-job:24h}")
+    private Duration conservazioneJob;
+
+    /** Un solo job alla volta: la rivalutazione è già parallela al suo interno */
+    private final ExecutorService esecutore = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "valutazione-bulk");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong prossimoId = new AtomicLong(1);
+    private volatile Job jobCorrente;
+
+    /**
+     * Stato di avanzamento di una rivalutazione massiva.
+     */
+    public static class Job {
+        private final long id;
+        private final String cap;
+        private final LocalDateTime avvio = LocalDateTime.now();
+        private volatile LocalDateTime fine;
+        private volatile String stato = "in_coda";
+        private volatile String errore;
+        private volatile long totale;
+        private final AtomicInteger elaborati = new AtomicInteger();
+        private final AtomicInteger inseriti = new AtomicInteger();
+        private final AtomicInteger saltati = new AtomicInteger();
+
+        Job(long id, String cap) {
+            this.id = id;
+            this.cap = cap;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getStato() {
+            return stato;
+        }
+
+        /**
+         * @return Stato del job come mappa JSON (avanzamento e throughput)
+         */
+        public Map<String, Object> toMap() {
+            LocalDateTime riferimento = fine != null ? fine : LocalDateTime.now();
+            long millis = Math.max(1, Duration.between(avvio, riferimento).toMillis());
+            int fatti = elaborati.get();
+
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", id);
+            m.put("cap", cap);
+            m.put("stato", stato);
+            m.put("totale", totale);
+            m.put("elaborati", fatti);
+            m.put("inseriti", inseriti.get());
+            m.put("saltati", saltati.get());
+            m.put("percentuale", totale > 0 ? Math.min(100, fatti * 100 / totale) : (fine != null ? 100 : 0));
+            m.put("immobiliAlSecondo", fatti * 1000L / millis);
+            m.put("avvio", avvio);
+            m.put("fine", fine);
+            m.put("errore", errore);
+            return m;
+        }
+    }
+
+    /**
+     * Avvia la rivalutazione di tutti gli immobili o di un solo CAP.
+     *
+     * @param cap CAP da rivalutare (null o vuoto = tutti gli immobili)
+     * @return Job avviato
+     * @throws IllegalStateException se una rivalutazione è già in corso
+     */
+    public synchronized Job avvia(String cap) {
+        Job corrente = jobCorrente;
+        if (corrente != null && ("in_coda".equals(corrente.stato) || "in_corso".equals(corrente.stato))) {
+            throw new IllegalStateException("Rivalutazione già in corso (job " + corrente.id + ")");
+        }
+
+        rimuoviScaduti();
+        String filtroCap = cap != null && !cap.isBlank() ? cap.trim() : null;
+        Job job = new Job(prossimoId.getAndIncrement(), filtroCap);
+        jobs.put(job.id, job);
+        jobCorrente = job;
+        esecutore.submit(() -> esegui(job));
+        return job;
+    }
+
+    /**
+     * @param id ID del job
+     * @return Job, oppure null se non esiste
+     */
+    public Job getJob(long id) {
+        rimuoviScaduti();
+        return jobs.get(id);
+    }
+
+    /**
+     * Rimuove i job conclusi da più di {@link #conservazioneJob}.
+     */
+    private void rimuoviScaduti() {
+        LocalDateTime limite = LocalDateTime.now().minus(conservazioneJob);
+        jobs.values().removeIf(job -> job.fine != null && job.fine.isBefore(limite));
+    }
+
+    private void esegui(Job job) {
+        job.stato = "in_corso";
+        boolean fallito = false;
+        try {
+            Integer soloAI = registroStati.get(CodiceValutazione.SOLO_AI).getId();
+
+            job.totale = job.cap != null
+                ? jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Immobili WHERE CAP = ?", Long.class, job.cap)
+                : jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Immobili", Long.class);
+
+            int ultimoId = 0;
+            while (true) {
+                List<Immobile> blocco = leggiBlocco(ultimoId, job.cap);
+                if (blocco.isEmpty()) break;
+
+                elaboraBlocco(blocco, soloAI, job);
+                ultimoId = blocco.get(blocco.size() - 1).getId();
+            }
+
+            logger.info("Rivalutazione {} completata: {} immobili, {} valutazioni inserite",
+                job.id, job.elaborati.get(), job.inseriti.get());
+        } catch (Exception e) {
+            fallito = true;
+            job.errore = descrivi(e);
+            logger.error("Errore rivalutazione {}: {}", job.id, job.errore, e);
+        }
+
+        // Il job risulta concluso solo quando anche la dashboard è aggiornata; un errore qui
+        // non deve lasciarlo "in_corso", altrimenti ogni nuovo avvio verrebbe rifiutato
+        if (job.inseriti.get() > 0) {
+            try {
+                dashboardAggregateStore.ricostruisci();
+                versioneDatiService.incrementa(VersioneDatiService.Aggregato.VALUTAZIONI);
+            } catch (Exception e) {
+                if (!fallito) {
+                    job.errore = "Aggiornamento dashboard non riuscito: " + descrivi(e);
+                }
+                fallito = true;
+                logger.error("Errore aggiornamento dashboard dopo la rivalutazione {}", job.id, e);
+            }
+        }
+        job.fine = LocalDateTime.now();
+        job.stato = fallito ? "errore" : "completato";
+    }
+
+    /** Messaggio dell'eccezione, o il suo tipo se non ha messaggio */
+    private static String descrivi(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    /**
+     * Legge il blocco successivo di immobili (solo i campi usati dal calcolo).
+     */
+    private List<Immobile> leggiBlocco(int dopoId, String cap) {
+        String sql = SELECT_IMMOBILI + (cap != null ? "AND CAP = ? " : "") + "ORDER BY Id_immobile LIMIT ?";
+        Object[] parametri = cap != null
+            ? new Object[] { dopoId, cap, DIMENSIONE_BLOCCO }
+            : new Object[] { dopoId, DIMENSIONE_BLOCCO };
+
+        return jdbcTemplate.query(sql, (rs, i) -> {
+            Immobile immobile = new Immobile();
+            immobile.setId(rs.getInt("Id_immobile"));
+            immobile.setCap(rs.getString("CAP"));
+            immobile.setMetratura(rs.getObject("Metratura", Integer.class));
+            immobile.setPiano(rs.getObject("Piano", Integer.class));
+            immobile.setStanze(rs.getObject("Stanze", Integer.class));
+            immobile.setBagni(rs.getObject("Bagni", Integer.class));
+            immobile.setTipologia(rs.getString("Tipologia"));
+            immobile.setCondizioni(rs.getString("Condizioni"));
+            immobile.setRiscaldamento(rs.getString("Riscaldamento"));
+            immobile.setAscensore(rs.getObject("Ascensore", Boolean.class));
+            immobile.setGarage(rs.getObject("Garage", Boolean.class));
+            immobile.setGiardino(rs.getObject("Giardino", Boolean.class));
+            immobile.setBalcone(rs.getObject("Balcone", Boolean.class));
+            immobile.setTerrazzo(rs.getObject("Terrazzo", Boolean.class));
+            immobile.setCantina(rs.getObject("Cantina", Boolean.class));
+            return immobile;
+        }, parametri);
+    }
+
+    /**
+     * Calcola i prezzi del blocco in parallelo e inserisce le valutazioni con un batch JDBC.
+     */
+    private void elaboraBlocco(List<Immobile> blocco, Integer idStatoSoloAI, Job job) {
+        int[] prezzi = new int[blocco.size()];
+        IntStream.range(0, blocco.size()).parallel()
+            .forEach(i -> prezzi[i] = valutazioneService.calcolaPrezzoAI(blocco.get(i)));
+
+        List<Object[]> righe = new ArrayList<>(blocco.size());
+        for (int i = 0; i < blocco.size(); i++) {
+            if (prezzi[i] <= 0) {
+                job.saltati.incrementAndGet();
+                continue;
+            }
+            righe.add(new Object[] { prezzi[i], idStatoSoloAI, "Rivalutazione AI massiva", blocco.get(i).getId() });
+        }
+
+        if (!righe.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_VALUTAZIONE, righe));
+            // Le liste admin leggono dal database: il blocco è già visibile
+            versioneDatiService.incrementa(VersioneDatiService.Aggregato.VALUTAZIONI);
+            job.inseriti.addAndGet(righe.size());
+        }
+        job.elaborati.addAndGet(blocco.size());
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        esecutore.shutdownNow();
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Versioni dei dati letti da dashboard e liste, per le GET condizionali (ETag / If-None-Match).
+ *
+ * Ogni aggregato (immobili, valutazioni, contratti, utenti) ha un contatore monotono,
+ * incrementato dopo il commit di ogni insert/update/delete tramite {@link DashboardEntityListener}
+ * e dalle scritture fatte fuori da JPA ({@link ValutazioneBulkService}).
+ *
+ * L'ETag di una risposta è formato dall'istante di avvio, dalle versioni degli aggregati
+ * da cui dipende e da una chiave scelta dal chiamante (utente, mese corrente, ...):
+ * finché nessuno di questi cambia il corpo è identico, quindi il controller può rispondere
+ * 304 senza interrogare il database né serializzare il JSON.
+ *
+ * I contatori sono in memoria: un riavvio cambia l'istante di avvio e invalida tutti gli ETag.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see DashboardEntityListener
+ */
+package com.immobiliaris.demo.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+@Service
+public class VersioneDatiService {
+
+    /** Aggregati con versione propria */
+    public enum Aggregato { IMMOBILI, VALUTAZIONI, CONTRATTI, UTENTI }
+
+    /** Tutti gli aggregati: dashboard che leggono immobili, valutazioni, contratti e agenti */
+    public static final Aggregato[] TUTTI = Aggregato.values();
+
+    private final AtomicLongArray versioni = new AtomicLongArray(Aggregato.values().length);
+
+    /** Distingue gli ETag di avvii diversi (i contatori ripartono da zero) */
+    private final String avvio = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Registra una modifica dell'aggregato (da chiamare dopo il commit).
+     */
+    public void incrementa(Aggregato aggregato) {
+        versioni.incrementAndGet(aggregato.ordinal());
+    }
+
+    public long getVersione(Aggregato aggregato) {
+        return versioni.get(aggregato.ordinal());
+    }
+
+    /**
+     * ETag forte per una risposta che dipende dagli aggregati indicati.
+     * Le versioni vanno lette prima di calcolare il corpo: una modifica concorrente
+     * produce al più un ETag vecchio per dati nuovi, che il poll successivo corregge.
+     *
+     * @param chiave Parti della risposta che non dipendono dai dati (es. utente, mese corrente)
+     * @param aggregati Aggregati letti per costruire la risposta
+     * @return ETag tra virgolette, es. "mabc12-3.0.7-1f2e3d4c"
+     */
+    public String etag(String chiave, Aggregato... aggregati) {
+        StringBuilder etag = new StringBuilder("\"").append(avvio).append('-');
+        for (int i = 0; i < aggregati.length; i++) {
+            if (i > 0) etag.append('.');
+            etag.append(getVersione(aggregati[i]));
+        }
+        // La chiave può contenere l'email dell'utente: nell'ETag ne va solo l'impronta
+        String impronta = DigestUtils.md5DigestAsHex(chiave.getBytes(StandardCharsets.UTF_8));
+        return etag.append('-').append(impronta, 0, 12).append('"').toString();
+    }
+}
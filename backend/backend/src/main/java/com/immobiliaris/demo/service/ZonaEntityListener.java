@@ -0,0 +1,53 @@
+/**
+ * Entity listener JPA che ricarica lo {@link ZonaPriceIndex} quando una zona
+ * viene inserita, modificata o eliminata.
+ *
+ * La ricarica avviene dopo il commit della transazione (o subito se non c'è una
+ * transazione attiva), così un rollback non altera l'indice.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see ZonaPriceIndex
+ */
+package com.immobiliaris.demo.service;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class ZonaEntityListener {
+
+    @Autowired
+    private ObjectProvider<ZonaPriceIndex> indexProvider;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onModifica(Object zona) {
+        ZonaPriceIndex index = indexProvider != null ? indexProvider.getIfAvailable() : null;
+        if (index == null) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Più zone modificate nella stessa transazione: una sola ricarica
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                if (sync instanceof RicaricaDopoCommit) return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new RicaricaDopoCommit(index));
+        } else {
+            index.ricarica();
+        }
+    }
+
+    private record RicaricaDopoCommit(ZonaPriceIndex index) implements TransactionSynchronization {
+        @Override
+        public void afterCommit() {
+            index.ricarica();
+        }
+    }
+}
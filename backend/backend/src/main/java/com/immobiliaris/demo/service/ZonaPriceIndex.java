@@ -0,0 +1,140 @@
+/**
+ * Indice in memoria CAP → prezzo medio al mq della tabella zone.
+ *
+ * La tabella zone è piccola e quasi statica: viene caricata tutta all'avvio in due
+ * array primitivi ordinati (CAP come int e prezzo), con ricerca binaria.
+ * Il calcolo della valutazione AI legge la quotazione base senza accedere al database.
+ *
+ * Aggiornamento copy-on-write: ad ogni modifica di una {@link com.immobiliaris.demo.entity.Zona}
+ * ({@link ZonaEntityListener}, dopo il commit) viene costruito un nuovo snapshot e
+ * sostituito in modo atomico; le letture in corso continuano sul vecchio snapshot.
+ *
+ * Se più zone hanno lo stesso CAP, il prezzo indicizzato è la media dei loro prezzi.
+ *
+ * @author Sistema IMMOBILIARIS
+ * @version 1.0
+ * @since 2025-12-01
+ *
+ * @see ZonaEntityListener
+ */
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Zona;
+import com.immobiliaris.demo.repository.ZonaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Component
+public class ZonaPriceIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ZonaPriceIndex.class);
+
+    /** Snapshot immutabile: caps ordinati, prezzi allineati per indice */
+    private record Snapshot(int[] caps, int[] prezzi) {}
+
+    @Autowired
+    private ZonaRepository zonaRepository;
+
+    /** Snapshot corrente, sostituito per intero ad ogni ricarica */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Caricamento iniziale all'avvio dell'applicazione.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ricarica();
+    }
+
+    /**
+     * Ricarica tutte le zone dal database e sostituisce lo snapshot in modo atomico.
+     */
+    public void ricarica() {
+        List<Zona> zone = zonaRepository.findAll();
+        Snapshot nuovo = costruisci(zone);
+        snapshot = nuovo;
+        logger.info("Indice prezzi zone caricato: {} CAP", nuovo.caps().length);
+    }
+
+    /**
+     * Restituisce il prezzo medio al mq per il CAP.
+     *
+     * @param cap CAP di 5 cifre
+     * @return Prezzo medio al mq, oppure 0 se il CAP non è valido o non è mappato
+     */
+    public int getPrezzoMedioMq(String cap) {
+        int chiave = capToInt(cap);
+        if (chiave < 0) return 0;
+
+        Snapshot corrente = snapshot;
+        if (corrente == null) {
+            ricarica();
+            corrente = snapshot;
+        }
+
+        int indice = Arrays.binarySearch(corrente.caps(), chiave);
+        return indice >= 0 ? corrente.prezzi()[indice] : 0;
+    }
+
+    /**
+     * @param cap CAP di 5 cifre
+     * @return true se il CAP è presente nella tabella zone
+     */
+    public boolean contiene(String cap) {
+        return getPrezzoMedioMq(cap) > 0;
+    }
+
+    /**
+     * Costruisce uno snapshot ordinato per CAP, mediando i prezzi dei CAP duplicati.
+     */
+    private static Snapshot costruisci(List<Zona> zone) {
+        int n = 0;
+        long[] coppie = new long[zone.size()];
+        for (Zona zona : zone) {
+            int chiave = capToInt(zona.getCap());
+            if (chiave < 0 || zona.getPrezzoMedioMq() == null) continue;
+            // CAP nei 32 bit alti, prezzo nei 32 bit bassi: un solo sort per entrambi
+            coppie[n++] = ((long) chiave << 32) | (zona.getPrezzoMedioMq() & 0xFFFFFFFFL);
+        }
+        Arrays.sort(coppie, 0, n);
+
+        int[] caps = new int[n];
+        int[] prezzi = new int[n];
+        int distinti = 0;
+        for (int i = 0; i < n; ) {
+            int chiave = (int) (coppie[i] >>> 32);
+            long somma = 0;
+            int conteggio = 0;
+            while (i < n && (int) (coppie[i] >>> 32) == chiave) {
+                somma += (int) coppie[i];
+                conteggio++;
+                i++;
+            }
+            caps[distinti] = chiave;
+            prezzi[distinti] = (int) Math.round((double) somma / conteggio);
+            distinti++;
+        }
+        return new Snapshot(Arrays.copyOf(caps, distinti), Arrays.copyOf(prezzi, distinti));
+    }
+
+    /**
+     * Converte un CAP di 5 cifre in intero, -1 se non valido.
+     * Nessuna allocazione: usato ad ogni valutazione.
+     */
+    private static int capToInt(String cap) {
+        if (cap == null || cap.length() != 5) return -1;
+        int valore = 0;
+        for (int i = 0; i < 5; i++) {
+            char c = cap.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            valore = valore * 10 + (c - '0');
+        }
+        return valore;
+    }
+}
@@ -0,0 +1,189 @@
+-- ======================================================
+-- V1: schema iniziale (tabelle di scriptDB.sql, senza dati)
+-- I database già creati con scriptDB.sql vengono marcati a questa
+-- versione (baseline) e ricevono solo le migrazioni successive.
+-- ======================================================
+
+-- =========================================
+-- 1️⃣ Tabella Tipi_utente
+-- =========================================
+CREATE TABLE Tipi_utente (
+    Id_tipo INT AUTO_INCREMENT PRIMARY KEY,
+    Nome VARCHAR(50) NOT NULL UNIQUE,
+    Descrizione VARCHAR(255)
+);
+
+-- =========================================
+-- 2️⃣ Tabella Utenti
+-- =========================================
+CREATE TABLE Utenti (
+    Id_utente INT AUTO_INCREMENT PRIMARY KEY,
+    CF CHAR(16) UNIQUE,
+    Nome VARCHAR(50) NOT NULL,
+    Cognome VARCHAR(50) NOT NULL,
+    Email VARCHAR(100) NOT NULL UNIQUE,
+    Password VARCHAR(255) NOT NULL,
+    Telefono VARCHAR(20),
+    Via VARCHAR(100),
+    Citta VARCHAR(100),
+    CAP CHAR(5),
+    Data_registrazione DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Id_tipo INT,
+    Contratto VARCHAR(100),
+    FOREIGN KEY (Id_tipo) REFERENCES Tipi_utente(Id_tipo)
+        ON DELETE SET NULL ON UPDATE CASCADE
+);
+
+-- =========================================
+-- 3️⃣ Tabelle di supporto per stati
+-- =========================================
+CREATE TABLE Stati_immobile (
+    Id_stato_immobile INT AUTO_INCREMENT PRIMARY KEY,
+    Nome VARCHAR(50) NOT NULL UNIQUE,
+    Descrizione VARCHAR(255)
+);
+
+CREATE TABLE Stati_richiesta (
+    Id_stato_richiesta INT AUTO_INCREMENT PRIMARY KEY,
+    Nome VARCHAR(50) NOT NULL UNIQUE,
+    Descrizione VARCHAR(255)
+);
+
+CREATE TABLE Stati_valutazione (
+    Id_stato_valutazione INT AUTO_INCREMENT PRIMARY KEY,
+    Nome VARCHAR(50) NOT NULL UNIQUE,
+    Descrizione VARCHAR(255)
+);
+
+CREATE TABLE Stati_contratto (
+    Id_stato_contratto INT AUTO_INCREMENT PRIMARY KEY,
+    Nome VARCHAR(50) NOT NULL UNIQUE,
+    Descrizione VARCHAR(255)
+);
+
+-- =========================================
+-- 4️⃣ Tabella Immobili
+-- =========================================
+CREATE TABLE Immobili (
+    Id_immobile INT AUTO_INCREMENT PRIMARY KEY,
+    Via VARCHAR(255),
+    Citta VARCHAR(100),
+    CAP CHAR(5),
+    Provincia CHAR(2),
+    Tipologia VARCHAR(100),
+    Metratura INT,
+    Condizioni VARCHAR(100),
+    Stanze INT,
+    Bagni INT,
+    Riscaldamento VARCHAR(100),
+    Id_stato_immobile INT,
+    Piano INT,
+    Ascensore BOOLEAN DEFAULT FALSE,
+    Garage BOOLEAN DEFAULT FALSE,
+    Giardino BOOLEAN DEFAULT FALSE,
+    Balcone BOOLEAN DEFAULT FALSE,
+    Terrazzo BOOLEAN DEFAULT FALSE,
+    Cantina BOOLEAN DEFAULT FALSE,
+    Prezzo INT NULL,
+    Descrizione TEXT,
+    Data_registrazione DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Id_utente INT,
+    FOREIGN KEY (Id_stato_immobile) REFERENCES Stati_immobile(Id_stato_immobile)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_utente) REFERENCES Utenti(Id_utente)
+        ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- =========================================
+-- 5️⃣ Tabella Richieste
+-- =========================================
+CREATE TABLE Richieste (
+    Id_richiesta INT AUTO_INCREMENT PRIMARY KEY,
+    Id_stato_richiesta INT,
+    Descrizione TEXT,
+    Data_richiesta DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Id_utente INT,
+    Id_immobile INT,
+    Id_agente INT NULL,
+    FOREIGN KEY (Id_stato_richiesta) REFERENCES Stati_richiesta(Id_stato_richiesta)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_utente) REFERENCES Utenti(Id_utente)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_immobile) REFERENCES Immobili(Id_immobile)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_agente) REFERENCES Utenti(Id_utente)
+        ON DELETE SET NULL ON UPDATE CASCADE
+);
+
+-- =========================================
+-- 6️⃣ Tabella Valutazioni
+-- =========================================
+CREATE TABLE Valutazioni (
+    Id_valutazione INT AUTO_INCREMENT PRIMARY KEY,
+    Prezzo_AI INT NULL,
+    Prezzo_Umano INT NULL,
+    Data_valutazione DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Id_stato_valutazione INT,
+    Descrizione TEXT,
+    Id_agente INT,
+    Id_immobile INT,
+    FOREIGN KEY (Id_stato_valutazione) REFERENCES Stati_valutazione(Id_stato_valutazione)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_agente) REFERENCES Utenti(Id_utente)
+        ON DELETE SET NULL ON UPDATE CASCADE,
+    FOREIGN KEY (Id_immobile) REFERENCES Immobili(Id_immobile)
+        ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- =========================================
+-- 7️⃣ Tabella Contratti
+-- =========================================
+CREATE TABLE Contratti (
+    Id_contratto INT AUTO_INCREMENT PRIMARY KEY,
+    Data_invio DATETIME,
+    Data_ricezione DATETIME,
+    Data_inizio DATETIME,
+    Data_fine DATETIME,
+    Data_registrazione DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Id_stato_contratto INT,
+    Numero_contratto VARCHAR(50) UNIQUE,
+    Percentuale_commissione DECIMAL(5,2),
+    Id_valutazione INT,
+    Id_utente INT,
+    Id_richiesta INT,
+    Id_immobile INT,
+    Id_agente INT,
+    FOREIGN KEY (Id_stato_contratto) REFERENCES Stati_contratto(Id_stato_contratto)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_valutazione) REFERENCES Valutazioni(Id_valutazione)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_utente) REFERENCES Utenti(Id_utente)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_richiesta) REFERENCES Richieste(Id_richiesta)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_immobile) REFERENCES Immobili(Id_immobile)
+        ON DELETE CASCADE ON UPDATE CASCADE,
+    FOREIGN KEY (Id_agente) REFERENCES Utenti(Id_utente)
+        ON DELETE SET NULL ON UPDATE CASCADE
+);
+
+-- =========================================
+-- 8️⃣ Tabella Foto
+-- =========================================
+CREATE TABLE Foto (
+    Id_foto INT AUTO_INCREMENT PRIMARY KEY,
+    Nome VARCHAR(100),
+    Percorso VARCHAR(255),
+    Data_caricamento DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Copertina BOOLEAN DEFAULT FALSE,
+    Id_immobile INT,
+    FOREIGN KEY (Id_immobile) REFERENCES Immobili(Id_immobile)
+        ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE TABLE zone (
+    id_zona INT PRIMARY KEY AUTO_INCREMENT,
+    nome_quartiere VARCHAR(50) NOT NULL,
+    cap VARCHAR(5) NOT NULL,
+    prezzo_medio_mq INT NOT NULL
+);
@@ -0,0 +1,34 @@
+-- ======================================================
+-- V2: indici per le colonne di ricerca più usate
+-- Ogni indice composto segue le query dei repository:
+-- prima le colonne in uguaglianza, poi quella di intervallo/ordinamento.
+-- Utenti.Email è già UNIQUE (indice implicito), quindi non serve un indice dedicato.
+-- ======================================================
+
+-- Valutazioni
+-- countByStatoValutazioneNomeAndAgenteIdUtente, findByAgenteIdUtenteAndStatoValutazioneId
+CREATE INDEX idx_valutazioni_stato_agente ON Valutazioni (Id_stato_valutazione, Id_agente);
+-- countByStatoValutazioneNomeAndDataValutazioneAfter, findByStatoValutazioneNome
+CREATE INDEX idx_valutazioni_stato_data ON Valutazioni (Id_stato_valutazione, Data_valutazione);
+-- findByImmobileIdOrderByDataValutazioneDesc, findUltimaValutazionePerImmobile, findUltimoAgentePerImmobile
+CREATE INDEX idx_valutazioni_immobile_data ON Valutazioni (Id_immobile, Data_valutazione);
+-- findByAgenteIdUtente, countRiepilogoByAgente (totale e valutazioni del mese)
+CREATE INDEX idx_valutazioni_agente_data ON Valutazioni (Id_agente, Data_valutazione);
+
+-- Contratti
+-- countByStatoContrattoNomeAndAgenteIdUtente
+CREATE INDEX idx_contratti_stato_agente ON Contratti (Id_stato_contratto, Id_agente);
+-- countByStatoContrattoNomeAndDataInizioAfter, findByStatoContrattoNome
+CREATE INDEX idx_contratti_stato_inizio ON Contratti (Id_stato_contratto, Data_inizio);
+-- countPerStatoByAgente, countPerMeseFineByAgenteAndStato
+CREATE INDEX idx_contratti_agente_stato_fine ON Contratti (Id_agente, Id_stato_contratto, Data_fine);
+
+-- Immobili
+-- findTop10ByOrderByDataRegistrazioneDesc, countByDataRegistrazioneAfter, countPerMeseRegistrazione
+CREATE INDEX idx_immobili_data_registrazione ON Immobili (Data_registrazione);
+-- countPerStatoByProprietario
+CREATE INDEX idx_immobili_utente_stato ON Immobili (Id_utente, Id_stato_immobile);
+
+-- Zone
+-- ZonaRepository.findByCap
+CREATE INDEX idx_zone_cap ON zone (cap);
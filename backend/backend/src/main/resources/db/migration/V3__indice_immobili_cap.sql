@@ -0,0 +1,6 @@
+-- ======================================================
+-- V3: indice per la rivalutazione massiva filtrata per CAP
+-- ValutazioneBulkService legge a blocchi: WHERE CAP = ? AND Id_immobile > ? ORDER BY Id_immobile
+-- ======================================================
+
+CREATE INDEX idx_immobili_cap_id ON Immobili (CAP, Id_immobile);
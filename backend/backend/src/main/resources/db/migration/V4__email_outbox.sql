@@ -0,0 +1,24 @@
+-- ======================================================
+-- V4: coda persistente delle email in uscita (outbox)
+-- Le richieste HTTP accodano il messaggio già composto; EmailOutboxService
+-- lo invia in background con retry e backoff esponenziale.
+-- Stato: in_coda -> in_invio -> inviata | fallita (esauriti i tentativi)
+-- ======================================================
+
+CREATE TABLE Email_outbox (
+    Id_email BIGINT AUTO_INCREMENT PRIMARY KEY,
+    Destinatario VARCHAR(100) NOT NULL,
+    Oggetto VARCHAR(255) NOT NULL,
+    Corpo_html LONGTEXT NOT NULL,
+    Nome_allegato VARCHAR(255),
+    Allegato LONGBLOB,
+    Stato VARCHAR(20) NOT NULL,
+    Tentativi INT NOT NULL DEFAULT 0,
+    Prossimo_tentativo DATETIME NOT NULL,
+    Ultimo_errore VARCHAR(1000),
+    Data_creazione DATETIME NOT NULL,
+    Data_invio DATETIME
+);
+
+-- Il worker cerca i messaggi da inviare: WHERE Stato = 'in_coda' AND Prossimo_tentativo <= ?
+CREATE INDEX idx_email_outbox_stato_tentativo ON Email_outbox (Stato, Prossimo_tentativo);
@@ -0,0 +1,18 @@
+-- ======================================================
+-- V5: cache delle risposte Geoapify (geocoding degli indirizzi)
+-- Chiave: SHA-256 del testo dell'indirizzo normalizzato.
+-- Risposte con risultati (positive) e senza risultati (negative) hanno
+-- scadenze diverse; le righe scadute vengono riscritte o cancellate all'avvio.
+-- ======================================================
+
+CREATE TABLE Geocoding_cache (
+    Chiave VARCHAR(64) PRIMARY KEY,
+    Indirizzo VARCHAR(500) NOT NULL,
+    Risposta LONGTEXT NOT NULL,
+    Positiva BOOLEAN NOT NULL,
+    Scadenza DATETIME NOT NULL,
+    Data_creazione DATETIME NOT NULL
+);
+
+-- Pulizia delle righe scadute: DELETE ... WHERE Scadenza < ?
+CREATE INDEX idx_geocoding_cache_scadenza ON Geocoding_cache (Scadenza);
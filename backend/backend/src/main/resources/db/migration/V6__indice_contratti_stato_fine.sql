@@ -0,0 +1,8 @@
+-- ======================================================
+-- V6: indice per la lista admin dei contratti chiusi
+-- Paginazione keyset dal più recente: WHERE Id_stato_contratto = ? AND (Data_fine, Id_contratto) < (?, ?)
+-- ORDER BY Data_fine DESC, Id_contratto DESC. Le liste delle valutazioni e degli immobili
+-- usano già idx_valutazioni_stato_data e idx_immobili_data_registrazione (V2).
+-- ======================================================
+
+CREATE INDEX idx_contratti_stato_fine ON Contratti (Id_stato_contratto, Data_fine, Id_contratto);
@@ -0,0 +1,46 @@
+-- ======================================================
+-- V7: stati predefiniti di valutazioni, contratti e immobili
+-- Letti all'avvio da RegistroStati e risolti per codice senza query: l'applicazione
+-- non li crea più a runtime (es. 'solo_AI' in POST /api/valutazioni/calcola).
+-- Inserimenti idempotenti: i database già popolati da scriptDB.sql restano invariati.
+-- ======================================================
+
+INSERT INTO Stati_valutazione (Nome, Descrizione)
+SELECT 'solo_AI', 'Valutazione generata dall AI' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_valutazione WHERE Nome = 'solo_AI');
+
+INSERT INTO Stati_valutazione (Nome, Descrizione)
+SELECT 'in_verifica', 'Valutazione in verifica dall agente' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_valutazione WHERE Nome = 'in_verifica');
+
+INSERT INTO Stati_valutazione (Nome, Descrizione)
+SELECT 'approvata', 'Valutazione confermata dall agente' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_valutazione WHERE Nome = 'approvata');
+
+INSERT INTO Stati_contratto (Nome, Descrizione)
+SELECT 'bozza', 'Contratto in bozza' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_contratto WHERE Nome = 'bozza');
+
+INSERT INTO Stati_contratto (Nome, Descrizione)
+SELECT 'attivo', 'Contratto attivo' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_contratto WHERE Nome = 'attivo');
+
+INSERT INTO Stati_contratto (Nome, Descrizione)
+SELECT 'scaduto', 'Contratto scaduto' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_contratto WHERE Nome = 'scaduto');
+
+INSERT INTO Stati_contratto (Nome, Descrizione)
+SELECT 'chiuso', 'Contratto concluso' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_contratto WHERE Nome = 'chiuso');
+
+INSERT INTO Stati_immobile (Nome, Descrizione)
+SELECT 'attivo', 'Immobile con contratto di mandato esclusivo, pubblicato sul sito' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_immobile WHERE Nome = 'attivo');
+
+INSERT INTO Stati_immobile (Nome, Descrizione)
+SELECT 'venduto', 'Immobile venduto' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_immobile WHERE Nome = 'venduto');
+
+INSERT INTO Stati_immobile (Nome, Descrizione)
+SELECT 'ritirato', 'Immobile ritirato dal mercato' FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM Stati_immobile WHERE Nome = 'ritirato');
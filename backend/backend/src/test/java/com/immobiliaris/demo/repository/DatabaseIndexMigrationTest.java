@@ -0,0 +1,363 @@
+package com.immobiliaris.demo.repository;
+
+import com.immobiliaris.demo.service.RegistroStati;
+import com.immobiliaris.demo.service.RegistroStati.CodiceContratto;
+import com.immobiliaris.demo.service.RegistroStati.CodiceImmobile;
+import com.immobiliaris.demo.service.RegistroStati.CodiceValutazione;
+import com.immobiliaris.demo.service.ValutazioneBulkService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applica le migrazioni Flyway su H2 (modalità MySQL) e verifica che le query dei
+ * repository usino gli indici creati dalle migrazioni: l'SQL generato da Hibernate (o
+ * scritto per JdbcTemplate) viene catturato sul datasource e rieseguito con EXPLAIN,
+ * con gli stessi parametri.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:indici;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.flyway.enabled=true",
+    "spring.jpa.hibernate.ddl-auto=none",
+    // Niente polling della coda email: gli unici statement catturati sono quelli del test
+    "email.outbox.attivo=false"
+})
+class DatabaseIndexMigrationTest {
+
+    private static final LocalDateTime DATA = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ValutazioneJpaRepository valutazioneRepository;
+
+    @Autowired
+    private ContrattoJpaRepository contrattoRepository;
+
+    @Autowired
+    private ImmobileJpaRepository immobileRepository;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private GeocodingCacheRepository geocodingCacheRepository;
+
+    @Autowired
+    private ZonaRepository zonaRepository;
+
+    @Autowired
+    private RegistroStati registroStati;
+
+    @Autowired
+    private ValutazioneBulkService valutazioneBulkService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void migrazioniApplicate() {
+        List<String> versioni = jdbcTemplate.queryForList(
+            "SELECT \"version\" FROM \"flyway_schema_history\" WHERE \"success\" = TRUE AND \"version\" IS NOT NULL ORDER BY \"installed_rank\"",
+            String.class);
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7"), versioni);
+    }
+
+    @Test
+    void statiPredefinitiNelRegistro() {
+        // V7 popola gli stati: il registro li trova tutti all'avvio, senza crearli a runtime
+        for (CodiceValutazione codice : CodiceValutazione.values()) {
+            assertEquals(codice.getNome(), registroStati.get(codice).getNome());
+        }
+        for (CodiceContratto codice : CodiceContratto.values()) {
+            assertEquals(codice.getNome(), registroStati.get(codice).getNome());
+        }
+        for (CodiceImmobile codice : CodiceImmobile.values()) {
+            assertEquals(codice.getNome(), registroStati.get(codice).getNome());
+        }
+    }
+
+    @Test
+    void repositoryFunzionanoSulloSchemaMigrato() {
+        // Le query derivate e aggregate girano sullo schema creato da Flyway
+        valutazioneRepository.countByStatoValutazioneIdAndAgenteIdUtente(2, 1L);
+        valutazioneRepository.findByImmobileIdOrderByDataValutazioneDesc(1);
+        valutazioneRepository.countRiepilogoByAgente(1L, LocalDateTime.now());
+        contrattoRepository.countByStatoContrattoIdAndDataInizioAfter(4, LocalDateTime.now());
+        contrattoRepository.countPerStatoByAgente(1L);
+        contrattoRepository.findPaginaByStatoConDataFine(4, LocalDateTime.now(), 1L, PageRequest.of(0, 11));
+        contrattoRepository.findPaginaByStatoSenzaDataFine(4, 1L, PageRequest.of(0, 11));
+        valutazioneRepository.findPaginaSoloAIConData(1, LocalDateTime.now(), 1, PageRequest.of(0, 11));
+        valutazioneRepository.findPaginaSoloAISenzaData(1, 1, PageRequest.of(0, 11));
+        valutazioneRepository.findPaginaInVerificaConData(2, LocalDateTime.now(), 1, PageRequest.of(0, 11));
+        valutazioneRepository.findPaginaInVerificaSenzaData(2, 1, PageRequest.of(0, 11));
+        immobileRepository.findPaginaConData(LocalDateTime.now(), 1, PageRequest.of(0, 13));
+        immobileRepository.findPaginaSenzaData(1, PageRequest.of(0, 13));
+        immobileRepository.countByDataRegistrazioneAfter(LocalDateTime.now());
+        immobileRepository.countPerStatoByProprietario(1L);
+        emailOutboxRepository.findIdDaInviare(LocalDateTime.now(), PageRequest.of(0, 10));
+        emailOutboxRepository.countPerStato();
+        geocodingCacheRepository.findById("0".repeat(64));
+        geocodingCacheRepository.deleteScadute(LocalDateTime.now());
+    }
+
+    @Test
+    void valutazioniPerStatoEAgente() {
+        assertUsaIndice("idx_valutazioni_stato_agente", "from valutazioni",
+            () -> valutazioneRepository.countByStatoValutazioneIdAndAgenteIdUtente(1, 2L));
+    }
+
+    @Test
+    void valutazioniPerStatoEData() {
+        assertUsaIndice("idx_valutazioni_stato_data", "from valutazioni",
+            () -> valutazioneRepository.countByStatoValutazioneIdAndDataValutazioneAfter(1, DATA));
+    }
+
+    @Test
+    void valutazioniPerStatoEDataAKeyset() {
+        assertUsaIndice("idx_valutazioni_stato_data", "from valutazioni",
+            () -> valutazioneRepository.findPaginaSoloAIConData(1, DATA, 100, PageRequest.of(0, 11)));
+    }
+
+    @Test
+    void valutazioniPerImmobileEData() {
+        // Valutazione più recente di ogni immobile della pagina (subquery correlata)
+        assertUsaIndice("idx_valutazioni_immobile_data", "from immobili",
+            () -> immobileRepository.findPaginaConData(DATA, 100, PageRequest.of(0, 13)));
+    }
+
+    @Test
+    void valutazioniPerAgenteEData() {
+        assertUsaIndice("idx_valutazioni_agente_data", "from valutazioni",
+            () -> valutazioneRepository.countRiepilogoByAgente(1L, DATA));
+    }
+
+    @Test
+    void contrattiPerStatoEAgente() {
+        assertUsaIndice("idx_contratti_stato_agente", "from contratti",
+            () -> contrattoRepository.countByStatoContrattoIdAndAgenteIdUtente(1, 2L));
+    }
+
+    @Test
+    void contrattiPerStatoEDataInizio() {
+        assertUsaIndice("idx_contratti_stato_inizio", "from contratti",
+            () -> contrattoRepository.countByStatoContrattoIdAndDataInizioAfter(1, DATA));
+    }
+
+    @Test
+    void contrattiPerAgenteStatoEDataFine() {
+        assertUsaIndice("idx_contratti_agente_stato_fine", "from contratti",
+            () -> contrattoRepository.countPerMeseFineByAgenteAndStato(1L, 2, DATA, DATA.plusYears(1)));
+    }
+
+    @Test
+    void contrattiPerStatoEDataFineAKeyset() {
+        assertUsaIndice("idx_contratti_stato_fine", "from contratti",
+            () -> contrattoRepository.findPaginaByStatoConDataFine(1, DATA, 100L, PageRequest.of(0, 11)));
+    }
+
+    @Test
+    void immobiliPerDataRegistrazione() {
+        assertUsaIndice("idx_immobili_data_registrazione", "from immobili",
+            () -> immobileRepository.countByDataRegistrazioneAfter(DATA));
+    }
+
+    @Test
+    void immobiliPerDataRegistrazioneAKeyset() {
+        assertUsaIndice("idx_immobili_data_registrazione", "from immobili",
+            () -> immobileRepository.findPaginaConData(DATA, 100, PageRequest.of(0, 13)));
+    }
+
+    @Test
+    void immobiliPerProprietarioEStato() {
+        assertUsaIndice("idx_immobili_utente_stato", "from immobili",
+            () -> immobileRepository.countPerStatoByProprietario(1L));
+    }
+
+    @Test
+    void immobiliPerCapABlocchi() {
+        // Lettura a blocchi della rivalutazione massiva (JdbcTemplate, sul thread del job)
+        assertUsaIndice("idx_immobili_cap_id", "from immobili where id_immobile > ?", () -> {
+            ValutazioneBulkService.Job job = valutazioneBulkService.avvia("10121");
+            long limite = System.currentTimeMillis() + 10_000;
+            while (("in_coda".equals(job.getStato()) || "in_corso".equals(job.getStato()))
+                    && System.currentTimeMillis() < limite) {
+                Thread.sleep(20);
+            }
+            assertEquals("completato", job.getStato());
+            return null;
+        });
+    }
+
+    @Test
+    void emailDaInviare() {
+        assertUsaIndice("idx_email_outbox_stato_tentativo", "from email_outbox",
+            () -> emailOutboxRepository.findIdDaInviare(DATA, PageRequest.of(0, 100)));
+    }
+
+    @Test
+    void emailInInvioScadute() {
+        assertUsaIndice("idx_email_outbox_stato_tentativo", "update email_outbox",
+            () -> emailOutboxRepository.ripristinaInInvio(DATA));
+    }
+
+    @Test
+    void geocodingScaduti() {
+        assertUsaIndice("idx_geocoding_cache_scadenza", "from geocoding_cache",
+            () -> geocodingCacheRepository.deleteScadute(DATA));
+    }
+
+    @Test
+    void zonePerCap() {
+        // Query in cache di secondo livello: svuotata perché arrivi al database
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        assertUsaIndice("idx_zone_cap", "from zone", () -> zonaRepository.findByCap("10121"));
+    }
+
+    /**
+     * Esegue la chiamata registrando gli statement che arrivano al datasource, poi rifà con
+     * EXPLAIN quelli che contengono {@code frammento}, con gli stessi parametri.
+     *
+     * @param frammento Parte dell'SQL generato (minuscolo) che identifica lo statement da verificare
+     */
+    private void assertUsaIndice(String indice, String frammento, Callable<?> chiamata) {
+        List<StatementCatturato> catturati;
+        synchronized (CATTURATI) {
+            CATTURATI.clear();
+            cattura = true;
+            try {
+                chiamata.call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                cattura = false;
+            }
+            catturati = CATTURATI.stream()
+                .filter(c -> c.sql().toLowerCase().replaceAll("\\s+", " ").contains(frammento))
+                .toList();
+        }
+        assertFalse(catturati.isEmpty(), "Nessuno statement con \"" + frammento + "\" eseguito");
+
+        for (StatementCatturato statement : catturati) {
+            String piano = jdbcTemplate.execute((ConnectionCallback<String>) connessione -> {
+                try (PreparedStatement explain = connessione.prepareStatement("EXPLAIN " + statement.sql())) {
+                    for (Parametro parametro : statement.parametri().values()) {
+                        parametro.imposta(explain);
+                    }
+                    try (ResultSet rs = explain.executeQuery()) {
+                        rs.next();
+                        return rs.getString(1);
+                    }
+                }
+            });
+            assertTrue(piano != null && piano.toLowerCase().contains(indice),
+                "Piano senza " + indice + " per " + statement.sql() + ": " + piano);
+        }
+    }
+
+    // ========== CATTURA DEGLI STATEMENT ==========
+
+    /** Statement preparato durante la cattura, con i parametri per indice */
+    private record StatementCatturato(String sql, Map<Integer, Parametro> parametri) {}
+
+    /** Chiamata setXxx(indice, valore, ...) fatta sullo statement originale */
+    private record Parametro(Method setter, Object[] argomenti) {
+        void imposta(PreparedStatement statement) throws SQLException {
+            try {
+                setter.invoke(statement, argomenti);
+            } catch (ReflectiveOperationException e) {
+                throw new SQLException("Parametro non reimpostabile: " + setter.getName(), e);
+            }
+        }
+    }
+
+    private static final List<StatementCatturato> CATTURATI = new CopyOnWriteArrayList<>();
+
+    private static volatile boolean cattura;
+
+    /**
+     * Avvolge il datasource dell'applicazione: ogni PreparedStatement creato durante la cattura
+     * viene registrato con i parametri impostati da Hibernate o da JdbcTemplate.
+     */
+    @TestConfiguration
+    static class CatturaStatement {
+
+        @Bean
+        static BeanPostProcessor datasourceConCattura() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String nome) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return proxy(Connection.class, super.getConnection(), DatabaseIndexMigrationTest::prepara);
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private static Object prepara(Object connessione, Method metodo, Object[] argomenti) throws Throwable {
+        Object risultato = metodo.invoke(connessione, argomenti);
+        if (!cattura || !metodo.getName().equals("prepareStatement")) {
+            return risultato;
+        }
+        Map<Integer, Parametro> parametri = new ConcurrentSkipListMap<>();
+        CATTURATI.add(new StatementCatturato((String) argomenti[0], parametri));
+        return proxy(PreparedStatement.class, (PreparedStatement) risultato, (statement, setter, valori) -> {
+            if (setter.getName().startsWith("set") && valori != null && valori.length >= 2
+                    && valori[0] instanceof Integer indice) {
+                parametri.put(indice, new Parametro(setter, valori));
+            }
+            return setter.invoke(statement, valori);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Chiamata {
+        Object esegui(Object destinatario, Method metodo, Object[] argomenti) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> tipo, T destinatario, Chiamata chiamata) {
+        return tipo.cast(Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[] { tipo }, (p, metodo, argomenti) -> {
+            try {
+                return chiamata.esegui(destinatario, metodo, argomenti);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }));
+    }
+}
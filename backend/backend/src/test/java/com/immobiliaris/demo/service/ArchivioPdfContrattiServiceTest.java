@@ -0,0 +1,218 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.repository.EmailOutboxRepository;
+import com.itextpdf.text.pdf.PdfReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Archivio dei PDF dei contratti servito da Tomcat reale: ETag e 304, nessuna
+ * rigenerazione finché i dati non cambiano, invalidazione quando cambiano.
+ * L'archivio è la directory di test di {@link SupportoIntegrazione}, svuotata a ogni test.
+ */
+class ArchivioPdfContrattiServiceTest extends SupportoIntegrazione {
+
+    @LocalServerPort
+    private int porta;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private ArchivioPdfContrattiService archivioPdfContratti;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    private Path archivio;
+
+    private Integer idValutazione;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        archivio = archivioPdfContratti.getDirectory();
+        try (Stream<Path> file = Files.list(archivio)) {
+            for (Path f : file.toList()) {
+                Files.delete(f);
+            }
+        }
+        emailOutboxRepository.deleteAll();
+        idValutazione = popola(() -> {
+            User proprietario = utente("Mario", "mario.rossi@test.it", tipoCliente);
+            User agente = utente("Laura", "laura.bianchi@test.it", tipoAgente);
+
+            Immobile immobile = immobile("Corso Francia 120", proprietario);
+            immobile.setCap("10143");
+            immobile.setProvincia("TO");
+            immobile.setMetratura(95);
+            entityManager.persist(immobile);
+
+            Valutazione valutazione = valutazione(immobile, statoValutazione("in_verifica"));
+            valutazione.setAgente(agente);
+            valutazione.setPrezzoAI(312_000);
+            valutazione.setPrezzoUmano(305_000);
+            valutazione.setDataValutazione(LocalDateTime.now());
+            entityManager.persist(valutazione);
+
+            Contratto contratto = new Contratto();
+            contratto.setImmobile(immobile);
+            contratto.setUtente(proprietario);
+            contratto.setAgente(agente);
+            contratto.setValutazione(valutazione);
+            contratto.setDataInizio(LocalDateTime.of(2025, 12, 1, 10, 0));
+            contratto.setDataFine(LocalDateTime.of(2026, 6, 1, 10, 0));
+            contratto.setPercentualeCommissione(3.0);
+            entityManager.persist(contratto);
+            return valutazione.getId();
+        });
+    }
+
+    @Test
+    void anteprimaConEtagE304() throws Exception {
+        HttpResponse<byte[]> prima = anteprima(null);
+        assertEquals(200, prima.statusCode());
+        assertEquals("application/pdf", prima.headers().firstValue("Content-Type").orElseThrow());
+        String etag = prima.headers().firstValue("ETag").orElseThrow();
+        assertEquals(4, new PdfReader(prima.body()).getNumberOfPages());
+        // Prima richiesta: PDF generato nella risposta, senza lunghezza nota in anticipo
+        assertEquals("chunked", prima.headers().firstValue("Transfer-Encoding").orElseThrow());
+
+        // Dopo: servito dall'archivio, stesso contenuto e stesso ETag
+        HttpResponse<byte[]> archiviata = anteprima(null);
+        assertArrayEquals(prima.body(), archiviata.body());
+        assertEquals(etag, archiviata.headers().firstValue("ETag").orElseThrow());
+        assertEquals(String.valueOf(prima.body().length), archiviata.headers().firstValue("Content-Length").orElseThrow());
+
+        HttpResponse<byte[]> nonModificata = anteprima(etag);
+        assertEquals(304, nonModificata.statusCode());
+        assertEquals(0, nonModificata.body().length);
+
+        // L'anteprima non invia email
+        assertEquals(0, emailOutboxRepository.count());
+    }
+
+    @Test
+    void nessunaRigenerazioneFinchéIDatiNonCambiano() throws Exception {
+        HttpResponse<byte[]> prima = anteprima(null);
+        Path file = unicoFileArchiviato();
+        long modificato = Files.getLastModifiedTime(file).toMillis();
+
+        HttpResponse<byte[]> seconda = anteprima(null);
+        assertArrayEquals(prima.body(), seconda.body());
+        assertEquals(file, unicoFileArchiviato());
+        assertEquals(modificato, Files.getLastModifiedTime(file).toMillis());
+
+        // Il re-invio via email usa lo stesso file archiviato
+        HttpResponse<String> invio = http.send(HttpRequest.newBuilder(uri("/pdf")).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, invio.statusCode());
+        assertEquals(file, unicoFileArchiviato());
+        assertEquals(2, emailOutboxRepository.count());
+    }
+
+    @Test
+    void invalidazioneQuandoCambiaIlPrezzo() throws Exception {
+        HttpResponse<byte[]> prima = anteprima(null);
+        String etag = prima.headers().firstValue("ETag").orElseThrow();
+        Path filePrecedente = unicoFileArchiviato();
+
+        transactionTemplate.executeWithoutResult(status -> entityManager
+            .createQuery("UPDATE Valutazione v SET v.prezzoUmano = 299000 WHERE v.id = :id")
+            .setParameter("id", idValutazione)
+            .executeUpdate());
+
+        HttpResponse<byte[]> dopo = anteprima(etag);
+        assertEquals(200, dopo.statusCode());
+        assertNotEquals(etag, dopo.headers().firstValue("ETag").orElseThrow());
+        assertTrue(Files.notExists(filePrecedente), "Il PDF superato deve essere cancellato");
+        assertNotEquals(filePrecedente, unicoFileArchiviato());
+    }
+
+    @Test
+    void generazioniConcorrentiContateUnaVolta() throws Exception {
+        Contratto contratto = transactionTemplate.execute(status -> entityManager
+            .createQuery("SELECT c FROM Contratto c", Contratto.class).getSingleResult());
+        long prima = archivioPdfContratti.getOccupazione();
+
+        // Più richieste generano insieme lo stesso PDF non ancora archiviato
+        int richieste = 6;
+        ExecutorService pool = Executors.newFixedThreadPool(richieste);
+        CountDownLatch via = new CountDownLatch(1);
+        List<Future<ArchivioPdfContrattiService.PdfArchiviato>> risultati = new ArrayList<>();
+        for (int i = 0; i < richieste; i++) {
+            risultati.add(pool.submit(() -> {
+                via.await();
+                return archivioPdfContratti.ottieni(contratto);
+            }));
+        }
+        via.countDown();
+        List<Path> file = new ArrayList<>();
+        for (Future<ArchivioPdfContrattiService.PdfArchiviato> risultato : risultati) {
+            file.add(risultato.get(30, TimeUnit.SECONDS).file());
+        }
+        pool.shutdown();
+        for (Path f : file) {
+            assertEquals(unicoFileArchiviato(), f);
+        }
+
+        // Un solo file in archivio, contato una volta sola; nessun temporaneo rimasto
+        assertEquals(Files.size(unicoFileArchiviato()), archivioPdfContratti.getOccupazione() - prima);
+        try (Stream<Path> elenco = Files.list(archivio)) {
+            assertEquals(1, elenco.count());
+        }
+    }
+
+    @Test
+    void anteprimaSenzaContratto() throws Exception {
+        transactionTemplate.executeWithoutResult(status ->
+            entityManager.createQuery("DELETE FROM Contratto").executeUpdate());
+
+        assertEquals(404, anteprima(null).statusCode());
+    }
+
+    private HttpResponse<byte[]> anteprima(String etag) throws Exception {
+        HttpRequest.Builder richiesta = HttpRequest.newBuilder(uri("/pdf/preview"));
+        if (etag != null) {
+            richiesta.header("If-None-Match", etag);
+        }
+        return http.send(richiesta.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private URI uri(String percorso) {
+        return URI.create("http://localhost:" + porta + "/api/contratti/valutazione/" + idValutazione + percorso);
+    }
+
+    private Path unicoFileArchiviato() throws Exception {
+        try (Stream<Path> file = Files.list(archivio)) {
+            List<Path> pdf = file.filter(f -> f.toString().endsWith(".pdf")).toList();
+            assertEquals(1, pdf.size(), "File archiviati: " + pdf);
+            return pdf.get(0);
+        }
+    }
+}
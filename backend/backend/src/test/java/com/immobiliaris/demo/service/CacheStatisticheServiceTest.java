@@ -0,0 +1,103 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.repository.StatoValutazioneRepository;
+import com.immobiliaris.demo.repository.TipoUtenteRepository;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache di secondo livello delle tabelle di lookup: dopo il primo accesso le ricerche
+ * per nome e le associazioni verso gli stati non interrogano il database.
+ */
+class CacheStatisticheServiceTest extends SupportoIntegrazione {
+
+    private static final String REGIONE_STATI = StatoValutazione.class.getName();
+
+    @Autowired
+    private CacheStatisticheService cacheStatisticheService;
+
+    @Autowired
+    private StatoValutazioneRepository statoValutazioneRepository;
+
+    @Autowired
+    private TipoUtenteRepository tipoUtenteRepository;
+
+    private Statistics statistics;
+
+    private Integer idValutazione;
+
+    @BeforeEach
+    void setUp() {
+        statistics = statistiche();
+
+        idValutazione = popola(() -> {
+            Immobile immobile = immobile("Via Roma 1", null);
+            entityManager.persist(immobile);
+            Valutazione valutazione = valutazione(immobile, statoValutazione("solo_AI"));
+            valutazione.setDataValutazione(LocalDateTime.now());
+            entityManager.persist(valutazione);
+            return valutazione.getId();
+        });
+        cacheStatisticheService.svuota();
+    }
+
+    @Test
+    void ricercaPerNomeDallaCacheDelleQuery() {
+        assertEquals("solo_AI", statoValutazioneRepository.findByNome("solo_AI").orElseThrow().getNome());
+
+        statistics.clear();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(statoValutazioneRepository.findByNome("solo_AI").isPresent());
+            assertEquals("Cliente", tipoUtenteRepository.findByNomeIgnoreCase("cliente").orElseThrow().getNome());
+        }
+        // Solo la prima ricerca del tipo utente va al database
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(9, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    void associazioneVersoLoStatoSenzaQuery() {
+        caricaValutazione();
+
+        statistics.clear();
+        assertEquals("solo_AI", caricaValutazione());
+        assertTrue(statistics.getCacheRegionStatistics(REGIONE_STATI).getHitCount() >= 1);
+        assertEquals(0, statistics.getCacheRegionStatistics(REGIONE_STATI).getMissCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void riepilogoConHitEMissPerRegione() {
+        statoValutazioneRepository.findByNome("solo_AI");
+        caricaValutazione();
+        caricaValutazione();
+
+        Map<String, Object> riepilogo = cacheStatisticheService.getRiepilogo();
+        assertEquals(true, riepilogo.get("statisticheAttive"));
+
+        Map<String, Object> regioni = (Map<String, Object>) riepilogo.get("regioni");
+        Map<String, Object> stati = (Map<String, Object>) regioni.get(REGIONE_STATI);
+        assertTrue((Long) stati.get("hit") >= 1, "Regione stati: " + stati);
+        assertTrue((Long) stati.get("put") >= 1, "Regione stati: " + stati);
+
+        Map<String, Object> query = (Map<String, Object>) riepilogo.get("query");
+        assertTrue(query.containsKey("rapportoHit"));
+    }
+
+    /** Legge la valutazione in una nuova transazione (contesto di persistenza vuoto) */
+    private String caricaValutazione() {
+        return transactionTemplate.execute(status ->
+            entityManager.find(Valutazione.class, idValutazione).getStatoValutazione().getNome());
+    }
+}
@@ -0,0 +1,190 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.controller.api.DashboardApiController;
+import com.immobiliaris.demo.dto.DashboardDTO;
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoContratto;
+import com.immobiliaris.demo.entity.StatoImmobile;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Dashboard dell'agente su un insieme di dati noto: card, pipeline, distribuzione per
+ * stato, serie mensile degli ultimi 6 mesi (con mesi vuoti) e prossime attività.
+ * Date nulle (immobile senza registrazione, contratto chiuso senza fine, valutazione
+ * senza data) contano nei totali ma non nella serie né nel mese corrente.
+ */
+class DashboardAgenteTest extends SupportoIntegrazione {
+
+    /** Mese precedente a quello corrente: l'ultimo della serie */
+    private static final YearMonth ULTIMO = YearMonth.now().minusMonths(1);
+
+    @Autowired
+    private DashboardApiController dashboardApiController;
+
+    private Long idLaura;
+
+    @BeforeEach
+    void setUp() {
+        idLaura = popola(() -> {
+            StatoImmobile attivo = statoImmobile("attivo");
+            StatoImmobile inValutazione = statoImmobile("in valutazione");
+            StatoImmobile venduto = statoImmobile("venduto");
+            StatoContratto contrattoAttivo = statoContratto("attivo");
+            StatoContratto bozza = statoContratto("bozza");
+            StatoContratto chiuso = statoContratto("chiuso");
+            StatoValutazione inVerifica = statoValutazione("in_verifica");
+
+            User laura = utente("Laura", "laura@test.it", tipoAgente);
+            User marco = utente("Marco", "marco@test.it", tipoAgente);
+            User anna = utente("Anna", "anna@test.it", tipoCliente);
+
+            // Immobili dell'agente (proprietario): la registrazione è impostata dopo il persist
+            Immobile roma = nuovoImmobile("Via Roma 1", laura, attivo, 250_000, ULTIMO.atDay(10).atStartOfDay());
+            Immobile po = nuovoImmobile("Via Po 2", laura, attivo, 250_000, ULTIMO.atDay(20).atStartOfDay());
+            Immobile garibaldi = nuovoImmobile("Via Garibaldi 3", laura, inValutazione, 250_000,
+                ULTIMO.minusMonths(2).atDay(5).atStartOfDay());
+            // Registrato prima della serie: conta nei totali, non nelle acquisizioni
+            Immobile cavour = nuovoImmobile("Via Cavour 4", laura, venduto, 1_050_000,
+                ULTIMO.minusMonths(6).atDay(15).atStartOfDay());
+            // Senza stato e senza data di registrazione
+            nuovoImmobile("Via Nizza 5", laura, null, 250_000, null);
+            // Di un cliente, registrato questo mese: solo nelle prossime attività
+            Immobile mazzini = nuovoImmobile("Via Mazzini 6", anna, attivo, 250_000,
+                YearMonth.now().atDay(1).atStartOfDay());
+
+            // Contratti dell'agente: due attivi sullo stesso immobile, una bozza, due chiusi
+            nuovoContratto(roma, laura, contrattoAttivo, null);
+            nuovoContratto(roma, laura, contrattoAttivo, null);
+            nuovoContratto(garibaldi, laura, bozza, null);
+            nuovoContratto(cavour, laura, chiuso, ULTIMO.minusMonths(1).atDay(12).atTime(18, 0));
+            nuovoContratto(po, laura, chiuso, null);
+            // Chiuso da un altro agente nello stesso mese: non conta
+            nuovoContratto(mazzini, marco, chiuso, ULTIMO.minusMonths(1).atDay(3).atStartOfDay());
+
+            // Valutazioni dell'agente (una di questo mese, una vecchia, una senza data) e due non assegnate
+            nuovaValutazione(roma, laura, inVerifica, LocalDateTime.now());
+            nuovaValutazione(po, laura, inVerifica, ULTIMO.minusMonths(1).atDay(1).atStartOfDay());
+            nuovaValutazione(garibaldi, laura, inVerifica, null);
+            nuovaValutazione(mazzini, null, inVerifica, null);
+            nuovaValutazione(cavour, null, inVerifica, null);
+            nuovaValutazione(mazzini, marco, inVerifica, LocalDateTime.now());
+            return laura.getIdUtente();
+        });
+    }
+
+    @Test
+    void cardDellAgente() {
+        DashboardDTO.DashboardResponse dashboard = dashboard();
+
+        assertCard(dashboard.valutazioniRichieste, 3, "+ 1 questo mese");
+        assertCard(dashboard.immobiliAcquisiti, 5, "+ 2 in esclusiva");
+        assertCard(dashboard.trattativeAttive, 5, "+ 3 fase finale");
+        assertCard(dashboard.venditeChiuse, 2, String.format("€ %.1fM", 1.3) + " valore totale");
+    }
+
+    @Test
+    void pipelineEImmobiliPerStato() {
+        DashboardDTO.DashboardResponse dashboard = dashboard();
+
+        // Richieste: valutazioni senza agente, di chiunque
+        assertEquals(2, dashboard.pipeline.richieste);
+        assertEquals(2, dashboard.pipeline.trattative);
+        assertEquals(2, dashboard.pipeline.vendite);
+
+        assertEquals(2, dashboard.immobiliPerStato.inVendita);
+        assertEquals(1, dashboard.immobiliPerStato.inValutazione);
+        // Due contratti attivi sullo stesso immobile: un solo immobile in trattativa
+        assertEquals(1, dashboard.immobiliPerStato.inTrattativa);
+        assertEquals(1, dashboard.immobiliPerStato.venduti);
+    }
+
+    @Test
+    void performanceUltimiSeiMesi() {
+        List<DashboardDTO.PerformanceData> performance = dashboard().performance;
+
+        // Dal più vecchio all'ultimo mese completo, anche i mesi senza dati
+        List<String> mesi = new ArrayList<>();
+        for (int i = 5; i >= 0; i--) {
+            mesi.add(ULTIMO.minusMonths(i).getMonth().toString().substring(0, 3));
+        }
+        assertEquals(mesi, performance.stream().map(p -> p.mese).toList());
+        assertEquals(List.of(0, 0, 0, 1, 0, 2), performance.stream().map(p -> p.acquisizioni).toList());
+        assertEquals(List.of(0, 0, 0, 0, 1, 0), performance.stream().map(p -> p.vendite).toList());
+    }
+
+    @Test
+    void prossimeAttivitaDallaPiuRecente() {
+        List<DashboardDTO.ImmobileItem> attivita = dashboard().prossimiAttivita;
+
+        // Prima pagina da 5: l'immobile senza data di registrazione resta in fondo
+        assertEquals(List.of("Via Mazzini 6", "Via Po 2", "Via Roma 1", "Via Garibaldi 3", "Via Cavour 4"),
+            attivita.stream().map(i -> i.via).toList());
+        assertEquals("Anna Test", attivita.get(0).proprietario);
+        assertEquals("attivo", attivita.get(0).stato);
+        assertEquals(ULTIMO.atDay(20).atStartOfDay().toString(), attivita.get(1).dataInserimento);
+    }
+
+    // ========== SUPPORTO ==========
+
+    private DashboardDTO.DashboardResponse dashboard() {
+        ResponseEntity<?> risposta = dashboardApiController.getDashboard(idLaura,
+            new ServletWebRequest(new MockHttpServletRequest("GET", "/api/dashboard/agente/" + idLaura),
+                new MockHttpServletResponse()));
+        assertEquals(200, risposta.getStatusCode().value());
+        return (DashboardDTO.DashboardResponse) ReflectionTestUtils.getField(risposta.getBody(), "data");
+    }
+
+    private static void assertCard(DashboardDTO.StatisticheCard card, int numero, String sottotitolo) {
+        assertEquals(numero, card.numero);
+        assertEquals(sottotitolo, card.sottotitolo);
+    }
+
+    /** Data_registrazione è impostata da @CreationTimestamp e non aggiornabile: si corregge in SQL */
+    private Immobile nuovoImmobile(String via, User proprietario, StatoImmobile stato, int prezzo,
+                                   LocalDateTime registrazione) {
+        Immobile immobile = immobile(via, proprietario);
+        immobile.setStatoImmobile(stato);
+        immobile.setPrezzo(prezzo);
+        entityManager.persist(immobile);
+        entityManager.flush();
+        entityManager.createNativeQuery("UPDATE Immobili SET Data_registrazione = ? WHERE Id_immobile = ?")
+            .setParameter(1, registrazione)
+            .setParameter(2, immobile.getId())
+            .executeUpdate();
+        return immobile;
+    }
+
+    private void nuovoContratto(Immobile immobile, User agente, StatoContratto stato, LocalDateTime fine) {
+        Contratto contratto = new Contratto();
+        contratto.setImmobile(immobile);
+        contratto.setAgente(agente);
+        contratto.setStatoContratto(stato);
+        contratto.setDataFine(fine);
+        entityManager.persist(contratto);
+    }
+
+    private void nuovaValutazione(Immobile immobile, User agente, StatoValutazione stato, LocalDateTime data) {
+        Valutazione valutazione = valutazione(immobile, stato);
+        valutazione.setAgente(agente);
+        valutazione.setDataValutazione(data);
+        entityManager.persist(valutazione);
+    }
+}
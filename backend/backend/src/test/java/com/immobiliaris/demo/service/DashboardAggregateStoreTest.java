@@ -0,0 +1,191 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.TipoUtente;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.service.RegistroStati.CodiceContratto;
+import com.immobiliaris.demo.service.RegistroStati.CodiceValutazione;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Aggiornamenti incrementali dello store: dopo una serie di inserimenti, modifiche e
+ * cancellazioni (passando dagli entity listener) gli aggregati coincidono con quelli
+ * di una ricostruzione completa dal database.
+ */
+class DashboardAggregateStoreTest extends SupportoIntegrazione {
+
+    /** Date fisse al secondo: il confronto non dipende dalla precisione dei timestamp sul database */
+    private static final LocalDateTime INIZIO = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusDays(40);
+
+    private Long idLaura;
+    private Long idLuca;
+    private Long idMarco;
+
+    @BeforeEach
+    void setUp() {
+        popola(() -> {
+            statoValutazione("solo_AI");
+            statoValutazione("in_verifica");
+            statoContratto("attivo");
+            statoContratto("chiuso");
+
+            idLaura = utente("Laura", "laura@test.it", tipoAgente).getIdUtente();
+            User luca = utente("Luca", "luca@test.it", tipoAgente);
+            luca.setContratto("stage");
+            idLuca = luca.getIdUtente();
+            idMarco = utente("Marco", "marco@test.it", tipoAgente).getIdUtente();
+            utente("Anna", "anna@test.it", tipoCliente);
+            return null;
+        });
+    }
+
+    @Test
+    void incrementaleUgualeARicostruzione() {
+        // Inserimenti: immobili di più tipologie, valutazioni assegnate, contratti attivi e chiusi
+        Map<String, Integer> immobili = new LinkedHashMap<>();
+        Map<String, Integer> valutazioni = new LinkedHashMap<>();
+        Map<String, Long> contratti = new LinkedHashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            String[][] righe = {
+                {"Via Roma 1", "Appartamento"}, {"Via Po 2", "Villa"}, {"Via Garibaldi 3", "Loft"},
+                {"Corso Francia 4", "Attico"}, {"Via Nizza 5", "Box"}
+            };
+            for (String[] riga : righe) {
+                Immobile immobile = immobile(riga[0], null);
+                immobile.setTipologia(riga[1]);
+                entityManager.persist(immobile);
+                immobili.put(riga[0], immobile.getId());
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            valutazioni.put("roma", nuovaValutazione(immobili.get("Via Roma 1"), CodiceValutazione.IN_VERIFICA, idLaura, 260_000, 1));
+            valutazioni.put("po", nuovaValutazione(immobili.get("Via Po 2"), CodiceValutazione.IN_VERIFICA, idLuca, 700_000, 2));
+            valutazioni.put("garibaldi", nuovaValutazione(immobili.get("Via Garibaldi 3"), CodiceValutazione.IN_VERIFICA, idLaura, 320_000, 3));
+            valutazioni.put("francia", nuovaValutazione(immobili.get("Corso Francia 4"), CodiceValutazione.SOLO_AI, null, null, 4));
+            // Seconda valutazione più recente dello stesso immobile: conta per i tempi medi
+            valutazioni.put("roma2", nuovaValutazione(immobili.get("Via Roma 1"), CodiceValutazione.IN_VERIFICA, idMarco, 255_000, 5));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            contratti.put("roma", nuovoContratto(valutazioni.get("roma2"), CodiceContratto.CHIUSO, idMarco, 10));
+            contratti.put("po", nuovoContratto(valutazioni.get("po"), CodiceContratto.ATTIVO, idLuca, 12));
+            contratti.put("garibaldi", nuovoContratto(valutazioni.get("garibaldi"), CodiceContratto.CHIUSO, idLaura, 35));
+        });
+
+        // Modifiche: valutazione passata a un altro agente, contratto chiuso, prezzi e tipologie cambiati
+        transactionTemplate.executeWithoutResult(status -> {
+            Valutazione francia = entityManager.find(Valutazione.class, valutazioni.get("francia"));
+            francia.setStatoValutazione(registroStati.get(CodiceValutazione.IN_VERIFICA));
+            francia.setAgente(entityManager.find(User.class, idLuca));
+            francia.setPrezzoUmano(410_000);
+
+            Contratto po = entityManager.find(Contratto.class, contratti.get("po"));
+            po.setStatoContratto(registroStati.get(CodiceContratto.CHIUSO));
+
+            Immobile garibaldi = entityManager.find(Immobile.class, immobili.get("Via Garibaldi 3"));
+            garibaldi.setPrezzo(330_000);
+            entityManager.find(Immobile.class, immobili.get("Via Nizza 5")).setTipologia("Villa");
+            entityManager.find(Valutazione.class, valutazioni.get("garibaldi")).setPrezzoUmano(335_000);
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            // Contratto riaperto e passato a un altro agente
+            Contratto garibaldi = entityManager.find(Contratto.class, contratti.get("garibaldi"));
+            garibaldi.setStatoContratto(registroStati.get(CodiceContratto.ATTIVO));
+            garibaldi.setAgente(entityManager.find(User.class, idMarco));
+            entityManager.find(User.class, idMarco).setCognome("Verdi");
+        });
+
+        // Cancellazioni: contratto, valutazione con il suo contratto, immobile senza riferimenti, agente declassato
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.remove(entityManager.find(Contratto.class, contratti.get("garibaldi")));
+            entityManager.remove(entityManager.find(Contratto.class, contratti.get("roma")));
+            entityManager.remove(entityManager.find(Valutazione.class, valutazioni.get("roma2")));
+            entityManager.remove(entityManager.find(Immobile.class, immobili.get("Via Nizza 5")));
+            entityManager.find(User.class, idLaura).setTipoUtente(entityManager.find(TipoUtente.class, tipoCliente.getIdTipo()));
+        });
+
+        Map<String, Object> incrementale = aggregati();
+        assertEquals(4L, incrementale.get("totaleImmobili"));
+        assertEquals(1L, incrementale.get("contrattiConclusi"), "Dati di test senza contratti chiusi: " + incrementale);
+        assertNotNull(incrementale.get("mediaTempoAI"));
+
+        dashboardAggregateStore.ricostruisci();
+        assertEquals(aggregati(), incrementale);
+    }
+
+    @Test
+    void eventiRipetutiIdempotenti() {
+        Integer idImmobile = transactionTemplate.execute(status -> {
+            Immobile immobile = immobile("Via Roma 1", null);
+            entityManager.persist(immobile);
+            return immobile.getId();
+        });
+        Map<String, Object> prima = aggregati();
+
+        // Lo stesso aggiornamento applicato due volte non cambia i contatori
+        DashboardAggregateStore.ImmobileRow riga = transactionTemplate.execute(status ->
+            DashboardAggregateStore.ImmobileRow.of(entityManager.find(Immobile.class, idImmobile)));
+        dashboardAggregateStore.aggiornaImmobile(riga);
+        dashboardAggregateStore.aggiornaImmobile(riga);
+        assertEquals(prima, aggregati());
+
+        dashboardAggregateStore.rimuoviImmobile(idImmobile);
+        dashboardAggregateStore.rimuoviImmobile(idImmobile);
+        assertEquals(0L, aggregati().get("totaleImmobili"));
+    }
+
+    /** Tutte le letture pubbliche dello store, nei mesi toccati dai contratti di test */
+    private Map<String, Object> aggregati() {
+        Map<String, Object> a = new LinkedHashMap<>();
+        a.put("totaleImmobili", dashboardAggregateStore.getTotaleImmobili());
+        a.put("immobiliInVerifica", dashboardAggregateStore.getImmobiliInVerifica());
+        a.put("contrattiConclusi", dashboardAggregateStore.getContrattiConclusi());
+        a.put("fatturatoTotale", dashboardAggregateStore.getFatturatoTotale());
+        a.put("primaRegistrazione", dashboardAggregateStore.getPrimaRegistrazioneDopo(INIZIO.minusYears(1)));
+        a.put("registratiDopoInizio", dashboardAggregateStore.countImmobiliRegistratiDopo(INIZIO));
+        a.put("totaleAgenti", dashboardAggregateStore.getTotaleAgenti());
+        a.put("agentiStage", dashboardAggregateStore.getAgentiStage());
+        a.put("immobiliPerTipo", dashboardAggregateStore.getImmobiliPerTipo());
+        for (YearMonth mese = YearMonth.from(INIZIO); !mese.isAfter(YearMonth.now()); mese = mese.plusMonths(1)) {
+            a.put("contratti " + mese, dashboardAggregateStore.getContrattiMese(mese));
+            a.put("top " + mese, dashboardAggregateStore.getTopAgentiMese(mese, 10));
+        }
+        a.put("agenti", dashboardAggregateStore.getAgenti());
+        a.put("mediaTempoAI", dashboardAggregateStore.getMediaTempoAIaPresaInCarico());
+        a.put("mediaTempoContratto", dashboardAggregateStore.getMediaTempoPresaInCaricoaContratto());
+        return a;
+    }
+
+    private Integer nuovaValutazione(Integer idImmobile, CodiceValutazione stato, Long idAgente,
+                                     Integer prezzoUmano, int giorno) {
+        Valutazione valutazione = valutazione(entityManager.find(Immobile.class, idImmobile), registroStati.get(stato));
+        valutazione.setAgente(idAgente != null ? entityManager.find(User.class, idAgente) : null);
+        valutazione.setPrezzoUmano(prezzoUmano);
+        valutazione.setDataValutazione(INIZIO.plusDays(giorno));
+        entityManager.persist(valutazione);
+        return valutazione.getId();
+    }
+
+    private Long nuovoContratto(Integer idValutazione, CodiceContratto stato, Long idAgente, int giorno) {
+        Valutazione valutazione = entityManager.find(Valutazione.class, idValutazione);
+        Contratto contratto = new Contratto();
+        contratto.setValutazione(valutazione);
+        contratto.setImmobile(valutazione.getImmobile());
+        contratto.setAgente(entityManager.find(User.class, idAgente));
+        contratto.setStatoContratto(registroStati.get(stato));
+        contratto.setDataInizio(INIZIO.plusDays(giorno));
+        entityManager.persist(contratto);
+        return contratto.getId();
+    }
+}
@@ -0,0 +1,295 @@
+package com.immobiliaris.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoContratto;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.InputStream;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Canale SSE delle dashboard servito da Tomcat reale: eventi delta dopo il commit,
+ * instradati per ruolo e agente, nessuna query con le connessioni inattive, client
+ * lenti scollegati senza rallentare gli altri.
+ */
+class DashboardEventiServiceTest extends SupportoIntegrazione {
+
+    @LocalServerPort
+    private int porta;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private DashboardEventiService dashboardEventiService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Flusso> flussi = new ArrayList<>();
+
+    private Long idAgente;
+    private Integer idValutazione;
+
+    @BeforeEach
+    void setUp() {
+        popola(() -> {
+            utente("Anna", "admin@test.it", tipoAmministratore);
+            idAgente = utente("Laura", "laura@test.it", tipoAgente).getIdUtente();
+            utente("Luca", "luca@test.it", tipoAgente);
+
+            StatoValutazione soloAI = statoValutazione("solo_AI");
+            statoValutazione("in_verifica");
+
+            Immobile immobile = immobile("Via Roma 1");
+            entityManager.persist(immobile);
+            Valutazione valutazione = valutazione(immobile, soloAI);
+            valutazione.setPrezzoAI(240_000);
+            valutazione.setPrezzoUmano(250_000);
+            entityManager.persist(valutazione);
+            idValutazione = valutazione.getId();
+            return null;
+        });
+    }
+
+    @AfterEach
+    void chiudi() {
+        flussi.forEach(Flusso::chiudi);
+    }
+
+    @Test
+    void eventiDeltaPerAdminEAgenti() throws Exception {
+        Flusso admin = apri("admin@test.it", "/api/admin/dashboard/eventi");
+        Flusso laura = apri("laura@test.it", "/api/dashboard/agente/eventi");
+        Flusso luca = apri("luca@test.it", "/api/dashboard/agente/eventi");
+
+        // Nuovo immobile: contatori per l'admin, solo la riga per tutti gli agenti
+        transactionTemplate.executeWithoutResult(status -> entityManager.persist(immobile("Via Nuova 2")));
+        Evento registrato = admin.prossimo();
+        assertEquals("immobile-registrato", registrato.nome());
+        assertEquals(2, registrato.dati().at("/statistics/totaleImmobili").asLong());
+        assertEquals(2, registrato.dati().at("/statistics/immobiliRegistratiSettimanali").asLong());
+        assertEquals("Appartamento", registrato.dati().at("/immobile/tipologia").asText());
+        for (Flusso agente : List.of(laura, luca)) {
+            Evento e = agente.prossimo();
+            assertEquals("immobile-registrato", e.nome());
+            assertTrue(e.dati().has("immobile"));
+            assertTrue(e.dati().path("statistics").isMissingNode(), "Contatori admin non inviati agli agenti");
+        }
+
+        // Valutazione assegnata a Laura: Luca non riceve nulla
+        statisticsService.assegnaAgenteValutazioneAI(idValutazione, idAgente);
+        Evento assegnata = admin.prossimo();
+        assertEquals("valutazione-assegnata", assegnata.nome());
+        assertEquals(1, assegnata.dati().at("/statistics/immobiliInVerifica").asLong());
+        assertEquals(1, assegnata.dati().at("/agenti/0/immobiliInGestione").asLong());
+        assertEquals(idValutazione.intValue(), laura.prossimo().dati().at("/valutazione/id").asInt());
+
+        // Contratto chiuso: totali, mese e agente
+        LocalDateTime inizio = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            StatoContratto chiuso = statoContratto("chiuso");
+            Valutazione valutazione = entityManager.find(Valutazione.class, idValutazione);
+            Contratto contratto = new Contratto();
+            contratto.setImmobile(valutazione.getImmobile());
+            contratto.setValutazione(valutazione);
+            contratto.setAgente(entityManager.find(User.class, idAgente));
+            contratto.setStatoContratto(chiuso);
+            contratto.setDataInizio(inizio);
+            entityManager.persist(contratto);
+        });
+        Evento chiuso = admin.prossimo();
+        assertEquals("contratto-chiuso", chiuso.nome());
+        assertEquals(1, chiuso.dati().at("/statistics/contrattiConclusi").asLong());
+        assertEquals(250_000, chiuso.dati().at("/statistics/fatturatoTotale").asLong());
+        assertEquals(1, chiuso.dati().at("/contrattiPerMese/0/numeroContratti").asLong());
+        assertEquals(1, chiuso.dati().at("/agenti/0/contrattiConclusi").asLong());
+        assertEquals("contratto-chiuso", laura.prossimo().nome());
+
+        assertNull(luca.prossimo(300), "Eventi di altri agenti non inviati");
+    }
+
+    @Test
+    void connessioniInattiveSenzaQuery() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            apri("admin@test.it", "/api/admin/dashboard/eventi");
+        }
+        assertEquals(20, dashboardEventiService.getNumeroIscritti());
+
+        Statistics statistics = statistiche();
+        statistics.clear();
+        // Diversi heartbeat nel frattempo
+        Thread.sleep(1000);
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(20, dashboardEventiService.getNumeroIscritti());
+
+        // Un client che chiude viene rimosso al primo invio successivo
+        flussi.get(0).chiudi();
+        long limite = System.currentTimeMillis() + 5000;
+        while (dashboardEventiService.getNumeroIscritti() > 19 && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        assertEquals(19, dashboardEventiService.getNumeroIscritti());
+    }
+
+    @Test
+    void clientLentoNonBloccaGliAltri() throws Exception {
+        Flusso veloce = apri("admin@test.it", "/api/admin/dashboard/eventi");
+        InputStream lento = apriSenzaLeggere("admin@test.it", "/api/admin/dashboard/eventi");
+        assertEquals(2, dashboardEventiService.getNumeroIscritti());
+
+        // Eventi grandi: i buffer TCP del client che non legge si riempiono presto
+        String riempitivo = "x".repeat(64 * 1024);
+        int numero = 400;
+        // Il client veloce riceve ogni evento, in ordine, mentre l'altro resta fermo
+        for (int i = 0; i < numero; i++) {
+            dashboardEventiService.pubblica(new DashboardEventiService.Evento(
+                "immobile-registrato", null, Map.of("n", i, "riempitivo", riempitivo), null));
+            assertEquals(i, veloce.prossimo().dati().path("n").asInt());
+        }
+
+        // Il client lento è rimasto indietro: scollegato
+        long limite = System.currentTimeMillis() + 5000;
+        while (dashboardEventiService.getNumeroIscritti() > 1 && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, dashboardEventiService.getNumeroIscritti());
+        lento.close();
+    }
+
+    @Test
+    void eventiRiservatiAgliAutenticati() throws Exception {
+        HttpResponse<Void> anonimo = HttpClient.newHttpClient().send(
+            HttpRequest.newBuilder(uri("/api/admin/dashboard/eventi")).build(), HttpResponse.BodyHandlers.discarding());
+        assertEquals(401, anonimo.statusCode());
+    }
+
+    // ========== CLIENT SSE ==========
+
+    private record Evento(String nome, JsonNode dati) {}
+
+    /** Connessione SSE letta in background, un evento per volta */
+    private final class Flusso {
+        private final BlockingQueue<Evento> eventi = new LinkedBlockingQueue<>();
+        private final CompletableFuture<HttpResponse<Stream<String>>> risposta;
+
+        Flusso(HttpClient http, URI uri) throws Exception {
+            risposta = http.sendAsync(HttpRequest.newBuilder(uri).header("Accept", "text/event-stream").build(),
+                HttpResponse.BodyHandlers.ofLines());
+            HttpResponse<Stream<String>> r = risposta.get(10, TimeUnit.SECONDS);
+            assertEquals(200, r.statusCode());
+            Thread lettore = new Thread(() -> leggi(r.body()), "test-sse");
+            lettore.setDaemon(true);
+            lettore.start();
+            assertEquals("connesso", prossimo().nome());
+        }
+
+        private void leggi(Stream<String> righe) {
+            String[] nome = { null };
+            StringBuilder dati = new StringBuilder();
+            try {
+                righe.forEach(riga -> {
+                    if (riga.startsWith("event:")) {
+                        nome[0] = riga.substring(6).trim();
+                    } else if (riga.startsWith("data:")) {
+                        dati.append(riga.substring(5));
+                    } else if (riga.isEmpty() && nome[0] != null) {
+                        eventi.add(new Evento(nome[0], json(dati.toString())));
+                        nome[0] = null;
+                        dati.setLength(0);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Connessione chiusa
+            }
+        }
+
+        Evento prossimo() throws InterruptedException {
+            Evento evento = prossimo(5000);
+            assertNotNull(evento, "Evento non ricevuto");
+            return evento;
+        }
+
+        Evento prossimo(long attesaMs) throws InterruptedException {
+            return eventi.poll(attesaMs, TimeUnit.MILLISECONDS);
+        }
+
+        void chiudi() {
+            risposta.thenAccept(r -> r.body().close());
+        }
+    }
+
+    private Flusso apri(String email, String percorso) throws Exception {
+        Flusso flusso = new Flusso(login(email), uri(percorso));
+        flussi.add(flusso);
+        return flusso;
+    }
+
+    /** Connessione SSE di un client che non legge mai (da chiudere a fine test) */
+    private InputStream apriSenzaLeggere(String email, String percorso) throws Exception {
+        HttpResponse<InputStream> risposta = login(email).send(
+            HttpRequest.newBuilder(uri(percorso)).header("Accept", "text/event-stream").build(),
+            HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, risposta.statusCode());
+        return risposta.body();
+    }
+
+    private HttpClient login(String email) throws Exception {
+        HttpClient http = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+        HttpResponse<String> login = http.send(HttpRequest.newBuilder(uri("/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"email\":\"" + email + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, login.statusCode(), login.body());
+        return http;
+    }
+
+    private JsonNode json(String testo) {
+        try {
+            return objectMapper.readTree(testo);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private URI uri(String percorso) {
+        return URI.create("http://localhost:" + porta + percorso);
+    }
+
+    private static Immobile immobile(String via) {
+        Immobile immobile = immobile(via, null);
+        immobile.setPrezzo(260_000);
+        return immobile;
+    }
+}
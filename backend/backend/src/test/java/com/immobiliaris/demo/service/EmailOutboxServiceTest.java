@@ -0,0 +1,219 @@
+package com.immobiliaris.demo.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.EmailOutbox;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.repository.EmailOutboxRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Coda email contro un server SMTP in memoria (GreenMail sulla porta 3025 dei test):
+ * consegna in background, retry con backoff quando il server non risponde, dead letter e
+ * ripresa dei messaggi rimasti in_invio.
+ * Nel contesto condiviso la coda è ferma: il worker viene avviato e fermato a ogni test.
+ */
+class EmailOutboxServiceTest extends SupportoIntegrazione {
+
+    private static final long ATTESA_MASSIMA_MS = 15_000;
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    private Integer idValutazione;
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxRepository.deleteAll();
+        idValutazione = popola(() -> {
+            User proprietario = utente("Mario", "mario.rossi@test.it", tipoCliente);
+
+            Immobile immobile = immobile("Via Roma 10", proprietario);
+            immobile.setCap("10121");
+            entityManager.persist(immobile);
+
+            Valutazione valutazione = valutazione(immobile, statoValutazione("solo_AI"));
+            valutazione.setPrezzoAI(250_000);
+            valutazione.setDataValutazione(LocalDateTime.now());
+            entityManager.persist(valutazione);
+            return valutazione.getId();
+        });
+        emailOutboxService.avviaWorker();
+    }
+
+    @AfterEach
+    void tearDown() {
+        emailOutboxService.arresta();
+    }
+
+    @Test
+    void valutazioneConsegnataInBackground() throws Exception {
+        EmailOutbox accodata = emailOutboxService.accodaValutazioneRecap(idValutazione);
+        assertEquals(EmailOutbox.IN_CODA, accodata.getStato());
+
+        assertTrue(greenMail.waitForIncomingEmail(ATTESA_MASSIMA_MS, 1), "Email non consegnata");
+        MimeMessage ricevuta = greenMail.getReceivedMessages()[0];
+        assertEquals("mario.rossi@test.it", ricevuta.getAllRecipients()[0].toString());
+        assertTrue(ricevuta.getSubject().contains("Via Roma 10"));
+
+        attendi(() -> stato(accodata.getId()).getStato().equals(EmailOutbox.INVIATA), "stato inviata");
+        EmailOutbox inviata = stato(accodata.getId());
+        assertEquals(1, inviata.getTentativi());
+        assertNotNull(inviata.getDataInvio());
+    }
+
+    @Test
+    void contrattoConsegnatoAProprietarioEAgente() throws Exception {
+        emailOutboxService.accodaContrattoPdf(contratto(), "%PDF-1.4 contratto".getBytes());
+
+        assertTrue(greenMail.waitForIncomingEmail(ATTESA_MASSIMA_MS, 2), "Email contratto non consegnate");
+        for (MimeMessage ricevuta : greenMail.getReceivedMessages()) {
+            assertTrue(GreenMailUtil.getWholeMessage(ricevuta).contains("Contratto_7_20251201.pdf"),
+                "Allegato mancante per " + ricevuta.getAllRecipients()[0]);
+        }
+    }
+
+    @Test
+    void accodaSenzaServerSmtpERiprovaConBackoff() throws Exception {
+        greenMail.stop();
+
+        // Con il server SMTP fermo la richiesta non fallisce: il messaggio resta in coda
+        EmailOutbox accodata = emailOutboxService.accodaValutazioneRecap(idValutazione);
+        attendi(() -> stato(accodata.getId()).getTentativi() >= 1, "primo tentativo fallito");
+        EmailOutbox inAttesa = stato(accodata.getId());
+        assertEquals(EmailOutbox.IN_CODA, inAttesa.getStato());
+        assertNotNull(inAttesa.getUltimoErrore());
+
+        greenMail.start();
+        assertTrue(greenMail.waitForIncomingEmail(ATTESA_MASSIMA_MS, 1), "Email non consegnata dopo il ripristino");
+        attendi(() -> stato(accodata.getId()).getStato().equals(EmailOutbox.INVIATA), "stato inviata");
+        assertTrue(stato(accodata.getId()).getTentativi() >= 2);
+    }
+
+    @Test
+    void deadLetterDopoMaxTentativiERiaccodamento() throws Exception {
+        greenMail.stop();
+
+        EmailOutbox accodata = emailOutboxService.accodaValutazioneRecap(idValutazione);
+        attendi(() -> stato(accodata.getId()).getStato().equals(EmailOutbox.FALLITA), "stato fallita");
+        assertEquals(3, stato(accodata.getId()).getTentativi());
+
+        List<?> fallite = (List<?>) emailOutboxService.getRiepilogo().get("fallite");
+        assertEquals(1, fallite.size());
+
+        greenMail.start();
+        assertTrue(emailOutboxService.riaccoda(accodata.getId()));
+        assertTrue(greenMail.waitForIncomingEmail(ATTESA_MASSIMA_MS, 1), "Email non consegnata dopo il riaccodamento");
+        attendi(() -> stato(accodata.getId()).getStato().equals(EmailOutbox.INVIATA), "stato inviata");
+    }
+
+    @Test
+    void ripresiSoloIMessaggiConPresaInCaricoScaduta() throws Exception {
+        // Istanza fermata durante l'invio: presa in carico scaduta
+        EmailOutbox interrotta = inInvio("interrotta@test.it", LocalDateTime.now().minusMinutes(1));
+        // Invio in corso su un'altra istanza: presa in carico ancora valida
+        EmailOutbox altraIstanza = inInvio("altra.istanza@test.it", LocalDateTime.now().plusHours(1));
+
+        assertTrue(greenMail.waitForIncomingEmail(ATTESA_MASSIMA_MS, 1), "Email interrotta non ripresa");
+        attendi(() -> stato(interrotta.getId()).getStato().equals(EmailOutbox.INVIATA), "stato inviata");
+
+        // Diversi giri di polling dopo: l'altra istanza non viene scavalcata
+        Thread.sleep(500);
+        assertEquals(EmailOutbox.IN_INVIO, stato(altraIstanza.getId()).getStato());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void esitoIgnoratoSeIlMessaggioNonEPiuInInvio() {
+        // Presa in carico scaduta durante l'invio: un altro worker ha già consegnato il messaggio
+        EmailOutbox consegnata = inInvio("consegnata@test.it", LocalDateTime.now().plusHours(1));
+        assertEquals(1, emailOutboxRepository.segnaInviata(consegnata.getId(), 1, LocalDateTime.now()));
+
+        // L'esito tardivo del primo worker non la rimette in coda né la riscrive
+        assertEquals(0, emailOutboxRepository.segnaErrore(consegnata.getId(), EmailOutbox.IN_CODA, 2,
+            LocalDateTime.now(), "Timeout"));
+        assertEquals(0, emailOutboxRepository.segnaInviata(consegnata.getId(), 2, LocalDateTime.now()));
+        EmailOutbox riletta = stato(consegnata.getId());
+        assertEquals(EmailOutbox.INVIATA, riletta.getStato());
+        assertEquals(1, riletta.getTentativi());
+    }
+
+    @Test
+    void backoffEsponenzialeLimitato() {
+        assertEquals(30_000, EmailOutboxService.ritardo(1, 30_000, 3_600_000));
+        assertEquals(60_000, EmailOutboxService.ritardo(2, 30_000, 3_600_000));
+        assertEquals(240_000, EmailOutboxService.ritardo(4, 30_000, 3_600_000));
+        assertEquals(3_600_000, EmailOutboxService.ritardo(10, 30_000, 3_600_000));
+        assertEquals(3_600_000, EmailOutboxService.ritardo(100, 30_000, 3_600_000));
+    }
+
+    private EmailOutbox inInvio(String destinatario, LocalDateTime scadenza) {
+        EmailOutbox email = new EmailOutbox(destinatario, "Prova", "<p>Prova</p>");
+        email.setStato(EmailOutbox.IN_INVIO);
+        email.setProssimoTentativo(scadenza);
+        email.setDataCreazione(LocalDateTime.now());
+        return emailOutboxRepository.save(email);
+    }
+
+    private EmailOutbox stato(Long id) {
+        return emailOutboxRepository.findById(id).orElseThrow();
+    }
+
+    private static void attendi(BooleanSupplier condizione, String descrizione) throws InterruptedException {
+        long scadenza = System.currentTimeMillis() + ATTESA_MASSIMA_MS;
+        while (!condizione.getAsBoolean()) {
+            if (System.currentTimeMillis() > scadenza) {
+                fail("Timeout in attesa di: " + descrizione);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static Contratto contratto() {
+        User proprietario = new User();
+        proprietario.setNome("Mario");
+        proprietario.setCognome("Rossi");
+        proprietario.setEmail("mario.rossi@test.it");
+
+        User agente = new User();
+        agente.setNome("Laura");
+        agente.setCognome("Bianchi");
+        agente.setEmail("laura.bianchi@test.it");
+
+        Immobile immobile = new Immobile();
+        immobile.setVia("Corso Francia 120");
+        immobile.setCitta("Torino");
+
+        Contratto contratto = new Contratto();
+        contratto.setId(7L);
+        contratto.setUtente(proprietario);
+        contratto.setAgente(agente);
+        contratto.setImmobile(immobile);
+        contratto.setDataInizio(LocalDateTime.of(2025, 12, 1, 10, 0));
+        return contratto;
+    }
+}
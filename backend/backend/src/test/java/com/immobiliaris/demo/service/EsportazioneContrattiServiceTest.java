@@ -0,0 +1,190 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoContratto;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.repository.EmailOutboxRepository;
+import com.itextpdf.text.pdf.PdfReader;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Esportazione ZIP dei PDF dei contratti: filtri, più blocchi di lettura,
+ * contratti non generabili e client che si disconnette.
+ */
+class EsportazioneContrattiServiceTest extends SupportoIntegrazione {
+
+    /** Più di un blocco di lettura (DIMENSIONE_BLOCCO) */
+    private static final int ATTIVI = 110;
+    private static final int CHIUSI = 12;
+    private static final int ANNULLATI = 5;
+
+    @Autowired
+    private EsportazioneContrattiService esportazioneContrattiService;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    private Long idSenzaAgente;
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxRepository.deleteAll();
+        idSenzaAgente = popola(() -> {
+            User proprietario = utente("Mario", "mario.rossi@test.it", tipoCliente);
+            User agente = utente("Laura", "laura.bianchi@test.it", tipoAgente);
+            StatoContratto attivo = statoContratto("attivo");
+            StatoContratto chiuso = statoContratto("Chiuso");
+            StatoContratto annullato = statoContratto("annullato");
+
+            Immobile immobile = immobile("Corso Francia 120", proprietario);
+            immobile.setCap("10143");
+            immobile.setMetratura(95);
+            entityManager.persist(immobile);
+
+            Valutazione valutazione = valutazione(immobile, statoValutazione("in_verifica"));
+            valutazione.setAgente(agente);
+            valutazione.setPrezzoAI(250_000);
+            valutazione.setDataValutazione(LocalDateTime.now());
+            entityManager.persist(valutazione);
+
+            for (int i = 0; i < ATTIVI; i++) {
+                contratto(immobile, proprietario, agente, valutazione, attivo, LocalDateTime.of(2025, 3, 1, 10, 0));
+            }
+            for (int i = 0; i < CHIUSI; i++) {
+                contratto(immobile, proprietario, agente, valutazione, chiuso, LocalDateTime.of(2025, 1 + i % 6, 10, 10, 0));
+            }
+            for (int i = 0; i < ANNULLATI; i++) {
+                contratto(immobile, proprietario, agente, valutazione, annullato, LocalDateTime.of(2025, 3, 1, 10, 0));
+            }
+            return contratto(immobile, proprietario, null, valutazione, attivo, LocalDateTime.of(2025, 3, 1, 10, 0)).getId();
+        });
+    }
+
+    @Test
+    void esportaAttiviEChiusiSenzaEmail() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        EsportazioneContrattiService.Riepilogo riepilogo = esportazioneContrattiService.esporta(null, null, null, zip);
+
+        assertEquals(ATTIVI + CHIUSI, riepilogo.esportati());
+        assertEquals(1, riepilogo.errori());
+
+        Map<String, byte[]> voci = leggi(zip.toByteArray());
+        assertEquals(ATTIVI + CHIUSI + 1, voci.size());
+        for (Map.Entry<String, byte[]> voce : voci.entrySet()) {
+            if (voce.getKey().endsWith(".pdf")) {
+                assertEquals(4, new PdfReader(voce.getValue()).getNumberOfPages(), voce.getKey());
+            }
+        }
+        String errori = new String(voci.get("errori.txt"), StandardCharsets.UTF_8);
+        assertTrue(errori.startsWith("contratto " + idSenzaAgente + ":"), errori);
+
+        assertEquals(0, emailOutboxRepository.count());
+    }
+
+    @Test
+    void filtroPerStatoEData() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        EsportazioneContrattiService.Riepilogo riepilogo = esportazioneContrattiService.esporta(List.of("CHIUSO"),
+            LocalDateTime.of(2025, 2, 1, 0, 0), LocalDateTime.of(2025, 4, 1, 0, 0), zip);
+
+        // Chiusi con inizio a febbraio o marzo: i = 1, 2, 7, 8
+        assertEquals(4, riepilogo.esportati());
+        assertEquals(0, riepilogo.errori());
+        assertEquals(4, leggi(zip.toByteArray()).size());
+    }
+
+    @Test
+    void contestoDiPersistenzaNonCresceTraBlocchi() {
+        // Come con open-in-view: un solo contesto di persistenza per tutta l'esportazione
+        int massimo = transactionTemplate.execute(status -> {
+            PersistenceContext contesto = entityManager.unwrap(SessionImplementor.class).getPersistenceContext();
+            int[] gestite = new int[1];
+            OutputStream out = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    gestite[0] = Math.max(gestite[0], contesto.getNumberOfManagedEntities());
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    write(0);
+                }
+            };
+            try {
+                esportazioneContrattiService.esporta(null, null, null, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            gestite[0] = Math.max(gestite[0], contesto.getNumberOfManagedEntities());
+            return gestite[0];
+        });
+
+        // Senza svuotare il contesto dopo ogni blocco resterebbero gestiti tutti i contratti letti
+        assertTrue(massimo < EsportazioneContrattiService.DIMENSIONE_BLOCCO, "Entità gestite: " + massimo);
+    }
+
+    @Test
+    void clientDisconnesso() {
+        OutputStream interrotto = new OutputStream() {
+            private int scritti;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++scritti > 50_000) {
+                    throw new IOException("Connessione chiusa dal client");
+                }
+            }
+        };
+
+        assertThrows(IOException.class, () -> esportazioneContrattiService.esporta(null, null, null, interrotto));
+    }
+
+    private static Map<String, byte[]> leggi(byte[] zip) throws IOException {
+        Map<String, byte[]> voci = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry voce;
+            while ((voce = in.getNextEntry()) != null) {
+                assertTrue(voci.put(voce.getName(), in.readAllBytes()) == null, "Voce duplicata " + voce.getName());
+            }
+        }
+        return voci;
+    }
+
+    private Contratto contratto(Immobile immobile, User proprietario, User agente, Valutazione valutazione,
+                                StatoContratto stato, LocalDateTime inizio) {
+        Contratto contratto = new Contratto();
+        contratto.setImmobile(immobile);
+        contratto.setUtente(proprietario);
+        contratto.setAgente(agente);
+        contratto.setValutazione(valutazione);
+        contratto.setStatoContratto(stato);
+        contratto.setDataInizio(inizio);
+        contratto.setDataFine(inizio.plusMonths(6));
+        contratto.setPercentualeCommissione(3.0);
+        entityManager.persist(contratto);
+        return contratto;
+    }
+}
@@ -0,0 +1,168 @@
+package com.immobiliaris.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoContratto;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Esportazione CSV/NDJSON su più blocchi di righe: contenuto, escape del CSV,
+ * una riga JSON per entità e numero di query indipendente dal numero di righe.
+ */
+class EsportazioneDatiServiceTest extends SupportoIntegrazione {
+
+    /** Tre blocchi da 500, l'ultimo parziale */
+    private static final int NUMERO_IMMOBILI = 1_100;
+
+    @Autowired
+    private EsportazioneDatiService esportazioneDatiService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** I test leggono soltanto: i dati si inseriscono una volta per classe */
+    private static boolean popolato;
+
+    @BeforeEach
+    void setUp() {
+        if (popolato) {
+            return;
+        }
+        popolato = true;
+        popola(() -> {
+            User proprietario = utente("Mario", "mario@test.it", tipoCliente);
+            User agente = utente("Luigi", "luigi@test.it", tipoAgente);
+
+            StatoValutazione soloAI = statoValutazione("solo_AI");
+            StatoValutazione approvata = statoValutazione("approvata");
+            StatoContratto chiuso = statoContratto("chiuso");
+
+            LocalDateTime base = LocalDateTime.of(2025, 6, 1, 10, 0);
+            for (int i = 0; i < NUMERO_IMMOBILI; i++) {
+                Immobile immobile = new Immobile();
+                immobile.setTipologia("Appartamento");
+                immobile.setVia(i == 0 ? "=HYPERLINK(\"http://x\")" : "Via Roma " + i);
+                immobile.setCitta("Torino");
+                immobile.setDescrizione(i == 0 ? "Bilocale; \"luminoso\"\nultimo piano" : null);
+                immobile.setPrezzo(100_000 + i);
+                immobile.setProprietario(proprietario);
+                entityManager.persist(immobile);
+
+                nuovaValutazione(immobile, null, soloAI, base, 150_000);
+                if (i % 2 == 0) {
+                    // La più recente è quella approvata, con agente
+                    Valutazione recente = nuovaValutazione(immobile, agente, approvata, base.plusDays(3), 160_000);
+                    if (i % 10 == 0) {
+                        Contratto contratto = new Contratto();
+                        contratto.setImmobile(immobile);
+                        contratto.setUtente(proprietario);
+                        contratto.setAgente(agente);
+                        contratto.setValutazione(recente);
+                        contratto.setStatoContratto(chiuso);
+                        contratto.setNumeroContratto("CTR-" + i);
+                        contratto.setDataFine(base.plusDays(30));
+                        entityManager.persist(contratto);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void immobiliInCsv() throws Exception {
+        Statistics statistics = statistiche();
+        statistics.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long righe = esportazioneDatiService.esportaImmobili(EsportazioneDatiService.Formato.CSV, out);
+        long query = statistics.getPrepareStatementCount();
+
+        assertEquals(NUMERO_IMMOBILI, righe);
+        String csv = out.toString(StandardCharsets.UTF_8);
+        // Le righe terminano con \r\n; l'a capo nella descrizione resta tra virgolette
+        String[] linee = csv.split("\r\n");
+        assertEquals(NUMERO_IMMOBILI + 1, linee.length);
+        assertTrue(linee[0].startsWith("id;via;citta;cap;"), linee[0]);
+        assertTrue(linee[0].endsWith(";prezzoAI;prezzoUmano;dataValutazione;statoValutazione;agenteAssegnato"), linee[0]);
+
+        // Formula neutralizzata, testo con separatore, virgolette e a capo tra virgolette
+        assertTrue(linee[1].contains(";\"'=HYPERLINK(\"\"http://x\"\")\";Torino;"), linee[1]);
+        assertTrue(linee[1].contains(";\"Bilocale; \"\"luminoso\"\"\nultimo piano\";"), linee[1]);
+        // Valutazione più recente: approvata, con agente
+        assertTrue(linee[1].endsWith(";160000;160000;2025-06-04T10:00;approvata;Luigi Test"), linee[1]);
+        assertTrue(linee[2].endsWith(";150000;;2025-06-01T10:00;solo_AI;"), linee[2]);
+
+        // Una query per lo stream e una di valutazioni per blocco, non una per immobile
+        int blocchi = (NUMERO_IMMOBILI + EsportazioneDatiService.BLOCCO - 1) / EsportazioneDatiService.BLOCCO;
+        assertTrue(query <= 1 + blocchi + 2, "Query eseguite: " + query);
+    }
+
+    @Test
+    void valutazioniInNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long righe = esportazioneDatiService.esportaValutazioni(EsportazioneDatiService.Formato.NDJSON, out);
+
+        List<String> linee = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(NUMERO_IMMOBILI + NUMERO_IMMOBILI / 2, righe);
+        assertEquals(righe, linee.size());
+
+        JsonNode prima = objectMapper.readTree(linee.get(0));
+        assertEquals("solo_AI", prima.get("statoValutazione").asText());
+        assertEquals(150_000, prima.get("prezzoAI").asInt());
+        assertTrue(prima.get("prezzoUmano").isNull());
+        assertEquals("2025-06-01T10:00", prima.get("dataValutazione").asText());
+        assertEquals("Mario Test", prima.get("nomeProprietario").asText());
+
+        JsonNode seconda = objectMapper.readTree(linee.get(1));
+        assertEquals("Luigi Test", seconda.get("nomeAgente").asText());
+        assertEquals(prima.get("idImmobile"), seconda.get("idImmobile"));
+    }
+
+    @Test
+    void contrattiInCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long righe = esportazioneDatiService.esportaContratti(EsportazioneDatiService.Formato.CSV, out);
+
+        assertEquals(NUMERO_IMMOBILI / 10, righe);
+        String[] linee = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals("id;numeroContratto;statoContratto;dataInvio;dataRicezione;dataInizio;dataFine;"
+            + "percentualeCommissione;valutazioneUmana;idImmobile;tipo;via;citta;nomeProprietario;agenteAssegnato", linee[0]);
+        assertTrue(linee[2].matches("\\d+;CTR-10;chiuso;;;;2025-07-01T10:00;;160000;\\d+;Appartamento;Via Roma 10;Torino;Mario Test;Luigi Test"),
+            linee[2]);
+    }
+
+    @Test
+    void formatoNonSupportato() {
+        assertEquals(EsportazioneDatiService.Formato.NDJSON, EsportazioneDatiService.Formato.da("NDJSON"));
+        assertThrows(IllegalArgumentException.class, () -> EsportazioneDatiService.Formato.da("xlsx"));
+    }
+
+    private Valutazione nuovaValutazione(Immobile immobile, User agente, StatoValutazione stato,
+                                         LocalDateTime data, int prezzo) {
+        Valutazione valutazione = valutazione(immobile, stato);
+        valutazione.setAgente(agente);
+        valutazione.setDataValutazione(data);
+        valutazione.setPrezzoAI(prezzo);
+        if (stato.getNome().equals("approvata")) {
+            valutazione.setPrezzoUmano(prezzo);
+        }
+        entityManager.persist(valutazione);
+        return valutazione;
+    }
+}
@@ -0,0 +1,265 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.dto.AddressValidationRequest;
+import com.immobiliaris.demo.dto.AddressValidationResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Client Geoapify contro un finto Geoapify locale che introduce latenza ed errori:
+ * timeout, circuit breaker, limite di concorrenza, connessioni riusate e
+ * validazione locale quando Geoapify non è disponibile.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:geoapifyclient;DB_CLOSE_DELAY=-1",
+    "geoapify.http.read-timeout=500ms",
+    "geoapify.http.max-concorrenti=2",
+    "geoapify.circuito.soglia-errori=3",
+    "geoapify.circuito.apertura=1s",
+    "email.outbox.attivo=false"
+})
+class GeoapifyClientTest {
+
+    private static final String OK = "{\"type\":\"FeatureCollection\",\"features\":[]}";
+
+    /** Comportamento del finto Geoapify, impostato da ogni test */
+    private static volatile int latenzaMs;
+    private static volatile int status;
+
+    private static final AtomicInteger chiamate = new AtomicInteger();
+    /** Porte client viste dal server: una sola se la connessione viene riusata */
+    private static final Set<Integer> connessioni = ConcurrentHashMap.newKeySet();
+    private static final HttpServer geoapify = avviaGeoapify();
+
+    @DynamicPropertySource
+    static void proprieta(DynamicPropertyRegistry registry) {
+        registry.add("geoapify.api.url", () -> "http://localhost:" + geoapify.getAddress().getPort());
+    }
+
+    @Autowired
+    private GeoapifyClient geoapifyClient;
+
+    @Autowired
+    private AddressValidationService addressValidationService;
+
+    @BeforeEach
+    void setUp() {
+        geoapifyClient.reimposta();
+        latenzaMs = 0;
+        status = 200;
+        chiamate.set(0);
+        connessioni.clear();
+    }
+
+    @AfterAll
+    static void arresta() {
+        geoapify.stop(0);
+    }
+
+    @Test
+    void connessioneRiusata() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(OK, geoapifyClient.get(uri(i)));
+        }
+        assertEquals(5, chiamate.get());
+        assertEquals(1, connessioni.size(), "Connessioni aperte: " + connessioni);
+    }
+
+    @Test
+    void rispostaLentaInterrottaAlTimeout() {
+        latenzaMs = 3_000;
+        long inizio = System.currentTimeMillis();
+        assertThrows(HttpTimeoutException.class, () -> geoapifyClient.get(uri(1)));
+        long durata = System.currentTimeMillis() - inizio;
+        assertTrue(durata < 1_500, "Attesa " + durata + " ms con read-timeout 500 ms");
+    }
+
+    @Test
+    void circuitoSiApreERichiude() throws Exception {
+        status = 503;
+        for (int i = 0; i < 3; i++) {
+            GeoapifyClient.ErroreHttp errore = assertThrows(GeoapifyClient.ErroreHttp.class, () -> geoapifyClient.get(uri(2)));
+            assertEquals(503, errore.getStatus());
+        }
+        assertEquals(GeoapifyClient.Stato.APERTO, geoapifyClient.getStato());
+
+        // Circuito aperto: nessuna chiamata parte
+        assertThrows(GeoapifyClient.NonDisponibile.class, () -> geoapifyClient.get(uri(2)));
+        assertEquals(3, chiamate.get());
+
+        // Dopo l'apertura (1s) la chiamata di prova riesce e il circuito si richiude
+        status = 200;
+        Thread.sleep(1_100);
+        assertEquals(GeoapifyClient.Stato.SEMI_APERTO, geoapifyClient.getStato());
+        assertEquals(OK, geoapifyClient.get(uri(2)));
+        assertEquals(GeoapifyClient.Stato.CHIUSO, geoapifyClient.getStato());
+    }
+
+    @Test
+    void provaFallitaRiapreIlCircuito() throws Exception {
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(GeoapifyClient.ErroreHttp.class, () -> geoapifyClient.get(uri(3)));
+        }
+        Thread.sleep(1_100);
+        assertThrows(GeoapifyClient.ErroreHttp.class, () -> geoapifyClient.get(uri(3)));
+        assertEquals(GeoapifyClient.Stato.APERTO, geoapifyClient.getStato());
+        assertEquals(4, chiamate.get());
+    }
+
+    @Test
+    void provaConEccezioneInattesaRiapreIlCircuito() throws Exception {
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(GeoapifyClient.ErroreHttp.class, () -> geoapifyClient.get(uri(5)));
+        }
+        Thread.sleep(1_100);
+
+        // La prova fallisce prima della chiamata HTTP con un'eccezione non prevista
+        assertThrows(IllegalArgumentException.class, () -> geoapifyClient.get(URI.create("ftp://localhost/prova")));
+        assertEquals(GeoapifyClient.Stato.APERTO, geoapifyClient.getStato());
+
+        // Il circuito non resta bloccato in prova: alla scadenza successiva si richiude
+        status = 200;
+        Thread.sleep(1_100);
+        assertEquals(OK, geoapifyClient.get(uri(5)));
+        assertEquals(GeoapifyClient.Stato.CHIUSO, geoapifyClient.getStato());
+    }
+
+    @Test
+    void errori4xxNonApronoIlCircuito() {
+        status = 401;
+        for (int i = 0; i < 5; i++) {
+            assertThrows(GeoapifyClient.ErroreHttp.class, () -> geoapifyClient.get(uri(4)));
+        }
+        assertEquals(GeoapifyClient.Stato.CHIUSO, geoapifyClient.getStato());
+    }
+
+    @Test
+    void limiteDiConcorrenza() throws Exception {
+        latenzaMs = 300;
+        int richieste = 6;
+        ExecutorService client = Executors.newFixedThreadPool(richieste);
+        CountDownLatch via = new CountDownLatch(1);
+        try {
+            List<Future<String>> risposte = new ArrayList<>();
+            for (int i = 0; i < richieste; i++) {
+                int n = i;
+                risposte.add(client.submit(() -> {
+                    via.await();
+                    return geoapifyClient.get(uri(100 + n));
+                }));
+            }
+            via.countDown();
+
+            int riuscite = 0;
+            int rifiutate = 0;
+            for (Future<String> risposta : risposte) {
+                try {
+                    risposta.get();
+                    riuscite++;
+                } catch (java.util.concurrent.ExecutionException e) {
+                    assertTrue(e.getCause() instanceof GeoapifyClient.NonDisponibile, e.getCause().toString());
+                    rifiutate++;
+                }
+            }
+            assertEquals(2, riuscite);
+            assertEquals(4, rifiutate);
+        } finally {
+            client.shutdownNow();
+        }
+        assertEquals(2, chiamate.get());
+        // Le chiamate rifiutate non sono errori di Geoapify
+        assertEquals(GeoapifyClient.Stato.CHIUSO, geoapifyClient.getStato());
+    }
+
+    @Test
+    void validazioneLocaleConCircuitoAperto() {
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            valida("Via Garibaldi " + (i + 1));
+        }
+        assertEquals(GeoapifyClient.Stato.APERTO, geoapifyClient.getStato());
+        int primaDelCircuitoAperto = chiamate.get();
+
+        // Via Nizza è nello stradario: valida, con il CAP del tratto e senza coordinate
+        AddressValidationResponse risposta = valida("Via Nizza 150");
+        assertTrue(risposta.isValid());
+        assertEquals("10126", risposta.getSuggestions().get(0).getCap());
+        assertNull(risposta.getSuggestions().get(0).getLat());
+        assertEquals(primaDelCircuitoAperto, chiamate.get());
+
+        assertTrue(!valida("Via Inventata 1").isValid());
+    }
+
+    private AddressValidationResponse valida(String via) {
+        return addressValidationService.validateAddress(new AddressValidationRequest(via, "Torino", null, null));
+    }
+
+    /** Testi diversi per test diversi: la cache della validazione non interferisce */
+    private URI uri(int n) {
+        return URI.create("http://localhost:" + geoapify.getAddress().getPort() + "/v1/geocode/search?text=prova" + n);
+    }
+
+    private static HttpServer avviaGeoapify() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/v1/geocode/search", GeoapifyClientTest::rispondi);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void rispondi(HttpExchange scambio) throws IOException {
+        chiamate.incrementAndGet();
+        connessioni.add(scambio.getRemoteAddress().getPort());
+        try {
+            Thread.sleep(latenzaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] corpo = (status == 200 ? OK : "{\"error\":\"errore simulato\"}").getBytes(StandardCharsets.UTF_8);
+        scambio.getResponseHeaders().set("Content-Type", "application/json");
+        try {
+            scambio.sendResponseHeaders(status, corpo.length);
+            try (OutputStream out = scambio.getResponseBody()) {
+                out.write(corpo);
+            }
+        } catch (IOException e) {
+            // Client già andato via per timeout
+        } finally {
+            scambio.close();
+        }
+    }
+}
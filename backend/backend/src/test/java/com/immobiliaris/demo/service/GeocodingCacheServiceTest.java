@@ -0,0 +1,190 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.dto.AddressValidationRequest;
+import com.immobiliaris.demo.dto.AddressValidationResponse;
+import com.immobiliaris.demo.repository.GeocodingCacheRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache delle risposte Geoapify contro un finto Geoapify locale che conta le
+ * chiamate: indirizzi normalizzati, risposte negative, richieste concorrenti,
+ * persistenza ed errori.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:geocodingcache;DB_CLOSE_DELAY=-1",
+    "geoapify.cache.ttl-negativo=1s",
+    "email.outbox.attivo=false"
+})
+class GeocodingCacheServiceTest {
+
+    /** Latenza del finto Geoapify: tiene aperta la chiamata mentre arrivano le concorrenti */
+    private static final int LATENZA_MS = 300;
+
+    private static final AtomicInteger chiamate = new AtomicInteger();
+    private static final HttpServer geoapify = avviaGeoapify();
+
+    @DynamicPropertySource
+    static void proprieta(DynamicPropertyRegistry registry) {
+        registry.add("geoapify.api.url", () -> "http://localhost:" + geoapify.getAddress().getPort());
+    }
+
+    @Autowired
+    private AddressValidationService addressValidationService;
+
+    @Autowired
+    private GeocodingCacheService geocodingCacheService;
+
+    @Autowired
+    private GeocodingCacheRepository geocodingCacheRepository;
+
+    @BeforeEach
+    void setUp() {
+        geocodingCacheRepository.deleteAll();
+        geocodingCacheService.svuotaMemoria();
+        chiamate.set(0);
+    }
+
+    @AfterAll
+    static void arresta() {
+        geoapify.stop(0);
+    }
+
+    @Test
+    void stessoIndirizzoNormalizzatoUnaSolaChiamata() {
+        AddressValidationResponse prima = valida("Via Roma 10", "Torino");
+        assertTrue(prima.isValid());
+        assertEquals("Via Roma", prima.getSuggestions().get(0).getVia());
+
+        assertTrue(valida("via   ROMA 10 ", "torino").isValid());
+        assertTrue(valida("Via Roma 10", " Torino").isValid());
+        assertEquals(1, chiamate.get());
+    }
+
+    @Test
+    void rispostaNegativaInCacheFinoAScadenza() throws Exception {
+        assertFalse(valida("Via Inesistente 3", "Torino").isValid());
+        assertFalse(valida("Via Inesistente 3", "Torino").isValid());
+        assertEquals(1, chiamate.get());
+
+        // ttl-negativo = 1s
+        Thread.sleep(1_200);
+        assertFalse(valida("Via Inesistente 3", "Torino").isValid());
+        assertEquals(2, chiamate.get());
+    }
+
+    @Test
+    void richiesteConcorrentiUnaSolaChiamata() throws Exception {
+        int richieste = 8;
+        ExecutorService client = Executors.newFixedThreadPool(richieste);
+        CountDownLatch via = new CountDownLatch(1);
+        try {
+            List<Future<AddressValidationResponse>> risposte = new ArrayList<>();
+            for (int i = 0; i < richieste; i++) {
+                risposte.add(client.submit(() -> {
+                    via.await();
+                    return valida("Via Roma 10", "Torino");
+                }));
+            }
+            via.countDown();
+            for (Future<AddressValidationResponse> risposta : risposte) {
+                assertTrue(risposta.get().isValid());
+            }
+        } finally {
+            client.shutdownNow();
+        }
+        assertEquals(1, chiamate.get());
+    }
+
+    @Test
+    void rispostaPersistenteDopoRiavvio() {
+        assertTrue(valida("Via Roma 10", "Torino").isValid());
+        assertEquals(1, geocodingCacheRepository.count());
+
+        // Memoria persa come dopo un riavvio: la risposta arriva dal database
+        geocodingCacheService.svuotaMemoria();
+        assertTrue(valida("Via Roma 10", "Torino").isValid());
+        assertEquals(1, chiamate.get());
+    }
+
+    @Test
+    void erroriNonInCache() {
+        assertFalse(valida("Via Errore 1", "Torino").isValid());
+        assertFalse(valida("Via Errore 1", "Torino").isValid());
+        assertEquals(2, chiamate.get());
+        assertEquals(0, geocodingCacheRepository.count());
+    }
+
+    private AddressValidationResponse valida(String via, String citta) {
+        return addressValidationService.validateAddress(new AddressValidationRequest(via, citta, null, null));
+    }
+
+    /**
+     * Finto /v1/geocode/search: "errore" nel testo risponde 500, "inesistente"
+     * nessun risultato, altrimenti Via Roma a Torino.
+     */
+    private static HttpServer avviaGeoapify() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/v1/geocode/search", GeocodingCacheServiceTest::rispondi);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void rispondi(HttpExchange scambio) throws IOException {
+        chiamate.incrementAndGet();
+        String testo = URLDecoder.decode(scambio.getRequestURI().getRawQuery(), StandardCharsets.UTF_8).toLowerCase();
+        try {
+            Thread.sleep(LATENZA_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int stato = 200;
+        String corpo;
+        if (testo.contains("errore")) {
+            stato = 500;
+            corpo = "{\"error\":\"Internal Server Error\"}";
+        } else if (testo.contains("inesistente")) {
+            corpo = "{\"type\":\"FeatureCollection\",\"features\":[]}";
+        } else {
+            corpo = "{\"type\":\"FeatureCollection\",\"features\":[{\"properties\":{"
+                + "\"street\":\"Via Roma\",\"city\":\"Torino\",\"postcode\":\"10121\","
+                + "\"lat\":45.0677,\"lon\":7.6824}}]}";
+        }
+        byte[] byteCorpo = corpo.getBytes(StandardCharsets.UTF_8);
+        scambio.getResponseHeaders().set("Content-Type", "application/json");
+        scambio.sendResponseHeaders(stato, byteCorpo.length);
+        try (OutputStream out = scambio.getResponseBody()) {
+            out.write(byteCorpo);
+        }
+    }
+}
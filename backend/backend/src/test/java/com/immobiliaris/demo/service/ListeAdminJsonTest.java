@@ -0,0 +1,194 @@
+package com.immobiliaris.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.immobiliaris.demo.dto.ContrattoRiga;
+import com.immobiliaris.demo.dto.ImmobileDettaglioRiga;
+import com.immobiliaris.demo.dto.ValutazioneInVerificaRiga;
+import com.immobiliaris.demo.dto.ValutazioneSoloAIRiga;
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoContratto;
+import com.immobiliaris.demo.entity.StatoImmobile;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.repository.ValutazioneJpaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Le liste admin costruite con i record DTO producono lo stesso JSON (stessi campi, stesso
+ * ordine, stessi valori) delle mappe costruite dalle entità, anche con associazioni mancanti,
+ * valutazioni senza data e più valutazioni per immobile.
+ */
+class ListeAdminJsonTest extends SupportoIntegrazione {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private ValutazioneJpaRepository valutazioneRepository;
+
+    /** ObjectMapper di Spring, lo stesso delle risposte HTTP */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        popola(() -> {
+            User proprietario = utente("Mario", "mario@test.it", tipoCliente);
+            proprietario.setTelefono("011 1234567");
+            User senzaTelefono = utente("Anna", "anna@test.it", tipoCliente);
+            User agente = utente("Luigi", "luigi@test.it", tipoAgente);
+
+            StatoImmobile attivo = statoImmobile("attivo");
+            StatoValutazione soloAI = statoValutazione("solo_AI");
+            StatoValutazione inVerifica = statoValutazione("in_verifica");
+            StatoValutazione approvata = statoValutazione("approvata");
+            StatoContratto chiuso = statoContratto("chiuso");
+
+            LocalDateTime base = LocalDateTime.of(2025, 6, 1, 10, 30);
+            for (int i = 0; i < 6; i++) {
+                Immobile immobile = new Immobile();
+                immobile.setTipologia(i % 2 == 0 ? "Appartamento" : "Villa");
+                immobile.setVia("Via Roma " + i);
+                immobile.setCitta("Torino");
+                immobile.setCap("1012" + i);
+                immobile.setProvincia("TO");
+                immobile.setMetratura(60 + i * 10);
+                immobile.setCondizioni(i == 3 ? null : "Buono");
+                immobile.setStanze(2 + i);
+                immobile.setBagni(1);
+                immobile.setPiano(i == 2 ? null : i);
+                immobile.setAscensore(i % 2 == 0);
+                immobile.setGarage(i == 1 ? null : i % 3 == 0);
+                immobile.setGiardino(false);
+                immobile.setBalcone(true);
+                immobile.setTerrazzo(i == 4);
+                immobile.setCantina(null);
+                immobile.setRiscaldamento("Autonomo");
+                immobile.setPrezzo(200_000 + i * 1_000);
+                immobile.setDescrizione(i == 0 ? null : "Immobile \"" + i + "\" luminoso");
+                immobile.setStatoImmobile(i == 5 ? null : attivo);
+                immobile.setProprietario(i % 2 == 0 ? proprietario : senzaTelefono);
+                entityManager.persist(immobile);
+
+                switch (i) {
+                    // Solo AI con e senza data, con descrizione della valutazione diversa da quella dell'immobile
+                    case 0 -> nuovaValutazione(immobile, null, soloAI, base, 150_000, null, "Stima automatica");
+                    case 1 -> nuovaValutazione(immobile, null, soloAI, null, 155_000, null, null);
+                    // Più valutazioni: la più recente vince, a parità di data l'id più alto, senza data in coda
+                    case 2 -> {
+                        nuovaValutazione(immobile, null, soloAI, base, 160_000, null, null);
+                        nuovaValutazione(immobile, agente, inVerifica, base.plusDays(2), 161_000, 165_000, "Sopralluogo");
+                        nuovaValutazione(immobile, null, soloAI, null, 162_000, null, null);
+                    }
+                    case 3 -> {
+                        nuovaValutazione(immobile, agente, approvata, base.plusDays(1), 170_000, 172_000, null);
+                        Valutazione ultima = nuovaValutazione(immobile, null, inVerifica, base.plusDays(1), 171_000, null, null);
+                        nuovoContratto(immobile, proprietario, agente, ultima, chiuso, "CTR-3", base.plusDays(40));
+                    }
+                    case 4 -> nuovoContratto(immobile, senzaTelefono, null, null, chiuso, "CTR-4", null);
+                    default -> {
+                        // Immobile senza valutazioni
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void contrattiChiusiComePrima() throws Exception {
+        List<?> righe = (List<?>) statisticsService.getContrattiChiusiLoadMore(null, 100).get("contratti");
+        assertEquals(2, righe.size());
+
+        String atteso = transactionTemplate.execute(status -> json(righe.stream()
+            .map(r -> RigheMappaRiferimento.contratto(entityManager.find(Contratto.class, ((ContrattoRiga) r).id())))
+            .toList()));
+        assertEquals(atteso, json(righe));
+        assertFalse(json(righe).contains("\"id\""), "L'id del contratto non fa parte del JSON");
+    }
+
+    @Test
+    void valutazioniSoloAIComePrima() throws Exception {
+        List<?> righe = (List<?>) statisticsService.getValutazioniSoloAILoadMore(null, 100).get("valutazioni");
+        assertEquals(4, righe.size());
+
+        String atteso = transactionTemplate.execute(status -> json(righe.stream()
+            .map(r -> RigheMappaRiferimento.valutazioneSoloAI(
+                entityManager.find(Valutazione.class, ((ValutazioneSoloAIRiga) r).id())))
+            .toList()));
+        assertEquals(atteso, json(righe));
+    }
+
+    @Test
+    void valutazioniInVerificaComePrima() throws Exception {
+        List<?> righe = (List<?>) statisticsService.getValutazioniInVerficaLoadMore(null, 100).get("valutazioni");
+        assertEquals(2, righe.size());
+
+        String atteso = transactionTemplate.execute(status -> json(righe.stream()
+            .map(r -> RigheMappaRiferimento.valutazioneInVerifica(
+                entityManager.find(Valutazione.class, ((ValutazioneInVerificaRiga) r).id())))
+            .toList()));
+        assertEquals(atteso, json(righe));
+    }
+
+    @Test
+    void immobiliComePrima() throws Exception {
+        List<?> righe = (List<?>) statisticsService.getTuttiImmobiliConDettagli(null, 100).get("immobili");
+        assertEquals(6, righe.size());
+
+        String atteso = transactionTemplate.execute(status -> {
+            List<Integer> ids = righe.stream().map(r -> ((ImmobileDettaglioRiga) r).id()).toList();
+            Map<Integer, Valutazione> recenti = valutazioneRepository.findUltimaValutazionePerImmobile(ids);
+            return json(ids.stream()
+                .map(id -> RigheMappaRiferimento.immobileDettaglio(entityManager.find(Immobile.class, id), recenti.get(id)))
+                .toList());
+        });
+        assertEquals(atteso, json(righe));
+    }
+
+    private String json(Object valore) {
+        try {
+            return objectMapper.writeValueAsString(valore);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Valutazione nuovaValutazione(Immobile immobile, User agente, StatoValutazione stato, LocalDateTime data,
+                                         Integer prezzoAI, Integer prezzoUmano, String descrizione) {
+        Valutazione valutazione = valutazione(immobile, stato);
+        valutazione.setAgente(agente);
+        valutazione.setDataValutazione(data);
+        valutazione.setPrezzoAI(prezzoAI);
+        valutazione.setPrezzoUmano(prezzoUmano);
+        valutazione.setDescrizione(descrizione);
+        entityManager.persist(valutazione);
+        return valutazione;
+    }
+
+    private void nuovoContratto(Immobile immobile, User utente, User agente, Valutazione valutazione,
+                                StatoContratto stato, String numero, LocalDateTime dataFine) {
+        Contratto contratto = new Contratto();
+        contratto.setImmobile(immobile);
+        contratto.setUtente(utente);
+        contratto.setAgente(agente);
+        contratto.setValutazione(valutazione);
+        contratto.setStatoContratto(stato);
+        contratto.setNumeroContratto(numero);
+        contratto.setDataInvio(dataFine != null ? dataFine.minusDays(20) : null);
+        contratto.setDataInizio(dataFine != null ? dataFine.minusDays(10) : null);
+        contratto.setDataFine(dataFine);
+        entityManager.persist(contratto);
+    }
+}
@@ -0,0 +1,232 @@
+package com.immobiliaris.demo.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Proxy delle mappe statiche servito da Tomcat reale contro un finto Geoapify:
+ * un solo download per immagine, ETag e cache del browser, chiave API mai esposta,
+ * cancellazione delle immagini usate meno di recente oltre il limite.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:mappestatiche;DB_CLOSE_DELAY=-1",
+    "geoapify.api.key=chiave-segreta",
+    "mappe.cache.max-mb=1",
+    "email.outbox.attivo=false"
+})
+class MappaStaticaServiceTest {
+
+    /** Tre immagini superano il limite di 1 MB */
+    private static final int DIMENSIONE_IMMAGINE = 400 * 1024;
+
+    @TempDir
+    static Path cache;
+
+    /** Query ricevute dal finto Geoapify */
+    private static final List<String> richieste = new CopyOnWriteArrayList<>();
+    private static final HttpServer geoapify = avviaGeoapify();
+
+    @DynamicPropertySource
+    static void proprieta(DynamicPropertyRegistry registry) {
+        registry.add("mappe.cache.directory", () -> cache.toString());
+        registry.add("geoapify.maps.url", () -> "http://localhost:" + geoapify.getAddress().getPort());
+    }
+
+    @LocalServerPort
+    private int porta;
+
+    @Autowired
+    private MappaStaticaService mappaStaticaService;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (Stream<Path> file = Files.list(cache)) {
+            for (Path f : file.toList()) {
+                Files.delete(f);
+            }
+        }
+        // Ricalcola lo spazio occupato sulla cache vuota
+        mappaStaticaService.inizializza();
+        richieste.clear();
+    }
+
+    @AfterAll
+    static void arresta() {
+        geoapify.stop(0);
+    }
+
+    @Test
+    void unSoloDownloadPerImmagine() throws Exception {
+        String url = mappaStaticaService.url(new MappaStaticaService.Mappa(45.0677, 7.6824, 15, 600, 400, "osm-carto", true, null));
+        HttpResponse<byte[]> prima = mappa(url, null);
+        assertEquals(200, prima.statusCode());
+        assertEquals("image/png", prima.headers().firstValue("Content-Type").orElseThrow());
+        String cacheControl = prima.headers().firstValue("Cache-Control").orElseThrow();
+        assertTrue(cacheControl.contains("max-age=2592000") && cacheControl.contains("immutable"), cacheControl);
+        String etag = prima.headers().firstValue("ETag").orElseThrow();
+
+        // Stessi parametri scritti in modo diverso (stessa firma): stessa immagine dalla cache
+        String firma = url.substring(url.indexOf("sig="));
+        HttpResponse<byte[]> seconda = mappa("/api/map/static?lon=7.68240&lat=45.06770&zoom=15&marker=true&" + firma, null);
+        assertArrayEquals(prima.body(), seconda.body());
+        assertEquals(etag, seconda.headers().firstValue("ETag").orElseThrow());
+
+        HttpResponse<byte[]> nonModificata = mappa(url, etag);
+        assertEquals(304, nonModificata.statusCode());
+
+        assertEquals(1, richieste.size());
+        assertTrue(richieste.get(0).contains("apiKey=chiave-segreta"), richieste.get(0));
+        assertTrue(richieste.get(0).contains("marker=lonlat:7.682400,45.067700;color:red;size:medium"), richieste.get(0));
+    }
+
+    @Test
+    void urlGeneratoSenzaChiaveApi() throws Exception {
+        HttpResponse<String> risposta = http.send(HttpRequest.newBuilder(uri("/api/map/address-marker"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"lat\":45.0677,\"lon\":7.6824,\"address\":\"Via Roma 10\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, risposta.statusCode());
+        assertFalse(risposta.body().contains("chiave-segreta"), risposta.body());
+        assertFalse(risposta.body().contains("geoapify"), risposta.body());
+
+        String mapUrl = risposta.body().replaceAll(".*\"mapUrl\":\"([^\"]+)\".*", "$1");
+        assertTrue(mapUrl.startsWith("http://localhost:" + porta + "/api/map/static?"), mapUrl);
+        assertTrue(mapUrl.contains("text=V"), mapUrl);
+
+        HttpResponse<byte[]> immagine = http.send(HttpRequest.newBuilder(URI.create(mapUrl)).build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, immagine.statusCode());
+        assertTrue(richieste.get(0).contains(";text:V"), richieste.get(0));
+    }
+
+    @Test
+    void cancellaLeImmaginiUsateMenoDiRecente() throws Exception {
+        HttpResponse<byte[]> a = mappa(centro(45.01, 7.61), null);
+        Thread.sleep(50);
+        mappa(centro(45.02, 7.62), null);
+        Thread.sleep(50);
+        // A usata di nuovo: la meno usata di recente diventa B
+        mappa(centro(45.01, 7.61), null);
+        Thread.sleep(50);
+        mappa(centro(45.03, 7.63), null);
+
+        assertEquals(2, immaginiInCache());
+        assertEquals(3, richieste.size());
+
+        // A è ancora in cache, B va riscaricata
+        assertArrayEquals(a.body(), mappa(centro(45.01, 7.61), null).body());
+        assertEquals(3, richieste.size());
+        mappa(centro(45.02, 7.62), null);
+        assertEquals(4, richieste.size());
+    }
+
+    @Test
+    void parametriNonValidi() throws Exception {
+        assertEquals(400, mappa("/api/map/static?lat=45.07&lon=7.68&zoom=30", null).statusCode());
+        assertEquals(400, mappa("/api/map/static?lat=45.07&lon=7.68&width=5000", null).statusCode());
+        assertEquals(400, mappa("/api/map/static?lat=45.07&lon=7.68&marker=true&text=%3B", null).statusCode());
+        assertTrue(richieste.isEmpty());
+    }
+
+    @Test
+    void mappeNonGenerateDalBackendRifiutate() throws Exception {
+        // Senza firma
+        assertEquals(403, mappa("/api/map/static?lat=45.07&lon=7.68", null).statusCode());
+
+        // Firma di un'altra mappa: cambiati centro e dimensioni
+        String url = centro(45.07, 7.68);
+        String firma = url.substring(url.indexOf("sig="));
+        assertEquals(403, mappa("/api/map/static?lat=45.08&lon=7.68&" + firma, null).statusCode());
+        assertEquals(403, mappa("/api/map/static?lat=45.07&lon=7.68&width=1280&" + firma, null).statusCode());
+        assertEquals(403, mappa("/api/map/static?lat=45.07&lon=7.68&sig=" + "0".repeat(64), null).statusCode());
+
+        assertTrue(richieste.isEmpty());
+        assertEquals(0, immaginiInCache());
+        assertEquals(200, mappa(url, null).statusCode());
+    }
+
+    /** URL firmato di una mappa 600x400 senza marker */
+    private String centro(double lat, double lon) {
+        return mappaStaticaService.url(new MappaStaticaService.Mappa(lat, lon, 15, 600, 400, "osm-carto", false, null));
+    }
+
+    /**
+     * @param url Percorso con la query, come restituito da {@link MappaStaticaService#url}
+     */
+    private HttpResponse<byte[]> mappa(String url, String etag) throws Exception {
+        HttpRequest.Builder richiesta = HttpRequest.newBuilder(uri(url));
+        if (etag != null) {
+            richiesta.header("If-None-Match", etag);
+        }
+        return http.send(richiesta.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private URI uri(String percorso) {
+        return URI.create("http://localhost:" + porta + percorso);
+    }
+
+    private static long immaginiInCache() throws IOException {
+        try (Stream<Path> file = Files.list(cache)) {
+            return file.filter(f -> f.toString().endsWith(".png")).count();
+        }
+    }
+
+    /**
+     * Finto /v1/staticmap: un "PNG" diverso per ogni centro richiesto.
+     */
+    private static HttpServer avviaGeoapify() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/v1/staticmap", MappaStaticaServiceTest::rispondi);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void rispondi(HttpExchange scambio) throws IOException {
+        String query = scambio.getRequestURI().getQuery();
+        richieste.add(query);
+        byte[] immagine = new byte[DIMENSIONE_IMMAGINE];
+        Arrays.fill(immagine, (byte) query.hashCode());
+        scambio.getResponseHeaders().set("Content-Type", "image/png");
+        scambio.sendResponseHeaders(200, immagine.length);
+        try (OutputStream out = scambio.getResponseBody()) {
+            out.write(immagine);
+        }
+    }
+}
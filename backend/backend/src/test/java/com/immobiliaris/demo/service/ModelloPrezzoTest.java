@@ -0,0 +1,167 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Valori di riferimento del modello prezzo AI: con i coefficienti predefiniti
+ * i prezzi devono coincidere con la formula originale ({@link PrezzoAIRiferimento}).
+ */
+class ModelloPrezzoTest {
+
+    private static final Integer[] METRATURE = {null, -5, 0, 1, 19, 20, 21, 35, 69, 70, 71, 85, 120, 140, 141, 250, 1000};
+    private static final Integer[] CONTEGGI = {null, -1, 0, 1, 2, 3, 4, 6, 9, 15};
+    private static final Integer[] PIANI = {null, -1, 0, 1, 2, 3, 7, 30};
+    private static final String[] CONDIZIONI = {null, "", "Nuovo", "nuovo", "OTTIMO", "Buono", "Da Ristrutturare", "da ristrutturare", "Discreto"};
+    private static final String[] TIPOLOGIE = {null, "", "Villa", "villa", "Attico", "LOFT", "Appartamento", "appartamento", "Box"};
+    private static final String[] RISCALDAMENTI = {null, "", "Teleriscaldamento", "teleriscaldamento", "Autonomo", "autonomo",
+        "Centralizzato (Obsoleto)", "centralizzato (obsoleto)", "Centralizzato", "Assente"};
+    private static final double[] QUOTAZIONI = {0, -100, 1, 1850, 2400, 2850, 3333, 4200, 5175};
+
+    private final ModelloPrezzo modello = ModelloPrezzo.da(ModelloPrezzoService.leggiCoefficienti(null));
+
+    @Test
+    void prezziIdenticiAllaFormulaOriginale() {
+        Random random = new Random(20251201L);
+        for (int i = 0; i < 200_000; i++) {
+            Immobile immobile = new Immobile();
+            immobile.setMetratura(scegli(random, METRATURE));
+            immobile.setBagni(scegli(random, CONTEGGI));
+            immobile.setStanze(scegli(random, CONTEGGI));
+            immobile.setPiano(scegli(random, PIANI));
+            immobile.setCondizioni(scegli(random, CONDIZIONI));
+            immobile.setTipologia(scegli(random, TIPOLOGIE));
+            immobile.setRiscaldamento(scegli(random, RISCALDAMENTI));
+            immobile.setAscensore(booleano(random));
+            immobile.setBalcone(booleano(random));
+            immobile.setTerrazzo(booleano(random));
+            immobile.setGiardino(booleano(random));
+            immobile.setCantina(booleano(random));
+            immobile.setGarage(booleano(random));
+            double quotazione = QUOTAZIONI[random.nextInt(QUOTAZIONI.length)];
+
+            assertEquals(PrezzoAIRiferimento.calcola(immobile, quotazione), modello.calcola(immobile, quotazione),
+                () -> "Prezzo diverso per " + descrivi(immobile) + " quotazione " + quotazione);
+        }
+    }
+
+    @Test
+    void tutteLeCombinazioniDiAccessoriRiscaldamentoEPiano() {
+        for (String tipologia : TIPOLOGIE) {
+            for (String riscaldamento : RISCALDAMENTI) {
+                for (Integer piano : PIANI) {
+                    for (int accessori = 0; accessori < 64; accessori++) {
+                        Immobile immobile = immobile(95, tipologia, "Buono", riscaldamento, piano, accessori);
+                        assertEquals(PrezzoAIRiferimento.calcola(immobile, 2850), modello.calcola(immobile, 2850),
+                            () -> "Prezzo diverso per " + descrivi(immobile));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void valoriDiRiferimento() {
+        // Appartamento 80 mq, buono, 3 stanze, 1 bagno, 2° piano, ascensore + balcone, autonomo
+        Immobile appartamento = immobile(80, "Appartamento", "Buono", "Autonomo", 2, 0b000011);
+        appartamento.setStanze(3);
+        appartamento.setBagni(1);
+        assertEquals(264_252, modello.calcola(appartamento, 2850));
+
+        // Villa 220 mq nuova, 3 livelli, giardino + garage, teleriscaldamento
+        Immobile villa = immobile(220, "Villa", "Nuovo", "Teleriscaldamento", 3, 0b101000);
+        villa.setStanze(7);
+        villa.setBagni(3);
+        assertEquals(1_721_002, modello.calcola(villa, 3600));
+
+        // Loft 45 mq da ristrutturare, 5° piano, 3 stanze (troppe), riscaldamento centralizzato
+        Immobile loft = immobile(45, "loft", "da ristrutturare", "centralizzato (obsoleto)", 5, 0);
+        loft.setStanze(3);
+        loft.setBagni(1);
+        assertEquals(164_777, modello.calcola(loft, 4200));
+
+        // CAP non mappato o metratura mancante
+        assertEquals(0, modello.calcola(appartamento, 0));
+        assertEquals(0, modello.calcola(new Immobile(), 2850));
+    }
+
+    @Test
+    void riconoscimentoSenzaDistinzioneMaiuscole() {
+        assertSame(ModelloPrezzo.Condizioni.DA_RISTRUTTURARE, ModelloPrezzo.Condizioni.da("DA RISTRUTTURARE"));
+        assertSame(ModelloPrezzo.Condizioni.ALTRO, ModelloPrezzo.Condizioni.da(null));
+        assertSame(ModelloPrezzo.Tipologia.ATTICO, ModelloPrezzo.Tipologia.da("attico"));
+        assertSame(ModelloPrezzo.Tipologia.ALTRO, ModelloPrezzo.Tipologia.da("Rustico"));
+        assertSame(ModelloPrezzo.Riscaldamento.CENTRALIZZATO_OBSOLETO, ModelloPrezzo.Riscaldamento.da("centralizzato (obsoleto)"));
+        assertSame(ModelloPrezzo.Riscaldamento.ALTRO, ModelloPrezzo.Riscaldamento.da("Centralizzato"));
+    }
+
+    @Test
+    void ricaricaConFileEsterno(@TempDir Path cartella) throws IOException {
+        Path file = cartella.resolve("coefficienti.properties");
+        Files.writeString(file, "accessori.garage=0.40\n");
+
+        ModelloPrezzoService service = new ModelloPrezzoService();
+        ReflectionTestUtils.setField(service, "fileCoefficienti", file.toString());
+        service.init();
+
+        Immobile conGarage = immobile(100, "Appartamento", "Buono", null, 0, 0b100000);
+        assertEquals(140_000, service.getModello().calcola(conGarage, 1000));
+
+        Files.writeString(file, "accessori.garage=0.30\n");
+        service.ricarica();
+        assertEquals(130_000, service.getModello().calcola(conGarage, 1000));
+
+        // Coefficiente non valido: la ricarica fallisce e resta il modello precedente
+        ModelloPrezzo precedente = service.getModello();
+        Files.writeString(file, "accessori.garage=trenta\n");
+        assertThrows(IllegalArgumentException.class, service::ricarica);
+        assertSame(precedente, service.getModello());
+    }
+
+    /**
+     * @param accessori Bit 0..5: ascensore, balcone, terrazzo, giardino, cantina, garage
+     */
+    private static Immobile immobile(int metratura, String tipologia, String condizioni, String riscaldamento,
+                                     Integer piano, int accessori) {
+        Immobile immobile = new Immobile();
+        immobile.setMetratura(metratura);
+        immobile.setTipologia(tipologia);
+        immobile.setCondizioni(condizioni);
+        immobile.setRiscaldamento(riscaldamento);
+        immobile.setPiano(piano);
+        immobile.setAscensore((accessori & 1) != 0);
+        immobile.setBalcone((accessori & 2) != 0);
+        immobile.setTerrazzo((accessori & 4) != 0);
+        immobile.setGiardino((accessori & 8) != 0);
+        immobile.setCantina((accessori & 16) != 0);
+        immobile.setGarage((accessori & 32) != 0);
+        return immobile;
+    }
+
+    private static <T> T scegli(Random random, T[] valori) {
+        return valori[random.nextInt(valori.length)];
+    }
+
+    private static Boolean booleano(Random random) {
+        int valore = random.nextInt(3);
+        return valore == 0 ? null : valore == 1;
+    }
+
+    private static String descrivi(Immobile i) {
+        return i.getMetratura() + "mq " + i.getTipologia() + "/" + i.getCondizioni() + "/" + i.getRiscaldamento()
+            + " piano " + i.getPiano() + " bagni " + i.getBagni() + " stanze " + i.getStanze()
+            + " [asc " + i.getAscensore() + ", bal " + i.getBalcone() + ", ter " + i.getTerrazzo()
+            + ", gia " + i.getGiardino() + ", can " + i.getCantina() + ", gar " + i.getGarage() + "]";
+    }
+}
@@ -0,0 +1,121 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contratto PDF con le parti fisse precompilate: il testo deve restare completo
+ * (dati del contratto e clausole statiche) e il documento a compressione completa.
+ */
+class PdfContrattoServiceTest {
+
+    private final PdfContrattoService service = new PdfContrattoService();
+
+    @Test
+    void documentoCompressoConTestoCompleto() throws Exception {
+        PdfReader reader = new PdfReader(service.generaContrattoPdf(contratto("Mario", "Rossi", 305_000)));
+        try {
+            assertTrue(reader.isNewXrefType(), "Compressione completa (xref stream) attesa");
+            assertEquals('5', reader.getPdfVersion());
+            assertEquals(4, reader.getNumberOfPages());
+
+            StringBuilder testo = new StringBuilder();
+            for (int pagina = 1; pagina <= reader.getNumberOfPages(); pagina++) {
+                testo.append(PdfTextExtractor.getTextFromPage(reader, pagina)).append('\n');
+            }
+            String contenuto = testo.toString();
+
+            // Parti dinamiche
+            assertTrue(contenuto.contains("Mario Rossi"));
+            assertTrue(contenuto.contains("Laura Bianchi"));
+            assertTrue(contenuto.contains("Corso Francia 120"));
+            assertTrue(contenuto.contains("305"));
+            assertTrue(contenuto.contains("01/12/2025"));
+            assertTrue(contenuto.contains("01/06/2026"));
+
+            // Parti precompilate
+            assertTrue(contenuto.contains("IMMOBILIARIS S.R.L."));
+            assertTrue(contenuto.contains("INCARICO DI MEDIAZIONE IN ESCLUSIVA"));
+            assertTrue(contenuto.contains("6. DICHIARAZIONI DEL MANDANTE"));
+            assertTrue(contenuto.contains("7. OBBLIGHI E CLAUSOLA PENALE"));
+            assertTrue(contenuto.contains("8. TRATTAMENTO DATI PERSONALI (GDPR)"));
+            assertTrue(PdfTextExtractor.getTextFromPage(reader, 4).contains("APPROVAZIONE SPECIFICA CLAUSOLE VESSATORIE"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void generazioneConcorrente() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> risultati = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String cognome = "Cliente" + i;
+                risultati.add(pool.submit(() -> service.generaContrattoPdf(contratto("Mario", cognome, 200_000))));
+            }
+            for (int i = 0; i < risultati.size(); i++) {
+                PdfReader reader = new PdfReader(risultati.get(i).get());
+                try {
+                    assertEquals(4, reader.getNumberOfPages());
+                    assertTrue(PdfTextExtractor.getTextFromPage(reader, 1).contains("Mario Cliente" + i));
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Contratto contratto(String nome, String cognome, int prezzo) {
+        User proprietario = new User();
+        proprietario.setNome(nome);
+        proprietario.setCognome(cognome);
+        proprietario.setEmail("mario.rossi@test.it");
+
+        User agente = new User();
+        agente.setNome("Laura");
+        agente.setCognome("Bianchi");
+        agente.setEmail("laura.bianchi@test.it");
+
+        Immobile immobile = new Immobile();
+        immobile.setVia("Corso Francia 120");
+        immobile.setCitta("Torino");
+        immobile.setCap("10143");
+        immobile.setProvincia("TO");
+        immobile.setTipologia("Appartamento");
+        immobile.setMetratura(95);
+        immobile.setCondizioni("Ottimo");
+
+        Valutazione valutazione = new Valutazione();
+        valutazione.setPrezzoAI(prezzo + 5_000);
+        valutazione.setPrezzoUmano(prezzo);
+
+        LocalDateTime inizio = LocalDateTime.of(2025, 12, 1, 10, 0);
+        Contratto contratto = new Contratto();
+        contratto.setUtente(proprietario);
+        contratto.setAgente(agente);
+        contratto.setImmobile(immobile);
+        contratto.setValutazione(valutazione);
+        contratto.setDataInizio(inizio);
+        contratto.setDataFine(inizio.plusMonths(6));
+        contratto.setPercentualeCommissione(3.0);
+        return contratto;
+    }
+}
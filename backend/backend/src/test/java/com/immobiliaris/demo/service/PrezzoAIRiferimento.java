@@ -0,0 +1,104 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+
+/**
+ * Formula originale di ValutazioneService.calcolaPrezzoAI (coefficienti costanti, Double boxed),
+ * conservata come riferimento per i test di equivalenza e per il confronto nei benchmark.
+ */
+final class PrezzoAIRiferimento {
+
+    private PrezzoAIRiferimento() {}
+
+    static int calcola(Immobile immobile, double quotazione) {
+        Integer metratura = immobile.getMetratura();
+        Integer piano = immobile.getPiano();
+        Integer stanze = immobile.getStanze();
+        Integer bagni = immobile.getBagni();
+        String tipologia = immobile.getTipologia();
+        String condizioni = immobile.getCondizioni();
+        String riscaldamento = immobile.getRiscaldamento();
+
+        if (metratura == null || metratura <= 0) return 0;
+
+        Double quotazioneBase = quotazione;
+
+        if (quotazioneBase <= 0) return 0;
+
+        Double moltiplicatoreBagni = 1.00;
+        Double moltiplicatoreStanze = 1.00;
+
+        if (bagni != null && bagni > 0) {
+            int bagniMinimiRichiesti = (int) Math.ceil(metratura / 70.0);
+            if (bagni < bagniMinimiRichiesti) {
+                moltiplicatoreBagni = 0.95;
+            }
+        }
+
+        if (stanze != null && stanze > 0) {
+            int stanzeMaxFunzionali = (int) Math.floor(metratura / 20.0);
+            if (stanze > stanzeMaxFunzionali) {
+                moltiplicatoreStanze = 0.97;
+            }
+        }
+
+        Double coefficienteFunzionale = moltiplicatoreBagni * moltiplicatoreStanze;
+
+        Double coefficienteCondizioni = 1.00;
+        if (condizioni != null) {
+            if ("Nuovo".equalsIgnoreCase(condizioni)) coefficienteCondizioni = 1.15;
+            else if ("Ottimo".equalsIgnoreCase(condizioni)) coefficienteCondizioni = 1.10;
+            else if ("Buono".equalsIgnoreCase(condizioni)) coefficienteCondizioni = 1.00;
+            else if ("Da Ristrutturare".equalsIgnoreCase(condizioni) || "Da ristrutturare".equalsIgnoreCase(condizioni)) coefficienteCondizioni = 0.75;
+        }
+
+        Double coefficienteTipologia = 1.00;
+        if (tipologia != null) {
+            if ("Villa".equalsIgnoreCase(tipologia)) coefficienteTipologia = 1.30;
+            else if ("Attico".equalsIgnoreCase(tipologia) || "Loft".equalsIgnoreCase(tipologia)) coefficienteTipologia = 1.12;
+            else if ("Appartamento".equalsIgnoreCase(tipologia)) coefficienteTipologia = 1.00;
+        }
+
+        Double coefficienteQualitativo = coefficienteCondizioni * coefficienteTipologia;
+
+        Double percentualeAccessori = 0.0;
+
+        if (immobile.getAscensore() != null && immobile.getAscensore()) percentualeAccessori += 0.08;
+        if (immobile.getBalcone() != null && immobile.getBalcone()) percentualeAccessori += 0.05;
+        if (immobile.getTerrazzo() != null && immobile.getTerrazzo()) percentualeAccessori += 0.12;
+        if (immobile.getGiardino() != null && immobile.getGiardino()) percentualeAccessori += 0.10;
+        if (immobile.getCantina() != null && immobile.getCantina()) percentualeAccessori += 0.03;
+        if (immobile.getGarage() != null && immobile.getGarage()) percentualeAccessori += 0.25;
+
+        if (riscaldamento != null) {
+            if ("Teleriscaldamento".equalsIgnoreCase(riscaldamento)) {
+                percentualeAccessori += 0.08;
+            } else if ("Autonomo".equalsIgnoreCase(riscaldamento)) {
+                percentualeAccessori += 0.05;
+            } else if ("Centralizzato (Obsoleto)".equalsIgnoreCase(riscaldamento)) {
+                percentualeAccessori -= 0.03;
+            }
+        }
+
+        Double percentualePianoPerAltezza = 0.0;
+
+        if ("Villa".equalsIgnoreCase(tipologia)) {
+            if (piano != null && piano > 1) {
+                percentualeAccessori += 0.10;
+            }
+        } else {
+            if (piano != null && piano > 0) {
+                percentualePianoPerAltezza = piano * 0.02;
+            }
+        }
+
+        Double moltiplicatoreFinale = 1.0 + percentualeAccessori + percentualePianoPerAltezza;
+
+        Double prezzo = (metratura * quotazioneBase)
+                         * coefficienteFunzionale
+                         * coefficienteQualitativo
+                         * moltiplicatoreFinale;
+
+        return prezzo.intValue();
+    }
+}
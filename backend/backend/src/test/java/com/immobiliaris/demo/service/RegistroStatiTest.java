@@ -0,0 +1,100 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.service.RegistroStati.CodiceContratto;
+import com.immobiliaris.demo.service.RegistroStati.CodiceImmobile;
+import com.immobiliaris.demo.service.RegistroStati.CodiceValutazione;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Registro degli stati: risolve gli stati per codice senza query e si aggiorna
+ * dopo il commit quando uno stato viene inserito.
+ */
+class RegistroStatiTest extends SupportoIntegrazione {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    private Statistics statistics;
+
+    private Integer idValutazione;
+
+    private Long idAgente;
+
+    private Integer idChiuso;
+
+    private Integer idAttivo;
+
+    @BeforeEach
+    void setUp() {
+        statistics = statistiche();
+
+        popola(() -> {
+            StatoValutazione soloAI = statoValutazione("solo_AI");
+            statoValutazione("in_verifica");
+            idAttivo = statoContratto("attivo").getId();
+            idChiuso = statoContratto("chiuso").getId();
+
+            idAgente = utente("Mario", "mario.rossi@test.it", tipoAgente).getIdUtente();
+
+            Immobile immobile = immobile("Via Roma 1", null);
+            entityManager.persist(immobile);
+            Valutazione valutazione = valutazione(immobile, soloAI);
+            valutazione.setDataValutazione(LocalDateTime.now());
+            entityManager.persist(valutazione);
+            idValutazione = valutazione.getId();
+            return null;
+        });
+    }
+
+    @Test
+    void statiRisoltiPerCodice() {
+        assertEquals("solo_AI", registroStati.get(CodiceValutazione.SOLO_AI).getNome());
+        assertEquals(idChiuso, registroStati.id(CodiceContratto.CHIUSO));
+        // Filtri scelti dall'utente: case-insensitive, i nomi sconosciuti non corrispondono a nessuno stato
+        assertEquals(List.of(idChiuso, idAttivo), registroStati.idContratti(List.of("CHIUSO", "attivo", "inesistente")));
+    }
+
+    @Test
+    void statoMancanteSegnalato() {
+        assertNull(registroStati.id(CodiceImmobile.VENDUTO));
+        assertThrows(IllegalStateException.class, () -> registroStati.get(CodiceImmobile.VENDUTO));
+    }
+
+    @Test
+    void statoInseritoVisibileDopoIlCommit() {
+        Integer idScaduto = transactionTemplate.execute(status -> {
+            Integer id = statoContratto("scaduto").getId();
+            entityManager.flush();
+            // Il registro non vede stati non ancora confermati
+            assertNull(registroStati.id(CodiceContratto.SCADUTO));
+            return id;
+        });
+
+        assertEquals(idScaduto, registroStati.id(CodiceContratto.SCADUTO));
+    }
+
+    @Test
+    void assegnazioneAgenteSenzaQuerySugliStati() {
+        statistics.clear();
+        statisticsService.assegnaAgenteValutazioneAI(idValutazione, idAgente);
+
+        // Solo letture per id e l'update: nessuna ricerca dello stato per nome
+        assertEquals(0, statistics.getQueryExecutionCount());
+        String stato = transactionTemplate.execute(status ->
+            entityManager.find(Valutazione.class, idValutazione).getStatoValutazione().getNome());
+        assertEquals("in_verifica", stato);
+    }
+}
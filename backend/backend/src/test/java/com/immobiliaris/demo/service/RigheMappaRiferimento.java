@@ -0,0 +1,143 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Righe delle liste admin costruite come prima dei record DTO: una LinkedHashMap per riga,
+ * riempita dalle entità. Riferimento per verificare che il JSON non cambi e per confrontare
+ * i costi nel benchmark.
+ */
+final class RigheMappaRiferimento {
+
+    private RigheMappaRiferimento() {
+    }
+
+    /** Riga di GET /api/admin/contratti/chiusi */
+    static Map<String, Object> contratto(Contratto c) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("numeroContratto", c.getNumeroContratto());
+        m.put("dataInvio", c.getDataInvio());
+        m.put("dataRicezione", c.getDataRicezione());
+        m.put("dataInizio", c.getDataInizio());
+        m.put("dataFine", c.getDataFine());
+        m.put("valutazioneUmana", c.getValutazione() != null ? c.getValutazione().getPrezzoUmano() : null);
+        if (c.getImmobile() != null) {
+            m.put("tipo", c.getImmobile().getTipologia());
+            m.put("nomeProprietario", nomeCompleto(c.getImmobile().getProprietario()));
+            m.put("agenteAssegnato", nomeCompleto(c.getAgente()));
+        } else {
+            m.put("tipo", null);
+            m.put("nomeProprietario", null);
+            m.put("agenteAssegnato", null);
+        }
+        return m;
+    }
+
+    /** Riga di GET /api/admin/valutazioni/solo-ai */
+    static Map<String, Object> valutazioneSoloAI(Valutazione v) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", v.getId());
+        m.put("prezzoAI", v.getPrezzoAI());
+        LocalDateTime dataToShow = v.getDataValutazione() != null ? v.getDataValutazione()
+            : (v.getImmobile() != null ? v.getImmobile().getDataRegistrazione() : null);
+        m.put("dataValutazione", dataToShow != null ? dataToShow.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : null);
+        m.put("descrizione", v.getDescrizione());
+        immobile(m, v.getImmobile());
+        return m;
+    }
+
+    /** Riga di GET /api/admin/valutazioni/in-verifica */
+    static Map<String, Object> valutazioneInVerifica(Valutazione v) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", v.getId());
+        m.put("prezzoAI", v.getPrezzoAI());
+        m.put("prezzoUmano", v.getPrezzoUmano());
+        m.put("dataValutazione", v.getDataValutazione());
+        m.put("statoValutazione", v.getStatoValutazione() != null ? v.getStatoValutazione().getNome() : null);
+        m.put("descrizione", v.getDescrizione());
+        m.put("nomeAgente", nomeCompleto(v.getAgente()));
+        m.put("emailAgente", v.getAgente() != null ? v.getAgente().getEmail() : null);
+        immobile(m, v.getImmobile());
+        return m;
+    }
+
+    /** Riga di GET /api/admin/immobili, con la valutazione più recente (o null) */
+    static Map<String, Object> immobileDettaglio(Immobile immobile, Valutazione recente) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", immobile.getId());
+        m.put("via", immobile.getVia());
+        m.put("citta", immobile.getCitta());
+        m.put("cap", immobile.getCap());
+        m.put("provincia", immobile.getProvincia());
+        m.put("tipologia", immobile.getTipologia());
+        m.put("metratura", immobile.getMetratura());
+        m.put("condizioni", immobile.getCondizioni());
+        m.put("stanze", immobile.getStanze());
+        m.put("bagni", immobile.getBagni());
+        m.put("riscaldamento", immobile.getRiscaldamento());
+        m.put("piano", immobile.getPiano());
+        m.put("ascensore", immobile.getAscensore());
+        m.put("garage", immobile.getGarage());
+        m.put("giardino", immobile.getGiardino());
+        m.put("balcone", immobile.getBalcone());
+        m.put("terrazzo", immobile.getTerrazzo());
+        m.put("cantina", immobile.getCantina());
+        m.put("prezzo", immobile.getPrezzo());
+        m.put("descrizione", immobile.getDescrizione());
+        m.put("dataRegistrazione", immobile.getDataRegistrazione());
+        m.put("statoImmobile", immobile.getStatoImmobile() != null ? immobile.getStatoImmobile().getNome() : null);
+        proprietario(m, immobile.getProprietario());
+        m.put("prezzoAI", recente != null ? recente.getPrezzoAI() : null);
+        m.put("prezzoUmano", recente != null ? recente.getPrezzoUmano() : null);
+        m.put("dataValutazione", recente != null ? recente.getDataValutazione() : null);
+        m.put("descrizioneValutazione", recente != null ? recente.getDescrizione() : null);
+        m.put("statoValutazione", recente != null && recente.getStatoValutazione() != null
+            ? recente.getStatoValutazione().getNome() : null);
+        m.put("agenteAssegnato", recente != null ? nomeCompleto(recente.getAgente()) : null);
+        return m;
+    }
+
+    /**
+     * Campi dell'immobile delle liste valutazioni. "descrizione" era già nella mappa:
+     * resta al suo posto ma prende la descrizione dell'immobile
+     */
+    private static void immobile(Map<String, Object> m, Immobile immobile) {
+        m.put("tipo", immobile != null ? immobile.getTipologia() : null);
+        m.put("via", immobile != null ? immobile.getVia() : null);
+        m.put("citta", immobile != null ? immobile.getCitta() : null);
+        m.put("cap", immobile != null ? immobile.getCap() : null);
+        m.put("provincia", immobile != null ? immobile.getProvincia() : null);
+        m.put("metratura", immobile != null ? immobile.getMetratura() : null);
+        m.put("condizioni", immobile != null ? immobile.getCondizioni() : null);
+        m.put("stanze", immobile != null ? immobile.getStanze() : null);
+        m.put("bagni", immobile != null ? immobile.getBagni() : null);
+        m.put("piano", immobile != null ? immobile.getPiano() : null);
+        m.put("ascensore", immobile != null ? immobile.getAscensore() : null);
+        m.put("garage", immobile != null ? immobile.getGarage() : null);
+        m.put("giardino", immobile != null ? immobile.getGiardino() : null);
+        m.put("balcone", immobile != null ? immobile.getBalcone() : null);
+        m.put("terrazzo", immobile != null ? immobile.getTerrazzo() : null);
+        m.put("cantina", immobile != null ? immobile.getCantina() : null);
+        m.put("riscaldamento", immobile != null ? immobile.getRiscaldamento() : null);
+        proprietario(m, immobile != null ? immobile.getProprietario() : null);
+        m.put("descrizione", immobile != null ? immobile.getDescrizione() : null);
+    }
+
+    private static void proprietario(Map<String, Object> m, User proprietario) {
+        m.put("nomeProprietario", nomeCompleto(proprietario));
+        m.put("emailProprietario", proprietario != null ? proprietario.getEmail() : null);
+        m.put("telefonoProprietario", proprietario != null ? proprietario.getTelefono() : null);
+    }
+
+    private static String nomeCompleto(User user) {
+        return user != null ? user.getNome() + " " + user.getCognome() : null;
+    }
+}
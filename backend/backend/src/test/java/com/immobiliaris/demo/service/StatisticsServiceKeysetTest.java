@@ -0,0 +1,203 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.dto.ContrattoRiga;
+import com.immobiliaris.demo.dto.CursorePagina;
+import com.immobiliaris.demo.dto.ImmobileDettaglioRiga;
+import com.immobiliaris.demo.dto.ValutazioneSoloAIRiga;
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoContratto;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Liste admin "carica altri" con cursore: ogni riga esattamente una volta, dalla più recente,
+ * a parità di data per id decrescente, righe senza data in coda; query per pagina costanti
+ * anche sulle pagine profonde.
+ */
+class StatisticsServiceKeysetTest extends SupportoIntegrazione {
+
+    private static final int NUMERO_IMMOBILI = 40;
+
+    /** Query attese per pagina: righe con data, righe senza data, agenti (più un piccolo margine) */
+    private static final long MAX_QUERY_PER_PAGINA = 6;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    private Statistics statistics;
+
+    /** Valori attesi (id valutazione, numero contratto), nell'ordine della lista */
+    private List<Object> valutazioniAttese;
+    private List<Object> contrattiAttesi;
+
+    @BeforeEach
+    void setUp() {
+        statistics = statistiche();
+        valutazioniAttese = new ArrayList<>();
+        contrattiAttesi = new ArrayList<>();
+
+        popola(() -> {
+            StatoValutazione soloAI = statoValutazione("solo_AI");
+            StatoContratto chiuso = statoContratto("chiuso");
+            User proprietario = utente("Mario", "mario.rossi@test.it", tipoCliente);
+
+            // Tre righe per data (pareggi da risolvere con l'id), una su otto senza data
+            LocalDateTime base = LocalDateTime.of(2025, 6, 1, 10, 0);
+            List<Object[]> valutazioni = new ArrayList<>();
+            List<Object[]> contratti = new ArrayList<>();
+            for (int i = 0; i < NUMERO_IMMOBILI; i++) {
+                Immobile immobile = new Immobile();
+                immobile.setTipologia("Appartamento");
+                immobile.setProprietario(proprietario);
+                entityManager.persist(immobile);
+
+                LocalDateTime data = i % 8 == 5 ? null : base.plusDays((i * 7 % 13) / 3);
+
+                Valutazione valutazione = valutazione(immobile, soloAI);
+                valutazione.setDataValutazione(data);
+                entityManager.persist(valutazione);
+                valutazioni.add(new Object[] {data, valutazione.getId().longValue(), valutazione.getId()});
+
+                Contratto contratto = new Contratto();
+                contratto.setImmobile(immobile);
+                contratto.setUtente(proprietario);
+                contratto.setStatoContratto(chiuso);
+                contratto.setNumeroContratto("CTR-" + i);
+                contratto.setDataFine(data);
+                entityManager.persist(contratto);
+                contratti.add(new Object[] {data, contratto.getId(), contratto.getNumeroContratto()});
+            }
+            valutazioniAttese = ordinaComeLaLista(valutazioni);
+            contrattiAttesi = ordinaComeLaLista(contratti);
+            return null;
+        });
+    }
+
+    @Test
+    void valutazioniSoloAIScorronoTutteUnaVolta() {
+        assertEquals(valutazioniAttese, scorri("valutazioni", ValutazioneSoloAIRiga::id,
+            statisticsService::getValutazioniSoloAILoadMore));
+    }
+
+    @Test
+    void contrattiChiusiScorronoTuttiUnaVolta() {
+        assertEquals(contrattiAttesi, scorri("contratti", ContrattoRiga::numeroContratto,
+            statisticsService::getContrattiChiusiLoadMore));
+    }
+
+    @Test
+    void immobiliDalPiuRecente() {
+        Map<String, Object> prima = statisticsService.getTuttiImmobiliConDettagli(null, 12);
+        assertEquals(12, ((List<?>) prima.get("immobili")).size());
+        assertEquals((long) NUMERO_IMMOBILI, prima.get("total"));
+        assertTrue((Boolean) prima.get("hasMore"));
+
+        List<Object> ids = new ArrayList<>();
+        String cursore = null;
+        do {
+            Map<String, Object> pagina = statisticsService.getTuttiImmobiliConDettagli(cursore, 12);
+            ((List<?>) pagina.get("immobili")).forEach(riga -> ids.add(((ImmobileDettaglioRiga) riga).id()));
+            cursore = (String) pagina.get("nextCursor");
+        } while (cursore != null);
+        assertEquals(NUMERO_IMMOBILI, ids.size());
+        assertEquals(NUMERO_IMMOBILI, ids.stream().distinct().count());
+    }
+
+    @Test
+    void paginaProfondaCostaComeLaPrima() {
+        statistics.clear();
+        Map<String, Object> prima = statisticsService.getValutazioniSoloAILoadMore(null, 5);
+        long queryPrima = statistics.getPrepareStatementCount();
+
+        // Ultima pagina con data (righe 31-35): il cursore arriva dalle letture precedenti
+        String cursore = (String) prima.get("nextCursor");
+        for (int i = 0; i < 5; i++) {
+            cursore = (String) statisticsService.getValutazioniSoloAILoadMore(cursore, 5).get("nextCursor");
+        }
+        statistics.clear();
+        Map<String, Object> profonda = statisticsService.getValutazioniSoloAILoadMore(cursore, 5);
+        long queryProfonda = statistics.getPrepareStatementCount();
+
+        assertEquals(5, ((List<?>) profonda.get("valutazioni")).size());
+        assertTrue(queryPrima <= MAX_QUERY_PER_PAGINA, "Query prima pagina: " + queryPrima);
+        assertTrue(queryProfonda <= MAX_QUERY_PER_PAGINA, "Query pagina profonda: " + queryProfonda);
+    }
+
+    @Test
+    void ultimaPaginaSenzaCursore() {
+        Map<String, Object> tutte = statisticsService.getValutazioniSoloAILoadMore(null, NUMERO_IMMOBILI);
+        assertEquals(NUMERO_IMMOBILI, ((List<?>) tutte.get("valutazioni")).size());
+        assertFalse((Boolean) tutte.get("hasMore"));
+        assertNull(tutte.get("nextCursor"));
+    }
+
+    @Test
+    void cursoreNonValido() {
+        assertThrows(IllegalArgumentException.class,
+            () -> statisticsService.getValutazioniSoloAILoadMore("non-un-cursore", 10));
+        assertThrows(IllegalArgumentException.class,
+            () -> statisticsService.getContrattiChiusiLoadMore("MjAyNXwx", 10));
+        // Id oltre il tipo della colonna (Id_valutazione INT) o negativo: cursore non valido, non un errore interno
+        String oltreInt = new CursorePagina(LocalDateTime.of(2025, 1, 1, 0, 0), Integer.MAX_VALUE + 1L).codifica();
+        assertThrows(IllegalArgumentException.class,
+            () -> statisticsService.getValutazioniSoloAILoadMore(oltreInt, 10));
+        assertThrows(IllegalArgumentException.class,
+            () -> statisticsService.getTuttiImmobiliConDettagli(new CursorePagina(null, -1).codifica(), 10));
+    }
+
+    /**
+     * Legge tutte le pagine da 6 righe seguendo nextCursor
+     * @return Valori del campo indicato, nell'ordine della lista
+     */
+    @SuppressWarnings("unchecked")
+    private <R> List<Object> scorri(String chiave, Function<R, Object> campo,
+                                    BiFunction<String, Integer, Map<String, Object>> lista) {
+        List<Object> letti = new ArrayList<>();
+        String cursore = null;
+        int pagine = 0;
+        do {
+            Map<String, Object> pagina = lista.apply(cursore, 6);
+            for (Object riga : (List<?>) pagina.get(chiave)) {
+                letti.add(campo.apply((R) riga));
+            }
+            cursore = (String) pagina.get("nextCursor");
+            assertEquals(cursore != null, pagina.get("hasMore"));
+            assertTrue(++pagine <= NUMERO_IMMOBILI, "Paginazione senza fine");
+        } while (cursore != null);
+        return letti;
+    }
+
+    /**
+     * Ordine atteso: data decrescente, poi id decrescente, righe senza data in coda
+     * @param righe Terne [data, id, valore restituito]
+     */
+    private static List<Object> ordinaComeLaLista(List<Object[]> righe) {
+        return righe.stream()
+            .sorted(Comparator.<Object[], LocalDateTime>comparing(r -> (LocalDateTime) r[0],
+                    Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(r -> (Long) r[1])
+                .reversed())
+            .map(r -> r[2])
+            .toList();
+    }
+}
@@ -0,0 +1,94 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica che le liste di immobili risolvano l'agente assegnato con un numero
+ * di query costante per pagina, indipendente dal numero di righe.
+ */
+class StatisticsServiceQueryCountTest extends SupportoIntegrazione {
+
+    private static final int NUMERO_IMMOBILI = 30;
+
+    /** Query attese per pagina: immobili, count, valutazioni/agenti (più un piccolo margine) */
+    private static final long MAX_QUERY_PER_PAGINA = 5;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = statistiche();
+
+        popola(() -> {
+            StatoValutazione inVerifica = statoValutazione("in_verifica");
+
+            LocalDateTime base = LocalDateTime.now().minusDays(10);
+            for (int i = 0; i < NUMERO_IMMOBILI; i++) {
+                User proprietario = utente("Proprietario" + i, "p" + i + "@test.it", tipoCliente);
+                User primoAgente = utente("Primo" + i, "a" + i + "@test.it", tipoAgente);
+                User ultimoAgente = utente("Ultimo" + i, "u" + i + "@test.it", tipoAgente);
+
+                Immobile immobile = new Immobile();
+                immobile.setTipologia("Appartamento");
+                immobile.setProprietario(proprietario);
+                entityManager.persist(immobile);
+
+                nuovaValutazione(immobile, primoAgente, inVerifica, base);
+                nuovaValutazione(immobile, ultimoAgente, inVerifica, base.plusDays(1));
+                nuovaValutazione(immobile, null, inVerifica, base.plusDays(2));
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void immobiliPaginatiUsanoQueryCostantiPerPagina() {
+        statistics.clear();
+        Map<String, Object> result = statisticsService.getImmobiliPaginated(0, 20);
+        long query = statistics.getPrepareStatementCount();
+
+        List<?> immobili = (List<?>) result.get("immobili");
+        assertEquals(20, immobili.size());
+        assertTrue(query <= MAX_QUERY_PER_PAGINA, "Query eseguite per pagina: " + query);
+
+        // L'agente mostrato è l'ultimo assegnato, non il primo
+        immobili.forEach(riga -> {
+            Object agente = ((Map<?, ?>) riga).get("agenteAssegnato");
+            assertTrue(agente != null && agente.toString().startsWith("Ultimo"), "Agente: " + agente);
+        });
+    }
+
+    @Test
+    void immobiliLoadMoreUsanoQueryCostantiPerPagina() {
+        statistics.clear();
+        Map<String, Object> result = statisticsService.getImmobiliLoadMore(0, 20);
+        long query = statistics.getPrepareStatementCount();
+
+        assertEquals(20, ((List<?>) result.get("immobili")).size());
+        assertTrue(query <= MAX_QUERY_PER_PAGINA, "Query eseguite per pagina: " + query);
+    }
+
+    private void nuovaValutazione(Immobile immobile, User agente, StatoValutazione stato, LocalDateTime data) {
+        Valutazione valutazione = valutazione(immobile, stato);
+        valutazione.setAgente(agente);
+        valutazione.setDataValutazione(data);
+        entityManager.persist(valutazione);
+    }
+}
@@ -0,0 +1,106 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.dto.AddressValidationResponse.AddressSuggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ricerca per prefisso nello stradario: con e senza tipo di strada, accenti,
+ * civici e CAP dei tratti, filtro per città.
+ */
+class StradarioTest {
+
+    private Stradario stradario;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stradario = new Stradario();
+        stradario.carica(new BufferedReader(new StringReader("""
+            # citta;via;cap;civico_da;civico_a
+            Torino;Via Roma;10121;1;199
+            Torino;Via Roma;10123;201;399
+            Torino;Via Romagnano;10145;1;40
+            Torino;Corso Romania;10156;1;500
+            Torino;Via Sant'Ottavio;10124;1;60
+            Asti;Via Roma;14100;1;50
+            Cuneo;Piazza Galimberti;12100;1;20
+            """)));
+    }
+
+    @Test
+    void prefissoConTipoDiStrada() {
+        List<AddressSuggestion> risultati = stradario.suggerisci("Via Ro", "Torino", 10);
+        assertEquals(List.of("Via Roma", "Via Romagnano"), vie(risultati));
+        // Via Roma ha due tratti con CAP diversi: senza civico il CAP non è determinabile
+        assertNull(risultati.get(0).getCap());
+        assertEquals("10145", risultati.get(1).getCap());
+    }
+
+    @Test
+    void prefissoSenzaTipoDiStrada() {
+        assertEquals(List.of("Via Roma", "Via Romagnano", "Corso Romania"),
+            vie(stradario.suggerisci("rom", "torino", 10)));
+        assertEquals(List.of("Piazza Galimberti"), vie(stradario.suggerisci("galimb", "Cuneo", 10)));
+    }
+
+    @Test
+    void civicoSceglieIlTratto() {
+        List<AddressSuggestion> risultati = stradario.suggerisci("Via Roma 250", "Torino", 10);
+        assertEquals(1, risultati.size());
+        assertEquals("10123", risultati.get(0).getCap());
+        assertEquals("250", risultati.get(0).getCivico());
+        assertEquals("Via Roma 250, Torino 10123", risultati.get(0).getDisplayName());
+
+        assertEquals("10121", stradario.suggerisci("via roma 12b", "Torino", 10).get(0).getCap());
+        assertTrue(stradario.suggerisci("Via Roma 900", "Torino", 10).isEmpty());
+    }
+
+    @Test
+    void accentiEPunteggiatura() {
+        assertEquals(List.of("Via Sant'Ottavio"), vie(stradario.suggerisci("via sant’otta", "Torino", 10)));
+        assertEquals(List.of("Via Sant'Ottavio"), vie(stradario.suggerisci("VIA  SÀNT OTTAVIO", "Torino", 10)));
+    }
+
+    @Test
+    void cittaELimite() {
+        List<AddressSuggestion> tutte = stradario.suggerisci("via roma", null, 10);
+        assertEquals(List.of("Via Roma", "Via Roma", "Via Romagnano"), vie(tutte));
+        assertEquals(List.of("Asti", "Torino", "Torino"), tutte.stream().map(AddressSuggestion::getCitta).toList());
+
+        assertEquals(1, stradario.suggerisci("rom", "Torino", 1).size());
+        assertTrue(stradario.suggerisci("via roma", "Milano", 10).isEmpty());
+        assertTrue(stradario.suggerisci("via xyz", "Torino", 10).isEmpty());
+    }
+
+    @Test
+    void stradarioPredefinito() {
+        Stradario predefinito = new Stradario();
+        predefinito.inizializza();
+
+        for (String citta : List.of("Torino", "Cuneo", "Alessandria", "Asti")) {
+            assertTrue(!predefinito.suggerisci("corso", citta, 5).isEmpty(), citta);
+        }
+        assertEquals("10146", predefinito.suggerisci("Corso Francia 300", "Torino", 5).get(0).getCap());
+    }
+
+    @Test
+    void rigaNonValida() {
+        assertThrows(IllegalArgumentException.class, () -> stradario.carica(
+            new BufferedReader(new StringReader("Torino;Via Roma;10121;uno;199"))));
+        // Stradario precedente ancora in uso
+        assertEquals(2, stradario.suggerisci("via ro", "Torino", 10).size());
+    }
+
+    private static List<String> vie(List<AddressSuggestion> suggerimenti) {
+        return suggerimenti.stream().map(AddressSuggestion::getVia).toList();
+    }
+}
@@ -0,0 +1,175 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.StatoContratto;
+import com.immobiliaris.demo.entity.StatoImmobile;
+import com.immobiliaris.demo.entity.StatoValutazione;
+import com.immobiliaris.demo.entity.TipoUtente;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Base dei test di integrazione sul database di test predefinito.
+ *
+ * Tutte le sottoclassi hanno la stessa configurazione e quindi condividono un solo
+ * contesto Spring (cache dei contesti di Spring Test). Ogni test riparte come da un
+ * database appena creato con {@link #popola(Supplier)}, che ricarica anche gli aggregati
+ * della dashboard e il registro degli stati.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    // Coda email ferma: EmailOutboxServiceTest avvia il worker, con tempi brevi, solo per i suoi test
+    "email.outbox.attivo=false",
+    "email.outbox.intervallo-ms=100",
+    "email.outbox.backoff-iniziale-ms=200",
+    "email.outbox.backoff-massimo-ms=400",
+    "email.outbox.max-tentativi=3",
+    "dashboard.sse.heartbeat-ms=200",
+    // Archivio PDF svuotato da ArchivioPdfContrattiServiceTest: mai quello dell'applicazione
+    "contratti.pdf.archivio.directory=target/test-contratti-pdf"
+})
+abstract class SupportoIntegrazione {
+
+    /** Password in chiaro di tutti gli utenti creati da {@link #utente} */
+    protected static final String PASSWORD = "password";
+
+    /** Tabelle svuotate da {@link #popola(Supplier)} con la colonna id, nell'ordine delle FK */
+    private static final String[][] TABELLE = {
+        {"Contratti", "Id_contratto"},
+        {"Valutazioni", "Id_valutazione"},
+        {"Immobili", "Id_immobile"},
+        {"Utenti", "Id_utente"},
+        {"Tipi_utente", "Id_tipo"},
+        {"Stati_contratto", "Id_stato_contratto"},
+        {"Stati_valutazione", "Id_stato_valutazione"},
+        {"Stati_immobile", "Id_stato_immobile"}
+    };
+
+    /** Hash BCrypt di {@link #PASSWORD}, calcolato una volta sola */
+    private static String passwordCifrata;
+
+    @Autowired
+    protected EntityManager entityManager;
+
+    @Autowired
+    protected EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    protected TransactionTemplate transactionTemplate;
+
+    @Autowired
+    protected DashboardAggregateStore dashboardAggregateStore;
+
+    @Autowired
+    protected RegistroStati registroStati;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    /** Tipi utente di scriptDB.sql con gli stessi id (l'agente è idTipo = 2), creati da {@link #popola} */
+    protected TipoUtente tipoCliente;
+    protected TipoUtente tipoAgente;
+    protected TipoUtente tipoAmministratore;
+
+    /**
+     * Svuota le tabelle (id ripartono da 1), crea i tipi utente e inserisce i dati del test
+     * in una sola transazione. Le DELETE non passano dagli entity listener: dopo il commit
+     * store e registro vengono ricaricati per intero.
+     *
+     * @param dati inserimenti del test (con {@link #entityManager})
+     * @return il valore restituito da {@code dati}
+     */
+    protected <T> T popola(Supplier<T> dati) {
+        T risultato = transactionTemplate.execute(status -> {
+            for (String[] tabella : TABELLE) {
+                entityManager.createNativeQuery("DELETE FROM " + tabella[0]).executeUpdate();
+                entityManager.createNativeQuery(
+                    "ALTER TABLE " + tabella[0] + " ALTER COLUMN " + tabella[1] + " RESTART WITH 1").executeUpdate();
+            }
+            tipoCliente = tipo("Cliente");
+            tipoAgente = tipo("Agente");
+            tipoAmministratore = tipo("Amministratore");
+            return dati.get();
+        });
+        registroStati.ricarica();
+        dashboardAggregateStore.ricostruisci();
+        return risultato;
+    }
+
+    protected Statistics statistiche() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // ========== ENTITÀ DI TEST (tipi, utenti e stati salvati: dentro una transazione) ==========
+
+    private TipoUtente tipo(String nome) {
+        TipoUtente tipo = new TipoUtente();
+        tipo.setNome(nome);
+        entityManager.persist(tipo);
+        return tipo;
+    }
+
+    protected User utente(String nome, String email, TipoUtente tipo) {
+        if (passwordCifrata == null) {
+            passwordCifrata = passwordEncoder.encode(PASSWORD);
+        }
+        User user = new User();
+        user.setNome(nome);
+        user.setCognome("Test");
+        user.setEmail(email);
+        user.setPassword(passwordCifrata);
+        user.setTipoUtente(tipo);
+        entityManager.persist(user);
+        return user;
+    }
+
+    protected StatoValutazione statoValutazione(String nome) {
+        StatoValutazione stato = new StatoValutazione();
+        stato.setNome(nome);
+        entityManager.persist(stato);
+        return stato;
+    }
+
+    protected StatoContratto statoContratto(String nome) {
+        StatoContratto stato = new StatoContratto();
+        stato.setNome(nome);
+        entityManager.persist(stato);
+        return stato;
+    }
+
+    protected StatoImmobile statoImmobile(String nome) {
+        StatoImmobile stato = new StatoImmobile();
+        stato.setNome(nome);
+        entityManager.persist(stato);
+        return stato;
+    }
+
+    /** Appartamento a Torino, da 80 m² e 250.000 euro, non ancora salvato */
+    protected static Immobile immobile(String via, User proprietario) {
+        Immobile immobile = new Immobile();
+        immobile.setTipologia("Appartamento");
+        immobile.setVia(via);
+        immobile.setCitta("Torino");
+        immobile.setMetratura(80);
+        immobile.setPrezzo(250_000);
+        immobile.setProprietario(proprietario);
+        return immobile;
+    }
+
+    /** Valutazione dell'immobile nello stato indicato, non ancora salvata */
+    protected static Valutazione valutazione(Immobile immobile, StatoValutazione stato) {
+        Valutazione valutazione = new Valutazione();
+        valutazione.setImmobile(immobile);
+        valutazione.setStatoValutazione(stato);
+        return valutazione;
+    }
+}
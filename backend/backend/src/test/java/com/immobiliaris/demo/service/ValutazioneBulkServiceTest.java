@@ -0,0 +1,176 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import com.immobiliaris.demo.entity.Valutazione;
+import com.immobiliaris.demo.entity.Zona;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ciclo di vita dei job di rivalutazione massiva: completamento, errore e nuovo
+ * avvio dopo un errore (il job fallito non resta "in_corso"), rimozione dei job
+ * conclusi; le valutazioni massive non sostituiscono quelle prese in carico.
+ */
+class ValutazioneBulkServiceTest extends SupportoIntegrazione {
+
+    @Autowired
+    private ValutazioneBulkService valutazioneBulkService;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @BeforeEach
+    void setUp() {
+        popola(() -> {
+            entityManager.createQuery("DELETE FROM Zona").executeUpdate();
+            entityManager.persist(new Zona("Centro", "10121", 3_000));
+
+            entityManager.persist(immobileValutabile("Via Roma 1", "10121"));
+            // CAP senza zona: prezzo 0, saltato
+            entityManager.persist(immobileValutabile("Via Lontana 2", "99999"));
+            return null;
+        });
+    }
+
+    @Test
+    void jobCompletato() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> statoValutazione("solo_AI"));
+
+        Map<String, Object> job = attendi(valutazioneBulkService.avvia(null));
+        assertEquals("completato", job.get("stato"), "Job: " + job);
+        assertEquals(1, job.get("inseriti"));
+        assertEquals(1, job.get("saltati"));
+        assertEquals(100L, job.get("percentuale"));
+        assertNull(job.get("errore"));
+        assertNotNull(job.get("fine"));
+    }
+
+    @Test
+    void jobInErroreENuovoAvvio() throws InterruptedException {
+        // Nessuno stato solo_AI: il job fallisce subito
+        ValutazioneBulkService.Job fallito = valutazioneBulkService.avvia(null);
+        Map<String, Object> primo = attendi(fallito);
+        assertEquals("errore", primo.get("stato"));
+        assertTrue(((String) primo.get("errore")).contains("solo_AI"), "Errore: " + primo.get("errore"));
+        assertNotNull(primo.get("fine"));
+        assertEquals(0, primo.get("inseriti"));
+
+        // Dopo l'errore si può avviare un nuovo job, senza 409
+        transactionTemplate.executeWithoutResult(status -> statoValutazione("solo_AI"));
+        ValutazioneBulkService.Job secondo = valutazioneBulkService.avvia("10121");
+        assertNotEquals(fallito.getId(), secondo.getId());
+
+        Map<String, Object> completato = attendi(secondo);
+        assertEquals("completato", completato.get("stato"), "Job: " + completato);
+        assertEquals(1, completato.get("inseriti"));
+        assertEquals(0, completato.get("saltati"));
+    }
+
+    @Test
+    void valutazioneDelAgenteRestaLaPiuRecente() throws InterruptedException {
+        LocalDateTime registrazione = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusDays(20);
+        popola(() -> {
+            entityManager.createQuery("DELETE FROM Zona").executeUpdate();
+            entityManager.persist(new Zona("Centro", "10121", 3_000));
+            statoValutazione("solo_AI");
+            User agente = utente("Laura", "laura@test.it", tipoAgente);
+
+            // Immobile valutato dall'agente, con contratto chiuso: campione per entrambi i tempi medi
+            Immobile immobile = immobileValutabile("Via Roma 1", "10121");
+            entityManager.persist(immobile);
+            entityManager.flush();
+            entityManager.createNativeQuery("UPDATE Immobili SET Data_registrazione = ? WHERE Id_immobile = ?")
+                .setParameter(1, registrazione)
+                .setParameter(2, immobile.getId())
+                .executeUpdate();
+            Valutazione presaInCarico = valutazione(immobile, statoValutazione("in_verifica"));
+            presaInCarico.setAgente(agente);
+            presaInCarico.setPrezzoAI(240_000);
+            presaInCarico.setPrezzoUmano(260_000);
+            presaInCarico.setDataValutazione(registrazione.plusDays(2));
+            entityManager.persist(presaInCarico);
+
+            Contratto contratto = new Contratto();
+            contratto.setValutazione(presaInCarico);
+            contratto.setImmobile(immobile);
+            contratto.setAgente(agente);
+            contratto.setStatoContratto(statoContratto("chiuso"));
+            contratto.setDataInizio(registrazione.plusDays(5));
+            entityManager.persist(contratto);
+            return null;
+        });
+        List<?> righePrima = righeAdmin();
+        Long tempoAIPrima = dashboardAggregateStore.getMediaTempoAIaPresaInCarico();
+        Long tempoContrattoPrima = dashboardAggregateStore.getMediaTempoPresaInCaricoaContratto();
+        assertEquals(2 * 86_400L, tempoAIPrima);
+        assertEquals(3 * 86_400L, tempoContrattoPrima);
+
+        Map<String, Object> job = attendi(valutazioneBulkService.avvia(null));
+        assertEquals("completato", job.get("stato"), "Job: " + job);
+        assertEquals(1, job.get("inseriti"));
+
+        // Valutazione massiva senza data, come quelle "solo_AI" del form
+        assertNull(transactionTemplate.execute(status -> entityManager.createQuery(
+                "SELECT v.dataValutazione FROM Valutazione v WHERE v.statoValutazione.nome = 'solo_AI'")
+            .getSingleResult()));
+        assertEquals(righePrima, righeAdmin());
+        assertEquals(tempoAIPrima, dashboardAggregateStore.getMediaTempoAIaPresaInCarico());
+        assertEquals(tempoContrattoPrima, dashboardAggregateStore.getMediaTempoPresaInCaricoaContratto());
+    }
+
+    @Test
+    void jobConclusiRimossiDopoLaConservazione() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> statoValutazione("solo_AI"));
+        Object conservazione = ReflectionTestUtils.getField(valutazioneBulkService, "conservazioneJob");
+        try {
+            ValutazioneBulkService.Job job = valutazioneBulkService.avvia(null);
+            attendi(job);
+            assertEquals(job, valutazioneBulkService.getJob(job.getId()));
+
+            ReflectionTestUtils.setField(valutazioneBulkService, "conservazioneJob", Duration.ZERO);
+            Thread.sleep(5);
+            assertNull(valutazioneBulkService.getJob(job.getId()));
+        } finally {
+            ReflectionTestUtils.setField(valutazioneBulkService, "conservazioneJob", conservazione);
+        }
+    }
+
+    private List<?> righeAdmin() {
+        return (List<?>) statisticsService.getTuttiImmobiliConDettagli(null, 100).get("immobili");
+    }
+
+    /** Attende la fine del job (al massimo 10 secondi) e ne restituisce lo stato */
+    private static Map<String, Object> attendi(ValutazioneBulkService.Job job) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (("in_coda".equals(job.getStato()) || "in_corso".equals(job.getStato()))
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        return job.toMap();
+    }
+
+    private static Immobile immobileValutabile(String via, String cap) {
+        Immobile immobile = immobile(via, null);
+        immobile.setCap(cap);
+        immobile.setPiano(2);
+        immobile.setStanze(3);
+        immobile.setBagni(1);
+        return immobile;
+    }
+}
@@ -0,0 +1,141 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.controller.api.AdminApiController;
+import com.immobiliaris.demo.controller.api.DashboardApiController;
+import com.immobiliaris.demo.entity.Contratto;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.User;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GET condizionali di dashboard e liste: con l'ETag ancora valido la risposta è 304
+ * senza query; una scrittura confermata cambia l'ETag, un rollback no.
+ */
+class VersioneDatiServiceTest extends SupportoIntegrazione {
+
+    private static final String EMAIL_AGENTE = "laura.bianchi@test.it";
+
+    @Autowired
+    private AdminApiController adminApiController;
+
+    @Autowired
+    private DashboardApiController dashboardApiController;
+
+    private Statistics statistics;
+
+    private Long idAgente;
+
+    @BeforeEach
+    void setUp() {
+        statistics = statistiche();
+
+        idAgente = popola(() -> {
+            User agente = utente("Laura", EMAIL_AGENTE, tipoAgente);
+            agente.setCognome("Bianchi");
+            entityManager.persist(immobile("Via Roma 1", agente));
+            return agente.getIdUtente();
+        });
+    }
+
+    @Test
+    void dashboardAdmin304SenzaQuery() {
+        ResponseEntity<?> prima = adminApiController.getDashboard(null, richiesta(null));
+        assertEquals(200, prima.getStatusCode().value());
+        String etag = prima.getHeaders().getETag();
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""), "ETag forte: " + etag);
+        assertTrue(prima.getHeaders().getCacheControl().contains("no-cache"));
+
+        statistics.clear();
+        ResponseEntity<?> seconda = adminApiController.getDashboard(null, richiesta(etag));
+        assertEquals(304, seconda.getStatusCode().value());
+        assertNull(seconda.getBody());
+        assertEquals(etag, seconda.getHeaders().getETag());
+        assertEquals(0, statistics.getPrepareStatementCount(), "Nessuna query per una dashboard invariata");
+    }
+
+    @Test
+    void scritturaConfermataCambiaEtagRollbackNo() {
+        String etag = adminApiController.getDashboard(null, richiesta(null)).getHeaders().getETag();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.persist(immobile("Via Annullata 2", entityManager.find(User.class, idAgente)));
+            status.setRollbackOnly();
+        });
+        assertEquals(304, adminApiController.getDashboard(null, richiesta(etag)).getStatusCode().value());
+
+        transactionTemplate.executeWithoutResult(status ->
+            entityManager.persist(immobile("Via Nuova 3", entityManager.find(User.class, idAgente))));
+        ResponseEntity<?> dopo = adminApiController.getDashboard(null, richiesta(etag));
+        assertEquals(200, dopo.getStatusCode().value());
+        assertNotEquals(etag, dopo.getHeaders().getETag());
+    }
+
+    @Test
+    void dashboardAgentePerUtente() {
+        ResponseEntity<?> prima = dashboardApiController.getDashboard(() -> EMAIL_AGENTE, richiesta(null));
+        assertEquals(200, prima.getStatusCode().value());
+        String etag = prima.getHeaders().getETag();
+
+        statistics.clear();
+        assertEquals(304, dashboardApiController.getDashboard(() -> EMAIL_AGENTE, richiesta(etag)).getStatusCode().value());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // Stesso browser, altro utente: l'ETag del primo non vale
+        ResponseEntity<?> altro = dashboardApiController.getDashboard(() -> "altro@test.it", richiesta(etag));
+        assertNotEquals(304, altro.getStatusCode().value());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User agente = entityManager.find(User.class, idAgente);
+            Immobile immobile = immobile("Corso Francia 120", agente);
+            entityManager.persist(immobile);
+            Contratto contratto = new Contratto();
+            contratto.setImmobile(immobile);
+            contratto.setUtente(agente);
+            contratto.setAgente(agente);
+            entityManager.persist(contratto);
+        });
+        assertEquals(200, dashboardApiController.getDashboard(() -> EMAIL_AGENTE, richiesta(etag)).getStatusCode().value());
+    }
+
+    @Test
+    void listaImmobili304SenzaQuery() {
+        Function<String, ResponseEntity<Object>> lista =
+            etag -> adminApiController.getImmobiliCompleti(null, 12, richiesta(etag));
+
+        String etag = lista.apply(null).getHeaders().getETag();
+        assertNotNull(etag);
+
+        statistics.clear();
+        assertEquals(304, lista.apply(etag).getStatusCode().value());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // Gli utenti compaiono nelle righe (proprietario): anche la loro modifica invalida
+        transactionTemplate.executeWithoutResult(status ->
+            entityManager.find(User.class, idAgente).setCognome("Verdi"));
+        assertEquals(200, lista.apply(etag).getStatusCode().value());
+    }
+
+    private static ServletWebRequest richiesta(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/test");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
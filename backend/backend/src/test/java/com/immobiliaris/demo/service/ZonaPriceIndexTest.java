@@ -0,0 +1,100 @@
+package com.immobiliaris.demo.service;
+
+import com.immobiliaris.demo.controller.api.ValutazioneApiController;
+import com.immobiliaris.demo.entity.Immobile;
+import com.immobiliaris.demo.entity.Zona;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Indice CAP → prezzo al mq: ricerca per CAP, CAP sconosciuti o non validi (404 dal
+ * calcolo della valutazione) e ricarica dopo il commit delle modifiche alle zone.
+ */
+class ZonaPriceIndexTest extends SupportoIntegrazione {
+
+    @Autowired
+    private ZonaPriceIndex zonaPriceIndex;
+
+    @Autowired
+    private ValutazioneApiController valutazioneApiController;
+
+    @BeforeEach
+    void setUp() {
+        popola(() -> {
+            entityManager.createQuery("DELETE FROM Zona").executeUpdate();
+            entityManager.persist(new Zona("Centro", "10121", 3_000));
+            // Stesso CAP su due quartieri: vale la media
+            entityManager.persist(new Zona("San Salvario", "10125", 2_000));
+            entityManager.persist(new Zona("Valentino", "10125", 2_600));
+            entityManager.persist(new Zona("Crocetta", "10129", 2_800));
+            return null;
+        });
+    }
+
+    @Test
+    void prezzoPerCap() {
+        assertEquals(3_000, zonaPriceIndex.getPrezzoMedioMq("10121"));
+        assertEquals(2_300, zonaPriceIndex.getPrezzoMedioMq("10125"));
+        assertEquals(2_800, zonaPriceIndex.getPrezzoMedioMq("10129"));
+        assertTrue(zonaPriceIndex.contiene("10129"));
+    }
+
+    @Test
+    void capSconosciutoONonValido() {
+        for (String cap : new String[] { "99999", "10122", null, "", "1012", "101210", "10a21" }) {
+            assertEquals(0, zonaPriceIndex.getPrezzoMedioMq(cap), "CAP " + cap);
+            assertFalse(zonaPriceIndex.contiene(cap), "CAP " + cap);
+        }
+    }
+
+    @Test
+    void calcoloConCapNonMappato404() {
+        Integer idImmobile = transactionTemplate.execute(status -> {
+            Immobile immobile = immobile("Via Lontana 1", null);
+            immobile.setCap("99999");
+            immobile.setPiano(1);
+            immobile.setStanze(3);
+            immobile.setBagni(1);
+            entityManager.persist(immobile);
+            return immobile.getId();
+        });
+
+        ResponseEntity<?> risposta = valutazioneApiController.calcolaValutazione(
+            idImmobile, new ValutazioneApiController.CalcoloRequest());
+        assertEquals(404, risposta.getStatusCode().value());
+    }
+
+    @Test
+    void ricaricaDopoModificaZone() {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.persist(new Zona("Lingotto", "10126", 1_900));
+            entityManager.createQuery("SELECT z FROM Zona z WHERE z.cap = '10121'", Zona.class)
+                .getSingleResult().setPrezzoMedioMq(3_200);
+            entityManager.remove(entityManager.createQuery("SELECT z FROM Zona z WHERE z.cap = '10129'", Zona.class)
+                .getSingleResult());
+
+            // Prima del commit l'indice non cambia
+            assertEquals(0, zonaPriceIndex.getPrezzoMedioMq("10126"));
+            assertEquals(3_000, zonaPriceIndex.getPrezzoMedioMq("10121"));
+        });
+
+        assertEquals(1_900, zonaPriceIndex.getPrezzoMedioMq("10126"));
+        assertEquals(3_200, zonaPriceIndex.getPrezzoMedioMq("10121"));
+        assertEquals(0, zonaPriceIndex.getPrezzoMedioMq("10129"));
+    }
+
+    @Test
+    void rollbackNonCambiaIndice() {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.persist(new Zona("Lingotto", "10126", 1_900));
+            status.setRollbackOnly();
+        });
+        assertEquals(0, zonaPriceIndex.getPrezzoMedioMq("10126"));
+    }
+}
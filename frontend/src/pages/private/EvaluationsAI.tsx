@@ -17,7 +17,7 @@ export default function EvaluationsAI() {
   >([]);
   const [selected, setSelected] = useState<ValutazioneAI | null>(null);
   const [searchQuery, setSearchQuery] = useState("");
-  const [offset, setOffset] = useState(0);
+  const [cursor, setCursor] = useState<string | null>(null);
   const [hasMore, setHasMore] = useState(true);
   const [loading, setLoading] = useState(false);
   const [showAgentModal, setShowAgentModal] = useState(false);
@@ -31,12 +31,12 @@ export default function EvaluationsAI() {
     (async () => {
       setLoading(true);
       try {
-        const res = await getValutazioniSoloAI(0, 10);
+        const res = await getValutazioniSoloAI(null, 10);
         setValutazioni(
           res.valutazioni.map((v) => ({ ...v, incaricoAssegnato: false }))
         );
         setAgents(res.agents);
-        setOffset(res.nextOffset);
+        setCursor(res.nextCursor);
         setHasMore(res.hasMore);
       } catch (err) {
         console.error("Errore caricamento valutazioni AI:", err);
@@ -50,12 +50,12 @@ export default function EvaluationsAI() {
   async function loadMore() {
     setLoading(true);
     try {
-      const res = await getValutazioniSoloAI(offset, 10);
+      const res = await getValutazioniSoloAI(cursor, 10);
       setValutazioni((prev) => [
         ...prev,
         ...res.valutazioni.map((v) => ({ ...v, incaricoAssegnato: false })),
       ]);
-      setOffset(res.nextOffset);
+      setCursor(res.nextCursor);
       setHasMore(res.hasMore);
     } catch (err) {
       console.error("Errore caricamento valutazioni AI:", err);
@@ -17,7 +17,7 @@ export default function AssignmentsAdmin() {
   const [selectedIncarico, setSelectedIncarico] = useState<Incarichi | null>(
     null
   );
-  const [nextOffset, setNextOffset] = useState(0);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
   const [hasMore, setHasMore] = useState(true);
   const [loading, setLoading] = useState(false);
 
@@ -25,9 +25,9 @@ export default function AssignmentsAdmin() {
     (async () => {
       setLoading(true);
       try {
-        const res = await getIncarichi(0, 10);
+        const res = await getIncarichi(null, 10);
         setIncarichi(res.valutazioni);
-        setNextOffset(res.nextOffset);
+        setNextCursor(res.nextCursor);
         setHasMore(res.hasMore);
       } catch (err) {
         console.error("Errore caricamento incarichi:", err);
@@ -38,9 +38,9 @@ export default function AssignmentsAdmin() {
   }, []);
 
   async function handleLoadMore() {
-    const res = await getIncarichi(nextOffset, 10);
+    const res = await getIncarichi(nextCursor, 10);
     setIncarichi((prev) => [...prev, ...res.valutazioni]);
-    setNextOffset(res.nextOffset);
+    setNextCursor(res.nextCursor);
     setHasMore(res.hasMore);
   }
 
@@ -12,7 +12,7 @@ export default function ContractsAdmin() {
   const [contratti, setContratti] = useState<ContrattoChiuso[]>([]);
   const [selectedContract, setSelectedContract] =
     useState<ContrattoChiuso | null>(null);
-  const [nextOffset, setNextOffset] = useState(0);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
   const [hasMore, setHasMore] = useState(true);
   const [loading, setLoading] = useState(false);
 
@@ -20,9 +20,9 @@ export default function ContractsAdmin() {
     (async () => {
       setLoading(true);
       try {
-        const res = await getContrattiChiusi(0, 10);
+        const res = await getContrattiChiusi(null, 10);
         setContratti(res.contratti);
-        setNextOffset(res.nextOffset);
+        setNextCursor(res.nextCursor);
         setHasMore(res.hasMore);
       } catch (err) {
         console.error("Errore caricamento contratti:", err);
@@ -33,9 +33,9 @@ export default function ContractsAdmin() {
   }, []);
 
   async function handleLoadMore() {
-    const res = await getContrattiChiusi(nextOffset, 10);
+    const res = await getContrattiChiusi(nextCursor, 10);
     setContratti((prev) => [...prev, ...res.contratti]);
-    setNextOffset(res.nextOffset);
+    setNextCursor(res.nextCursor);
     setHasMore(res.hasMore);
   }
 
@@ -149,17 +149,25 @@ export type Immobile = {
   agenteAssegnato: string | null;
 };
 
+// Liste "carica altri" dell'admin: il backend restituisce nextCursor, da
+// rimandare così com'è per la pagina successiva (null = nessun'altra pagina)
+function paginaQuery(cursor: string | null, limit: number): string {
+  return cursor
+    ? `cursor=${encodeURIComponent(cursor)}&limit=${limit}`
+    : `limit=${limit}`;
+}
+
 export async function getImmobili(
-  offset = 0,
+  cursor: string | null = null,
   limit = 12
 ): Promise<{
   immobili: Immobile[];
-  nextOffset: number;
+  nextCursor: string | null;
   hasMore: boolean;
   pageSize: number;
   total: number;
 }> {
-  return apiFetch(`/admin/immobili?offset=${offset}&limit=${limit}`, {
+  return apiFetch(`/admin/immobili?${paginaQuery(cursor, limit)}`, {
     method: "GET",
   });
 }
@@ -312,17 +320,17 @@ export type ContrattoChiuso = {
 
 export type ContrattiResponse = {
   contratti: ContrattoChiuso[];
-  nextOffset: number;
+  nextCursor: string | null;
   hasMore: boolean;
   pageSize: number;
 };
 
 export async function getContrattiChiusi(
-  offset = 0,
+  cursor: string | null = null,
   limit = 10
 ): Promise<ContrattiResponse> {
   return apiFetch<ContrattiResponse>(
-    `/admin/contratti/chiusi?offset=${offset}&limit=${limit}`,
+    `/admin/contratti/chiusi?${paginaQuery(cursor, limit)}`,
     { method: "GET" }
   );
 }
@@ -376,17 +384,17 @@ type Agent = {
 export interface ValutazioniAIResponse {
   valutazioni: ValutazioneAI[];
   agents: Agent[];
-  nextOffset: number;
+  nextCursor: string | null;
   hasMore: boolean;
   pageSize: number;
 }
 
 export async function getValutazioniSoloAI(
-  offset = 0,
+  cursor: string | null = null,
   limit = 10
 ): Promise<ValutazioniAIResponse> {
   return apiFetch(
-    `/admin/valutazioni/solo-ai?offset=${offset}&limit=${limit}`,
+    `/admin/valutazioni/solo-ai?${paginaQuery(cursor, limit)}`,
     { method: "GET" }
   );
 }
@@ -457,17 +465,17 @@ export interface Incarichi {
 
 export interface incarichiResponse {
   valutazioni: Incarichi[];
-  nextOffset: number;
+  nextCursor: string | null;
   hasMore: boolean;
   pageSize: number;
 }
 
 export async function getIncarichi(
-  offset = 0,
+  cursor: string | null = null,
   limit = 10
 ): Promise<incarichiResponse> {
   return apiFetch<incarichiResponse>(
-    `/admin/valutazioni/in-verifica?offset=${offset}&limit=${limit}`,
+    `/admin/valutazioni/in-verifica?${paginaQuery(cursor, limit)}`,
     {
       method: "GET",
     }